@@ -0,0 +1,52 @@
+package com.zvonok.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Embedded ActiveMQ Artemis with a STOMP acceptor as a local stand-in for the external broker.
+ * Lets the relay mode (and several backend nodes on one machine) be run without RabbitMQ.
+ * Not meant for production: no persistence and no security. Lives in {@code src/dev/java} and is
+ * compiled, together with the Artemis dependencies, only with the {@code dev-broker} Maven profile,
+ * so the production artifact does not contain the broker.
+ *
+ * Встроенный ActiveMQ Artemis со STOMP-акцептором как локальная замена внешнего брокера.
+ * Позволяет запускать режим relay (и несколько узлов бэкенда на одной машине) без RabbitMQ.
+ * Не для продакшена: без персистентности и без проверки учетных данных. Находится в {@code src/dev/java}
+ * и компилируется вместе с зависимостями Artemis только с Maven-профилем {@code dev-broker}, поэтому
+ * брокера нет в продакшен-артефакте.
+ */
+@Configuration
+@ConditionalOnClass(EmbeddedActiveMQ.class)
+@ConditionalOnProperty(name = "app.websocket.broker.embedded", havingValue = "true")
+@Slf4j
+public class EmbeddedStompBrokerConfig {
+
+    @Value("${app.websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public EmbeddedActiveMQ embeddedStompBroker() throws Exception {
+        // Префиксы совпадают с префиксами брокера Spring: /topic/* - multicast, /queue/* - anycast
+        String acceptor = "tcp://" + relayHost + ":" + relayPort
+                + "?protocols=STOMP;anycastPrefix=/queue/;multicastPrefix=/topic/";
+        ConfigurationImpl configuration = new ConfigurationImpl();
+        configuration.setPersistenceEnabled(false);
+        configuration.setSecurityEnabled(false);
+        configuration.addAcceptorConfiguration("stomp", acceptor);
+
+        EmbeddedActiveMQ broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(configuration);
+        log.info("Embedded STOMP broker will listen on {}:{}", relayHost, relayPort);
+        return broker;
+    }
+}
@@ -0,0 +1,47 @@
+package com.zvonok.benchmark;
+
+import com.zvonok.ZvonokApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application context for benchmarks against an in-memory H2 database (PostgreSQL mode).
+ * Settings are passed as command line arguments so they win over any application.properties on the classpath.
+ *
+ * Поднимает контекст приложения для бенчмарков на H2 в памяти (режим PostgreSQL).
+ * Настройки передаются аргументами командной строки, чтобы перекрыть application.properties из classpath.
+ */
+public final class BenchmarkApplication {
+
+    public static final String JWT_SECRET =
+            "benchmarkSecretKeyThatIsLongEnoughForHS512SignatureAlgorithm0123456789abcdef";
+
+    private BenchmarkApplication() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return start("jdbc:h2:mem:benchmark;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+    }
+
+    /** Контекст на другой базе, например файловой H2 для наборов данных, не помещающихся в память. */
+    public static ConfigurableApplicationContext start(String datasourceUrl) {
+        return new SpringApplicationBuilder(ZvonokApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(
+                        "--spring.main.banner-mode=off",
+                        "--spring.datasource.url=" + datasourceUrl,
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.jpa.show-sql=false",
+                        "--spring.jpa.properties.hibernate.globally_quoted_identifiers=true",
+                        "--spring.jpa.properties.hibernate.globally_quoted_identifiers_skip_column_definitions=true",
+                        "--app.jwt.secret=" + JWT_SECRET,
+                        "--app.jwt.ExpirationMs=3600000",
+                        "--app.jwt.refreshExpirationMs=1209600000",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.zvonok=WARN");
+    }
+}
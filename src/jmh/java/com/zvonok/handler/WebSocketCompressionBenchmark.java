@@ -0,0 +1,201 @@
+package com.zvonok.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.controller.dto.PresenceUpdate;
+import com.zvonok.controller.dto.TypingUpdate;
+import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.model.enumeration.UserStatus;
+import com.zvonok.service.dto.EventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompEncoder;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Bandwidth and CPU of permessage-deflate on the frames one client session receives in a typical
+ * chat: channel messages of various lengths, typing updates, presence batches and heartbeats, encoded
+ * by Spring's {@link StompEncoder}. Compression repeats what Tomcat's {@code PerMessageDeflate} does
+ * with context takeover (raw deflate, default level, sync flush, trailing 4 bytes dropped); frames
+ * shorter than {@code minMessageSize} are sent as is, as {@link PerMessageDeflateConfigurer} does.
+ * The score is the time to send the whole stream of {@code frames} frames; bytes on the wire
+ * (payload plus WebSocket frame header) are printed once per trial ({@code wire bytes}).
+ * {@code minMessageSize=-1} disables compression.
+ *
+ * Трафик и CPU permessage-deflate на кадрах, которые получает одна клиентская сессия в типичном чате:
+ * сообщения каналов разной длины, обновления набора текста, пачки статусов и heartbeat, закодированные
+ * {@link StompEncoder} Spring. Сжатие повторяет {@code PerMessageDeflate} Tomcat с переносом контекста
+ * (raw deflate, уровень по умолчанию, sync flush, последние 4 байта отбрасываются); кадры короче
+ * {@code minMessageSize} уходят как есть, как в {@link PerMessageDeflateConfigurer}. Результат - время
+ * отправки всего потока из {@code frames} кадров; байты в сети (нагрузка и заголовок кадра WebSocket)
+ * печатаются один раз за прогон ({@code wire bytes}). {@code minMessageSize=-1} отключает сжатие.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebSocketCompressionBenchmark {
+
+    // Трейлер 00 00 FF FF после sync flush, который permessage-deflate не передает
+    private static final int SYNC_FLUSH_TRAILER = 4;
+
+    private static final String[] WORDS = {
+            "привет", "кто", "сегодня", "в", "голосовом", "играем", "вечером", "ок", "да", "нет", "щас",
+            "буду", "через", "пять", "минут", "ссылка", "на", "сервер", "hello", "lol", "gg", "the",
+            "build", "is", "green", "again", "deploy", "после", "обеда", "смотрите", "скрин", "выше"
+    };
+
+    @Param({"-1", "0", "64", "128", "256", "512"})
+    private int minMessageSize;
+
+    @Param({"1000"})
+    private int frames;
+
+    private List<byte[]> stream;
+    private Deflater deflater;
+    private byte[] output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stream = chatStream(frames);
+        output = new byte[64 * 1024];
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        long raw = 0;
+        for (byte[] frame : stream) {
+            raw += frame.length + frameHeader(frame.length);
+        }
+        long wire = sendStream();
+        System.out.printf("%nwire bytes: minMessageSize=%d raw=%d wire=%d (%.1f%%)%n",
+                minMessageSize, raw, wire, 100.0 * wire / raw);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deflater.end();
+    }
+
+    @Benchmark
+    public long stream() {
+        return sendStream();
+    }
+
+    private long sendStream() {
+        long wire = 0;
+        for (byte[] frame : stream) {
+            int length = minMessageSize < 0 || frame.length < minMessageSize ? frame.length : deflate(frame);
+            wire += length + frameHeader(length);
+        }
+        return wire;
+    }
+
+    private int deflate(byte[] frame) {
+        deflater.setInput(frame);
+        int written = 0;
+        int count;
+        do {
+            count = deflater.deflate(output, written, output.length - written, Deflater.SYNC_FLUSH);
+            written += count;
+        } while (count > 0 && written < output.length);
+        return written - SYNC_FLUSH_TRAILER;
+    }
+
+    private static int frameHeader(int length) {
+        return length < 126 ? 2 : length < 65536 ? 4 : 10;
+    }
+
+    // ===== TRAFFIC =====
+
+    /** Поток кадров: 55% сообщений, 20% набора текста, 10% статусов, 15% heartbeat. */
+    private static List<byte[]> chatStream(int frames) throws IOException {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+        StompEncoder encoder = new StompEncoder();
+        Random random = new Random(42);
+        LocalDateTime now = LocalDateTime.of(2026, 10, 16, 21, 0);
+        List<byte[]> result = new ArrayList<>(frames);
+        for (int i = 0; i < frames; i++) {
+            int kind = random.nextInt(100);
+            long channelId = 70 + random.nextInt(3);
+            if (kind < 15) {
+                result.add(new byte[]{'\n'});
+            } else if (kind < 70) {
+                ChannelMessageResponse message = new ChannelMessageResponse();
+                message.setId(231440521682944L + i * 4096L + random.nextInt(4096));
+                message.setContent(sentence(random));
+                message.setSenderUsername("user" + random.nextInt(20));
+                message.setSenderId(1000L + random.nextInt(20));
+                message.setSentAt(now.plusSeconds(i * 3L));
+                message.setMessageType(MessageType.DEFAULT);
+                message.setChannelId(channelId);
+                message.setChannelName("general-" + channelId);
+                message.setServerId(12L);
+                message.setEventType(EventType.MESSAGE);
+                message.setIsEdited(false);
+                result.add(frame(encoder, "/topic/channel." + channelId, "sub-" + channelId, i, mapper.writeValueAsBytes(message)));
+            } else if (kind < 90) {
+                int typists = 1 + random.nextInt(3);
+                List<TypingUpdate.Typist> users = new ArrayList<>(typists);
+                for (int t = 0; t < typists; t++) {
+                    int user = random.nextInt(20);
+                    users.add(new TypingUpdate.Typist(1000L + user, "user" + user));
+                }
+                TypingUpdate update = new TypingUpdate(EventType.TYPING, channelId, null, typists, users);
+                result.add(frame(encoder, "/topic/channel." + channelId, "sub-" + channelId, i, mapper.writeValueAsBytes(update)));
+            } else {
+                int user = random.nextInt(20);
+                PresenceUpdate update = new PresenceUpdate(1000L + user, "user" + user,
+                        random.nextBoolean() ? UserStatus.ONLINE : UserStatus.OFFLINE, now.plusSeconds(i * 3L));
+                result.add(frame(encoder, "/user/queue/presence", "sub-presence", i, mapper.writeValueAsBytes(List.of(update))));
+            }
+        }
+        return result;
+    }
+
+    private static String sentence(Random random) {
+        // Длины сообщений с длинным хвостом: в основном короткие реплики
+        int words = random.nextInt(10) == 0 ? 20 + random.nextInt(60) : 1 + random.nextInt(8);
+        StringBuilder sentence = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+
+    private static byte[] frame(StompEncoder encoder, String destination, String subscriptionId, int sequence, byte[] body) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.MESSAGE);
+        accessor.setDestination(destination);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setMessageId("bd0f7c3e-" + sequence);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setContentLength(body.length);
+        return encoder.encode(MessageBuilder.createMessage(body, accessor.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,58 @@
+package com.zvonok.security;
+
+import com.zvonok.benchmark.BenchmarkApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token verification cost per request: a full parse (an uncached verify)
+ * and the verified-token cache hit the security filter takes on repeated requests.
+ *
+ * Стоимость проверки токена на запрос: полный разбор (verify без кэша)
+ * и попадание в кэш проверенных токенов, по которому идет фильтр безопасности на повторных запросах.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtTokenProviderBenchmark {
+
+    private JwtTokenProvider jwtTokenProvider;
+    private JwtTokenProvider uncachedJwtTokenProvider;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtTokenProvider = new JwtTokenProvider(
+                BenchmarkApplication.JWT_SECRET, 3_600_000L, Duration.ofSeconds(30), 50_000L);
+        uncachedJwtTokenProvider = new JwtTokenProvider(
+                BenchmarkApplication.JWT_SECRET, 3_600_000L, Duration.ZERO, 50_000L);
+        token = jwtTokenProvider.generateToken("benchmark", 42L);
+    }
+
+    /** Попадание в кэш проверенных токенов (горячий путь фильтра). */
+    @Benchmark
+    public Object verifyCached() {
+        return jwtTokenProvider.verify(token);
+    }
+
+    /** Один полный разбор с проверкой HMAC. */
+    @Benchmark
+    public Object verifyUncached() {
+        return uncachedJwtTokenProvider.verify(token);
+    }
+}
@@ -0,0 +1,108 @@
+package com.zvonok.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zvonok.benchmark.BenchmarkApplication;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.model.Channel;
+import com.zvonok.model.ChannelFolder;
+import com.zvonok.model.Message;
+import com.zvonok.model.Server;
+import com.zvonok.model.User;
+import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.service.message.ChannelMessageMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcast payload cost of a channel message: entity to DTO mapping and Jackson serialization
+ * with the application's ObjectMapper. Entities are built in memory, the database is not touched.
+ *
+ * Стоимость полезной нагрузки рассылки сообщения в канал: маппинг сущности в DTO и сериализация
+ * Jackson с ObjectMapper приложения. Сущности создаются в памяти, БД не используется.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageMappingBenchmark {
+
+    @Param({"16", "256", "2000"})
+    private int contentLength;
+
+    private ConfigurableApplicationContext context;
+    private ChannelMessageMapper channelMessageMapper;
+    private ObjectMapper objectMapper;
+
+    private Message message;
+    private Channel channel;
+    private ChannelMessageResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        channelMessageMapper = context.getBean(ChannelMessageMapper.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+
+        Server server = new Server();
+        server.setId(1L);
+        ChannelFolder folder = new ChannelFolder();
+        folder.setId(2L);
+        folder.setServer(server);
+        channel = new Channel();
+        channel.setId(3L);
+        channel.setName("general");
+        channel.setFolder(folder);
+
+        User sender = new User();
+        sender.setId(4L);
+        sender.setUsername("benchmark");
+
+        message = new Message();
+        message.setId(5L);
+        message.setSender(sender);
+        message.setChannel(channel);
+        message.setContent("x".repeat(contentLength));
+        message.setType(MessageType.DEFAULT);
+        message.setSentAt(LocalDateTime.now());
+
+        response = channelMessageMapper.toResponse(message, channel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ChannelMessageResponse mapToChannelMessageResponse() {
+        return channelMessageMapper.toResponse(message, channel);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] mapAndSerialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(channelMessageMapper.toResponse(message, channel));
+    }
+}
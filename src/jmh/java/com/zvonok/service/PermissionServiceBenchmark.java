@@ -0,0 +1,170 @@
+package com.zvonok.service;
+
+import com.zvonok.benchmark.BenchmarkApplication;
+import com.zvonok.model.Channel;
+import com.zvonok.model.ChannelFolder;
+import com.zvonok.model.ChannelPermissionOverride;
+import com.zvonok.model.FolderPermissionOverride;
+import com.zvonok.model.Server;
+import com.zvonok.model.ServerMember;
+import com.zvonok.model.ServerMemberRole;
+import com.zvonok.model.ServerRole;
+import com.zvonok.model.User;
+import com.zvonok.repository.ChannelPermissionOverrideRepository;
+import com.zvonok.repository.FolderPermissionOverrideRepository;
+import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.repository.ServerMemberRoleRepository;
+import com.zvonok.repository.ServerRoleRepository;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permission resolution on a synthetic server where one member holds {@code roleCount} roles
+ * and the target folder and channel carry one override per role.
+ *
+ * Расчет прав на синтетическом сервере: у участника {@code roleCount} ролей,
+ * на целевой папке и канале - по одному переопределению на каждую роль.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PermissionServiceBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int roleCount;
+
+    private ConfigurableApplicationContext context;
+    private PermissionService permissionService;
+    private ServerMemberRepository memberRepository;
+    private TransactionTemplate readOnlyTransaction;
+
+    private Long memberId;
+    private Long userId;
+    private Long folderId;
+    private Long channelId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        permissionService = context.getBean(PermissionService.class);
+        memberRepository = context.getBean(ServerMemberRepository.class);
+
+        TransactionTemplate transaction = context.getBean(TransactionTemplate.class);
+        transaction.executeWithoutResult(status -> seed());
+
+        readOnlyTransaction = new TransactionTemplate(transaction.getTransactionManager());
+        readOnlyTransaction.setReadOnly(true);
+        // Прогрев кэша: промах требует сессии (ленивые роли участника), попадание - нет
+        readOnlyTransaction.execute(status -> permissionService.getUserChannelPermissions(userId, channelId));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /** Полный расчет прав в канале (роли, папка, канал, персональные переопределения) без кэша. */
+    @Benchmark
+    public boolean calculateChannelPermissions() {
+        return readOnlyTransaction.execute(status -> {
+            ServerMember member = memberRepository.findById(memberId).orElseThrow();
+            List<ServerRole> roles = member.getMemberRoles().stream().map(ServerMemberRole::getRole).toList();
+            return permissionService.calculateChannelPermissions(member, roles, channelId, Permission.SEND_MESSAGES);
+        });
+    }
+
+    /** Расчет прав в папке (calculateFolderPermissions) через публичную проверку. */
+    @Benchmark
+    public boolean calculateFolderPermissions() {
+        return readOnlyTransaction.execute(status ->
+                permissionService.hasPermissionInFolder(userId, folderId, Permission.VIEW_CHANNEL));
+    }
+
+    /** Тот же расчет через ChannelPermissionCache: кэш прогрет в setUp, замеряется попадание. */
+    @Benchmark
+    public long cachedChannelPermissions() {
+        return permissionService.getUserChannelPermissions(userId, channelId);
+    }
+
+    private void seed() {
+        UserService userService = context.getBean(UserService.class);
+        ServerService serverService = context.getBean(ServerService.class);
+
+        User owner = userService.createUser(userDto("owner"));
+        User user = userService.createUser(userDto("member"));
+
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName("benchmark");
+        Server server = serverService.getServer(serverService.createServer(request, owner.getId()).getId());
+        ChannelFolder folder = context.getBean(ChannelFolderService.class).getActiveChannelFolders(server.getId()).get(0);
+        Channel channel = context.getBean(ChannelService.class).getChannelsOrdered(folder.getId()).get(0);
+        ServerMember member = context.getBean(ServerMemberService.class).createServerMember(server, user);
+
+        LocalDateTime now = LocalDateTime.now();
+        int adminBit = Long.numberOfTrailingZeros(Permission.ADMINISTRATOR.getValue());
+        List<ServerRole> roles = new ArrayList<>(roleCount);
+        for (int i = 0; i < roleCount; i++) {
+            ServerRole role = new ServerRole();
+            role.setName("role-" + i);
+            role.setServer(server);
+            role.setPosition(i + 1);
+            // Разные биты без ADMINISTRATOR, чтобы не сработал короткий путь администратора
+            role.setServerPermissions(1L << (i % adminBit));
+            role.setCreatedAt(now);
+            roles.add(role);
+        }
+        roles = context.getBean(ServerRoleRepository.class).saveAll(roles);
+
+        List<ServerMemberRole> memberRoles = new ArrayList<>(roleCount);
+        List<FolderPermissionOverride> folderOverrides = new ArrayList<>(roleCount);
+        List<ChannelPermissionOverride> channelOverrides = new ArrayList<>(roleCount);
+        for (int i = 0; i < roles.size(); i++) {
+            ServerRole role = roles.get(i);
+            memberRoles.add(new ServerMemberRole(null, member, role, now, owner));
+            folderOverrides.add(new FolderPermissionOverride(null, folder, role, null,
+                    Permission.READ_MESSAGE_HISTORY.getValue(), i % 7 == 0 ? Permission.ATTACH_FILES.getValue() : 0L, now));
+            channelOverrides.add(new ChannelPermissionOverride(null, channel, role, null,
+                    Permission.SEND_MESSAGES.getValue(), i % 5 == 0 ? Permission.EMBED_LINKS.getValue() : 0L, now));
+        }
+        context.getBean(ServerMemberRoleRepository.class).saveAll(memberRoles);
+        context.getBean(FolderPermissionOverrideRepository.class).saveAll(folderOverrides);
+        context.getBean(ChannelPermissionOverrideRepository.class).saveAll(channelOverrides);
+
+        memberId = member.getId();
+        userId = user.getId();
+        folderId = folder.getId();
+        channelId = channel.getId();
+    }
+
+    private static CreateUserDto userDto(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@benchmark.local");
+        dto.setPassword("benchmark");
+        return dto;
+    }
+}
@@ -0,0 +1,173 @@
+package com.zvonok.service;
+
+import com.zvonok.benchmark.BenchmarkApplication;
+import com.zvonok.model.Room;
+import com.zvonok.repository.RoomRepository;
+import com.zvonok.repository.UserRepository;
+import com.zvonok.service.cache.PrivateRoomCache;
+import com.zvonok.service.dto.PrivateRoomInfo;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolution of the private room of a sender and a receiver username among {@code rooms} private rooms
+ * ({@code rooms / 50} users with 100 direct conversations each), on a file H2 database in
+ * {@code target/} because the data set does not fit in memory:
+ * <ul>
+ *     <li>{@code joinQuery} - the previous path: {@code findByUsername} and a double self-join
+ *     of {@code room_members} with {@code SIZE(r.members) = 2};</li>
+ *     <li>{@code pairIndex} - a cache miss: user id by username and a lookup by the unique
+ *     (dm_user_low_id, dm_user_high_id) index;</li>
+ *     <li>{@code pairCache} - a warm {@link PrivateRoomCache}, no queries.</li>
+ * </ul>
+ * Lookups run without an enclosing transaction over 4096 random pairs, so only the queries are measured.
+ * Filling 10M rooms takes several minutes; a smaller set: {@code -Djmh.args="PrivateRoomLookupBenchmark -p rooms=100000"}.
+ * H2 indexes foreign keys by itself; on PostgreSQL {@code room_members} has no index on
+ * {@code user_id}, so the join is slower there still.
+ *
+ * Поиск приватной комнаты отправителя и имени получателя среди {@code rooms} приватных комнат
+ * ({@code rooms / 50} пользователей по 100 диалогов) на файловой H2 в {@code target/}, потому что
+ * набор данных не помещается в память:
+ * <ul>
+ *     <li>{@code joinQuery} - прежний путь: {@code findByUsername} и двойное самосоединение
+ *     {@code room_members} с {@code SIZE(r.members) = 2};</li>
+ *     <li>{@code pairIndex} - промах кэша: id пользователя по имени и поиск по уникальному индексу
+ *     (dm_user_low_id, dm_user_high_id);</li>
+ *     <li>{@code pairCache} - прогретый {@link PrivateRoomCache}, без запросов.</li>
+ * </ul>
+ * Поиски выполняются без внешней транзакции по 4096 случайным парам, поэтому замеряются только запросы.
+ * Заполнение 10M комнат занимает несколько минут; меньший набор:
+ * {@code -Djmh.args="PrivateRoomLookupBenchmark -p rooms=100000"}. H2 сама индексирует внешние ключи;
+ * в PostgreSQL у {@code room_members} нет индекса по {@code user_id}, и соединение там еще медленнее.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrivateRoomLookupBenchmark {
+
+    private static final int DIALOGS_PER_USER = 50; // и столько же, где пользователь - вторая сторона
+    private static final int PAIRS = 4096;
+
+    // Прежний RoomRepository.findPrivateRoomBetweenUsers
+    private static final String JOIN_QUERY = "SELECT r FROM Room r JOIN r.members m1 JOIN r.members m2 "
+            + "WHERE r.type = 'PRIVATE' AND r.isActive = true "
+            + "AND m1.id = :userId1 AND m2.id = :userId2 "
+            + "AND SIZE(r.members) = 2";
+
+    @Param({"10000000"})
+    private int rooms;
+
+    private ConfigurableApplicationContext context;
+    private EntityManager entityManager;
+    private UserRepository userRepository;
+    private RoomRepository roomRepository;
+    private PrivateRoomCache privateRoomCache;
+
+    private long[] senderIds;
+    private String[] receiverUsernames;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("jdbc:h2:file:./target/jmh-private-rooms;MODE=PostgreSQL;CACHE_SIZE=262144");
+        entityManager = context.getBean(EntityManager.class);
+        userRepository = context.getBean(UserRepository.class);
+        roomRepository = context.getBean(RoomRepository.class);
+        privateRoomCache = context.getBean(PrivateRoomCache.class);
+
+        int users = rooms / DIALOGS_PER_USER;
+        fill(context.getBean(JdbcTemplate.class), users);
+
+        // Комната i: пользователь (i mod users) и его (i / users + 1)-й сосед по кругу
+        Random random = new Random(42);
+        senderIds = new long[PAIRS];
+        receiverUsernames = new String[PAIRS];
+        for (int p = 0; p < PAIRS; p++) {
+            long room = random.nextInt(rooms);
+            long first = room % users;
+            long second = (first + room / users + 1) % users;
+            boolean reverse = random.nextBoolean();
+            senderIds[p] = (reverse ? second : first) + 1;
+            receiverUsernames[p] = "user" + ((reverse ? first : second) + 1);
+        }
+        // Прогрев кэша, чтобы pairCache замерял только попадания
+        for (int p = 0; p < PAIRS; p++) {
+            pairCache();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Room joinQuery() {
+        int p = nextPair();
+        Long receiverId = userRepository.findByUsername(receiverUsernames[p]).orElseThrow().getId();
+        return entityManager.createQuery(JOIN_QUERY, Room.class)
+                .setParameter("userId1", senderIds[p])
+                .setParameter("userId2", receiverId)
+                .getSingleResult();
+    }
+
+    @Benchmark
+    public PrivateRoomInfo pairIndex() {
+        int p = nextPair();
+        long senderId = senderIds[p];
+        long receiverId = userRepository.findIdByUsername(receiverUsernames[p]).orElseThrow();
+        return roomRepository.findPrivateRoomByPair(Math.min(senderId, receiverId), Math.max(senderId, receiverId))
+                .orElseThrow();
+    }
+
+    @Benchmark
+    public PrivateRoomInfo pairCache() {
+        int p = nextPair();
+        return privateRoomCache.getRoom(senderIds[p], privateRoomCache.getUserId(receiverUsernames[p]),
+                (low, high) -> roomRepository.findPrivateRoomByPair(low, high).orElseThrow());
+    }
+
+    private int nextPair() {
+        next = (next + 1) & (PAIRS - 1);
+        return next;
+    }
+
+    private void fill(JdbcTemplate jdbc, int users) {
+        long started = System.nanoTime();
+        // Внешние ключи проверяются построчно; генерируемые данные заведомо согласованы
+        jdbc.execute("set referential_integrity false");
+        jdbc.update("insert into \"user\" (\"id\", \"username\", \"email\", \"is_email_verified\", \"password\") "
+                + "select x, 'user' || x, 'user' || x || '@bench', false, 'x' from system_range(1, ?)", users);
+        jdbc.update("insert into \"room\" (\"id\", \"type\", \"is_active\", \"dm_user_low_id\", \"dm_user_high_id\") "
+                + "select x + 1, 'PRIVATE', true, least(a, b), greatest(a, b) from ("
+                + "select x, mod(x, ?) + 1 a, mod(mod(x, ?) + x / ? + 1, ?) + 1 b from system_range(0, ? - 1))",
+                users, users, users, users, rooms);
+        jdbc.update("insert into \"room_members\" (\"room_id\", \"user_id\") "
+                + "select \"id\", \"dm_user_low_id\" from \"room\"");
+        jdbc.update("insert into \"room_members\" (\"room_id\", \"user_id\") "
+                + "select \"id\", \"dm_user_high_id\" from \"room\"");
+        jdbc.execute("set referential_integrity true");
+        System.out.printf("%nfilled %d rooms and %d users in %d s%n",
+                rooms, users, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started));
+    }
+}
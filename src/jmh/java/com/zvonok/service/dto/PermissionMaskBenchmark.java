@@ -0,0 +1,88 @@
+package com.zvonok.service.dto;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folding role masks and checking bits with {@link Permission#hasPermission}, without any database work.
+ * Складывание масок ролей и проверка битов через {@link Permission#hasPermission}, без обращения к БД.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionMaskBenchmark {
+
+    private static final Permission[] PERMISSIONS = Permission.values();
+
+    @Param({"10", "100", "1000", "10000"})
+    private int roleCount;
+
+    private long[] roleMasks;
+    private Long[] boxedRoleMasks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        long withoutAdmin = Permission.ADMINISTRATOR.getValue() - 1;
+        roleMasks = new long[roleCount];
+        boxedRoleMasks = new Long[roleCount];
+        for (int i = 0; i < roleCount; i++) {
+            roleMasks[i] = random.nextLong() & withoutAdmin;
+            boxedRoleMasks[i] = roleMasks[i];
+        }
+    }
+
+    /** Сложение масок ролей и проверка всех прав по итоговой маске. */
+    @Benchmark
+    public int foldThenCheckAll() {
+        long folded = 0L;
+        for (long mask : roleMasks) {
+            folded |= mask;
+        }
+        int granted = 0;
+        for (Permission permission : PERMISSIONS) {
+            if (Permission.hasPermission(folded, permission)) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    /** Проверка права по каждой роли отдельно (как при переборе ролей без свертки). */
+    @Benchmark
+    public int checkPerRole() {
+        int granted = 0;
+        for (Long mask : boxedRoleMasks) {
+            if (Permission.hasPermission(mask, Permission.SEND_MESSAGES)) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    /** Сложение через addPermission с упаковкой Long на каждом шаге. */
+    @Benchmark
+    public Long foldBoxed() {
+        Long folded = Permission.NOTHING.getValue();
+        for (Long mask : boxedRoleMasks) {
+            folded = folded | mask;
+        }
+        return Permission.addPermission(folded, Permission.VIEW_CHANNEL);
+    }
+}
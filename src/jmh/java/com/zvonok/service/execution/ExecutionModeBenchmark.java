@@ -0,0 +1,158 @@
+package com.zvonok.service.execution;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A burst of frames from {@code senders} concurrent senders handled by the STOMP inbound channel
+ * executor: every {@code dbEvery}-th frame runs a blocking JDBC commit ({@code commitMillis}, simulated
+ * with sleep) under {@link BlockingWorkLimiter} with the default Hikari pool size, the rest (typing,
+ * voice signalling) need no database.
+ * <ul>
+ *     <li>{@code lightFrames} - time until every frame without database work is handled,
+ *     i.e. how much slow commits stall the rest of the socket traffic;</li>
+ *     <li>{@code allFrames} - time until the whole burst is handled.</li>
+ * </ul>
+ * PLATFORM is the default channel executor of the messaging configuration (ThreadPoolTaskExecutor with
+ * twice as many threads as CPUs and an unbounded queue), VIRTUAL is what WebSocketConfig installs with
+ * {@code spring.threads.virtual.enabled=true}. VIRTUAL requires Java 21.
+ *
+ * Всплеск кадров от {@code senders} одновременных отправителей в исполнителе входящего канала STOMP:
+ * каждый {@code dbEvery}-й кадр выполняет блокирующий коммит JDBC ({@code commitMillis}, имитируется
+ * sleep) под {@link BlockingWorkLimiter} с размером пула Hikari по умолчанию, остальным (набор текста,
+ * сигналинг голоса) БД не нужна.
+ * <ul>
+ *     <li>{@code lightFrames} - время до обработки всех кадров без работы с БД, то есть насколько
+ *     медленные коммиты задерживают остальной трафик сокетов;</li>
+ *     <li>{@code allFrames} - время до обработки всего всплеска.</li>
+ * </ul>
+ * PLATFORM - исполнитель каналов конфигурации сообщений по умолчанию (ThreadPoolTaskExecutor с числом
+ * потоков, вдвое большим числа CPU, и неограниченной очередью), VIRTUAL - то, что ставит WebSocketConfig
+ * при {@code spring.threads.virtual.enabled=true}. Для VIRTUAL нужна Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    // spring.datasource.hikari.maximum-pool-size по умолчанию
+    private static final int HIKARI_POOL_SIZE = 10;
+
+    public enum ExecutionMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private ExecutionMode mode;
+
+    @Param({"10000"})
+    private int senders;
+
+    @Param({"10"})
+    private int dbEvery;
+
+    @Param({"1", "20"})
+    private int commitMillis;
+
+    private AsyncTaskExecutor executor;
+    private BlockingWorkLimiter limiter;
+    private CountDownLatch dbFrames;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new BlockingWorkLimiter(mode == ExecutionMode.VIRTUAL, true, HIKARI_POOL_SIZE, Duration.ofMinutes(5));
+        if (mode == ExecutionMode.VIRTUAL) {
+            SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor("bench-virtual-");
+            virtual.setVirtualThreads(true);
+            executor = virtual;
+        } else {
+            // Как исполнитель clientInboundChannel по умолчанию: 2 x CPU потоков и неограниченная очередь
+            ThreadPoolTaskExecutor platform = new ThreadPoolTaskExecutor();
+            platform.setCorePoolSize(Runtime.getRuntime().availableProcessors() * 2);
+            platform.setThreadNamePrefix("bench-platform-");
+            platform.initialize();
+            executor = platform;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor instanceof ThreadPoolTaskExecutor platform) {
+            platform.shutdown();
+        }
+    }
+
+    // Коммиты, оставшиеся после lightFrames, дожидаются вне замера
+    @TearDown(Level.Invocation)
+    public void awaitDbFrames() throws InterruptedException {
+        if (dbFrames != null) {
+            dbFrames.await();
+            dbFrames = null;
+        }
+    }
+
+    @Benchmark
+    public void lightFrames() throws InterruptedException {
+        submitBurst().await();
+    }
+
+    @Benchmark
+    public void allFrames() throws InterruptedException {
+        submitBurst().await();
+        awaitDbFrames();
+    }
+
+    /** Отправляет всплеск и возвращает защелку кадров без БД; защелка коммитов - в dbFrames. */
+    private CountDownLatch submitBurst() {
+        int dbCount = senders / dbEvery;
+        CountDownLatch light = new CountDownLatch(senders - dbCount);
+        CountDownLatch db = new CountDownLatch(dbCount);
+        dbFrames = db;
+        for (int i = 1; i <= senders; i++) {
+            if (i % dbEvery == 0) {
+                executor.execute(() -> {
+                    commit();
+                    db.countDown();
+                });
+            } else {
+                executor.execute(light::countDown);
+            }
+        }
+        return light;
+    }
+
+    private void commit() {
+        if (!limiter.tryAcquire()) {
+            throw new IllegalStateException("No permit");
+        }
+        try {
+            Thread.sleep(commitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            limiter.release();
+        }
+    }
+}
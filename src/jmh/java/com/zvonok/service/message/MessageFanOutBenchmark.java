@@ -0,0 +1,162 @@
+package com.zvonok.service.message;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zvonok.benchmark.BenchmarkApplication;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.controller.dto.MessageResponse;
+import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.service.dto.EventType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.DefaultContentTypeResolver;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.AbstractMessageChannel;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of handing one chat message event to the broker channel: the previous per-call
+ * {@code convertAndSend}/{@code convertAndSendToUser} path against {@link MessageBroadcaster}.
+ * The broker channel is a no-op, so only conversion and message construction are measured.
+ * {@code recipients} covers private (2) and full group (10) rooms. Run with {@code -prof gc}
+ * to get allocation per fan-out ({@code gc.alloc.rate.norm}):
+ * {@code -Djmh.args="MessageFanOutBenchmark -prof gc"}.
+ *
+ * Стоимость передачи одного события сообщения в канал брокера: прежний путь через
+ * {@code convertAndSend}/{@code convertAndSendToUser} на каждый вызов против {@link MessageBroadcaster}.
+ * Канал брокера ничего не делает, поэтому замеряются только конвертация и создание сообщений.
+ * {@code recipients} - приватная комната (2) и полная групповая (10). Запуск с {@code -prof gc}
+ * дает выделение памяти на одну рассылку ({@code gc.alloc.rate.norm}):
+ * {@code -Djmh.args="MessageFanOutBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFanOutBenchmark {
+
+    @Param({"2", "10"})
+    private int recipients;
+
+    @Param({"16", "2000"})
+    private int contentLength;
+
+    private ConfigurableApplicationContext context;
+    private SimpMessagingTemplate convertingTemplate;
+    private MessageBroadcaster broadcaster;
+
+    private List<String> usernames;
+    private MessageResponse response;
+    private ChannelMessageResponse channelResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+
+        NoOpChannel channel = new NoOpChannel();
+        convertingTemplate = new SimpMessagingTemplate(channel);
+        convertingTemplate.setMessageConverter(brokerConverter(objectMapper));
+        broadcaster = new MessageBroadcaster(new SimpMessagingTemplate(channel), objectMapper);
+
+        usernames = new ArrayList<>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            usernames.add("member" + i);
+        }
+
+        String content = "x".repeat(contentLength);
+        response = new MessageResponse();
+        response.setId(231440521682944L);
+        response.setContent(content);
+        response.setSenderUsername("member0");
+        response.setSentAt(LocalDateTime.now());
+        response.setMessageType(MessageType.DEFAULT);
+        response.setRoomId(1L);
+        response.setEventType(EventType.MESSAGE);
+
+        channelResponse = new ChannelMessageResponse();
+        channelResponse.setId(231440521682944L);
+        channelResponse.setContent(content);
+        channelResponse.setSenderUsername("member0");
+        channelResponse.setSenderId(1L);
+        channelResponse.setSentAt(LocalDateTime.now());
+        channelResponse.setMessageType(MessageType.DEFAULT);
+        channelResponse.setChannelId(3L);
+        channelResponse.setChannelName("general");
+        channelResponse.setServerId(2L);
+        channelResponse.setEventType(EventType.MESSAGE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void usersConvertPerRecipient() {
+        for (String username : usernames) {
+            convertingTemplate.convertAndSendToUser(username, "/queue/messages", response);
+        }
+    }
+
+    @Benchmark
+    public void usersSerializeOnce() {
+        broadcaster.toUsers(usernames, "/queue/messages", response);
+    }
+
+    @Benchmark
+    public void topicConvert() {
+        convertingTemplate.convertAndSend("/topic/channel.3", channelResponse);
+    }
+
+    @Benchmark
+    public void topicSerializeOnce() {
+        broadcaster.toTopic("/topic/channel.3", channelResponse);
+    }
+
+    // Как конвертер брокера в Spring Boot (WebSocketMessagingAutoConfiguration)
+    private static CompositeMessageConverter brokerConverter(ObjectMapper objectMapper) {
+        MappingJackson2MessageConverter jackson = new MappingJackson2MessageConverter();
+        jackson.setObjectMapper(objectMapper);
+        DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+        resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
+        jackson.setContentTypeResolver(resolver);
+        return new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), jackson));
+    }
+
+    /** Канал брокера без подписчиков; последнее сообщение хранится, чтобы JIT не выбросил работу. */
+    private static final class NoOpChannel extends AbstractMessageChannel {
+
+        private volatile Message<?> last;
+
+        @Override
+        protected boolean sendInternal(Message<?> message, long timeout) {
+            last = message;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.zvonok.service.metrics;
+
+import com.zvonok.handler.DestinationMetricsInterceptor;
+import com.zvonok.service.cache.ChannelPermissionCache;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics on the hot paths with the Prometheus registry: a warm permission check
+ * with and without its timer (plain and with a percentile histogram), and the per-destination
+ * publish counter of the broker channel.
+ *
+ * Стоимость метрик на горячих путях с реестром Prometheus: проверка прав с прогретым кэшем
+ * с таймером и без (обычным и с гистограммой перцентилей) и счетчик публикаций по назначению
+ * в канале брокера.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatMetricsBenchmark {
+
+    private ChannelPermissionCache cache;
+    private Timer timer;
+    private Timer histogramTimer;
+    private DestinationMetricsInterceptor interceptor;
+    private Message<byte[]> message;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        cache = new ChannelPermissionCache(1000, Duration.ofMinutes(10));
+        cache.bindTo(registry);
+        cache.getPermissions(1L, 1L, () -> new ChannelPermissionCache.Entry(1L, 1L, 7L));
+
+        timer = new ChatMetrics(registry).permissionTimer(ChatMetrics.PermissionScope.CHANNEL);
+        histogramTimer = Timer.builder("benchmark.histogram")
+                .publishPercentileHistogram()
+                .register(registry);
+
+        interceptor = new DestinationMetricsInterceptor(registry);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination("/topic/channel.42");
+        message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    /** Попадание в кэш прав без метрик (точка отсчета). */
+    @Benchmark
+    public long cachedPermissions() {
+        return cache.getPermissions(1L, 1L, () -> ChannelPermissionCache.Entry.notMember());
+    }
+
+    /** То же попадание в кэш внутри таймера, как в PermissionService.hasPermissionInChannel. */
+    @Benchmark
+    public long timedCachedPermissions() {
+        Timer.Sample sample = Timer.start();
+        try {
+            return cache.getPermissions(1L, 1L, () -> ChannelPermissionCache.Entry.notMember());
+        } finally {
+            sample.stop(timer);
+        }
+    }
+
+    /** Таймер с гистограммой перцентилей. */
+    @Benchmark
+    public long histogramTimedCachedPermissions() {
+        Timer.Sample sample = Timer.start();
+        try {
+            return cache.getPermissions(1L, 1L, () -> ChannelPermissionCache.Entry.notMember());
+        } finally {
+            sample.stop(histogramTimer);
+        }
+    }
+
+    /** Счетчик публикаций по шаблону назначения для уже встречавшегося назначения. */
+    @Benchmark
+    public Object publishCounter() {
+        return interceptor.preSend(message, null);
+    }
+}
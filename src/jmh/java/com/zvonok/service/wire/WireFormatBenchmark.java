@@ -0,0 +1,179 @@
+package com.zvonok.service.wire;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.zvonok.benchmark.BenchmarkApplication;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.controller.dto.MessageHistoryItem;
+import com.zvonok.controller.dto.MessageHistoryResponse;
+import com.zvonok.model.enumeration.ChannelType;
+import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.service.dto.EventType;
+import com.zvonok.service.dto.response.ChannelSnapshot;
+import com.zvonok.service.dto.response.FolderSnapshot;
+import com.zvonok.service.dto.response.ReadyResponse;
+import com.zvonok.service.dto.response.RoleSnapshot;
+import com.zvonok.service.dto.response.ServerSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of typical payloads in each wire format, with the application's mappers
+ * (JSON from Spring Boot, CBOR and Smile from WireFormatConfig). Decoding parses into a tree, as a
+ * generic client would. The encoded size of every payload is printed once per trial
+ * ({@code payload size}).
+ * <ul>
+ *     <li>MESSAGE - one channel message event (STOMP broadcast);</li>
+ *     <li>HISTORY - a history page of 50 messages (REST);</li>
+ *     <li>READY - a startup snapshot of 10 servers with 5 folders, 30 channels and 15 roles each (REST).</li>
+ * </ul>
+ *
+ * Время кодирования и декодирования типичных нагрузок в каждом формате передачи мапперами приложения
+ * (JSON из Spring Boot, CBOR и Smile из WireFormatConfig). Декодирование разбирает в дерево, как
+ * универсальный клиент. Размер закодированной нагрузки печатается один раз за прогон
+ * ({@code payload size}).
+ * <ul>
+ *     <li>MESSAGE - событие сообщения канала (рассылка STOMP);</li>
+ *     <li>HISTORY - страница истории из 50 сообщений (REST);</li>
+ *     <li>READY - стартовый снимок из 10 серверов по 5 папок, 30 каналов и 15 ролей (REST).</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    public enum Payload {
+        MESSAGE,
+        HISTORY,
+        READY
+    }
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private WireFormat format;
+
+    @Param({"MESSAGE", "HISTORY", "READY"})
+    private Payload payload;
+
+    private ConfigurableApplicationContext context;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private Object value;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = BenchmarkApplication.start();
+        ObjectMapper mapper = switch (format) {
+            case JSON -> context.getBean(ObjectMapper.class);
+            case CBOR -> context.getBean(MappingJackson2CborHttpMessageConverter.class).getObjectMapper();
+            case SMILE -> context.getBean(MappingJackson2SmileHttpMessageConverter.class).getObjectMapper();
+        };
+        value = switch (payload) {
+            case MESSAGE -> channelMessage();
+            case HISTORY -> historyPage();
+            case READY -> readySnapshot();
+        };
+        writer = mapper.writerFor(value.getClass());
+        reader = mapper.readerFor(JsonNode.class);
+        encoded = writer.writeValueAsBytes(value);
+        System.out.printf("%npayload size: %s %s = %d bytes%n", payload, format, encoded.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    // ===== PAYLOADS =====
+
+    private static ChannelMessageResponse channelMessage() {
+        ChannelMessageResponse response = new ChannelMessageResponse();
+        response.setId(231440521682944L);
+        response.setContent("Привет! Кто сегодня вечером в голосовом? Начинаем в девять");
+        response.setSenderUsername("alice");
+        response.setSenderId(1042L);
+        response.setSentAt(LocalDateTime.of(2026, 10, 16, 21, 5, 3, 123_456_000));
+        response.setMessageType(MessageType.DEFAULT);
+        response.setChannelId(77L);
+        response.setChannelName("general");
+        response.setServerId(12L);
+        response.setEventType(EventType.MESSAGE);
+        response.setIsEdited(false);
+        return response;
+    }
+
+    private static MessageHistoryResponse historyPage() {
+        List<MessageHistoryItem> items = new ArrayList<>(50);
+        LocalDateTime sentAt = LocalDateTime.of(2026, 10, 16, 20, 0);
+        for (int i = 0; i < 50; i++) {
+            items.add(new MessageHistoryItem(231440521682944L + i * 4096L, 1000L + i % 7, "user" + i % 7,
+                    "Сообщение номер " + i + " из истории канала", MessageType.DEFAULT,
+                    sentAt.plusSeconds(i * 17L), null, null, i % 10 == 0 ? 231440521682944L : null));
+        }
+        return MessageHistoryResponse.builder().messages(items).hasMore(true).build();
+    }
+
+    private static ReadyResponse readySnapshot() {
+        List<ServerSnapshot> servers = new ArrayList<>(10);
+        for (long s = 1; s <= 10; s++) {
+            List<FolderSnapshot> folders = new ArrayList<>();
+            List<ChannelSnapshot> channels = new ArrayList<>();
+            List<RoleSnapshot> roles = new ArrayList<>();
+            for (int f = 0; f < 5; f++) {
+                long folderId = s * 100 + f;
+                folders.add(new FolderSnapshot(folderId, s, "Папка " + f, f, false));
+                for (int c = 0; c < 6; c++) {
+                    channels.add(new ChannelSnapshot(folderId * 10 + c, folderId, s, "channel-" + c,
+                            c == 5 ? ChannelType.VOICE : ChannelType.TEXT, c, c == 0 ? "Правила и новости" : null,
+                            false, 0, c == 5 ? 10 : null));
+                }
+            }
+            for (int r = 0; r < 15; r++) {
+                roles.add(new RoleSnapshot(s * 1000 + r, s, r == 0 ? "@everyone" : "role-" + r, "#5865F2", r,
+                        r == 0 ? 0x3FFL : 0xFFFFL, r > 0, r > 0 && r < 4, r == 0));
+            }
+            servers.add(ServerSnapshot.builder()
+                    .id(s).name("Сервер " + s).inviteCode("inv" + s + "xYz").maxMembers(1000).memberCount(250L)
+                    .ownerId(1000L + s).ownerName("owner" + s).createdAt(LocalDateTime.of(2025, 1, 1, 12, 0))
+                    .folders(folders).channels(channels).roles(roles)
+                    .build());
+        }
+        return ReadyResponse.builder().userId(1042L).username("alice").servers(servers).build();
+    }
+}
@@ -0,0 +1,88 @@
+package com.zvonok.config;
+
+import com.zvonok.service.message.MessageWriteBehindQueue;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.util.concurrent.Executor;
+import java.util.function.ToIntFunction;
+
+/**
+ * Gauges for STOMP and the message pipeline that are not covered by Spring Boot auto-configuration
+ * (JVM, Tomcat, Hikari and Hibernate metrics come from Actuator). All values are read lazily on scrape,
+ * so they add nothing to the message path.
+ *
+ * Метрики STOMP и конвейера сообщений, которых нет в автоконфигурации Spring Boot
+ * (метрики JVM, Tomcat, Hikari и Hibernate дает Actuator). Значения читаются при сборе метрик,
+ * поэтому не добавляют работы на пути сообщения.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder stompMetrics(
+            WebSocketMessageBrokerStats brokerStats,
+            @Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+            @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor) {
+        return registry -> {
+            executorGauges(registry, "inbound", inboundExecutor);
+            executorGauges(registry, "outbound", outboundExecutor);
+            sessionGauge(registry, brokerStats, "websocket", SubProtocolWebSocketHandler.Stats::getWebSocketSessions);
+            sessionGauge(registry, brokerStats, "http-streaming", SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions);
+            sessionGauge(registry, brokerStats, "http-polling", SubProtocolWebSocketHandler.Stats::getHttpPollingSessions);
+        };
+    }
+
+    @Bean
+    public MeterBinder messageWriteBehindMetrics(MessageWriteBehindQueue queue) {
+        return registry -> {
+            Gauge.builder("zvonok.message.write-behind.queue", queue, MessageWriteBehindQueue::queueDepth)
+                    .description("Messages waiting to be written")
+                    .register(registry);
+            FunctionCounter.builder("zvonok.message.write-behind.persisted", queue, MessageWriteBehindQueue::persistedCount)
+                    .description("Messages written by the write-behind flusher")
+                    .register(registry);
+            FunctionCounter.builder("zvonok.message.write-behind.failed", queue, MessageWriteBehindQueue::failedCount)
+                    .description("Messages dropped after all retries")
+                    .register(registry);
+            FunctionCounter.builder("zvonok.message.write-behind.rejected", queue, MessageWriteBehindQueue::rejectedCount)
+                    .description("Messages rejected because the queue was full")
+                    .register(registry);
+        };
+    }
+
+    private static void executorGauges(MeterRegistry registry, String channel, Executor channelExecutor) {
+        // На виртуальных потоках у канала нет пула и очереди: поток на кадр, занятость видна
+        // по zvonok.execution.blocking.*
+        if (!(channelExecutor instanceof ThreadPoolTaskExecutor executor)) {
+            return;
+        }
+        Gauge.builder("zvonok.stomp.channel.queue", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Messages waiting in the STOMP channel executor queue")
+                .tag("channel", channel)
+                .register(registry);
+        Gauge.builder("zvonok.stomp.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Threads busy processing STOMP channel messages")
+                .tag("channel", channel)
+                .register(registry);
+    }
+
+    private static void sessionGauge(MeterRegistry registry, WebSocketMessageBrokerStats brokerStats, String transport,
+                                     ToIntFunction<SubProtocolWebSocketHandler.Stats> count) {
+        Gauge.builder("zvonok.websocket.sessions", brokerStats, stats -> {
+                    SubProtocolWebSocketHandler.Stats sessionStats = stats.getWebSocketSessionStats();
+                    return sessionStats != null ? count.applyAsInt(sessionStats) : 0;
+                })
+                .description("Open WebSocket/SockJS sessions on this node")
+                .tag("transport", transport)
+                .register(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.zvonok.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate defaults for the persistence layer: JDBC batching of inserts and updates with
+ * statement ordering (ids come from pooled sequences, so inserts are batchable), and
+ * statistics that Actuator exposes as {@code hibernate.*} metrics.
+ * Values set explicitly in {@code spring.jpa.properties.*} take precedence.
+ *
+ * Настройки Hibernate по умолчанию: пакетная запись INSERT и UPDATE через JDBC с упорядочиванием
+ * операторов (id выдаются пулами последовательностей, поэтому вставки группируются в пакеты) и
+ * статистика, которую Actuator публикует как метрики {@code hibernate.*}.
+ * Значения, явно заданные в {@code spring.jpa.properties.*}, имеют приоритет.
+ */
+@Configuration
+public class PersistenceConfig {
+
+    @Value("${app.persistence.jdbc-batch-size:50}")
+    private int jdbcBatchSize;
+
+    @Value("${app.persistence.statistics-enabled:true}")
+    private boolean statisticsEnabled;
+
+    @Bean
+    public HibernatePropertiesCustomizer batchingHibernatePropertiesCustomizer() {
+        return properties -> {
+            properties.putIfAbsent(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize);
+            properties.putIfAbsent(AvailableSettings.ORDER_INSERTS, true);
+            properties.putIfAbsent(AvailableSettings.ORDER_UPDATES, true);
+            properties.putIfAbsent(AvailableSettings.BATCH_VERSIONED_DATA, true);
+            properties.putIfAbsent(AvailableSettings.GENERATE_STATISTICS, statisticsEnabled);
+            // Статистика нужна для метрик, а не для лога каждой сессии
+            properties.putIfAbsent(AvailableSettings.LOG_SESSION_METRICS, false);
+        };
+    }
+}
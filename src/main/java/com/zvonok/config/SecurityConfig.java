@@ -6,14 +6,20 @@ import lombok.RequiredArgsConstructor;
 
 import java.util.List;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.autoconfigure.web.server.ManagementPortType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 
@@ -24,6 +30,7 @@ public class SecurityConfig {
 
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final CustomAuthenticationEntryPoint customAuthenticationEntryPoint;
+    private final Environment environment;
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
@@ -49,16 +56,32 @@ public class SecurityConfig {
                                 "/auth/register",
                                 "/auth/refresh",
                                 "/health",
+                                "/actuator/health/**",
                                 "/swagger-ui.html",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**"
                         ).permitAll()
-                        .requestMatchers("/ws/**").permitAll()
+                        .requestMatchers("/ws/**", "/ws-native").permitAll()
+                        .requestMatchers(EndpointRequest.to("prometheus", "metrics")).access(metricsAccess())
                         .anyRequest().authenticated()
                 )
                 .build();
     }
 
+    /**
+     * Metrics are served only on a separate management port ({@code management.server.port}), where
+     * Prometheus scrapes without a token; on the public port the endpoints are denied to everyone,
+     * since any self-registered user is authenticated.
+     *
+     * Метрики отдаются только на отдельном порту управления ({@code management.server.port}), где
+     * Prometheus забирает их без токена; на публичном порту эндпоинты закрыты для всех, так как
+     * аутентифицирован любой самостоятельно зарегистрировавшийся пользователь.
+     */
+    private AuthorizationManager<RequestAuthorizationContext> metricsAccess() {
+        boolean separatePort = ManagementPortType.get(environment) == ManagementPortType.DIFFERENT;
+        return (authentication, context) -> new AuthorizationDecision(separatePort);
+    }
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -0,0 +1,56 @@
+package com.zvonok.config;
+
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.tcp.ReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.messaging.tcp.TcpOperations;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * TCP client for the STOMP broker relay with a configurable reconnect backoff.
+ * The stock relay always reconnects its system session every 5 seconds; this client
+ * replaces that with an exponential backoff bounded by the configured maximum.
+ *
+ * TCP-клиент для STOMP broker relay с настраиваемой задержкой переподключения.
+ * Стандартный relay переподключает системную сессию каждые 5 секунд; этот клиент
+ * заменяет это экспоненциальной задержкой, ограниченной сверху заданным максимумом.
+ */
+public class StompRelayTcpClient implements TcpOperations<byte[]> {
+
+    private final ReactorNettyTcpClient<byte[]> delegate;
+    private final ReconnectStrategy reconnectStrategy;
+
+    public StompRelayTcpClient(String host, int port, Duration initialDelay, Duration maxDelay) {
+        this.delegate = new ReactorNettyTcpClient<>(host, port, new StompReactorNettyCodec());
+        this.reconnectStrategy = attempt -> backoff(attempt, initialDelay.toMillis(), maxDelay.toMillis());
+    }
+
+    @Override
+    public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler) {
+        return delegate.connectAsync(handler);
+    }
+
+    @Override
+    public CompletableFuture<Void> connectAsync(TcpConnectionHandler<byte[]> handler, ReconnectStrategy ignored) {
+        return delegate.connectAsync(handler, reconnectStrategy);
+    }
+
+    @Override
+    public CompletableFuture<Void> shutdownAsync() {
+        return delegate.shutdownAsync();
+    }
+
+    private static long backoff(int attempt, long initialMillis, long maxMillis) {
+        // attempt начинается с 0; сдвиг ограничен, чтобы не получить переполнение
+        long delay = initialMillis << Math.min(attempt, 20);
+        return delay <= 0 ? maxMillis : Math.min(delay, maxMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "StompRelayTcpClient[" + delegate + "]";
+    }
+}
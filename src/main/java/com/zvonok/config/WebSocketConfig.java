@@ -1,35 +1,233 @@
 package com.zvonok.config;
 
+import com.zvonok.handler.BlockingWorkChannelInterceptor;
+import com.zvonok.handler.DestinationMetricsInterceptor;
 import com.zvonok.handler.JwtHandshakeHandler;
 import com.zvonok.handler.JwtHandshakeInterceptor;
+import com.zvonok.handler.PresenceChannelInterceptor;
+import com.zvonok.handler.WireFormatChannelInterceptor;
+import com.zvonok.handler.WireFormatHandlerDecoratorFactory;
+import com.zvonok.service.wire.WireFormat;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final String ALLOWED_ORIGIN = "http://localhost:63342";
+
     private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
     private final JwtHandshakeHandler jwtHandshakeHandler;
+    private final PresenceChannelInterceptor presenceChannelInterceptor;
+    private final DestinationMetricsInterceptor destinationMetricsInterceptor;
+    private final BlockingWorkChannelInterceptor blockingWorkChannelInterceptor;
+    private final WireFormatChannelInterceptor wireFormatChannelInterceptor;
+    private final WireFormatHandlerDecoratorFactory wireFormatHandlerDecoratorFactory;
+    private final MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
+    private final MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter;
+    private final Environment environment;
+
+    /**
+     * simple - in-memory broker, subscriptions live only on this node;
+     * relay - external STOMP broker (RabbitMQ, ActiveMQ Artemis), fan-out reaches every node.
+     *
+     * simple - брокер в памяти, подписки видны только на этом узле;
+     * relay - внешний STOMP-брокер (RabbitMQ, ActiveMQ Artemis), рассылка доходит до всех узлов.
+     */
+    @Value("${app.websocket.broker.mode:simple}")
+    private BrokerMode brokerMode;
+
+    @Value("${app.websocket.broker.relay-host:localhost}")
+    private String relayHost;
+
+    @Value("${app.websocket.broker.relay-port:61613}")
+    private int relayPort;
+
+    @Value("${app.websocket.broker.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${app.websocket.broker.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${app.websocket.broker.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${app.websocket.broker.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${app.websocket.broker.virtual-host:}")
+    private String virtualHost;
+
+    @Value("${app.websocket.broker.heartbeat-send-interval:PT10S}")
+    private Duration heartbeatSendInterval;
+
+    @Value("${app.websocket.broker.heartbeat-receive-interval:PT10S}")
+    private Duration heartbeatReceiveInterval;
+
+    @Value("${app.websocket.broker.reconnect-initial-delay:PT1S}")
+    private Duration reconnectInitialDelay;
+
+    @Value("${app.websocket.broker.reconnect-max-delay:PT30S}")
+    private Duration reconnectMaxDelay;
+
+    @Value("${app.websocket.transport.message-size-limit:64KB}")
+    private DataSize messageSizeLimit;
+
+    @Value("${app.websocket.transport.send-buffer-size-limit:512KB}")
+    private DataSize sendBufferSizeLimit;
+
+    @Value("${app.websocket.transport.send-time-limit:PT10S}")
+    private Duration sendTimeLimit;
+
+    @Value("${app.websocket.transport.time-to-first-message:PT1M}")
+    private Duration timeToFirstMessage;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         config.setApplicationDestinationPrefixes("/app");
-        config.enableSimpleBroker("/topic", "/queue");
+        if (brokerMode == BrokerMode.RELAY) {
+            configureBrokerRelay(config);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
         config.setUserDestinationPrefix("/user");
+        // Исходящий канал многопоточный: без этого кадры одной сессии могут обогнать друг друга,
+        // а операции списка участников применяются клиентом по индексам
+        config.setPreservePublishOrder(true);
+        config.configureBrokerChannel().interceptors(destinationMetricsInterceptor);
+    }
+
+    private void configureBrokerRelay(MessageBrokerRegistry config) {
+        StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(clientLogin)
+                .setClientPasscode(clientPasscode)
+                .setSystemLogin(systemLogin)
+                .setSystemPasscode(systemPasscode)
+                .setSystemHeartbeatSendInterval(heartbeatSendInterval.toMillis())
+                .setSystemHeartbeatReceiveInterval(heartbeatReceiveInterval.toMillis())
+                // /user/queue/... для сессии на другом узле и реестр пользователей рассылаются через брокер
+                .setUserDestinationBroadcast("/topic/unresolved-user-destination")
+                .setUserRegistryBroadcast("/topic/simp-user-registry")
+                .setTcpClient(new StompRelayTcpClient(relayHost, relayPort, reconnectInitialDelay, reconnectMaxDelay));
+        if (StringUtils.hasText(virtualHost)) {
+            relay.setVirtualHost(virtualHost);
+        }
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("clientInboundChannel-"));
+        }
+        registration.interceptors(presenceChannelInterceptor, wireFormatChannelInterceptor, blockingWorkChannelInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(virtualThreadExecutor("clientOutboundChannel-"));
+        }
+        registration.interceptors(wireFormatChannelInterceptor);
+    }
+
+    /**
+     * Executor that starts a virtual thread per frame. Spring Boot does not hand its
+     * applicationTaskExecutor to the STOMP channels: the messaging configuration declares its own
+     * Executor beans, so Boot skips that executor and the channels would stay on the platform
+     * ThreadPoolTaskExecutor. Blocking work on these threads is bounded by BlockingWorkLimiter.
+     *
+     * Исполнитель, создающий виртуальный поток на кадр. Spring Boot не передает каналам STOMP свой
+     * applicationTaskExecutor: конфигурация сообщений объявляет собственные бины Executor, поэтому
+     * Boot этот исполнитель не создает, и каналы остались бы на платформенном ThreadPoolTaskExecutor.
+     * Блокирующую работу в этих потоках ограничивает BlockingWorkLimiter.
+     */
+    private static SimpleAsyncTaskExecutor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Входящий кадр STOMP собирается из сообщений WebSocket до message-size-limit;
+        // медленный получатель отключается, если его очередь больше send-buffer-size-limit
+        // или отправка идет дольше send-time-limit
+        registration.setMessageSizeLimit(Math.toIntExact(messageSizeLimit.toBytes()))
+                .setSendBufferSizeLimit(Math.toIntExact(sendBufferSizeLimit.toBytes()))
+                .setSendTimeLimit(Math.toIntExact(sendTimeLimit.toMillis()))
+                .setTimeToFirstMessage(Math.toIntExact(timeToFirstMessage.toMillis()))
+                .addDecoratorFactory(wireFormatHandlerDecoratorFactory);
+    }
+
+    /**
+     * Decoders for SEND frames with a binary {@code content-type}; they reuse the REST mappers from
+     * WireFormatConfig. JSON and text converters stay as configured by Spring Boot.
+     *
+     * Декодеры кадров SEND с бинарным {@code content-type}; используют мапперы REST из WireFormatConfig.
+     * Конвертеры JSON и текста остаются в настройке Spring Boot.
+     */
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(binaryConverter(cborHttpMessageConverter, WireFormat.CBOR));
+        messageConverters.add(binaryConverter(smileHttpMessageConverter, WireFormat.SMILE));
+        return true;
+    }
+
+    private static MessageConverter binaryConverter(AbstractJackson2HttpMessageConverter httpConverter, WireFormat format) {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter(format.getMimeType());
+        converter.setObjectMapper(httpConverter.getObjectMapper());
+        return converter;
+    }
+
+    /**
+     * /ws - SockJS with fallbacks for browsers and proxies without WebSocket;
+     * /ws-native - raw WebSocket for capable clients: no SockJS framing, binary frames
+     * (CBOR/Smile) and permessage-deflate (see PerMessageDeflateConfigurer).
+     *
+     * /ws - SockJS с запасными транспортами для браузеров и прокси без WebSocket;
+     * /ws-native - чистый WebSocket для клиентов, которые его поддерживают: без обрамления SockJS,
+     * с бинарными кадрами (CBOR/Smile) и permessage-deflate (см. PerMessageDeflateConfigurer).
+     */
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws-native")
+                .setHandshakeHandler(jwtHandshakeHandler)
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setAllowedOrigins(ALLOWED_ORIGIN);
         registry.addEndpoint("/ws")
                 .setHandshakeHandler(jwtHandshakeHandler)
                 .addInterceptors(jwtHandshakeInterceptor)
-                .setAllowedOrigins("http://localhost:63342")
+                .setAllowedOrigins(ALLOWED_ORIGIN)
                 .withSockJS();
     }
+
+    public enum BrokerMode {
+        SIMPLE,
+        RELAY
+    }
 }
@@ -0,0 +1,34 @@
+package com.zvonok.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary REST encodings chosen by Accept / Content-Type (application/cbor, application/x-jackson-smile);
+ * JSON stays the default. The mappers are built from Spring Boot's builder, so dates, modules and
+ * features match the JSON output. The STOMP side reuses the same mappers (see WebSocketConfig).
+ *
+ * Бинарные кодировки REST, выбираемые по Accept / Content-Type (application/cbor,
+ * application/x-jackson-smile); по умолчанию остается JSON. Мапперы строятся билдером Spring Boot,
+ * поэтому даты, модули и настройки совпадают с JSON. Сторона STOMP использует те же мапперы
+ * (см. WebSocketConfig).
+ */
+@Configuration
+public class WireFormatConfig {
+
+    // Бины конвертеров заменяют одноименные конвертеры Spring MVC по умолчанию
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
@@ -1,6 +1,5 @@
 package com.zvonok.controller;
 
-import com.zvonok.security.JwtTokenProvider;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.AuthService;
 import com.zvonok.service.dto.AuthResponse;
@@ -26,7 +25,6 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthService authService;
-    private final JwtTokenProvider jwtTokenProvider;
 
     @PostMapping("/register")
     public AuthResponse register(@Valid @RequestBody RegisterRequest request) {
@@ -58,11 +56,7 @@ public class AuthController {
         }
 
         if (request.isAllDevices()) {
-            Long userIdFromToken = jwtTokenProvider.getUserId(principal.getToken());
-            if (userIdFromToken == null) {
-                throw new InvalidJwtException(HttpResponseMessage.HTTP_INVALID_JWT_RESPONSE_MESSAGE.getMessage());
-            }
-            authService.logoutFromAllDevices(userIdFromToken);
+            authService.logoutFromAllDevices(principal.getUserId());
         } else {
             if (!request.hasRefreshToken()) {
                 throw new InvalidRefreshTokenException(HttpResponseMessage.HTTP_INVALID_REFRESH_TOKEN_RESPONSE_MESSAGE.getMessage());
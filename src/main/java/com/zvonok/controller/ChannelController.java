@@ -3,13 +3,11 @@ package com.zvonok.controller;
 import com.zvonok.exception.InsufficientPermissionsException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.Channel;
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.ChannelFolderService;
 import com.zvonok.service.ChannelService;
 import com.zvonok.service.PermissionService;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
 import com.zvonok.service.dto.CreateChannelDto;
 import com.zvonok.service.dto.Permission;
 import com.zvonok.service.dto.UpdateChannelDto;
@@ -34,7 +32,6 @@ public class ChannelController {
     private final ChannelService channelService;
     private final ChannelFolderService channelFolderService;
     private final PermissionService permissionService;
-    private final UserService userService;
     private final ServerService serverService;
 
     /**
@@ -50,7 +47,7 @@ public class ChannelController {
             @PathVariable Long serverId,
             @PathVariable Long folderId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureFolderBelongsToServer(serverId, folderId);
@@ -75,7 +72,7 @@ public class ChannelController {
             @PathVariable Long folderId,
             @Valid @RequestBody CreateChannelDto createChannelDto,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureFolderBelongsToServer(serverId, folderId);
@@ -103,7 +100,7 @@ public class ChannelController {
             @PathVariable Long channelId,
             @Valid @RequestBody UpdateChannelDto updateChannelDto,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureFolderBelongsToServer(serverId, folderId);
@@ -129,7 +126,7 @@ public class ChannelController {
             @PathVariable Long folderId,
             @PathVariable Long channelId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureFolderBelongsToServer(serverId, folderId);
@@ -140,11 +137,6 @@ public class ChannelController {
         return ResponseEntity.noContent().build();
     }
 
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
-
     private void ensureServerExists(Long serverId) {
         serverService.getServer(serverId);
     }
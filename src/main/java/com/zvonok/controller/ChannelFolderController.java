@@ -3,12 +3,10 @@ package com.zvonok.controller;
 import com.zvonok.exception.InsufficientPermissionsException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.ChannelFolder;
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.ChannelFolderService;
 import com.zvonok.service.PermissionService;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
 import com.zvonok.service.dto.CreateChannelFolderDto;
 import com.zvonok.service.dto.Permission;
 import com.zvonok.service.dto.UpdateChannelFolderDto;
@@ -32,7 +30,6 @@ public class ChannelFolderController {
 
     private final ChannelFolderService channelFolderService;
     private final PermissionService permissionService;
-    private final UserService userService;
     private final ServerService serverService;
 
     /**
@@ -46,7 +43,7 @@ public class ChannelFolderController {
     public ResponseEntity<List<ChannelFolder>> getChannelFolders(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureIsServerMember(userId, serverId);
@@ -68,7 +65,7 @@ public class ChannelFolderController {
             @PathVariable Long serverId,
             @Valid @RequestBody CreateChannelFolderDto createChannelFolderDto,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageChannels(userId, serverId);
@@ -93,7 +90,7 @@ public class ChannelFolderController {
             @PathVariable Long folderId,
             @Valid @RequestBody UpdateChannelFolderDto updateChannelFolderDto,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageChannels(userId, serverId);
@@ -116,7 +113,7 @@ public class ChannelFolderController {
             @PathVariable Long serverId,
             @PathVariable Long folderId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageChannels(userId, serverId);
@@ -126,11 +123,6 @@ public class ChannelFolderController {
         return ResponseEntity.noContent().build();
     }
 
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
-
     private void ensureServerExists(Long serverId) {
         serverService.getServer(serverId);
     }
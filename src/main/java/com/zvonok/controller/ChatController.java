@@ -2,9 +2,16 @@ package com.zvonok.controller;
 
 import com.zvonok.controller.dto.ChannelMessageResponse;
 import com.zvonok.controller.dto.MessageResponse;
+import com.zvonok.controller.dto.ReadAckRequest;
 import com.zvonok.exception.AuthenticatedPrincipalRequiredException;
 import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.MessageService;
+import com.zvonok.service.metrics.ChatMetrics.MessageKind;
+import com.zvonok.service.ratelimit.MessageSendThrottle;
+import com.zvonok.service.readstate.ReadStateService;
+import com.zvonok.service.typing.TypingIndicatorService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -20,43 +27,78 @@ import java.security.Principal;
 public class ChatController {
 
     private final MessageService messageService;
+    private final MessageSendThrottle messageSendThrottle;
+    private final ReadStateService readStateService;
+    private final TypingIndicatorService typingIndicatorService;
 
     @MessageMapping("/private/{receiverUsername}")
     public MessageResponse sendPrivateMessage(@DestinationVariable String receiverUsername,
                                               Principal principal,
                                               @Payload String content) {
-        String sender = resolvePrincipalName(principal);
+        Long senderId = resolvePrincipalUserId(principal);
         validateContent(content);
+        // Лимиты проверяются до транзакции сервиса: ограниченный кадр не берет соединение из пула
+        messageSendThrottle.enforceFloodLimit(senderId, MessageKind.PRIVATE);
 
-        return messageService.sendPrivateMessage(sender, receiverUsername, content);
+        return messageService.sendPrivateMessage(senderId, receiverUsername, content);
     }
 
     @MessageMapping("/group/{roomId}")
     public MessageResponse sendGroupMessage(@DestinationVariable Long roomId,
                                             Principal principal,
                                             @Payload String content) {
-        String sender = resolvePrincipalName(principal);
+        Long senderId = resolvePrincipalUserId(principal);
         validateContent(content);
+        messageSendThrottle.enforceFloodLimit(senderId, MessageKind.GROUP);
 
-        return messageService.sendGroupMessage(sender, roomId, content);
+        return messageService.sendGroupMessage(senderId, roomId, content);
     }
 
     @MessageMapping("/channel/{channelId}")
     public ChannelMessageResponse sendChannelMessage(@DestinationVariable Long channelId,
                                                      Principal principal,
                                                      @Payload String content) {
-        String sender = resolvePrincipalName(principal);
+        Long senderId = resolvePrincipalUserId(principal);
         validateContent(content);
+        messageSendThrottle.enforceFloodLimit(senderId, MessageKind.CHANNEL);
+        messageSendThrottle.enforceSlowMode(senderId, channelId);
 
-        return messageService.sendChannelMessage(sender, channelId, content);
+        return messageService.sendChannelMessage(senderId, channelId, content);
     }
 
-    private String resolvePrincipalName(Principal principal) {
-        if (principal == null || principal.getName() == null) {
+    @MessageMapping("/channel/{channelId}/typing")
+    public void channelTyping(@DestinationVariable Long channelId, Principal principal) {
+        Long userId = resolvePrincipalUserId(principal);
+        typingIndicatorService.channelTyping(userId, principal.getName(), channelId);
+    }
+
+    @MessageMapping("/group/{roomId}/typing")
+    public void groupTyping(@DestinationVariable Long roomId, Principal principal) {
+        Long userId = resolvePrincipalUserId(principal);
+        typingIndicatorService.roomTyping(userId, principal.getName(), roomId);
+    }
+
+    @MessageMapping("/ack/channel/{channelId}")
+    public void ackChannel(@DestinationVariable Long channelId,
+                           Principal principal,
+                           @Payload @Valid ReadAckRequest request) {
+        readStateService.ackChannel(resolvePrincipalUserId(principal), channelId, request.getMessageId());
+    }
+
+    @MessageMapping("/ack/room/{roomId}")
+    public void ackRoom(@DestinationVariable Long roomId,
+                        Principal principal,
+                        @Payload @Valid ReadAckRequest request) {
+        readStateService.ackRoom(resolvePrincipalUserId(principal), roomId, request.getMessageId());
+    }
+
+    private Long resolvePrincipalUserId(Principal principal) {
+        // Principal сессии создается JwtHandshakeHandler и уже содержит id из токена
+        if (!(principal instanceof UserPrincipal userPrincipal) || userPrincipal.getUserId() == null) {
             throw new AuthenticatedPrincipalRequiredException(
                     BusinessRuleMessage.BUSINESS_AUTHENTICATED_PRINCIPAL_REQUIRED_MESSAGE.getMessage());
         }
-        return principal.getName();
+        return userPrincipal.getUserId();
     }
 
     private void validateContent(String content) {
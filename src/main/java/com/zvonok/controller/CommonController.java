@@ -1,18 +1,33 @@
 package com.zvonok.controller;
 
+import org.springframework.boot.actuate.health.HealthComponent;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import java.util.Map;
+
 
 @RestController
 @RequestMapping("/")
 @RequiredArgsConstructor
 public class CommonController {
+
+    private final HealthEndpoint healthEndpoint;
+
+    /**
+     * Статус приложения из Actuator (БД, диск и т.д.); 503, если что-то недоступно
+     */
     @GetMapping("/health")
-    public String healthCheck() {
-        return "{\"status\":\"UP\"}";
+    public ResponseEntity<Map<String, String>> healthCheck() {
+        HealthComponent health = healthEndpoint.health();
+        HttpStatus httpStatus = Status.UP.equals(health.getStatus()) ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(httpStatus).body(Map.of("status", health.getStatus().getCode()));
     }
 }
@@ -2,13 +2,14 @@ package com.zvonok.controller;
 
 import com.zvonok.controller.dto.FriendRequestResponse;
 import com.zvonok.controller.dto.FriendResponse;
+import com.zvonok.controller.dto.FriendStatusResponse;
+import com.zvonok.controller.dto.MutualFriendsResponse;
 import com.zvonok.controller.dto.SendFriendRequestRequest;
 import com.zvonok.model.FriendRequest;
 import com.zvonok.model.Friendship;
 import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.FriendService;
-import com.zvonok.service.UserService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -25,21 +26,38 @@ import java.util.Objects;
 public class FriendController {
 
     private final FriendService friendService;
-    private final UserService userService;
 
     @GetMapping
     public ResponseEntity<List<FriendResponse>> getFriends(@AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        List<FriendResponse> friends = friendService.getFriendships(currentUser.getId()).stream()
-                .map(friendship -> toFriendResponse(friendship, currentUser))
+        Long currentUserId = principal.getUserId();
+        List<FriendResponse> friends = friendService.getFriendships(currentUserId).stream()
+                .map(friendship -> toFriendResponse(friendship, currentUserId))
                 .toList();
         return ResponseEntity.ok(friends);
     }
 
+    @GetMapping("/status")
+    public ResponseEntity<List<FriendStatusResponse>> getFriendsWithStatus(
+            @RequestParam(defaultValue = "false") boolean onlineOnly,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(friendService.getFriendsWithStatus(principal.getUserId(), onlineOnly));
+    }
+
+    @GetMapping("/{userId}/mutual")
+    public ResponseEntity<MutualFriendsResponse> getMutualFriendCount(
+            @PathVariable Long userId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        int count = friendService.countMutualFriends(principal.getUserId(), userId);
+        return ResponseEntity.ok(MutualFriendsResponse.builder()
+                .userId(userId)
+                .mutualFriendCount(count)
+                .build());
+    }
+
     @GetMapping("/requests/incoming")
     public ResponseEntity<List<FriendRequestResponse>> getIncomingRequests(@AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        List<FriendRequestResponse> requests = friendService.getIncomingRequests(currentUser.getId()).stream()
+        Long currentUserId = principal.getUserId();
+        List<FriendRequestResponse> requests = friendService.getIncomingRequests(currentUserId).stream()
                 .map(this::toFriendRequestResponse)
                 .toList();
         return ResponseEntity.ok(requests);
@@ -47,8 +65,8 @@ public class FriendController {
 
     @GetMapping("/requests/outgoing")
     public ResponseEntity<List<FriendRequestResponse>> getOutgoingRequests(@AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        List<FriendRequestResponse> requests = friendService.getOutgoingRequests(currentUser.getId()).stream()
+        Long currentUserId = principal.getUserId();
+        List<FriendRequestResponse> requests = friendService.getOutgoingRequests(currentUserId).stream()
                 .map(this::toFriendRequestResponse)
                 .toList();
         return ResponseEntity.ok(requests);
@@ -58,8 +76,8 @@ public class FriendController {
     public ResponseEntity<FriendRequestResponse> sendFriendRequest(
             @Valid @RequestBody SendFriendRequestRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        FriendRequest friendRequest = friendService.sendFriendRequest(currentUser.getId(), request.getReceiverId());
+        Long currentUserId = principal.getUserId();
+        FriendRequest friendRequest = friendService.sendFriendRequest(currentUserId, request.getReceiverId());
         return ResponseEntity.status(HttpStatus.CREATED).body(toFriendRequestResponse(friendRequest));
     }
 
@@ -67,17 +85,17 @@ public class FriendController {
     public ResponseEntity<FriendResponse> acceptFriendRequest(
             @PathVariable Long requestId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        Friendship friendship = friendService.acceptFriendRequest(requestId, currentUser.getId());
-        return ResponseEntity.ok(toFriendResponse(friendship, currentUser));
+        Long currentUserId = principal.getUserId();
+        Friendship friendship = friendService.acceptFriendRequest(requestId, currentUserId);
+        return ResponseEntity.ok(toFriendResponse(friendship, currentUserId));
     }
 
     @PostMapping("/requests/{requestId}/reject")
     public ResponseEntity<FriendRequestResponse> rejectFriendRequest(
             @PathVariable Long requestId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        FriendRequest friendRequest = friendService.rejectFriendRequest(requestId, currentUser.getId());
+        Long currentUserId = principal.getUserId();
+        FriendRequest friendRequest = friendService.rejectFriendRequest(requestId, currentUserId);
         return ResponseEntity.ok(toFriendRequestResponse(friendRequest));
     }
 
@@ -85,8 +103,8 @@ public class FriendController {
     public ResponseEntity<FriendRequestResponse> cancelFriendRequest(
             @PathVariable Long requestId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        FriendRequest friendRequest = friendService.cancelFriendRequest(requestId, currentUser.getId());
+        Long currentUserId = principal.getUserId();
+        FriendRequest friendRequest = friendService.cancelFriendRequest(requestId, currentUserId);
         return ResponseEntity.ok(toFriendRequestResponse(friendRequest));
     }
 
@@ -94,13 +112,13 @@ public class FriendController {
     public ResponseEntity<Void> removeFriend(
             @PathVariable Long friendId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        User currentUser = getCurrentUser(principal);
-        friendService.removeFriend(currentUser.getId(), friendId);
+        Long currentUserId = principal.getUserId();
+        friendService.removeFriend(currentUserId, friendId);
         return ResponseEntity.noContent().build();
     }
 
-    private FriendResponse toFriendResponse(Friendship friendship, User currentUser) {
-        User friend = Objects.equals(friendship.getUserOne().getId(), currentUser.getId())
+    private FriendResponse toFriendResponse(Friendship friendship, Long currentUserId) {
+        User friend = Objects.equals(friendship.getUserOne().getId(), currentUserId)
                 ? friendship.getUserTwo()
                 : friendship.getUserOne();
 
@@ -127,9 +145,5 @@ public class FriendController {
                 .updatedAt(friendRequest.getUpdatedAt())
                 .build();
     }
-
-    private User getCurrentUser(UserPrincipal principal) {
-        return userService.getUser(principal.getUsername());
-    }
 }
 
@@ -0,0 +1,68 @@
+package com.zvonok.controller;
+
+import com.zvonok.controller.dto.MemberListRangeRequest;
+import com.zvonok.controller.dto.MemberListUpdate;
+import com.zvonok.exception.AuthenticatedPrincipalRequiredException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.memberlist.MemberListService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+/**
+ * Список участников сервера, сгруппированный по выделяемым ролям: страница по REST и подписка
+ * на видимый диапазон по STOMP (подписка привязана к сессии, обновления приходят в /user/queue/member-list).
+ */
+@RestController
+@RequestMapping("/server")
+@RequiredArgsConstructor
+public class MemberListController {
+
+    private final MemberListService memberListService;
+
+    @GetMapping("/{serverId}/member-list")
+    public ResponseEntity<MemberListUpdate> getMemberList(
+            @PathVariable Long serverId,
+            @RequestParam(defaultValue = "0") int start,
+            @RequestParam(defaultValue = "99") int end,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(memberListService.getRange(serverId, principal.getUserId(), start, end));
+    }
+
+    /** Подписка сессии на диапазон; повторная подписка заменяет прежнюю (в том числе на другом сервере). */
+    @MessageMapping("/server/{serverId}/member-list")
+    public void subscribe(@DestinationVariable Long serverId,
+                          Principal principal,
+                          @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId,
+                          @Payload MemberListRangeRequest range) {
+        memberListService.subscribe(serverId, resolvePrincipalUserId(principal), principal.getName(), sessionId,
+                range.getStart(), range.getEnd());
+    }
+
+    @MessageMapping("/member-list/unsubscribe")
+    public void unsubscribe(@Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        memberListService.unsubscribe(sessionId);
+    }
+
+    private Long resolvePrincipalUserId(Principal principal) {
+        // Principal сессии создается JwtHandshakeHandler и уже содержит id из токена
+        if (!(principal instanceof UserPrincipal userPrincipal) || userPrincipal.getUserId() == null) {
+            throw new AuthenticatedPrincipalRequiredException(
+                    BusinessRuleMessage.BUSINESS_AUTHENTICATED_PRINCIPAL_REQUIRED_MESSAGE.getMessage());
+        }
+        return userPrincipal.getUserId();
+    }
+}
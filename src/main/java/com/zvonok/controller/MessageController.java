@@ -34,7 +34,7 @@ public class MessageController {
             @PathVariable Long messageId,
             @Valid @RequestBody UpdateMessageRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        MessageResponse response = messageService.editMessage(messageId, principal.getUsername(), request.getContent());
+        MessageResponse response = messageService.editMessage(messageId, principal.getUserId(), request.getContent());
         return ResponseEntity.ok(response);
     }
 
@@ -45,7 +45,7 @@ public class MessageController {
     public ResponseEntity<Void> deleteMessage(
            @PathVariable Long messageId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        messageService.deleteMessage(messageId, principal.getUsername());
+        messageService.deleteMessage(messageId, principal.getUserId());
         return ResponseEntity.noContent().build();
     }
 }
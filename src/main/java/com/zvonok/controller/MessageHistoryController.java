@@ -0,0 +1,63 @@
+package com.zvonok.controller;
+
+import com.zvonok.controller.dto.MessageHistoryResponse;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.MessageService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * REST-эндпоинты для постраничной загрузки истории сообщений каналов и комнат.
+ * Пагинация курсорная: {@code before}/{@code after} — ID сообщения, {@code limit} — размер страницы (до 100).
+ */
+@RestController
+@RequestMapping("/")
+@RequiredArgsConstructor
+public class MessageHistoryController {
+
+    private final MessageService messageService;
+
+    /**
+     * Возвращает страницу истории канала.
+     *
+     * @param channelId  идентификатор канала
+     * @param before     вернуть сообщения старше этого ID
+     * @param after      вернуть сообщения новее этого ID
+     * @param limit      размер страницы
+     * @param principal  текущий пользователь (нужны права VIEW_CHANNEL и READ_MESSAGE_HISTORY)
+     * @return страница сообщений по возрастанию ID
+     */
+    @GetMapping("/channels/{channelId}/messages")
+    public ResponseEntity<MessageHistoryResponse> getChannelMessages(
+            @PathVariable Long channelId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        Long userId = principal.getUserId();
+        return ResponseEntity.ok(messageService.getChannelHistory(userId, channelId, before, after, limit));
+    }
+
+    /**
+     * Возвращает страницу истории приватной или групповой комнаты.
+     *
+     * @param roomId     идентификатор комнаты
+     * @param before     вернуть сообщения старше этого ID
+     * @param after      вернуть сообщения новее этого ID
+     * @param limit      размер страницы
+     * @param principal  текущий пользователь (должен быть участником комнаты)
+     * @return страница сообщений по возрастанию ID
+     */
+    @GetMapping("/rooms/{roomId}/messages")
+    public ResponseEntity<MessageHistoryResponse> getRoomMessages(
+            @PathVariable Long roomId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        Long userId = principal.getUserId();
+        return ResponseEntity.ok(messageService.getRoomHistory(userId, roomId, before, after, limit));
+    }
+}
@@ -0,0 +1,58 @@
+package com.zvonok.controller;
+
+import com.zvonok.controller.dto.MessageSearchResponse;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.MessageSearchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+/**
+ * REST-эндпоинт полнотекстового поиска сообщений.
+ * Пагинация курсорная: результаты от новых к старым, {@code before} — ID последнего сообщения предыдущей страницы.
+ */
+@RestController
+@RequestMapping("/search")
+@RequiredArgsConstructor
+public class MessageSearchController {
+
+    private final MessageSearchService messageSearchService;
+
+    /**
+     * Ищет сообщения на сервере, в канале или в комнате (ровно один из serverId, channelId, roomId).
+     *
+     * @param q          поисковый запрос (фразы в кавычках, or, -слово)
+     * @param serverId   искать во всех каналах сервера, доступных для чтения
+     * @param channelId  искать в канале (нужны права VIEW_CHANNEL и READ_MESSAGE_HISTORY)
+     * @param roomId     искать в комнате (пользователь должен быть участником)
+     * @param authorId   только сообщения этого отправителя
+     * @param from       отправлены не раньше (ISO date-time)
+     * @param to         отправлены раньше (ISO date-time)
+     * @param before     вернуть сообщения старше этого ID
+     * @param limit      размер страницы (до 100)
+     * @param principal  текущий пользователь
+     * @return страница найденных сообщений по убыванию ID
+     */
+    @GetMapping("/messages")
+    public ResponseEntity<MessageSearchResponse> searchMessages(
+            @RequestParam String q,
+            @RequestParam(required = false) Long serverId,
+            @RequestParam(required = false) Long channelId,
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) Long authorId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Integer limit,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(messageSearchService.searchMessages(principal.getUserId(), q,
+                serverId, channelId, roomId, authorId, from, to, before, limit));
+    }
+}
@@ -0,0 +1,53 @@
+package com.zvonok.controller;
+
+import com.zvonok.controller.dto.ReadAckRequest;
+import com.zvonok.controller.dto.ReadStateResponse;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.readstate.ReadStateService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * REST-эндпоинты состояния прочтения: значки непрочитанных и упоминаний, подтверждение прочтения.
+ * Те же подтверждения принимаются по STOMP в {@link ChatController}.
+ */
+@RestController
+@RequestMapping("/read-states")
+@RequiredArgsConstructor
+public class ReadStateController {
+
+    private final ReadStateService readStateService;
+
+    @GetMapping
+    public ResponseEntity<List<ReadStateResponse>> getReadStates(@AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(readStateService.getReadStates(principal.getUserId()));
+    }
+
+    @PostMapping("/channels/{channelId}/ack")
+    public ResponseEntity<Void> ackChannel(
+            @PathVariable Long channelId,
+            @Valid @RequestBody ReadAckRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        readStateService.ackChannel(principal.getUserId(), channelId, request.getMessageId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/rooms/{roomId}/ack")
+    public ResponseEntity<Void> ackRoom(
+            @PathVariable Long roomId,
+            @Valid @RequestBody ReadAckRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        readStateService.ackRoom(principal.getUserId(), roomId, request.getMessageId());
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -37,14 +37,14 @@ public class RoomController {
             @PathVariable Long id,
             @Valid @RequestBody UpdateRoomDto roomDto,
             @AuthenticationPrincipal UserPrincipal principal) {
-        return ResponseEntity.ok(roomService.updateRoom(id, principal.getName(), roomDto.getName()));
+        return ResponseEntity.ok(roomService.updateRoom(id, principal.getUserId(), roomDto.getName()));
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteRoom(
             @PathVariable Long id,
             @AuthenticationPrincipal UserPrincipal principal) {
-        roomService.deleteRoom(id, principal.getName());
+        roomService.deleteRoom(id, principal.getUserId());
         return ResponseEntity.noContent().build();
     }
 }
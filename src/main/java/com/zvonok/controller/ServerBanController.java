@@ -7,12 +7,10 @@ import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
 import com.zvonok.model.Server;
 import com.zvonok.model.ServerBan;
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.PermissionService;
 import com.zvonok.service.ServerBanService;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
 import com.zvonok.service.dto.request.CreateServerBanRequest;
 import com.zvonok.service.dto.response.ServerBanResponse;
 import jakarta.validation.Valid;
@@ -36,7 +34,6 @@ public class ServerBanController {
     private final ServerBanService serverBanService;
     private final PermissionService permissionService;
     private final ServerService serverService;
-    private final UserService userService;
 
     /**
      * Возвращает активные баны сервера.
@@ -49,7 +46,7 @@ public class ServerBanController {
     public ResponseEntity<List<ServerBanResponse>> getServerBans(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ensureServerExists(serverId);
         ensureCanBanMembers(userId, serverId);
 
@@ -73,7 +70,7 @@ public class ServerBanController {
             @PathVariable Long serverId,
             @Valid @RequestBody CreateServerBanRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         Server server = ensureServerExists(serverId);
         ensureCanBanMembers(userId, serverId);
 
@@ -104,7 +101,7 @@ public class ServerBanController {
             @PathVariable Long serverId,
             @PathVariable Long targetUserId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ensureServerExists(serverId);
         ensureCanBanMembers(userId, serverId);
 
@@ -112,11 +109,6 @@ public class ServerBanController {
         return ResponseEntity.noContent().build();
     }
 
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
-
     private Server ensureServerExists(Long serverId) {
         return serverService.getServer(serverId);
     }
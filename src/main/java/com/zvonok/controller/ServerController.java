@@ -1,12 +1,12 @@
 package com.zvonok.controller;
 
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
+import com.zvonok.service.ServerSnapshotService;
 import com.zvonok.service.dto.request.CreateServerRequest;
 import com.zvonok.service.dto.request.UpdateServerRequest;
 import com.zvonok.service.dto.request.UpdateServerMemberNicknameRequest;
+import com.zvonok.service.dto.response.ReadyResponse;
 import com.zvonok.service.dto.response.ServerResponse;
 import com.zvonok.service.dto.response.ServerMemberResponse;
 import jakarta.validation.Valid;
@@ -25,7 +25,7 @@ import java.util.Map;
 public class ServerController {
 
     private final ServerService serverService;
-    private final UserService userService;
+    private final ServerSnapshotService serverSnapshotService;
 
     /**
      * Создание нового сервера
@@ -34,7 +34,7 @@ public class ServerController {
     public ResponseEntity<ServerResponse> createServer(
             @Valid @RequestBody CreateServerRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ServerResponse response = serverService.createServer(request, userId);
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
@@ -45,11 +45,21 @@ public class ServerController {
     @GetMapping("/my")
     public ResponseEntity<List<ServerResponse>> getMyServers(
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         List<ServerResponse> servers = serverService.getUserServers(userId);
         return ResponseEntity.ok(servers);
     }
 
+    /**
+     * Стартовый снимок: все серверы пользователя с папками, видимыми каналами, ролями и числом участников
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<ReadyResponse> getReadySnapshot(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        ReadyResponse snapshot = serverSnapshotService.getReadySnapshot(principal.getUserId(), principal.getUsername());
+        return ResponseEntity.ok(snapshot);
+    }
+
     /**
      * Получение информации о сервере
      */
@@ -57,7 +67,7 @@ public class ServerController {
     public ResponseEntity<ServerResponse> getServer(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-//        Long userId = getCurrentUserId(principal);
+//        Long userId = principal.getUserId();
 
         // Проверяем доступ к серверу
 //        serverService.hasAccessToServer(userId, serverId);
@@ -73,7 +83,7 @@ public class ServerController {
     public ResponseEntity<ServerResponse> joinServer(
             @PathVariable String inviteCode,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ServerResponse response = serverService.joinServerByInviteCode(inviteCode, userId);
         return ResponseEntity.ok(response);
     }
@@ -86,7 +96,7 @@ public class ServerController {
             @PathVariable Long serverId,
             @Valid @RequestBody UpdateServerRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ServerResponse response = serverService.updateServer(serverId, request, userId);
         return ResponseEntity.ok(response);
     }
@@ -98,7 +108,7 @@ public class ServerController {
     public ResponseEntity<Map<String, String>> regenerateInviteCode(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         String newInviteCode = serverService.regenerateInviteCode(serverId, userId);
         return ResponseEntity.ok(Map.of("inviteCode", newInviteCode));
     }
@@ -110,7 +120,7 @@ public class ServerController {
     public ResponseEntity<Void> leaveServer(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         serverService.leaveServer(serverId, userId);
         return ResponseEntity.noContent().build();
     }
@@ -122,7 +132,7 @@ public class ServerController {
     public ResponseEntity<List<ServerMemberResponse>> getServerMembers(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         List<ServerMemberResponse> members = serverService.getServerMembers(serverId, userId);
         return ResponseEntity.ok(members);
     }
@@ -135,7 +145,7 @@ public class ServerController {
             @PathVariable Long serverId,
             @PathVariable Long targetUserId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         serverService.kickMember(serverId, targetUserId, userId);
         return ResponseEntity.noContent().build();
     }
@@ -149,7 +159,7 @@ public class ServerController {
             @PathVariable Long targetUserId,
             @Valid @RequestBody UpdateServerMemberNicknameRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         ServerMemberResponse response = serverService.updateMemberNickname(serverId, targetUserId, request.getNickname(), userId);
         return ResponseEntity.ok(response);
     }
@@ -161,13 +171,8 @@ public class ServerController {
     public ResponseEntity<Void> deleteServer(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
         serverService.deleteServer(serverId, userId);
         return ResponseEntity.noContent().build();
     }
-
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
 }
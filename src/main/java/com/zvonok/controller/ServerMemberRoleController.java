@@ -3,14 +3,12 @@ package com.zvonok.controller;
 import com.zvonok.exception.InsufficientPermissionsException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.ServerMember;
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.PermissionService;
 import com.zvonok.service.ServerMemberRoleService;
 import com.zvonok.service.ServerMemberService;
 import com.zvonok.service.ServerRoleService;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -30,7 +28,6 @@ public class ServerMemberRoleController {
     private final ServerRoleService serverRoleService;
     private final ServerService serverService;
     private final PermissionService permissionService;
-    private final UserService userService;
 
     /**
      * Назначает участнику сервера указанную роль.
@@ -47,7 +44,7 @@ public class ServerMemberRoleController {
             @PathVariable Long memberId,
             @PathVariable Long roleId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageRoles(userId, serverId);
@@ -73,7 +70,7 @@ public class ServerMemberRoleController {
             @PathVariable Long memberId,
             @PathVariable Long roleId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageRoles(userId, serverId);
@@ -84,11 +81,6 @@ public class ServerMemberRoleController {
         return ResponseEntity.noContent().build();
     }
 
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
-
     private void ensureServerExists(@NotNull Long serverId) {
         serverService.getServer(serverId);
     }
@@ -4,12 +4,10 @@ import com.zvonok.exception.InsufficientPermissionsException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.Server;
 import com.zvonok.model.ServerRole;
-import com.zvonok.model.User;
 import com.zvonok.security.dto.UserPrincipal;
 import com.zvonok.service.PermissionService;
 import com.zvonok.service.ServerRoleService;
 import com.zvonok.service.ServerService;
-import com.zvonok.service.UserService;
 import com.zvonok.service.dto.CreateServerRoleDto;
 import com.zvonok.service.dto.UpdateServerRoleDto;
 import com.zvonok.service.dto.request.CreateServerRoleRequest;
@@ -35,7 +33,6 @@ public class ServerRoleController {
     private final ServerRoleService serverRoleService;
     private final ServerService serverService;
     private final PermissionService permissionService;
-    private final UserService userService;
 
     /**
      * Возвращает активные роли сервера, отсортированные по позиции.
@@ -48,7 +45,7 @@ public class ServerRoleController {
     public ResponseEntity<List<ServerRole>> getServerRoles(
             @PathVariable Long serverId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureIsServerMember(userId, serverId);
@@ -70,7 +67,7 @@ public class ServerRoleController {
             @PathVariable Long serverId,
             @Valid @RequestBody CreateServerRoleRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageRoles(userId, serverId);
@@ -83,6 +80,7 @@ public class ServerRoleController {
         dto.setPosition(request.getPosition());
         dto.setServerPermissions(request.getServerPermissions());
         dto.setMentionable(request.isMentionable());
+        dto.setHoist(request.isHoist());
         dto.setEveryone(false);
         dto.setServer(server);
 
@@ -105,7 +103,7 @@ public class ServerRoleController {
             @PathVariable Long roleId,
             @Valid @RequestBody UpdateServerRoleRequest request,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageRoles(userId, serverId);
@@ -117,6 +115,7 @@ public class ServerRoleController {
         dto.setPosition(request.getPosition());
         dto.setServerPermissions(request.getServerPermissions());
         dto.setMentionable(request.getMentionable());
+        dto.setHoist(request.getHoist());
         dto.setActive(request.getActive());
 
         ServerRole updated = serverRoleService.updateServerRole(roleId, dto);
@@ -136,7 +135,7 @@ public class ServerRoleController {
             @PathVariable Long serverId,
             @PathVariable Long roleId,
             @AuthenticationPrincipal UserPrincipal principal) {
-        Long userId = getCurrentUserId(principal);
+        Long userId = principal.getUserId();
 
         ensureServerExists(serverId);
         ensureCanManageRoles(userId, serverId);
@@ -146,11 +145,6 @@ public class ServerRoleController {
         return ResponseEntity.noContent().build();
     }
 
-    private Long getCurrentUserId(UserPrincipal principal) {
-        User user = userService.getUser(principal.getUsername());
-        return user.getId();
-    }
-
     private void ensureServerExists(Long serverId) {
         serverService.getServer(serverId);
     }
@@ -0,0 +1,111 @@
+package com.zvonok.controller;
+
+import com.zvonok.controller.dto.VoiceModerationRequest;
+import com.zvonok.controller.dto.VoiceMoveRequest;
+import com.zvonok.controller.dto.VoiceSelfStateRequest;
+import com.zvonok.controller.dto.VoiceSignal;
+import com.zvonok.controller.dto.VoiceStateUpdate;
+import com.zvonok.exception.AuthenticatedPrincipalRequiredException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.voice.VoiceStateService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Голосовые каналы: подключение, собственное состояние и сигналинг WebRTC по STOMP
+ * (состояние привязано к сессии), модерация и список состояний по REST.
+ */
+@RestController
+@RequestMapping("/voice")
+@RequiredArgsConstructor
+public class VoiceController {
+
+    private final VoiceStateService voiceStateService;
+
+    /** Подключение к голосовому каналу; ответ - участники канала для установки соединений. */
+    @MessageMapping("/voice/join/{channelId}")
+    @SendToUser(destinations = "/queue/voice.joined", broadcast = false)
+    public List<VoiceStateUpdate> join(@DestinationVariable Long channelId,
+                                       Principal principal,
+                                       @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId) {
+        return voiceStateService.join(resolvePrincipalUserId(principal), principal.getName(), sessionId, channelId);
+    }
+
+    @MessageMapping("/voice/leave")
+    public void leave(Principal principal) {
+        voiceStateService.leave(resolvePrincipalUserId(principal));
+    }
+
+    @MessageMapping("/voice/state")
+    public void updateSelfState(Principal principal, @Payload VoiceSelfStateRequest request) {
+        voiceStateService.updateSelfState(resolvePrincipalUserId(principal), request.getSelfMute(), request.getSelfDeaf());
+    }
+
+    @MessageMapping("/voice/signal")
+    public void relaySignal(Principal principal,
+                            @Header(SimpMessageHeaderAccessor.SESSION_ID_HEADER) String sessionId,
+                            @Payload VoiceSignal signal) {
+        voiceStateService.relaySignal(resolvePrincipalUserId(principal), sessionId, signal);
+    }
+
+    @GetMapping("/servers/{serverId}")
+    public ResponseEntity<List<VoiceStateUpdate>> getServerStates(
+            @PathVariable Long serverId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(voiceStateService.getServerStates(principal.getUserId(), serverId));
+    }
+
+    @PatchMapping("/members/{userId}")
+    public ResponseEntity<VoiceStateUpdate> moderate(
+            @PathVariable Long userId,
+            @RequestBody VoiceModerationRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(voiceStateService.moderate(principal.getUserId(), userId,
+                request.getMute(), request.getDeaf()));
+    }
+
+    @PostMapping("/members/{userId}/move")
+    public ResponseEntity<VoiceStateUpdate> move(
+            @PathVariable Long userId,
+            @Valid @RequestBody VoiceMoveRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        return ResponseEntity.ok(voiceStateService.move(principal.getUserId(), userId, request.getChannelId()));
+    }
+
+    @DeleteMapping("/members/{userId}")
+    public ResponseEntity<Void> disconnect(
+            @PathVariable Long userId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        voiceStateService.disconnect(principal.getUserId(), userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    private Long resolvePrincipalUserId(Principal principal) {
+        // Principal сессии создается JwtHandshakeHandler и уже содержит id из токена
+        if (!(principal instanceof UserPrincipal userPrincipal) || userPrincipal.getUserId() == null) {
+            throw new AuthenticatedPrincipalRequiredException(
+                    BusinessRuleMessage.BUSINESS_AUTHENTICATED_PRINCIPAL_REQUIRED_MESSAGE.getMessage());
+        }
+        return userPrincipal.getUserId();
+    }
+}
@@ -0,0 +1,20 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.UserStatus;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Друг с текущим статусом присутствия; список отдается одним ответом.
+ */
+@Value
+@Builder
+public class FriendStatusResponse {
+    Long friendId;
+    String friendUsername;
+    String friendAvatarUrl;
+    UserStatus friendStatus;
+    LocalDateTime lastSeenAt;
+}
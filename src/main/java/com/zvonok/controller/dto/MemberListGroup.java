@@ -0,0 +1,19 @@
+package com.zvonok.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Группа списка участников: выделяемая роль (по убыванию позиции) или, последней,
+ * участники без выделяемых ролей (roleId = null). count - участников в группе.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberListGroup {
+    private Long roleId;
+    private String name;
+    private String color;
+    private int count;
+}
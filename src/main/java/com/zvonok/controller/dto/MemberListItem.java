@@ -0,0 +1,20 @@
+package com.zvonok.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Строка списка участников сервера. groupId - выделяемая роль, в группе которой показан
+ * участник; null - группа участников без выделяемых ролей.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberListItem {
+    private Long userId;
+    private String username;
+    private String nickname;
+    private String avatarUrl;
+    private Long groupId;
+}
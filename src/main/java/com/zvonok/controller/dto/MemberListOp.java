@@ -0,0 +1,47 @@
+package com.zvonok.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Операция над подписанным диапазоном списка участников. Индексы абсолютные:
+ * <ul>
+ *     <li>SYNC - строки диапазона начиная с index заменяют все, что было у клиента;</li>
+ *     <li>INSERT - item вставляется на index, следующие строки сдвигаются вниз;</li>
+ *     <li>UPDATE - строка на index заменяется на item;</li>
+ *     <li>DELETE - строка на index удаляется, следующие строки сдвигаются вверх.</li>
+ * </ul>
+ * После каждой операции клиент отбрасывает строки за концом подписанного диапазона.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberListOp {
+    private Type op;
+    private int index;
+    private MemberListItem item;        // INSERT, UPDATE
+    private List<MemberListItem> items; // SYNC
+
+    public static MemberListOp sync(int index, List<MemberListItem> items) {
+        return new MemberListOp(Type.SYNC, index, null, items);
+    }
+
+    public static MemberListOp insert(int index, MemberListItem item) {
+        return new MemberListOp(Type.INSERT, index, item, null);
+    }
+
+    public static MemberListOp update(int index, MemberListItem item) {
+        return new MemberListOp(Type.UPDATE, index, item, null);
+    }
+
+    public static MemberListOp delete(int index) {
+        return new MemberListOp(Type.DELETE, index, null, null);
+    }
+
+    public enum Type {
+        SYNC, INSERT, UPDATE, DELETE
+    }
+}
@@ -0,0 +1,12 @@
+package com.zvonok.controller.dto;
+
+import lombok.Data;
+
+/**
+ * Видимый диапазон списка участников, индексы включительно.
+ */
+@Data
+public class MemberListRangeRequest {
+    private int start;
+    private int end;
+}
@@ -0,0 +1,21 @@
+package com.zvonok.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Изменение списка участников сервера для одной подписки; отправляется в сессию
+ * в /user/queue/member-list. total и groups - текущие размеры всего списка и его групп.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemberListUpdate {
+    private Long serverId;
+    private int total;
+    private List<MemberListGroup> groups;
+    private List<MemberListOp> ops;
+}
@@ -0,0 +1,23 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.MessageType;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Плоская проекция сообщения для истории канала или комнаты.
+ * Заполняется напрямую JPQL-конструктором, поэтому сущности Message/User/Channel не гидрируются.
+ */
+@Value
+public class MessageHistoryItem {
+    Long id;
+    Long senderId;
+    String senderUsername;
+    String content; // null для удаленных сообщений
+    MessageType messageType;
+    LocalDateTime sentAt;
+    LocalDateTime editedAt;
+    LocalDateTime deletedAt;
+    Long replyToMessageId;
+}
@@ -0,0 +1,17 @@
+package com.zvonok.controller.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Страница истории сообщений. Сообщения всегда отсортированы по возрастанию ID;
+ * для следующей страницы клиент передает ID первого (before) или последнего (after) сообщения.
+ */
+@Value
+@Builder
+public class MessageHistoryResponse {
+    List<MessageHistoryItem> messages;
+    boolean hasMore;
+}
@@ -0,0 +1,22 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.MessageType;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Найденное сообщение. Ровно одно из channelId/roomId заполнено; удаленные сообщения в поиск не попадают.
+ */
+@Value
+public class MessageSearchItem {
+    Long id;
+    Long channelId;
+    Long roomId;
+    Long senderId;
+    String senderUsername;
+    String content;
+    MessageType messageType;
+    LocalDateTime sentAt;
+    LocalDateTime editedAt;
+}
@@ -0,0 +1,17 @@
+package com.zvonok.controller.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска. Сообщения отсортированы по убыванию ID (сначала новые);
+ * для следующей страницы клиент передает ID последнего сообщения в before.
+ */
+@Value
+@Builder
+public class MessageSearchResponse {
+    List<MessageSearchItem> messages;
+    boolean hasMore;
+}
@@ -0,0 +1,11 @@
+package com.zvonok.controller.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+@Value
+@Builder
+public class MutualFriendsResponse {
+    Long userId;
+    Integer mutualFriendCount;
+}
@@ -0,0 +1,21 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.UserStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Изменение статуса пользователя, рассылаемое в /user/queue/presence пачкой за один тик.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresenceUpdate {
+    private Long userId;
+    private String username;
+    private UserStatus status;
+    private LocalDateTime lastSeenAt;
+}
@@ -0,0 +1,10 @@
+package com.zvonok.controller.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class ReadAckRequest {
+    @NotNull(message = "Message id is required")
+    private Long messageId;
+}
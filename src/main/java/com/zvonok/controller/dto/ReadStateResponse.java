@@ -0,0 +1,17 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.ReadTargetType;
+import lombok.Value;
+
+/**
+ * Значок непрочитанного для канала или комнаты.
+ */
+@Value
+public class ReadStateResponse {
+    ReadTargetType targetType;
+    Long targetId;
+    Long lastReadMessageId; // null, если пользователь еще ничего не подтверждал
+    Long lastMessageId;     // null, если в цели еще не было сообщений
+    long unreadCount;       // не больше 999: клиент показывает "999+"
+    int mentionCount;
+}
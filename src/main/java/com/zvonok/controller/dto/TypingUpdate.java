@@ -0,0 +1,31 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.service.dto.EventType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Список пользователей, набирающих текст в канале или комнате; рассылается в топик цели
+ * не чаще одного раза за тик и только при изменении списка. count = 0 - никто не печатает.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingUpdate {
+    private EventType eventType;
+    private Long channelId; // null для комнаты
+    private Long roomId;    // null для канала
+    private int count;          // всего печатающих; users ограничен app.typing.max-listed-users
+    private List<Typist> users;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Typist {
+        private Long userId;
+        private String username;
+    }
+}
@@ -0,0 +1,9 @@
+package com.zvonok.controller.dto;
+
+import lombok.Data;
+
+@Data
+public class VoiceModerationRequest {
+    private Boolean mute; // требует MUTE_MEMBERS; null - не менять
+    private Boolean deaf; // требует DEAFEN_MEMBERS; null - не менять
+}
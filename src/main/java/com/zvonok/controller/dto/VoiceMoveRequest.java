@@ -0,0 +1,10 @@
+package com.zvonok.controller.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class VoiceMoveRequest {
+    @NotNull(message = "Channel id is required")
+    private Long channelId;
+}
@@ -0,0 +1,9 @@
+package com.zvonok.controller.dto;
+
+import lombok.Data;
+
+@Data
+public class VoiceSelfStateRequest {
+    private Boolean selfMute; // null - не менять
+    private Boolean selfDeaf; // null - не менять
+}
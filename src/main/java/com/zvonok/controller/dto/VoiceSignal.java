@@ -0,0 +1,26 @@
+package com.zvonok.controller.dto;
+
+import com.zvonok.model.enumeration.VoiceSignalType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Сигнальное сообщение WebRTC (SDP offer/answer или ICE-кандидат) между участниками голосового канала.
+ * Клиент заполняет type, targetUserId и данные; сервер добавляет channelId и отправителя
+ * и пересылает в /user/queue/voice.signal сессии получателя.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoiceSignal {
+    private VoiceSignalType type;
+    private Long channelId;
+    private Long fromUserId;
+    private String fromUsername;
+    private Long targetUserId;
+    private String sdp;           // OFFER, ANSWER
+    private String candidate;     // ICE_CANDIDATE
+    private String sdpMid;        // ICE_CANDIDATE
+    private Integer sdpMLineIndex; // ICE_CANDIDATE
+}
@@ -0,0 +1,23 @@
+package com.zvonok.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Голосовое состояние пользователя; рассылается в /topic/voice.{serverId} при каждом изменении.
+ * channelId = null - пользователь отключился от голосового канала.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoiceStateUpdate {
+    private Long userId;
+    private String username;
+    private Long serverId;
+    private Long channelId;
+    private boolean selfMute;
+    private boolean selfDeaf;
+    private boolean serverMute;
+    private boolean serverDeaf;
+}
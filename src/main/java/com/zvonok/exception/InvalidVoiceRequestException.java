@@ -0,0 +1,11 @@
+package com.zvonok.exception;
+
+import com.zvonok.exception_handler.annotation.ApiException;
+import org.springframework.http.HttpStatus;
+
+@ApiException(status = HttpStatus.BAD_REQUEST)
+public class InvalidVoiceRequestException extends RuntimeException {
+    public InvalidVoiceRequestException(String message) {
+        super(message);
+    }
+}
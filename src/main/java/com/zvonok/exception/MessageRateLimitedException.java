@@ -0,0 +1,11 @@
+package com.zvonok.exception;
+
+import com.zvonok.exception_handler.annotation.ApiException;
+import org.springframework.http.HttpStatus;
+
+@ApiException(status = HttpStatus.TOO_MANY_REQUESTS)
+public class MessageRateLimitedException extends RuntimeException {
+    public MessageRateLimitedException(String message) {
+        super(message);
+    }
+}
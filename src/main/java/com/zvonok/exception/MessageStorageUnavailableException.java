@@ -0,0 +1,11 @@
+package com.zvonok.exception;
+
+import com.zvonok.exception_handler.annotation.ApiException;
+import org.springframework.http.HttpStatus;
+
+@ApiException(status = HttpStatus.SERVICE_UNAVAILABLE)
+public class MessageStorageUnavailableException extends RuntimeException {
+    public MessageStorageUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.zvonok.exception;
+
+import com.zvonok.exception_handler.annotation.ApiException;
+import org.springframework.http.HttpStatus;
+
+@ApiException(status = HttpStatus.CONFLICT)
+public class VoiceChannelFullException extends RuntimeException {
+    public VoiceChannelFullException(String message) {
+        super(message);
+    }
+}
@@ -5,6 +5,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.reflections.Reflections;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -41,14 +43,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<JsonErrorResponse> handleException(RuntimeException e) {
-        HttpStatus status = exceptionStatusMap.get(e.getClass());
-
-        if (status != null) {
-            log.debug("Handled {} with status {}", e.getClass().getSimpleName(), status);
-        } else {
-            status = HttpStatus.INTERNAL_SERVER_ERROR;
-            log.error("Unregistered exception: {}", e.getClass().getName(), e);
-        }
+        HttpStatus status = resolveStatus(e);
 
         JsonErrorResponse errorResponse = new JsonErrorResponse(
                 e.getMessage(),
@@ -57,6 +52,16 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, status);
     }
 
+    /**
+     * Обработчик ошибок STOMP-обработчиков (@MessageMapping): ошибка уходит только в сессию
+     * отправителя на /user/queue/errors с тем же телом, что и в HTTP
+     */
+    @MessageExceptionHandler(RuntimeException.class)
+    @SendToUser(destinations = "/queue/errors", broadcast = false)
+    public JsonErrorResponse handleMessageException(RuntimeException e) {
+        return new JsonErrorResponse(e.getMessage(), resolveStatus(e).value());
+    }
+
     /**
      * Обработчик ошибок валидации (@Valid аннотации)
      */
@@ -81,4 +86,15 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
     }
 
+    private HttpStatus resolveStatus(RuntimeException e) {
+        HttpStatus status = exceptionStatusMap.get(e.getClass());
+
+        if (status != null) {
+            log.debug("Handled {} with status {}", e.getClass().getSimpleName(), status);
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            log.error("Unregistered exception: {}", e.getClass().getName(), e);
+        }
+        return status;
+    }
 }
\ No newline at end of file
@@ -17,7 +17,17 @@ public enum BusinessRuleMessage {
     BUSINESS_PERMISSION_OVERRIDE_TARGET_REQUIRED_MESSAGE("Either role or user must be provided for permission override"),
     BUSINESS_USER_NOT_MEMBER_PRIVATE_ROOM_MESSAGE("User is not a member of the private room"),
     BUSINESS_USER_NOT_MEMBER_GROUP_ROOM_MESSAGE("User is not a member of the group room"),
-    BUSINESS_ONLY_SENDER_CAN_EDIT_MESSAGE("Only the sender can edit the message");
+    BUSINESS_ONLY_SENDER_CAN_EDIT_MESSAGE("Only the sender can edit the message"),
+    BUSINESS_MESSAGE_RATE_LIMITED_MESSAGE("You are sending messages too fast"),
+    BUSINESS_SLOW_MODE_ACTIVE_MESSAGE("Slow mode is enabled in this channel"),
+    BUSINESS_SEARCH_SCOPE_REQUIRED_MESSAGE("Exactly one of serverId, channelId or roomId must be provided"),
+    BUSINESS_SEARCH_QUERY_INVALID_MESSAGE("Search query must not be empty or longer than 256 characters"),
+    BUSINESS_VOICE_CHANNEL_FULL_MESSAGE("Voice channel is full"),
+    BUSINESS_NOT_VOICE_CHANNEL_MESSAGE("Channel is not a voice channel"),
+    BUSINESS_USER_NOT_IN_VOICE_MESSAGE("User is not connected to a voice channel"),
+    BUSINESS_VOICE_MOVE_ACROSS_SERVERS_MESSAGE("Members can only be moved between voice channels of the same server"),
+    BUSINESS_VOICE_SIGNAL_INVALID_MESSAGE("Voice signal is malformed or too large"),
+    BUSINESS_MEMBER_LIST_RANGE_INVALID_MESSAGE("Member list range is invalid or too large");
 
     private final String message;
 
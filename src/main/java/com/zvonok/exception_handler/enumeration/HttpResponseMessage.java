@@ -54,7 +54,9 @@ public enum HttpResponseMessage {
     HTTP_REFRESH_TOKEN_EXPIRED_RESPONSE_MESSAGE("Refresh token has expired"),
     HTTP_REFRESH_TOKEN_REVOKED_RESPONSE_MESSAGE("Refresh token is revoked"),
     HTTP_REDEFINITION_RESPONSE_MESSAGE("Override can be either for the role or for the user"),
-    HTTP_MESSAGE_NOT_FOUND_RESPONSE_MESSAGE("Message was not found");
+    HTTP_MESSAGE_NOT_FOUND_RESPONSE_MESSAGE("Message was not found"),
+    HTTP_MESSAGE_STORAGE_UNAVAILABLE_RESPONSE_MESSAGE("Message storage is overloaded, try again later"),
+    HTTP_SERVER_BUSY_RESPONSE_MESSAGE("Server is busy, try again later");
 
     private final String message;
 
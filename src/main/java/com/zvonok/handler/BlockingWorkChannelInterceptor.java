@@ -0,0 +1,61 @@
+package com.zvonok.handler;
+
+import com.zvonok.service.execution.BlockingWorkLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds a {@link BlockingWorkLimiter} permit while an application SEND frame is handled on the
+ * inbound channel executor, so frames running {@code @MessageMapping} methods never outnumber
+ * JDBC connections. Connection, subscription and heartbeat frames pass without a permit.
+ * A frame that waits longer than {@code app.execution.acquire-timeout} is dropped and counted
+ * in {@code zvonok.execution.blocking.rejected}.
+ *
+ * Удерживает разрешение {@link BlockingWorkLimiter}, пока прикладной кадр SEND обрабатывается
+ * в исполнителе входящего канала, поэтому кадров внутри методов {@code @MessageMapping} не бывает
+ * больше, чем соединений JDBC. Кадры подключения, подписки и heartbeat проходят без разрешения.
+ * Кадр, ожидавший дольше {@code app.execution.acquire-timeout}, отбрасывается и учитывается
+ * в {@code zvonok.execution.blocking.rejected}.
+ */
+@Component
+@Slf4j
+public class BlockingWorkChannelInterceptor implements ExecutorChannelInterceptor {
+
+    private final BlockingWorkLimiter limiter;
+
+    public BlockingWorkChannelInterceptor(BlockingWorkLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        if (!requiresPermit(message)) {
+            return message;
+        }
+        if (!limiter.tryAcquire()) {
+            log.warn("STOMP frame to {} dropped: no blocking work permit",
+                    SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+            // null отменяет обработку; afterMessageHandled для этого перехватчика не вызывается
+            return null;
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (requiresPermit(message)) {
+            limiter.release();
+        }
+    }
+
+    private boolean requiresPermit(Message<?> message) {
+        return limiter.isEnabled()
+                && SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE;
+    }
+}
@@ -0,0 +1,51 @@
+package com.zvonok.handler;
+
+import com.zvonok.exception.ServerBusyException;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.service.execution.BlockingWorkLimiter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * Holds a {@link BlockingWorkLimiter} permit for the duration of a REST controller call.
+ * A request that waits longer than {@code app.execution.acquire-timeout} gets 503.
+ * Actuator endpoints are served by their own handler mapping and are not limited.
+ *
+ * Удерживает разрешение {@link BlockingWorkLimiter} на время вызова REST-контроллера.
+ * Запрос, ожидавший дольше {@code app.execution.acquire-timeout}, получает 503.
+ * Эндпоинты Actuator обслуживаются своим handler mapping и не ограничиваются.
+ */
+@Component
+public class BlockingWorkHandlerInterceptor implements HandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = BlockingWorkHandlerInterceptor.class.getName() + ".PERMIT";
+
+    private final BlockingWorkLimiter limiter;
+
+    public BlockingWorkHandlerInterceptor(BlockingWorkLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!limiter.isEnabled()) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            throw new ServerBusyException(HttpResponseMessage.HTTP_SERVER_BUSY_RESPONSE_MESSAGE.getMessage());
+        }
+        // Отметка нужна afterCompletion: разрешение отпускается только тем, кто его взял
+        request.setAttribute(PERMIT_ATTRIBUTE, Boolean.TRUE);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            limiter.release();
+        }
+    }
+}
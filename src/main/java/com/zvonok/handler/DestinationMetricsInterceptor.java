@@ -0,0 +1,85 @@
+package com.zvonok.handler;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Counts messages published to the broker channel per destination ({@code zvonok.stomp.publish}).
+ * Destinations are collapsed into patterns so the tag stays low-cardinality:
+ * {@code /topic/channel.42} becomes {@code /topic/channel.{id}}, {@code /user/alice/queue/messages}
+ * becomes {@code /user/{user}/queue/messages}. A user destination passes the broker channel twice,
+ * as sent and again resolved to session queues ({@code /queue/messages-user...}); only the first
+ * form is counted.
+ *
+ * Считает сообщения, опубликованные в канал брокера, по назначению ({@code zvonok.stomp.publish}).
+ * Назначения сворачиваются в шаблоны, чтобы у тега было немного значений:
+ * {@code /topic/channel.42} превращается в {@code /topic/channel.{id}}, {@code /user/alice/queue/messages} -
+ * в {@code /user/{user}/queue/messages}. Пользовательское назначение проходит канал брокера дважды:
+ * в исходном виде и после разрешения в очереди сессий ({@code /queue/messages-user...}); считается
+ * только первый вид.
+ */
+@Component
+public class DestinationMetricsInterceptor implements ChannelInterceptor {
+
+    // Защита от разрастания числа счетчиков при неожиданных назначениях
+    private static final int MAX_PATTERNS = 200;
+    private static final String OTHER_PATTERN = "other";
+
+    private static final Pattern USER_PREFIX = Pattern.compile("^/user/[^/]+/");
+    private static final Pattern SESSION_SUFFIX = Pattern.compile("-user[^/]+$");
+    private static final Pattern NUMERIC_SEGMENT = Pattern.compile("(?<=[./])\\d+(?=$|[./])");
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> countersByPattern = new ConcurrentHashMap<>();
+
+    // Конкретное назначение -> счетчик его шаблона, чтобы не разбирать строку на каждое сообщение
+    private final Cache<String, Counter> countersByDestination = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .build();
+
+    public DestinationMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            // Копии, разрешенные в очереди сессий, уже посчитаны как /user/...
+            if (destination != null && !SESSION_SUFFIX.matcher(destination).find()) {
+                counterFor(destination).increment();
+            }
+        }
+        return message;
+    }
+
+    private Counter counterFor(String destination) {
+        return countersByDestination.get(destination, d -> {
+            String pattern = toPattern(d);
+            if (countersByPattern.size() >= MAX_PATTERNS && !countersByPattern.containsKey(pattern)) {
+                pattern = OTHER_PATTERN;
+            }
+            return countersByPattern.computeIfAbsent(pattern, p -> Counter.builder("zvonok.stomp.publish")
+                    .description("Messages published to the broker by destination pattern")
+                    .tag("destination", p)
+                    .register(registry));
+        });
+    }
+
+    static String toPattern(String destination) {
+        String pattern = USER_PREFIX.matcher(destination).replaceFirst("/user/{user}/");
+        return NUMERIC_SEGMENT.matcher(pattern).replaceAll("{id}");
+    }
+}
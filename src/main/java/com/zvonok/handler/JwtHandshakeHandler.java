@@ -27,12 +27,13 @@ public class JwtHandshakeHandler extends DefaultHandshakeHandler {
         }
 
         String username = (String) attributes.get("username");
+        Long userId = (Long) attributes.get("userId");
         String token = (String) attributes.get("token");
 
-        if (username == null || token == null) {
+        if (username == null || userId == null || token == null) {
             return null;
         }
 
-        return new UserPrincipal(username, token);
+        return new UserPrincipal(username, userId, token);
     }
 }
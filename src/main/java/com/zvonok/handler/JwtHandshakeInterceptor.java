@@ -1,6 +1,7 @@
 package com.zvonok.handler;
 
 import com.zvonok.security.JwtTokenProvider;
+import com.zvonok.security.dto.VerifiedToken;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.server.ServerHttpRequest;
@@ -11,12 +12,16 @@ import org.springframework.web.socket.server.HandshakeInterceptor;
 
 import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
+    private static final Pattern JWT_FORMAT = Pattern.compile("^.+\\..+\\..+$");
+
     private final JwtTokenProvider jwtTokenProvider;
 
 
@@ -28,14 +33,19 @@ public class JwtHandshakeInterceptor implements HandshakeInterceptor {
 
         String token = extractToken(request);
 
-        if (token != null && token.matches("^.+\\..+\\..+$") && jwtTokenProvider.isValidToken(token)) {
-            String username = jwtTokenProvider.getUsername(token);
-            attributes.put("username", username);
-            attributes.put("token", token);
-            return true;
+        if (token == null || !JWT_FORMAT.matcher(token).matches()) {
+            return false;
+        }
+
+        Optional<VerifiedToken> verified = jwtTokenProvider.verify(token);
+        if (verified.isEmpty() || verified.get().getUserId() == null) {
+            return false;
         }
 
-        return false;
+        attributes.put("username", verified.get().getUsername());
+        attributes.put("userId", verified.get().getUserId());
+        attributes.put("token", token);
+        return true;
     }
 
     @Override
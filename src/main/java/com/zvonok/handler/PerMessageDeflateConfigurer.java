@@ -0,0 +1,250 @@
+package com.zvonok.handler;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Extension;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.catalina.util.ServerInfo;
+import org.apache.tomcat.websocket.Constants;
+import org.apache.tomcat.websocket.MessagePart;
+import org.apache.tomcat.websocket.PerMessageDeflate;
+import org.apache.tomcat.websocket.Transformation;
+import org.apache.tomcat.websocket.TransformationFactory;
+import org.apache.tomcat.websocket.TransformationResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * permessage-deflate (RFC 7692) for raw WebSocket sessions with a size threshold.
+ * <p>
+ * Tomcat negotiates permessage-deflate whenever the client offers it and then compresses every data
+ * message, including 1-byte heartbeats and short receipts that only grow and cost a deflate call.
+ * This component replaces Tomcat's extension builder with one that wraps {@link PerMessageDeflate}:
+ * a whole message shorter than {@code min-message-size} bytes is sent as is with RSV1 clear, which
+ * RFC 7692 allows per message; longer and fragmented messages are compressed by Tomcat with context
+ * takeover. With {@code enabled=false} the offer is declined and the handshake goes on without the
+ * extension. Inbound messages are always inflated by Tomcat. SockJS HTTP transports are not affected.
+ * Each compressing session keeps its own deflater (about 256 KB of native memory).
+ * <p>
+ * The hook is {@link TransformationFactory}, an internal class of {@code tomcat-embed-websocket}
+ * outside the Jakarta WebSocket API, together with {@link PerMessageDeflate} and {@link Transformation}.
+ * It is a JVM-wide singleton, so the replacement applies to every WebSocket endpoint in the JVM, not only
+ * to this application's. It is installed only with {@code app.websocket.compression.tomcat-extension=true}
+ * (the default) and on Tomcat {@value #SUPPORTED_TOMCAT_MAJOR}.x, the version it was written against;
+ * otherwise Tomcat's own permessage-deflate stays in place and compresses every message. Check this
+ * class when upgrading Tomcat to a new major version.
+ *
+ * permessage-deflate (RFC 7692) для сессий чистого WebSocket с порогом размера.
+ * <p>
+ * Tomcat согласует permessage-deflate, если клиент его предлагает, и сжимает каждое сообщение с данными,
+ * включая однобайтовые heartbeat и короткие квитанции, которые от этого только растут и тратят вызов
+ * deflate. Компонент заменяет построитель расширения Tomcat своим, оборачивающим {@link PerMessageDeflate}:
+ * целое сообщение короче {@code min-message-size} байт уходит как есть со сброшенным RSV1, что RFC 7692
+ * разрешает для каждого сообщения; более длинные и фрагментированные сообщения сжимает Tomcat с переносом
+ * контекста. При {@code enabled=false} предложение отклоняется, и рукопожатие проходит без расширения.
+ * Входящие сообщения всегда распаковывает Tomcat. HTTP-транспорты SockJS не затрагиваются.
+ * Каждая сжимающая сессия держит свой deflater (около 256 КБ нативной памяти).
+ * <p>
+ * Точка подключения - {@link TransformationFactory}, внутренний класс {@code tomcat-embed-websocket} вне
+ * API Jakarta WebSocket, вместе с {@link PerMessageDeflate} и {@link Transformation}. Это синглтон на
+ * всю JVM, поэтому замена действует на все конечные точки WebSocket в JVM, а не только на точки этого
+ * приложения. Она ставится только при {@code app.websocket.compression.tomcat-extension=true} (по
+ * умолчанию) и на Tomcat {@value #SUPPORTED_TOMCAT_MAJOR}.x, под который написана; иначе остается
+ * собственный permessage-deflate Tomcat, сжимающий все сообщения. При переходе на новую основную
+ * версию Tomcat этот класс нужно проверить.
+ */
+@Component
+@ConditionalOnClass(TransformationFactory.class)
+@ConditionalOnProperty(name = "app.websocket.compression.tomcat-extension", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PerMessageDeflateConfigurer implements MeterBinder {
+
+    static final int SUPPORTED_TOMCAT_MAJOR = 10;
+
+    private final boolean enabled;
+    private final int minMessageSize;
+
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder skippedMessages = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private volatile boolean installed;
+
+    public PerMessageDeflateConfigurer(
+            @Value("${app.websocket.compression.enabled:true}") boolean enabled,
+            @Value("${app.websocket.compression.min-message-size:128}") int minMessageSize) {
+        if (minMessageSize < 0) {
+            throw new IllegalArgumentException("app.websocket.compression.min-message-size must not be negative");
+        }
+        this.enabled = enabled;
+        this.minMessageSize = minMessageSize;
+    }
+
+    @PostConstruct
+    void install() {
+        String tomcatVersion = ServerInfo.getServerNumber();
+        if (!isSupportedTomcat(tomcatVersion)) {
+            log.warn("WebSocket permessage-deflate threshold not installed: written for Tomcat {}.x, running {}; "
+                    + "Tomcat compresses every message", SUPPORTED_TOMCAT_MAJOR, tomcatVersion);
+            return;
+        }
+        // Реестр расширений Tomcat общий для JVM; WsServerContainer берет построитель при каждом рукопожатии
+        TransformationFactory.getInstance().registerExtension(PerMessageDeflate.NAME, (preferences, isServer) -> {
+            if (!isServer) {
+                // Клиент WebSocket в той же JVM работает как в Tomcat по умолчанию
+                return PerMessageDeflate.BUILDER.build(preferences, false);
+            }
+            if (!enabled) {
+                return null;
+            }
+            Transformation deflate = PerMessageDeflate.BUILDER.build(preferences, true);
+            return deflate == null ? null : new ThresholdDeflate(deflate);
+        });
+        installed = true;
+        log.info("WebSocket permessage-deflate: {}", enabled ? "messages from " + minMessageSize + " bytes" : "off");
+    }
+
+    @PreDestroy
+    void uninstall() {
+        if (!installed) {
+            return;
+        }
+        installed = false;
+        TransformationFactory.getInstance().registerExtension(PerMessageDeflate.NAME, PerMessageDeflate.BUILDER);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("zvonok.websocket.deflate.messages", compressedMessages, LongAdder::sum)
+                .tag("result", "compressed")
+                .description("Outbound WebSocket messages compressed with permessage-deflate")
+                .register(registry);
+        FunctionCounter.builder("zvonok.websocket.deflate.messages", skippedMessages, LongAdder::sum)
+                .tag("result", "skipped")
+                .description("Outbound WebSocket messages sent uncompressed because they are below min-message-size")
+                .register(registry);
+        FunctionCounter.builder("zvonok.websocket.deflate.bytes", bytesIn, LongAdder::sum)
+                .tag("stage", "in")
+                .baseUnit("bytes")
+                .description("Payload bytes of compressed messages before deflate")
+                .register(registry);
+        FunctionCounter.builder("zvonok.websocket.deflate.bytes", bytesOut, LongAdder::sum)
+                .tag("stage", "out")
+                .baseUnit("bytes")
+                .description("Payload bytes of compressed messages after deflate")
+                .register(registry);
+    }
+
+    /** Основная версия из номера сборки Tomcat вида 10.1.46.0. */
+    static boolean isSupportedTomcat(String serverNumber) {
+        if (serverNumber == null) {
+            return false;
+        }
+        int dot = serverNumber.indexOf('.');
+        try {
+            return Integer.parseInt(dot < 0 ? serverNumber : serverNumber.substring(0, dot)) == SUPPORTED_TOMCAT_MAJOR;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static boolean isData(MessagePart part) {
+        byte opCode = part.getOpCode();
+        return opCode == Constants.OPCODE_TEXT || opCode == Constants.OPCODE_BINARY
+                || opCode == Constants.OPCODE_CONTINUATION;
+    }
+
+    /**
+     * Tomcat's deflater that lets short whole messages through. Sends of one session are serialized
+     * by Tomcat, so the fragment flag needs no synchronization.
+     *
+     * Deflater Tomcat, пропускающий короткие целые сообщения. Отправки одной сессии Tomcat выполняет
+     * последовательно, поэтому флагу фрагмента синхронизация не нужна.
+     */
+    private final class ThresholdDeflate implements Transformation {
+
+        private final Transformation delegate;
+        private Transformation next;
+        // Внутри фрагментированного сообщения все части должны пройти через deflater
+        private boolean inFragmentedMessage;
+
+        private ThresholdDeflate(Transformation delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public List<MessagePart> sendMessagePart(List<MessagePart> uncompressedParts) throws IOException {
+            if (uncompressedParts.size() == 1 && !inFragmentedMessage) {
+                MessagePart part = uncompressedParts.get(0);
+                if (isData(part) && part.isFin() && part.getPayload().remaining() < minMessageSize) {
+                    skippedMessages.increment();
+                    return next == null ? uncompressedParts : next.sendMessagePart(uncompressedParts);
+                }
+            }
+
+            long in = 0;
+            for (MessagePart part : uncompressedParts) {
+                if (isData(part)) {
+                    in += part.getPayload().remaining();
+                    inFragmentedMessage = !part.isFin();
+                    if (part.isFin()) {
+                        compressedMessages.increment();
+                    }
+                }
+            }
+            List<MessagePart> compressedParts = delegate.sendMessagePart(uncompressedParts);
+            if (in > 0) {
+                // Конец цепочки Tomcat возвращает части без записи, remaining - сжатый размер
+                bytesIn.add(in);
+                for (MessagePart part : compressedParts) {
+                    if (isData(part)) {
+                        bytesOut.add(part.getPayload().remaining());
+                    }
+                }
+            }
+            return compressedParts;
+        }
+
+        @Override
+        public void setNext(Transformation t) {
+            next = t;
+            delegate.setNext(t);
+        }
+
+        @Override
+        public boolean validateRsvBits(int i) {
+            return delegate.validateRsvBits(i);
+        }
+
+        @Override
+        public Extension getExtensionResponse() {
+            return delegate.getExtensionResponse();
+        }
+
+        @Override
+        public TransformationResult getMoreData(byte opCode, boolean fin, int rsv, ByteBuffer dest) throws IOException {
+            return delegate.getMoreData(opCode, fin, rsv, dest);
+        }
+
+        @Override
+        public boolean validateRsv(int rsv, byte opCode) {
+            return delegate.validateRsv(rsv, opCode);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.zvonok.handler;
+
+import com.zvonok.service.presence.PresenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Feeds client frames from the inbound channel into {@link PresenceService}:
+ * heartbeats keep {@code lastSeenAt} fresh, SEND and SUBSCRIBE count as user activity.
+ *
+ * Передает кадры клиента из входящего канала в {@link PresenceService}:
+ * heartbeat обновляет {@code lastSeenAt}, SEND и SUBSCRIBE считаются активностью пользователя.
+ */
+@Component
+@RequiredArgsConstructor
+public class PresenceChannelInterceptor implements ChannelInterceptor {
+
+    private final PresenceService presenceService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+        if (type == SimpMessageType.HEARTBEAT) {
+            presenceService.recordHeartbeat(sessionId);
+        } else if (type == SimpMessageType.MESSAGE || type == SimpMessageType.SUBSCRIBE) {
+            presenceService.recordActivity(sessionId);
+        }
+        return message;
+    }
+}
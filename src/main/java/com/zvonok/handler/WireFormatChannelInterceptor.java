@@ -0,0 +1,117 @@
+package com.zvonok.handler;
+
+import com.zvonok.service.wire.WireFormat;
+import com.zvonok.service.wire.WireFormatTranscoder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-session wire format negotiation for STOMP.
+ * <p>
+ * Inbound: the {@code content-type} header of the CONNECT frame selects the format of everything
+ * the server sends to that session ({@code application/cbor}, {@code application/x-jackson-smile},
+ * JSON otherwise). Binary formats are accepted only on raw WebSocket sessions (see
+ * {@link WireFormatHandlerDecoratorFactory}); SockJS sessions always stay on JSON.
+ * Outbound: JSON MESSAGE payloads for a binary session are replaced with their transcoded form and
+ * the frame's {@code content-type} is updated. Frames the client sends are decoded by the message
+ * converter matching their own {@code content-type}.
+ *
+ * Выбор формата передачи STOMP для каждой сессии.
+ * <p>
+ * Входящие: заголовок {@code content-type} кадра CONNECT задает формат всего, что сервер отправляет
+ * этой сессии ({@code application/cbor}, {@code application/x-jackson-smile}, иначе JSON).
+ * Бинарные форматы принимаются только для сессий чистого WebSocket (см.
+ * {@link WireFormatHandlerDecoratorFactory}); сессии SockJS всегда остаются на JSON.
+ * Исходящие: JSON-нагрузка кадров MESSAGE для бинарной сессии заменяется перекодированной,
+ * {@code content-type} кадра обновляется. Кадры клиента декодируются конвертером,
+ * соответствующим их собственному {@code content-type}.
+ */
+@Component
+@Slf4j
+public class WireFormatChannelInterceptor implements ChannelInterceptor {
+
+    /** Атрибут сессии: транспорт умеет передавать бинарные кадры. */
+    public static final String BINARY_FRAMES_ATTRIBUTE = WireFormatChannelInterceptor.class.getName() + ".BINARY_FRAMES";
+
+    private final WireFormatTranscoder transcoder;
+
+    // Только сессии с бинарным форматом; отсутствие записи означает JSON
+    private final Map<String, WireFormat> sessionFormats = new ConcurrentHashMap<>();
+
+    public WireFormatChannelInterceptor(WireFormatTranscoder transcoder) {
+        this.transcoder = transcoder;
+    }
+
+    /** Формат, выбранный сессией при подключении. */
+    public WireFormat formatOf(String sessionId) {
+        return sessionFormats.getOrDefault(sessionId, WireFormat.JSON);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(headers);
+        if (type == SimpMessageType.CONNECT) {
+            negotiate(sessionId, headers);
+        } else if (type == SimpMessageType.DISCONNECT) {
+            sessionFormats.remove(sessionId);
+        } else if (type == SimpMessageType.MESSAGE && SimpMessageHeaderAccessor.getSubscriptionId(headers) != null) {
+            // Перехватчик стоит на обоих каналах: подписка есть только у исходящих сообщений, не у SEND клиента
+            return encode(message, formatOf(sessionId));
+        }
+        return message;
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    private void negotiate(String sessionId, MessageHeaders headers) {
+        MimeType contentType = (MimeType) headers.get(MessageHeaders.CONTENT_TYPE);
+        WireFormat format = contentType != null ? WireFormat.fromContentType(contentType.toString()) : WireFormat.JSON;
+        if (!format.isBinary()) {
+            return;
+        }
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(headers);
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(BINARY_FRAMES_ATTRIBUTE))) {
+            log.debug("Session {} requested {} over a text-only transport, using JSON", sessionId, format);
+            return;
+        }
+        sessionFormats.put(sessionId, format);
+    }
+
+    private Message<?> encode(Message<?> message, WireFormat format) {
+        if (!format.isBinary() || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        MimeType contentType = (MimeType) message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType == null || !MimeTypeUtils.APPLICATION_JSON.equalsTypeAndSubtype(contentType)) {
+            return message;
+        }
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(format.getMimeType());
+        // Сообщения от внешнего брокера несут content-type и в нативных заголовках
+        if (accessor instanceof NativeMessageHeaderAccessor nativeAccessor
+                && nativeAccessor.containsNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER)) {
+            nativeAccessor.setNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER, format.getMimeType().toString());
+        }
+        return MessageBuilder.createMessage(transcoder.transcode(json, format), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,74 @@
+package com.zvonok.handler;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.io.IOException;
+
+/**
+ * Sends STOMP frames of sessions with a binary wire format as binary WebSocket messages.
+ * <p>
+ * Spring's STOMP handler writes every frame as a text message unless its content type is
+ * {@code application/octet-stream}; a CBOR or Smile body would not survive UTF-8 decoding on the way.
+ * The session decorator resends such frames with the same bytes as a binary message. Raw WebSocket
+ * sessions are marked with {@link WireFormatChannelInterceptor#BINARY_FRAMES_ATTRIBUTE}; SockJS
+ * sessions are text-only and are left untouched.
+ *
+ * Отправляет кадры STOMP сессий с бинарным форматом как бинарные сообщения WebSocket.
+ * <p>
+ * STOMP-обработчик Spring пишет каждый кадр текстовым сообщением, если тип содержимого не
+ * {@code application/octet-stream}; тело CBOR или Smile не пережило бы декодирование UTF-8.
+ * Декоратор сессии отправляет такие кадры с теми же байтами бинарным сообщением. Сессии чистого
+ * WebSocket помечаются атрибутом {@link WireFormatChannelInterceptor#BINARY_FRAMES_ATTRIBUTE};
+ * сессии SockJS передают только текст и не изменяются.
+ */
+@Component
+public class WireFormatHandlerDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final WireFormatChannelInterceptor wireFormatChannelInterceptor;
+
+    public WireFormatHandlerDecoratorFactory(WireFormatChannelInterceptor wireFormatChannelInterceptor) {
+        this.wireFormatChannelInterceptor = wireFormatChannelInterceptor;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                if (session instanceof SockJsSession) {
+                    super.afterConnectionEstablished(session);
+                    return;
+                }
+                session.getAttributes().put(WireFormatChannelInterceptor.BINARY_FRAMES_ATTRIBUTE, Boolean.TRUE);
+                super.afterConnectionEstablished(new BinaryFrameSession(session));
+            }
+        };
+    }
+
+    private final class BinaryFrameSession extends WebSocketSessionDecorator {
+
+        private BinaryFrameSession(WebSocketSession session) {
+            super(session);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            // Heartbeat ("\n") остается текстовым
+            if (message instanceof TextMessage text && text.getPayloadLength() > 1
+                    && wireFormatChannelInterceptor.formatOf(getId()).isBinary()) {
+                super.sendMessage(new BinaryMessage(text.asBytes()));
+                return;
+            }
+            super.sendMessage(message);
+        }
+    }
+}
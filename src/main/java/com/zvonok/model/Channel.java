@@ -20,7 +20,8 @@ import java.util.List;
 public class Channel {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "channel_seq")
+    @SequenceGenerator(name = "channel_seq", sequenceName = "channel_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne @JoinColumn(name = "channel_folder_id", nullable = false) @JsonBackReference
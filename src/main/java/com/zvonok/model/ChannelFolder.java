@@ -19,7 +19,8 @@ import java.util.List;
 @Table(name = "channel_folder")
 public class ChannelFolder {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "channel_folder_seq")
+    @SequenceGenerator(name = "channel_folder_seq", sequenceName = "channel_folder_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 100)
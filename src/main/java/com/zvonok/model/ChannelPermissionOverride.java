@@ -2,6 +2,7 @@ package com.zvonok.model;
 
 import com.zvonok.exception.PermissionOverrideTargetMissingException;
 import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.model.listener.PermissionOverrideListener;
 import com.zvonok.service.dto.Permission;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -16,10 +17,12 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
+@EntityListeners(PermissionOverrideListener.class)
 @Table(name = "channel_permission_override")
 public class ChannelPermissionOverride {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "channel_permission_override_seq")
+    @SequenceGenerator(name = "channel_permission_override_seq", sequenceName = "channel_permission_override_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne @JoinColumn(name = "channel_id", nullable = false)
@@ -2,6 +2,7 @@ package com.zvonok.model;
 
 import com.zvonok.exception.RedefinitionException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.model.listener.PermissionOverrideListener;
 import com.zvonok.service.dto.Permission;
 
 import jakarta.persistence.*;
@@ -17,10 +18,12 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
+@EntityListeners(PermissionOverrideListener.class)
 @Table(name = "folder_permission_override")
 public class FolderPermissionOverride {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folder_permission_override_seq")
+    @SequenceGenerator(name = "folder_permission_override_seq", sequenceName = "folder_permission_override_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne @JoinColumn(name = "folder_id", nullable = false)
@@ -15,11 +15,15 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "friendship", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"user_one_id", "user_two_id"})
+}, indexes = {
+        // Уникальный индекс начинается с user_one_id; поиск по второму участнику нужен отдельный
+        @Index(name = "idx_friendship_user_two_id", columnList = "user_two_id")
 })
 public class Friendship {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "friendship_seq")
+    @SequenceGenerator(name = "friendship_seq", sequenceName = "friendship_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -3,6 +3,7 @@ package com.zvonok.model;
 import com.zvonok.exception.MessageTargetValidationException;
 import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
 import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.model.id.SnowflakeId;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -16,10 +17,13 @@ import java.time.LocalDateTime;
 @Getter
 @Setter
 @Entity
-@Table(name = "message")
+@Table(name = "message", indexes = {
+        @Index(name = "idx_message_channel_id_id", columnList = "channel_id, id"),
+        @Index(name = "idx_message_room_id_id", columnList = "room_id, id")
+})
 public class Message {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @SnowflakeId // id выдается до INSERT, см. SnowflakeIdGenerator
     private Long id;
 
     @ManyToOne @JoinColumn(name = "sender_id", nullable = false)
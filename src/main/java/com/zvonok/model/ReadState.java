@@ -0,0 +1,54 @@
+package com.zvonok.model;
+
+import com.zvonok.model.enumeration.ReadTargetType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Состояние прочтения канала или комнаты пользователем. Пишется пакетами через JDBC
+ * из ReadStateService, сущность описывает схему таблицы.
+ * Непрочитанные = сохраненные сообщения цели после lastReadMessageId.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "read_state")
+@IdClass(ReadState.Key.class)
+public class ReadState {
+
+    @Id
+    private Long userId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ReadTargetType targetType;
+
+    @Id
+    private Long targetId; // ID канала или комнаты
+
+    private Long lastReadMessageId; // null, если пользователь еще ничего не подтверждал
+
+    @Column(nullable = false)
+    private int mentionCount; // упоминания после последнего подтверждения
+
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long userId;
+        private ReadTargetType targetType;
+        private Long targetId;
+    }
+}
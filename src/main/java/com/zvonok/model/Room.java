@@ -16,10 +16,13 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "room")
+@Table(name = "room", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_room_dm_pair", columnNames = {"dm_user_low_id", "dm_user_high_id"})
+})
 public class Room {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "room_seq")
+    @SequenceGenerator(name = "room_seq", sequenceName = "room_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 100)
@@ -32,6 +35,14 @@ public class Room {
 
     private LocalDateTime createAt;
 
+    // Нормализованная пара участников активной приватной комнаты (меньший id, больший id);
+    // null у групповых и покинутых приватных комнат
+    @Column(name = "dm_user_low_id")
+    private Long dmUserLowId;
+
+    @Column(name = "dm_user_high_id")
+    private Long dmUserHighId;
+
     @ManyToMany @JoinTable(
             name = "room_members",
             joinColumns = @JoinColumn(name = "room_id"),
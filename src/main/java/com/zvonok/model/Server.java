@@ -6,6 +6,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,7 +19,8 @@ import java.util.List;
 @Table(name = "server")
 public class Server {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_seq")
+    @SequenceGenerator(name = "server_seq", sequenceName = "server_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 100)
@@ -30,6 +32,12 @@ public class Server {
     @Column(nullable = false)
     private Integer maxMember = 10000;
 
+    // Число активных участников. Меняется только атомарными UPDATE в ServerRepository,
+    // сохранение сущности его не перезаписывает
+    @Column(nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long memberCount = 0L;
+
     private Boolean isActive = true;
 
     private LocalDateTime createdAt;
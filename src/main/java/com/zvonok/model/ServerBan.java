@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 public class ServerBan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_ban_seq")
+    @SequenceGenerator(name = "server_ban_seq", sequenceName = "server_ban_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false)
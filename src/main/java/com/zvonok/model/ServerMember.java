@@ -16,10 +16,14 @@ import java.util.List;
 @Getter
 @Setter
 @Entity
-@Table(name = "server_member")
+@Table(name = "server_member", indexes = {
+        // Поиск общих серверов по id пользователей с обеих сторон (получатели присутствия)
+        @Index(name = "idx_server_member_user_id_server_id", columnList = "user_id, server_id")
+})
 public class ServerMember {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_member_seq")
+    @SequenceGenerator(name = "server_member_seq", sequenceName = "server_member_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne @JoinColumn(name = "user_id", nullable = false)
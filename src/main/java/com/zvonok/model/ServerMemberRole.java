@@ -16,7 +16,8 @@ import java.time.LocalDateTime;
 @Table(name = "server_member_role")
 public class ServerMemberRole {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_member_role_seq")
+    @SequenceGenerator(name = "server_member_role_seq", sequenceName = "server_member_role_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne @JoinColumn(name = "member_id", nullable = false)
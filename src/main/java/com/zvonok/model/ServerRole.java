@@ -18,7 +18,8 @@ import java.util.List;
 @Table(name = "server_role")
 public class ServerRole {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "server_role_seq")
+    @SequenceGenerator(name = "server_role_seq", sequenceName = "server_role_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -34,6 +35,7 @@ public class ServerRole {
     private Long serverPermissions = Permission.NOTHING.getValue();
 
     private Boolean mentionable = true;
+    private Boolean hoist = false; // Участники с ролью показываются отдельной группой в списке участников
     private Boolean isEveryone = false; // Роль @everyone
     private Boolean isActive = true;
     private LocalDateTime createdAt;
@@ -0,0 +1,6 @@
+package com.zvonok.model.enumeration;
+
+public enum ReadTargetType {
+    CHANNEL,
+    ROOM;
+}
@@ -0,0 +1,7 @@
+package com.zvonok.model.enumeration;
+
+public enum VoiceSignalType {
+    OFFER,
+    ANSWER,
+    ICE_CANDIDATE
+}
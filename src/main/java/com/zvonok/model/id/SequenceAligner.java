@@ -0,0 +1,68 @@
+package com.zvonok.model.id;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.id.enhanced.DatabaseStructure;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-off migration from IDENTITY columns to pooled sequences. After the schema update has created
+ * the {@code *_seq} sequences, restarts each of them above the current {@code max(id)} of its table,
+ * so the first block allocated by Hibernate does not collide with existing rows.
+ * Enable for the first start after the upgrade on a single node, then turn it off:
+ * restarting a sequence while other nodes hold allocated blocks can hand out duplicate ids.
+ * Existing identity defaults stay on the columns and are simply no longer used.
+ *
+ * Однократная миграция с IDENTITY-колонок на пулы последовательностей. После того как обновление
+ * схемы создало последовательности {@code *_seq}, перезапускает каждую выше текущего {@code max(id)}
+ * ее таблицы, чтобы первый выделенный Hibernate блок не пересекся с существующими строками.
+ * Включается на первый запуск после обновления на одном узле, затем выключается:
+ * перезапуск последовательности, пока другие узлы держат выделенные блоки, может выдать повторные id.
+ * Прежние identity-умолчания остаются на колонках и просто не используются.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.align-sequences", havingValue = "true")
+@Slf4j
+public class SequenceAligner {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceAligner(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void alignSequences() {
+        // Контекст генерации DDL: имя с кавычками диалекта и схемой/каталогом по умолчанию, как в схеме
+        SqlStringGenerationContext sqlContext = sessionFactory.getSqlStringGenerationContext();
+
+        sessionFactory.getMappingMetamodel().forEachEntityDescriptor(persister -> {
+            if (!(persister.getGenerator() instanceof SequenceStyleGenerator generator)
+                    || !(persister instanceof AbstractEntityPersister entityPersister)) {
+                return;
+            }
+
+            DatabaseStructure structure = generator.getDatabaseStructure();
+            String sequenceName = sqlContext.format(structure.getPhysicalName());
+            String tableName = entityPersister.getTableName();
+            String idColumn = entityPersister.getIdentifierColumnNames()[0];
+
+            Long maxId = jdbcTemplate.queryForObject(
+                    "select coalesce(max(" + idColumn + "), 0) from " + tableName, Long.class);
+            // Пул выдает id блоком (значение - incrementSize, значение], поэтому начинаем с запасом в один блок
+            long restartWith = (maxId == null ? 0L : maxId) + structure.getIncrementSize() + 1;
+
+            jdbcTemplate.execute("alter sequence " + sequenceName + " restart with " + restartWith);
+            log.info("Sequence {} restarted with {} (max id in {} is {})", sequenceName, restartWith, tableName, maxId);
+        });
+    }
+}
@@ -0,0 +1,18 @@
+package com.zvonok.model.id;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an id as generated by {@link SnowflakeIdGenerator}. An id assigned before persist is kept.
+ * Помечает идентификатор, генерируемый {@link SnowflakeIdGenerator}. Id, заданный до persist, сохраняется.
+ */
+@IdGeneratorType(SnowflakeIdentifierGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface SnowflakeId {
+}
@@ -0,0 +1,58 @@
+package com.zvonok.model.id;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Time-ordered id generator (Snowflake-style) that needs no database round trip.
+ * Layout fits in 53 bits so ids stay exact as JavaScript numbers:
+ * 41 bits of milliseconds since 2025-01-01, 4 bits of node id, 8 bits of per-millisecond sequence.
+ * Ids grow monotonically on one node, so keyset pagination over id keeps working.
+ *
+ * Генератор упорядоченных по времени идентификаторов (в стиле Snowflake) без обращения к БД.
+ * Раскладка помещается в 53 бита, чтобы id оставались точными числами в JavaScript:
+ * 41 бит миллисекунд с 2025-01-01, 4 бита номера узла, 8 бит счетчика в пределах миллисекунды.
+ * На одном узле id монотонно растут, поэтому keyset-пагинация по id продолжает работать.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    private static final long EPOCH_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 4;
+    private static final int SEQUENCE_BITS = 8;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+
+    private long lastTimestamp = -1L;
+    private long sequence;
+
+    public SnowflakeIdGenerator(@Value("${app.id.node-id:0}") long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("app.id.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Возвращает следующий идентификатор. Если часы ушли назад, продолжает от последней
+     * выданной миллисекунды, чтобы не нарушить монотонность.
+     */
+    public synchronized long nextId() {
+        long timestamp = Math.max(System.currentTimeMillis() - EPOCH_MILLIS, lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // Счетчик миллисекунды исчерпан - занимаем следующую
+                timestamp = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+        return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+}
@@ -0,0 +1,76 @@
+package com.zvonok.model.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.id.factory.spi.CustomIdGeneratorCreationContext;
+import org.hibernate.resource.beans.container.spi.BeanContainer;
+import org.hibernate.resource.beans.spi.BeanInstanceProducer;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+
+import java.lang.reflect.Member;
+import java.util.EnumSet;
+
+/**
+ * Hibernate glue for {@link SnowflakeId}: takes the {@link SnowflakeIdGenerator} singleton
+ * from the Spring bean container, so Hibernate and services that pre-allocate ids share one sequence.
+ *
+ * Связка Hibernate для {@link SnowflakeId}: берет синглтон {@link SnowflakeIdGenerator}
+ * из контейнера Spring, чтобы Hibernate и сервисы, заранее выделяющие id, использовали одну последовательность.
+ */
+public class SnowflakeIdentifierGenerator implements BeforeExecutionGenerator {
+
+    // Спрингу нужен существующий синглтон, а не новый экземпляр (JPA-совместимое создание дало бы второй счетчик)
+    private static final BeanContainer.LifecycleOptions SHARED_SINGLETON = new BeanContainer.LifecycleOptions() {
+        @Override
+        public boolean canUseCachedReferences() {
+            return true;
+        }
+
+        @Override
+        public boolean useJpaCompliantCreation() {
+            return false;
+        }
+    };
+
+    private final transient SnowflakeIdGenerator generator;
+
+    public SnowflakeIdentifierGenerator(SnowflakeId config, Member idMember, CustomIdGeneratorCreationContext context) {
+        BeanContainer beanContainer = context.getServiceRegistry()
+                .requireService(ManagedBeanRegistry.class)
+                .getBeanContainer();
+        this.generator = beanContainer != null
+                ? beanContainer.getBean(SnowflakeIdGenerator.class, SHARED_SINGLETON,
+                        new FallbackProducer()).getBeanInstance()
+                : new SnowflakeIdGenerator(0);
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        return currentValue != null ? currentValue : generator.nextId();
+    }
+
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    private static final class FallbackProducer implements BeanInstanceProducer {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <B> B produceBeanInstance(Class<B> beanType) {
+            return (B) new SnowflakeIdGenerator(0);
+        }
+
+        @Override
+        public <B> B produceBeanInstance(String name, Class<B> beanType) {
+            return produceBeanInstance(beanType);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.zvonok.model.listener;
+
+import com.zvonok.model.ChannelPermissionOverride;
+import com.zvonok.model.FolderPermissionOverride;
+import com.zvonok.service.cache.ChannelPermissionCache;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Сбрасывает кэш прав при любом изменении строки переопределения прав канала или папки.
+ * Hibernate получает слушатель из контекста Spring, поэтому зависимости внедряются через конструктор.
+ */
+@Component
+@RequiredArgsConstructor
+public class PermissionOverrideListener {
+
+    private final ChannelPermissionCache channelPermissionCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onOverrideChanged(Object override) {
+        if (override instanceof ChannelPermissionOverride channelOverride) {
+            channelPermissionCache.evictChannel(channelOverride.getChannel().getId());
+        } else if (override instanceof FolderPermissionOverride folderOverride) {
+            channelPermissionCache.evictFolder(folderOverride.getFolder().getId());
+        }
+    }
+}
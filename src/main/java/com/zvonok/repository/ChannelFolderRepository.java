@@ -1,12 +1,25 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.ChannelFolder;
+import com.zvonok.service.dto.response.FolderSnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ChannelFolderRepository extends JpaRepository<ChannelFolder, Long> {
     List<ChannelFolder> findByServerIdAndIsActiveTrueOrderByPosition(Long serverId);
     Optional<ChannelFolder> findByIdAndServerId(Long folderId, Long serverId);
+
+    @Query("""
+        SELECT new com.zvonok.service.dto.response.FolderSnapshot(f.id, f.server.id, f.name, f.position, f.collapsed)
+        FROM ChannelFolder f
+        WHERE f.server.id IN :serverIds
+        AND f.isActive = true
+        ORDER BY f.position
+        """)
+    List<FolderSnapshot> findSnapshotsByServerIds(@Param("serverIds") Collection<Long> serverIds);
 }
\ No newline at end of file
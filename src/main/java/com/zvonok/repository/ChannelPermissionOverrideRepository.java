@@ -2,10 +2,12 @@ package com.zvonok.repository;
 
 import com.zvonok.model.ChannelPermissionOverride;
 import com.zvonok.model.ServerRole;
+import com.zvonok.service.dto.PermissionOverrideMask;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,4 +31,15 @@ public interface ChannelPermissionOverrideRepository extends JpaRepository<Chann
 
     void deleteByChannelIdAndUserId(Long channelId, Long userId);
 
+    // Переопределения каналов пачки серверов, относящиеся к пользователю (его роли или он сам)
+    @Query("""
+        SELECT new com.zvonok.service.dto.PermissionOverrideMask(
+            cpo.channel.id, cpo.allowedPermissions, cpo.deniedPermissions)
+        FROM ChannelPermissionOverride cpo
+        WHERE cpo.channel.folder.server.id IN :serverIds
+        AND (cpo.role.id IN :roleIds OR cpo.user.id = :userId)
+        """)
+    List<PermissionOverrideMask> findMasksForUser(@Param("serverIds") Collection<Long> serverIds,
+                                                  @Param("roleIds") Collection<Long> roleIds,
+                                                  @Param("userId") Long userId);
 }
\ No newline at end of file
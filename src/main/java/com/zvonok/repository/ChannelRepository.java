@@ -1,8 +1,13 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.Channel;
+import com.zvonok.service.dto.VoiceChannelInfo;
+import com.zvonok.service.dto.response.ChannelSnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +17,27 @@ public interface ChannelRepository extends JpaRepository<Channel, Long> {
     List<Channel> findByFolderIdOrderByPosition(Long folderId);
     long countByFolderIdAndIsActiveTrue(Long folderId);
     Optional<Channel> findByIdAndFolderId(Long channelId, Long folderId);
+
+    @Query("SELECT COALESCE(c.slowModeSeconds, 0) FROM Channel c WHERE c.id = :channelId")
+    Optional<Integer> findSlowModeSecondsById(@Param("channelId") Long channelId);
+
+    @Query("""
+        SELECT new com.zvonok.service.dto.VoiceChannelInfo(c.id, f.server.id, c.type, c.userLimit, c.isActive)
+        FROM Channel c
+        JOIN c.folder f
+        WHERE c.id = :channelId
+        """)
+    Optional<VoiceChannelInfo> findVoiceChannelInfoById(@Param("channelId") Long channelId);
+
+    @Query("""
+        SELECT new com.zvonok.service.dto.response.ChannelSnapshot(
+            c.id, f.id, f.server.id, c.name, c.type, c.position, c.topic, c.nsfw, c.slowModeSeconds, c.userLimit)
+        FROM Channel c
+        JOIN c.folder f
+        WHERE f.server.id IN :serverIds
+        AND f.isActive = true
+        AND c.isActive = true
+        ORDER BY c.position
+        """)
+    List<ChannelSnapshot> findSnapshotsByServerIds(@Param("serverIds") Collection<Long> serverIds);
 }
\ No newline at end of file
@@ -2,10 +2,12 @@ package com.zvonok.repository;
 
 import com.zvonok.model.FolderPermissionOverride;
 import com.zvonok.model.ServerRole;
+import com.zvonok.service.dto.PermissionOverrideMask;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +30,16 @@ public interface FolderPermissionOverrideRepository extends JpaRepository<Folder
     void deleteByRoleId(Long roleId);
 
     void deleteByFolderIdAndUserId(Long folderId, Long userId);
+
+    // Переопределения папок пачки серверов, относящиеся к пользователю (его роли или он сам)
+    @Query("""
+        SELECT new com.zvonok.service.dto.PermissionOverrideMask(
+            fpo.folder.id, fpo.allowedPermissions, fpo.deniedPermissions)
+        FROM FolderPermissionOverride fpo
+        WHERE fpo.folder.server.id IN :serverIds
+        AND (fpo.role.id IN :roleIds OR fpo.user.id = :userId)
+        """)
+    List<PermissionOverrideMask> findMasksForUser(@Param("serverIds") Collection<Long> serverIds,
+                                                  @Param("roleIds") Collection<Long> roleIds,
+                                                  @Param("userId") Long userId);
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.Friendship;
+import com.zvonok.service.dto.UserLink;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,8 +16,32 @@ public interface FriendshipRepository extends JpaRepository<Friendship, Long> {
 
     Optional<Friendship> findByUserOneIdAndUserTwoId(Long userOneId, Long userTwoId);
 
-    List<Friendship> findByUserOneIdOrUserTwoId(Long userOneId, Long userTwoId);
+    /** Дружбы пользователя, где он первый в паре, вместе с другом (поиск по индексу user_one_id). */
+    @Query("SELECT f FROM Friendship f JOIN FETCH f.userTwo WHERE f.userOne.id = :userId")
+    List<Friendship> findByUserOneIdWithFriend(@Param("userId") Long userId);
+
+    /** Дружбы пользователя, где он второй в паре, вместе с другом (поиск по индексу user_two_id). */
+    @Query("SELECT f FROM Friendship f JOIN FETCH f.userOne WHERE f.userTwo.id = :userId")
+    List<Friendship> findByUserTwoIdWithFriend(@Param("userId") Long userId);
+
+    /** Id друзей пользователя: два поиска по индексам вместо OR по двум столбцам. */
+    @Query("""
+        SELECT f.userTwo.id FROM Friendship f WHERE f.userOne.id = :userId
+        UNION ALL
+        SELECT f.userOne.id FROM Friendship f WHERE f.userTwo.id = :userId
+        """)
+    List<Long> findFriendIds(@Param("userId") Long userId);
 
     void deleteByUserOneIdAndUserTwoId(Long userOneId, Long userTwoId);
+
+    /**
+     * Пары друзей, в которых участвует хотя бы один из пользователей (одним запросом на пачку)
+     */
+    @Query("""
+        SELECT new com.zvonok.service.dto.UserLink(f.userOne.id, f.userTwo.id) FROM Friendship f
+        WHERE f.userOne.id IN :userIds
+        OR f.userTwo.id IN :userIds
+        """)
+    List<UserLink> findLinksByUserIds(@Param("userIds") Collection<Long> userIds);
 }
 
@@ -1,7 +1,77 @@
 package com.zvonok.repository;
 
+import com.zvonok.controller.dto.MessageHistoryItem;
 import com.zvonok.model.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface MessageRepository extends JpaRepository<Message, Long> {
-}
\ No newline at end of file
+
+    // История канала: сообщения старше курсора, от новых к старым (индекс channel_id, id)
+    @Query("""
+        SELECT new com.zvonok.controller.dto.MessageHistoryItem(
+            m.id, s.id, s.username,
+            CASE WHEN m.deletedAt IS NULL THEN m.content ELSE NULL END,
+            m.type, m.sentAt, m.editedAt, m.deletedAt, m.replyToMessage.id)
+        FROM Message m JOIN m.sender s
+        WHERE m.channel.id = :channelId
+        AND m.id < :before
+        ORDER BY m.id DESC
+        """)
+    List<MessageHistoryItem> findChannelHistoryBefore(@Param("channelId") Long channelId,
+                                                      @Param("before") Long before,
+                                                      Pageable pageable);
+
+    // История канала: сообщения новее курсора after (и старше before), от старых к новым
+    @Query("""
+        SELECT new com.zvonok.controller.dto.MessageHistoryItem(
+            m.id, s.id, s.username,
+            CASE WHEN m.deletedAt IS NULL THEN m.content ELSE NULL END,
+            m.type, m.sentAt, m.editedAt, m.deletedAt, m.replyToMessage.id)
+        FROM Message m JOIN m.sender s
+        WHERE m.channel.id = :channelId
+        AND m.id > :after
+        AND m.id < :before
+        ORDER BY m.id ASC
+        """)
+    List<MessageHistoryItem> findChannelHistoryAfter(@Param("channelId") Long channelId,
+                                                     @Param("after") Long after,
+                                                     @Param("before") Long before,
+                                                     Pageable pageable);
+
+    // История комнаты: сообщения старше курсора, от новых к старым (индекс room_id, id)
+    @Query("""
+        SELECT new com.zvonok.controller.dto.MessageHistoryItem(
+            m.id, s.id, s.username,
+            CASE WHEN m.deletedAt IS NULL THEN m.content ELSE NULL END,
+            m.type, m.sentAt, m.editedAt, m.deletedAt, m.replyToMessage.id)
+        FROM Message m JOIN m.sender s
+        WHERE m.room.id = :roomId
+        AND m.id < :before
+        ORDER BY m.id DESC
+        """)
+    List<MessageHistoryItem> findRoomHistoryBefore(@Param("roomId") Long roomId,
+                                                   @Param("before") Long before,
+                                                   Pageable pageable);
+
+    // История комнаты: сообщения новее курсора after (и старше before), от старых к новым
+    @Query("""
+        SELECT new com.zvonok.controller.dto.MessageHistoryItem(
+            m.id, s.id, s.username,
+            CASE WHEN m.deletedAt IS NULL THEN m.content ELSE NULL END,
+            m.type, m.sentAt, m.editedAt, m.deletedAt, m.replyToMessage.id)
+        FROM Message m JOIN m.sender s
+        WHERE m.room.id = :roomId
+        AND m.id > :after
+        AND m.id < :before
+        ORDER BY m.id ASC
+        """)
+    List<MessageHistoryItem> findRoomHistoryAfter(@Param("roomId") Long roomId,
+                                                  @Param("after") Long after,
+                                                  @Param("before") Long before,
+                                                  Pageable pageable);
+}
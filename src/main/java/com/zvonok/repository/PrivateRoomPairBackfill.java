@@ -0,0 +1,85 @@
+package com.zvonok.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Migration to the normalized pair key of private rooms, run on every startup before the node serves
+ * traffic. After the schema update has added {@code dm_user_low_id}/{@code dm_user_high_id} and the
+ * unique index {@code uk_room_dm_pair}, fills the pair of every active private room with exactly two
+ * members whose pair has no keyed room yet. If earlier races left several rooms for one pair, only the
+ * oldest gets the key; the others keep their history but are no longer used for new messages. Once
+ * every pair is keyed the candidate query finds nothing, so later starts only pay for that query.
+ * Several nodes may start at once: the unique index rejects a pair another node has just keyed.
+ *
+ * Миграция на нормализованный ключ пары приватных комнат, выполняется при каждом запуске до того,
+ * как узел начнет обслуживать запросы. После того как обновление схемы добавило
+ * {@code dm_user_low_id}/{@code dm_user_high_id} и уникальный индекс {@code uk_room_dm_pair},
+ * заполняет пару каждой активной приватной комнаты ровно с двумя участниками, у пары которой еще нет
+ * комнаты с ключом. Если прежние гонки оставили несколько комнат на одну пару, ключ получает только
+ * самая старая; остальные сохраняют историю, но для новых сообщений больше не используются. Когда все
+ * пары получили ключ, запрос кандидатов ничего не находит, и последующие запуски платят только за него.
+ * Несколько узлов могут стартовать одновременно: уникальный индекс отклонит пару, которую только что
+ * заполнил другой узел.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.backfill-private-room-pairs", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PrivateRoomPairBackfill {
+
+    // Пары, у которых уже есть комната с ключом, отсекаются в запросе: дубли прошлых гонок
+    // не перечитываются при каждом запуске
+    private static final String CANDIDATES_SQL = "select p.\"id\", p.\"low_id\", p.\"high_id\" from ("
+            + "select r.\"id\", min(m.\"user_id\") as \"low_id\", max(m.\"user_id\") as \"high_id\" "
+            + "from \"room\" r join \"room_members\" m on m.\"room_id\" = r.\"id\" "
+            + "where r.\"type\" = 'PRIVATE' and r.\"is_active\" = true and r.\"dm_user_low_id\" is null "
+            + "group by r.\"id\" having count(*) = 2) p "
+            + "where not exists (select 1 from \"room\" k "
+            + "where k.\"dm_user_low_id\" = p.\"low_id\" and k.\"dm_user_high_id\" = p.\"high_id\") "
+            + "order by p.\"id\"";
+
+    private static final String UPDATE_SQL = "update \"room\" set \"dm_user_low_id\" = ?, \"dm_user_high_id\" = ? "
+            + "where \"id\" = ? and \"dm_user_low_id\" is null";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PrivateRoomPairBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        List<long[]> candidates = jdbcTemplate.query(CANDIDATES_SQL,
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2), rs.getLong(3)});
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<List<Long>> keyedPairs = new HashSet<>();
+        int keyed = 0;
+        int duplicates = 0;
+        // Комнаты идут по возрастанию id, поэтому пара достается самой старой
+        for (long[] candidate : candidates) {
+            if (!keyedPairs.add(List.of(candidate[1], candidate[2]))) {
+                duplicates++;
+                continue;
+            }
+            try {
+                keyed += jdbcTemplate.update(UPDATE_SQL, candidate[1], candidate[2], candidate[0]);
+            } catch (DuplicateKeyException e) {
+                // Пару уже заполнил другой узел или новая комната, созданная после запроса кандидатов
+                duplicates++;
+            }
+        }
+        log.info("Private room pairs backfilled: {} rooms keyed, {} duplicate rooms left without a key",
+                keyed, duplicates);
+    }
+}
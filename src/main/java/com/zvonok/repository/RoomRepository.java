@@ -3,6 +3,8 @@ package com.zvonok.repository;
 import com.zvonok.model.Room;
 import com.zvonok.model.User;
 import com.zvonok.model.enumeration.RoomType;
+import com.zvonok.service.dto.PrivateRoomInfo;
+import com.zvonok.service.dto.RoomMemberRow;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -11,14 +13,23 @@ import java.util.List;
 import java.util.Optional;
 
 public interface RoomRepository extends JpaRepository<Room, Long> {
-    @Query("SELECT r FROM Room r JOIN r.members m1 JOIN r.members m2 " +
-            "WHERE r.type = 'PRIVATE' AND r.isActive = true " +
-            "AND m1.id = :userId1 AND m2.id = :userId2 " +
-            "AND SIZE(r.members) = 2")
-    Optional<Room> findPrivateRoomBetweenUsers(@Param("userId1") Long userId1, @Param("userId2") Long userId2);
+    /** Приватная комната пары по уникальному индексу uk_room_dm_pair, без загрузки сущностей. */
+    @Query("""
+            SELECT new com.zvonok.service.dto.PrivateRoomInfo(r.id, u1.id, u1.username, u2.id, u2.username)
+            FROM Room r, User u1, User u2
+            WHERE r.dmUserLowId = :lowUserId AND r.dmUserHighId = :highUserId
+              AND u1.id = r.dmUserLowId AND u2.id = r.dmUserHighId
+            """)
+    Optional<PrivateRoomInfo> findPrivateRoomByPair(@Param("lowUserId") Long lowUserId,
+                                                    @Param("highUserId") Long highUserId);
 
     List<Room> findAllByTypeAndIsActiveTrue(RoomType type);
     List<Room> findAllByMembersContainingAndIsActiveTrue(User user);
+    @Query("""
+            SELECT new com.zvonok.service.dto.RoomMemberRow(m.id, m.username)
+            FROM Room r JOIN r.members m WHERE r.id = :roomId AND r.isActive = true
+            """)
+    List<RoomMemberRow> findActiveMembersByRoomId(@Param("roomId") Long roomId);
     @Query("SELECT SIZE(r.members) FROM Room r WHERE r.id = :roomId")
     Integer countMembersInRoom(@Param("roomId") Long roomId);
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.zvonok.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migration to the denormalized member counter of servers, run on every startup before the node serves
+ * traffic. After the schema update has added {@code server.member_count} (default 0), sets it to the
+ * number of active members of every server still at 0 that has active members. A server created after
+ * the upgrade counts its owner, so only servers predating the counter match, and once they are filled
+ * later starts update nothing.
+ *
+ * Миграция на денормализованный счетчик участников серверов, выполняется при каждом запуске до того,
+ * как узел начнет обслуживать запросы. После того как обновление схемы добавило
+ * {@code server.member_count} (по умолчанию 0), записывает число активных участников в каждый сервер,
+ * у которого счетчик еще 0, а активные участники есть. Сервер, созданный после обновления, учитывает
+ * владельца, поэтому подходят только серверы, существовавшие до счетчика, и после их заполнения
+ * последующие запуски ничего не обновляют.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.backfill-server-member-counts", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ServerMemberCountBackfill {
+
+    private static final String UPDATE_SQL = "update \"server\" s set \"member_count\" = ("
+            + "select count(*) from \"server_member\" m where m.\"server_id\" = s.\"id\" and m.\"is_active\" = true) "
+            + "where s.\"member_count\" = 0 and exists (select 1 from \"server_member\" m "
+            + "where m.\"server_id\" = s.\"id\" and m.\"is_active\" = true)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ServerMemberCountBackfill(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void backfill() {
+        int servers = jdbcTemplate.update(UPDATE_SQL);
+        if (servers > 0) {
+            log.info("Server member counts backfilled: {} servers", servers);
+        }
+    }
+}
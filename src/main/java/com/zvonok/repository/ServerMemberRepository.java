@@ -1,10 +1,13 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.ServerMember;
+import com.zvonok.service.dto.MemberListRow;
+import com.zvonok.service.dto.UserLink;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -40,11 +43,6 @@ public interface ServerMemberRepository extends JpaRepository<ServerMember, Long
         AND mr.role.id = :roleId
         """)
     boolean hasRole(@Param("memberId") Long memberId, @Param("roleId") Long roleId);
-    /**
-     * Количество активных участников на сервере
-     */
-    long countByServerIdAndIsActiveTrue(Long serverId);
-
     /**
      * Все активные участники сервера
      */
@@ -59,4 +57,58 @@ public interface ServerMemberRepository extends JpaRepository<ServerMember, Long
         AND s.id = :serverId
         """)
     boolean isServerOwner(@Param("userId") Long userId, @Param("serverId") Long serverId);
-}
\ No newline at end of file
+
+    /**
+     * Пары (пользователь, другой активный участник общего сервера) для пачки пользователей.
+     * Вторая сторона ограничена пачкой возможных получателей (пользователи в сети), поэтому
+     * запрос не перебирает всех участников больших серверов.
+     */
+    @Query("""
+        SELECT DISTINCT new com.zvonok.service.dto.UserLink(sm.user.id, other.user.id) FROM ServerMember sm
+        JOIN ServerMember other ON other.server.id = sm.server.id
+        WHERE sm.user.id IN :userIds
+        AND other.user.id IN :recipientIds
+        AND other.user.id <> sm.user.id
+        AND sm.isActive = true
+        AND other.isActive = true
+        """)
+    List<UserLink> findCoMemberLinks(@Param("userIds") Collection<Long> userIds,
+                                     @Param("recipientIds") Collection<Long> recipientIds);
+
+    /**
+     * ID активных участников сервера с указанными именами (разбор упоминаний)
+     */
+    @Query("""
+        SELECT sm.user.id FROM ServerMember sm
+        WHERE sm.server.id = :serverId
+        AND sm.user.username IN :usernames
+        AND sm.isActive = true
+        """)
+    List<Long> findActiveUserIdsByServerIdAndUsernames(@Param("serverId") Long serverId,
+                                                       @Param("usernames") Collection<String> usernames);
+
+    /**
+     * Активные участники сервера для списка участников
+     */
+    @Query("""
+        SELECT new com.zvonok.service.dto.MemberListRow(u.id, u.username, u.avatarUrl, sm.nickname)
+        FROM ServerMember sm
+        JOIN sm.user u
+        WHERE sm.server.id = :serverId
+        AND sm.isActive = true
+        """)
+    List<MemberListRow> findMemberListRows(@Param("serverId") Long serverId);
+
+    /**
+     * Активный участник сервера для списка участников
+     */
+    @Query("""
+        SELECT new com.zvonok.service.dto.MemberListRow(u.id, u.username, u.avatarUrl, sm.nickname)
+        FROM ServerMember sm
+        JOIN sm.user u
+        WHERE sm.server.id = :serverId
+        AND u.id = :userId
+        AND sm.isActive = true
+        """)
+    Optional<MemberListRow> findMemberListRow(@Param("serverId") Long serverId, @Param("userId") Long userId);
+}
@@ -1,12 +1,47 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.ServerMemberRole;
+import com.zvonok.service.dto.MemberRoleRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ServerMemberRoleRepository extends JpaRepository<ServerMemberRole, Long> {
     Optional<ServerMemberRole> findByMemberIdAndRoleId(Long memberId, Long roleId);
     List<ServerMemberRole> findByMemberId(Long memberId);
-}
\ No newline at end of file
+
+    // Идентификаторы активных ролей пользователя на пачке серверов
+    @Query("""
+        SELECT mr.role.id FROM ServerMemberRole mr
+        WHERE mr.member.user.id = :userId
+        AND mr.member.server.id IN :serverIds
+        AND mr.member.isActive = true
+        AND mr.role.isActive = true
+        """)
+    List<Long> findRoleIdsByUserIdAndServerIds(@Param("userId") Long userId,
+                                               @Param("serverIds") Collection<Long> serverIds);
+
+    // Выделяемые роли активных участников сервера (группы списка участников)
+    @Query("""
+        SELECT new com.zvonok.service.dto.MemberRoleRow(mr.member.user.id, mr.role.id) FROM ServerMemberRole mr
+        WHERE mr.member.server.id = :serverId
+        AND mr.member.isActive = true
+        AND mr.role.isActive = true
+        AND mr.role.hoist = true
+        """)
+    List<MemberRoleRow> findHoistedRoleRowsByServerId(@Param("serverId") Long serverId);
+
+    // Выделяемые роли одного участника сервера
+    @Query("""
+        SELECT mr.role.id FROM ServerMemberRole mr
+        WHERE mr.member.server.id = :serverId
+        AND mr.member.user.id = :userId
+        AND mr.role.isActive = true
+        AND mr.role.hoist = true
+        """)
+    List<Long> findHoistedRoleIds(@Param("serverId") Long serverId, @Param("userId") Long userId);
+}
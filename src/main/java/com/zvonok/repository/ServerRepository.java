@@ -1,7 +1,9 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.Server;
+import com.zvonok.service.dto.ServerMembershipRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -29,4 +31,37 @@ public interface ServerRepository extends JpaRepository<Server, Long> {
         AND s.id = :serverId
         """)
     boolean isServerOwner(@Param("userId") Long userId, @Param("serverId") Long serverId);
-}
\ No newline at end of file
+
+    // Серверы пользователя для стартового снимка: плоские строки без загрузки сущностей
+    @Query("""
+        SELECT new com.zvonok.service.dto.ServerMembershipRow(
+            s.id, s.name, s.invitedCode, s.maxMember, s.memberCount, o.id, o.username, s.createdAt, sm.personalPermissions)
+        FROM ServerMember sm
+        JOIN sm.server s
+        JOIN s.owner o
+        WHERE sm.user.id = :userId
+        AND sm.isActive = true
+        AND s.isActive = true
+        ORDER BY sm.joinedAt DESC
+        """)
+    List<ServerMembershipRow> findMembershipRowsByUserId(@Param("userId") Long userId);
+
+    // Занимает место участника, если сервер не заполнен; 0 - лимит достигнут.
+    // Условие и увеличение - один оператор, поэтому параллельные входы не превышают лимит
+    @Modifying
+    @Query("""
+        UPDATE Server s SET s.memberCount = s.memberCount + 1
+        WHERE s.id = :serverId
+        AND s.memberCount < s.maxMember
+        """)
+    int incrementMemberCountIfBelowMax(@Param("serverId") Long serverId);
+
+    // Освобождает место участника
+    @Modifying
+    @Query("""
+        UPDATE Server s SET s.memberCount = s.memberCount - 1
+        WHERE s.id = :serverId
+        AND s.memberCount > 0
+        """)
+    int decrementMemberCount(@Param("serverId") Long serverId);
+}
@@ -1,8 +1,12 @@
 package com.zvonok.repository;
 
 import com.zvonok.model.ServerRole;
+import com.zvonok.service.dto.response.RoleSnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,4 +14,15 @@ public interface ServerRoleRepository extends JpaRepository<ServerRole, Long> {
     Optional<ServerRole> findByServerIdAndIsEveryoneTrue(Long serverId);
     List<ServerRole> findByServerIdAndIsActiveTrueOrderByPositionDesc(Long serverId);
     Optional<ServerRole> findByIdAndServerId(Long roleId, Long serverId);
+    List<ServerRole> findByServerIdAndIsActiveTrueAndHoistTrue(Long serverId);
+
+    @Query("""
+        SELECT new com.zvonok.service.dto.response.RoleSnapshot(
+            r.id, r.server.id, r.name, r.color, r.position, r.serverPermissions, r.mentionable, r.hoist, r.isEveryone)
+        FROM ServerRole r
+        WHERE r.server.id IN :serverIds
+        AND r.isActive = true
+        ORDER BY r.position DESC
+        """)
+    List<RoleSnapshot> findSnapshotsByServerIds(@Param("serverIds") Collection<Long> serverIds);
 }
\ No newline at end of file
@@ -31,14 +31,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         String jwt = getJwtFromRequest(request);
 
-        if (jwt != null && jwtTokenProvider.isValidToken(jwt)) {
-            String username = jwtTokenProvider.getUsername(jwt);
-            UserPrincipal principal = new UserPrincipal(username, jwt);
+        if (jwt != null) {
+            // Одна проверка подписи (или попадание в кэш проверенных токенов) на запрос
+            // Токены без claim userId не аутентифицируются: id берется только из токена
+            jwtTokenProvider.verify(jwt).filter(verified -> verified.getUserId() != null).ifPresent(verified -> {
+                UserPrincipal principal = new UserPrincipal(verified.getUsername(), verified.getUserId(), jwt);
 
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(principal, null, Collections.emptyList());
 
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            });
         }
 
 
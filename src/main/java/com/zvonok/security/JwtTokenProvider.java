@@ -1,6 +1,11 @@
 package com.zvonok.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.zvonok.security.dto.VerifiedToken;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -9,17 +14,45 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Optional;
 
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
-    @Value("${app.jwt.secret}")
-    private String jwtSecret;
+    private final long jwtExpirationMs;
 
-    @Value("${app.jwt.ExpirationMs}")
-    private long jwtExpirationMs;
+    // Ключ и парсер неизменяемы и потокобезопасны - создаются один раз
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+
+    // Недавно проверенные токены по SHA-256 от токена: повторный запрос с тем же токеном не проверяет HMAC
+    private final Cache<TokenHash, VerifiedToken> verifiedTokens;
+
+    public JwtTokenProvider(
+            @Value("${app.jwt.secret}") String jwtSecret,
+            @Value("${app.jwt.ExpirationMs}") long jwtExpirationMs,
+            @Value("${app.jwt.verified-cache.ttl:PT30S}") Duration verifiedCacheTtl,
+            @Value("${app.jwt.verified-cache.max-size:50000}") long verifiedCacheMaxSize) {
+        this.jwtExpirationMs = jwtExpirationMs;
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                // Запись живет не дольше TTL и не дольше срока действия самого токена
+                .expireAfter(Expiry.<TokenHash, VerifiedToken>creating((hash, token) ->
+                        minDuration(verifiedCacheTtl, Duration.between(Instant.now(), token.getExpiresAt()))))
+                .build();
+    }
 
     // ===== УЛУЧШЕННАЯ ВЕРСИЯ С USERID =====
 
@@ -32,34 +65,59 @@ public class JwtTokenProvider {
                 .claim("userId", userId) // Добавляем userId в токен
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
     /**
-     * Извлечение username из токена
+     * Verifies the token with a single parse and returns its subject and userId claim.
+     * Recently verified tokens are answered from a short-lived cache keyed by the token hash.
+     *
+     * Проверяет токен за один разбор и возвращает subject и claim userId.
+     * Для недавно проверенных токенов ответ берется из кратковременного кэша по хэшу токена.
+     *
+     * @param token  the raw JWT
+     *               JWT в исходном виде
+     * @return verified token data, or empty if the token is invalid or expired
+     *         данные проверенного токена или пусто, если токен неверный или истек
      */
-    public String getUsername(String token) {
-        Claims claims = getClaims(token);
-        return claims.getSubject();
+    public Optional<VerifiedToken> verify(String token) {
+        TokenHash hash = TokenHash.of(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(hash);
+        if (cached != null && cached.getExpiresAt().isAfter(Instant.now())) {
+            return Optional.of(cached);
+        }
+
+        try {
+            Claims claims = getClaims(token);
+            VerifiedToken verified = new VerifiedToken(
+                    claims.getSubject(),
+                    toUserId(claims.get("userId")),
+                    claims.getExpiration().toInstant());
+            verifiedTokens.put(hash, verified);
+            return Optional.of(verified);
+        } catch (Exception e) {
+            log.error("Неверный JWT токен: {}", e.getMessage());
+            return Optional.empty();
+        }
     }
 
     /**
      * Проверка валидности токена
      */
     public boolean isValidToken(String token) {
-        try {
-            getClaims(token);
-            return true;
-        } catch (Exception e) {
-            log.error("Неверный JWT токен: {}", e.getMessage());
-            return false;
-        }
+        return verify(token).isPresent();
     }
 
-    public Long getUserId(String token) {
-        Claims claims = getClaims(token);
-        Object userIdClaim = claims.get("userId");
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    private Claims getClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    private static Long toUserId(Object userIdClaim) {
         if (userIdClaim instanceof Integer) {
             return ((Integer) userIdClaim).longValue();
         }
@@ -69,19 +127,24 @@ public class JwtTokenProvider {
         return null;
     }
 
-    public long getJwtExpirationMs() {
-        return jwtExpirationMs;
+    private static Duration minDuration(Duration a, Duration b) {
+        Duration min = a.compareTo(b) <= 0 ? a : b;
+        return min.isNegative() ? Duration.ZERO : min;
     }
 
-    private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
+    /**
+     * 128 бит SHA-256 от токена: в кэше не хранится сам токен, коллизия практически невозможна.
+     */
+    private record TokenHash(long high, long low) {
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        static TokenHash of(String token) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new TokenHash(buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
     }
 }
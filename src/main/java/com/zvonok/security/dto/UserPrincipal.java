@@ -5,11 +5,19 @@ import lombok.Getter;
 
 import java.security.Principal;
 
+/**
+ * Authenticated user taken from a verified JWT. Carries the id from the {@code userId} claim,
+ * so controllers resolve the current user without a lookup by username.
+ *
+ * Аутентифицированный пользователь из проверенного JWT. Содержит id из claim {@code userId},
+ * чтобы контроллеры получали текущего пользователя без запроса по имени.
+ */
 @AllArgsConstructor
 @Getter
 public class UserPrincipal implements Principal {
 
     private final String username;
+    private final Long userId;
     private final String token;
 
     @Override
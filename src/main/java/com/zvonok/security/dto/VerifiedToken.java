@@ -0,0 +1,16 @@
+package com.zvonok.security.dto;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * Result of a single successful JWT verification: subject, userId claim and expiry.
+ * Результат одной успешной проверки JWT: subject, claim userId и срок действия.
+ */
+@Value
+public class VerifiedToken {
+    String username;
+    Long userId; // null для токенов, выпущенных без claim userId
+    Instant expiresAt;
+}
@@ -5,6 +5,8 @@ import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.Channel;
 import com.zvonok.model.ChannelFolder;
 import com.zvonok.repository.ChannelRepository;
+import com.zvonok.service.cache.ChannelSlowModeCache;
+import com.zvonok.service.cache.VoiceChannelCache;
 import com.zvonok.service.dto.CreateChannelDto;
 import com.zvonok.service.dto.UpdateChannelDto;
 import lombok.RequiredArgsConstructor;
@@ -24,12 +26,18 @@ public class ChannelService {
 
     private final ChannelRepository channelRepository;
     private final ChannelFolderService channelFolderService;
+    private final ChannelSlowModeCache slowModeCache;
+    private final VoiceChannelCache voiceChannelCache;
 
     public ChannelService(
             ChannelRepository channelRepository,
-            @Lazy ChannelFolderService channelFolderService) {
+            @Lazy ChannelFolderService channelFolderService,
+            ChannelSlowModeCache slowModeCache,
+            VoiceChannelCache voiceChannelCache) {
         this.channelRepository = channelRepository;
         this.channelFolderService = channelFolderService;
+        this.slowModeCache = slowModeCache;
+        this.voiceChannelCache = voiceChannelCache;
     }
 
     /** Получает канал по ID. */
@@ -92,7 +100,15 @@ public class ChannelService {
             channel.setIsActive(updateChannelDto.getActive());
         }
 
-        return channelRepository.save(channel);
+        Channel savedChannel = channelRepository.save(channel);
+        if (updateChannelDto.getSlowModeSeconds() != null) {
+            slowModeCache.evictChannel(channelId);
+        }
+        if (updateChannelDto.getType() != null || updateChannelDto.getUserLimit() != null
+                || updateChannelDto.getActive() != null) {
+            voiceChannelCache.evictChannel(channelId);
+        }
+        return savedChannel;
     }
 
     /** Помечает канал как удаленный (неактивный). */
@@ -100,6 +116,7 @@ public class ChannelService {
         Channel channel = getChannel(channelId);
         channel.setIsActive(false);
         channelRepository.save(channel);
+        voiceChannelCache.evictChannel(channelId);
     }
 
     /** Получает канал по ID и ID папки. */
@@ -1,5 +1,6 @@
 package com.zvonok.service;
 
+import com.zvonok.controller.dto.FriendStatusResponse;
 import com.zvonok.exception.*;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.FriendRequest;
@@ -8,26 +9,93 @@ import com.zvonok.model.User;
 import com.zvonok.model.enumeration.FriendRequestStatus;
 import com.zvonok.repository.FriendRequestRepository;
 import com.zvonok.repository.FriendshipRepository;
+import com.zvonok.service.cache.FriendGraphCache;
+import com.zvonok.service.dto.UserSummary;
+import com.zvonok.service.presence.PresenceService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Service for friend requests and friendships. Friendship checks, mutual friends and online friends
+ * are answered by {@link FriendGraphCache} without queries.
+ * Сервис заявок в друзья и дружб. Проверки дружбы, общие друзья и друзья в сети обслуживаются
+ * {@link FriendGraphCache} без запросов.
+ */
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class FriendService {
 
+    // Ограничение размера списка IN в запросе данных друзей
+    private static final int SUMMARY_QUERY_CHUNK = 1000;
+
     private final UserService userService;
     private final FriendRequestRepository friendRequestRepository;
     private final FriendshipRepository friendshipRepository;
+    private final FriendGraphCache friendGraphCache;
+    private final PresenceService presenceService;
 
+    /** Дружбы пользователя вместе с друзьями: два запроса по индексам, без догрузки друзей по одному. */
     public List<Friendship> getFriendships(Long userId) {
         ensureUserExists(userId);
-        return friendshipRepository.findByUserOneIdOrUserTwoId(userId, userId);
+        List<Friendship> friendships = new ArrayList<>(friendshipRepository.findByUserOneIdWithFriend(userId));
+        friendships.addAll(friendshipRepository.findByUserTwoIdWithFriend(userId));
+        return friendships;
+    }
+
+    /**
+     * Returns the friends of a user with their current presence status in one list, sorted by username.
+     * Friend ids come from {@link FriendGraphCache} and statuses from {@link PresenceService}, so only
+     * the public data of the returned friends is queried.
+     *
+     * Возвращает друзей пользователя с текущим статусом присутствия одним списком, по имени.
+     * Id друзей берутся из {@link FriendGraphCache}, статусы из {@link PresenceService}, поэтому
+     * запрашиваются только публичные данные возвращаемых друзей.
+     *
+     * @param userId      the unique identifier of the user
+     *                    уникальный идентификатор пользователя
+     * @param onlineOnly  whether to return only friends connected to this node
+     *                    возвращать только друзей, подключенных к этому узлу
+     * @return friends with status
+     *         друзья со статусом
+     */
+    public List<FriendStatusResponse> getFriendsWithStatus(Long userId, boolean onlineOnly) {
+        List<Long> friendIds = onlineOnly
+                ? friendGraphCache.getFriendIds(userId, presenceService::isOnline)
+                : friendGraphCache.getFriendIds(userId, friendId -> true);
+
+        List<FriendStatusResponse> friends = new ArrayList<>(friendIds.size());
+        for (int from = 0; from < friendIds.size(); from += SUMMARY_QUERY_CHUNK) {
+            List<Long> chunk = friendIds.subList(from, Math.min(from + SUMMARY_QUERY_CHUNK, friendIds.size()));
+            for (UserSummary friend : userService.getUserSummaries(chunk)) {
+                friends.add(FriendStatusResponse.builder()
+                        .friendId(friend.getId())
+                        .friendUsername(friend.getUsername())
+                        .friendAvatarUrl(friend.getAvatarUrl())
+                        .friendStatus(presenceService.getStatus(friend.getId()))
+                        .lastSeenAt(friend.getLastSeenAt())
+                        .build());
+            }
+        }
+        friends.sort(Comparator.comparing(FriendStatusResponse::getFriendUsername));
+        return friends;
+    }
+
+    /** Id друзей пользователя, находящихся в сети на этом узле, без запросов. */
+    public List<Long> getOnlineFriendIds(Long userId) {
+        return friendGraphCache.getFriendIds(userId, presenceService::isOnline);
+    }
+
+    /** Число общих друзей двух пользователей, без запросов после прогрева. */
+    public int countMutualFriends(Long userId, Long otherUserId) {
+        return friendGraphCache.countMutualFriends(userId, otherUserId);
     }
 
     public List<FriendRequest> getIncomingRequests(Long userId) {
@@ -80,7 +148,9 @@ public class FriendService {
         friendRequest.setStatus(FriendRequestStatus.ACCEPTED);
         friendRequestRepository.save(friendRequest);
 
-        return createFriendship(friendRequest.getSender(), friendRequest.getReceiver());
+        Friendship friendship = createFriendship(friendRequest.getSender(), friendRequest.getReceiver());
+        friendGraphCache.evictPair(friendRequest.getSender().getId(), receiverId);
+        return friendship;
     }
 
     @Transactional
@@ -118,11 +188,11 @@ public class FriendService {
                         HttpResponseMessage.HTTP_FRIENDSHIP_NOT_FOUND_RESPONSE_MESSAGE.getMessage()));
 
         friendshipRepository.delete(friendship);
+        friendGraphCache.evictPair(userId, friendId);
     }
 
     public boolean areFriends(Long firstUserId, Long secondUserId) {
-        Long[] normalizedPair = normalizePair(firstUserId, secondUserId);
-        return friendshipRepository.existsByUserOneIdAndUserTwoId(normalizedPair[0], normalizedPair[1]);
+        return friendGraphCache.areFriends(firstUserId, secondUserId);
     }
 
     private FriendRequest getPendingFriendRequest(Long requestId) {
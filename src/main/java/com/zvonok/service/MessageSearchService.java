@@ -0,0 +1,153 @@
+package com.zvonok.service;
+
+import com.zvonok.controller.dto.MessageSearchItem;
+import com.zvonok.controller.dto.MessageSearchResponse;
+import com.zvonok.exception.InsufficientPermissionsException;
+import com.zvonok.exception.InvalidSearchRequestException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.service.dto.MessageSearchCriteria;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.search.MessageSearchIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service for searching messages in a server, a channel or a room.
+ * Access is resolved once per request for the whole scope (VIEW_CHANNEL and READ_MESSAGE_HISTORY
+ * for channels, membership for rooms) and passed to the index as a filter, so hits are not checked one by one.
+ *
+ * Сервис поиска сообщений на сервере, в канале или в комнате.
+ * Доступ проверяется один раз на запрос для всей области (VIEW_CHANNEL и READ_MESSAGE_HISTORY
+ * для каналов, членство для комнат) и передается индексу как фильтр, поэтому результаты не проверяются по одному.
+ */
+@Service
+@RequiredArgsConstructor
+public class MessageSearchService {
+
+    private static final int DEFAULT_SEARCH_LIMIT = 25;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    private static final int MAX_QUERY_LENGTH = 256;
+
+    private final PermissionService permissionService;
+    private final RoomService roomService;
+    private final MessageSearchIndex searchIndex;
+
+    /**
+     * Searches messages within exactly one scope: a server, a channel or a room.
+     *
+     * Ищет сообщения ровно в одной области: на сервере, в канале или в комнате.
+     *
+     * @param userId     the unique identifier of the searching user
+     *                   уникальный идентификатор ищущего пользователя
+     * @param query      search terms
+     *                   поисковый запрос
+     * @param serverId   search in all readable channels of the server
+     *                   поиск во всех доступных для чтения каналах сервера
+     * @param channelId  search in one channel
+     *                   поиск в одном канале
+     * @param roomId     search in a private or group room
+     *                   поиск в приватной или групповой комнате
+     * @param authorId   only messages of this sender (optional)
+     *                   только сообщения этого отправителя (необязательно)
+     * @param from       sent at or after (optional)
+     *                   отправлены не раньше (необязательно)
+     * @param to         sent before (optional)
+     *                   отправлены раньше (необязательно)
+     * @param before     keyset cursor: only messages with a smaller id (optional)
+     *                   курсор: только сообщения с меньшим ID (необязательно)
+     * @param limit      page size, up to 100
+     *                   размер страницы, до 100
+     * @return page of matching messages, newest first
+     *         страница найденных сообщений, начиная с новых
+     * @throws InvalidSearchRequestException если запрос пуст или область задана не ровно одним параметром
+     * @throws InsufficientPermissionsException если у пользователя нет доступа к области поиска
+     */
+    @Transactional(readOnly = true)
+    public MessageSearchResponse searchMessages(Long userId, String query, Long serverId, Long channelId, Long roomId,
+                                                Long authorId, LocalDateTime from, LocalDateTime to,
+                                                Long before, Integer limit) {
+        if (query == null || query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            throw new InvalidSearchRequestException(
+                    BusinessRuleMessage.BUSINESS_SEARCH_QUERY_INVALID_MESSAGE.getMessage());
+        }
+        int scopes = (serverId != null ? 1 : 0) + (channelId != null ? 1 : 0) + (roomId != null ? 1 : 0);
+        if (scopes != 1) {
+            throw new InvalidSearchRequestException(
+                    BusinessRuleMessage.BUSINESS_SEARCH_SCOPE_REQUIRED_MESSAGE.getMessage());
+        }
+
+        int pageSize = normalizeSearchLimit(limit);
+        MessageSearchCriteria.MessageSearchCriteriaBuilder criteria = MessageSearchCriteria.builder()
+                .query(query)
+                .authorId(authorId)
+                .from(from)
+                .to(to)
+                .before(before)
+                .limit(pageSize + 1);
+
+        if (roomId != null) {
+            if (!roomService.isRoomMember(roomId, userId)) {
+                throw new InsufficientPermissionsException(
+                        HttpResponseMessage.HTTP_USER_NOT_MEMBER_ROOM_RESPONSE_MESSAGE.getMessage());
+            }
+            criteria.roomId(roomId);
+        } else {
+            Collection<Long> channelIds = serverId != null
+                    ? getReadableChannelIds(userId, serverId)
+                    : getReadableChannel(userId, channelId);
+            if (channelIds.isEmpty()) {
+                return MessageSearchResponse.builder().messages(List.of()).hasMore(false).build();
+            }
+            criteria.channelIds(channelIds);
+        }
+
+        List<MessageSearchItem> items = searchIndex.search(criteria.build());
+        boolean hasMore = items.size() > pageSize;
+        return MessageSearchResponse.builder()
+                .messages(new ArrayList<>(hasMore ? items.subList(0, pageSize) : items))
+                .hasMore(hasMore)
+                .build();
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    /**
+     * Каналы сервера, доступные для чтения истории; не участник сервера получает отказ.
+     */
+    private Set<Long> getReadableChannelIds(Long userId, Long serverId) {
+        if (!permissionService.isServerMember(userId, serverId)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_YOU_NOT_MEMBER_THIS_SERVER_RESPONSE_MESSAGE.getMessage());
+        }
+        return permissionService.getChannelIdsWithPermissions(userId, serverId,
+                Permission.VIEW_CHANNEL, Permission.READ_MESSAGE_HISTORY);
+    }
+
+    /**
+     * Один канал: проверка по кэшу прав, как при загрузке истории.
+     */
+    private List<Long> getReadableChannel(Long userId, Long channelId) {
+        long permissions = permissionService.getUserChannelPermissions(userId, channelId);
+        if (!Permission.hasPermission(permissions, Permission.VIEW_CHANNEL)
+                || !Permission.hasPermission(permissions, Permission.READ_MESSAGE_HISTORY)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+        }
+        return List.of(channelId);
+    }
+
+    private int normalizeSearchLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_SEARCH_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_SEARCH_LIMIT));
+    }
+}
@@ -1,7 +1,10 @@
 package com.zvonok.service;
 
 import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.controller.dto.MessageHistoryItem;
+import com.zvonok.controller.dto.MessageHistoryResponse;
 import com.zvonok.exception.CannotEditDeletedMessageException;
+import com.zvonok.exception.ChannelNotFoundException;
 import com.zvonok.exception.InsufficientPermissionsException;
 import com.zvonok.exception.MessageNotFoundException;
 import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
@@ -14,13 +17,25 @@ import com.zvonok.model.Room;
 import com.zvonok.model.User;
 import com.zvonok.model.enumeration.MessageType;
 import com.zvonok.repository.MessageRepository;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.PrivateRoomInfo;
+import com.zvonok.service.dto.RoomMembers;
+import com.zvonok.service.message.ChannelMessageMapper;
+import com.zvonok.service.message.MessageBroadcaster;
+import com.zvonok.service.message.MessageWriteBehindQueue;
+import com.zvonok.service.metrics.ChatMetrics;
+import com.zvonok.service.metrics.ChatMetrics.MessageKind;
+import com.zvonok.service.readstate.ReadStateService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Service for managing messages in private rooms, group rooms, and channels.
@@ -32,67 +47,75 @@ import java.time.LocalDateTime;
 @Slf4j
 public class MessageService {
 
+    private static final int DEFAULT_HISTORY_LIMIT = 50;
+    private static final int MAX_HISTORY_LIMIT = 100;
+
     private final MessageRepository messageRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageBroadcaster messageBroadcaster;
+    private final ChannelMessageMapper channelMessageMapper;
     private final RoomService roomService;
     private final UserService userService;
     private final ChannelService channelService;
     private final PermissionService permissionService;
+    private final MessageWriteBehindQueue writeBehindQueue;
+    private final ChatMetrics chatMetrics;
+    private final ReadStateService readStateService;
 
     /**
      * Отправляет приватное сообщение между двумя пользователями.
      * Создает или получает приватную комнату, сохраняет сообщение и отправляет его через WebSocket.
+     * Лимит сообщений проверяется до вызова, в {@link com.zvonok.service.ratelimit.MessageSendThrottle}.
      */
-    public MessageResponse sendPrivateMessage(String senderUsername, String receiverUsername, String content) {
-        Room privateRoom = roomService.createOrGetPrivateRoom(senderUsername, receiverUsername);
-        User sender = userService.getUser(senderUsername);
-
-        // Проверяем, что отправитель является участником комнаты
-        boolean isMember = privateRoom.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(sender.getId()));
-        if (!isMember) {
-            throw new InsufficientPermissionsException(
-                    BusinessRuleMessage.BUSINESS_USER_NOT_MEMBER_PRIVATE_ROOM_MESSAGE.getMessage());
-        }
+    public MessageResponse sendPrivateMessage(Long senderId, String receiverUsername, String content) {
+        // Комната и участники из кэша пар; отправитель входит в пару, поэтому он участник комнаты
+        PrivateRoomInfo privateRoom = roomService.resolvePrivateRoom(senderId, receiverUsername);
+        Room room = roomService.getRoomReference(privateRoom.getRoomId());
+        User sender = userService.getUserReference(senderId);
 
-        Message message = createMessage(sender, content, privateRoom, null);
-        Message savedMessage = messageRepository.save(message);
+        Message message = createMessage(sender, content, room, null);
+        Message savedMessage = chatMetrics.persistTimer(MessageKind.PRIVATE).record(() -> persistNewMessage(message));
 
-        MessageResponse response = mapToMessageResponse(savedMessage, privateRoom.getId());
+        readStateService.onRoomMessage(room.getId(), privateRoom.getMembers(), savedMessage.getId(), senderId, content);
+
+        MessageResponse response = mapToMessageResponse(savedMessage, room.getId(), privateRoom.getUsername(senderId));
         response.setEventType(EventType.MESSAGE);
 
-        privateRoom.getMembers().forEach(member -> messagingTemplate.convertAndSendToUser(
-                member.getUsername(),
-                "/queue/messages",
-                response
-        ));
+        chatMetrics.broadcastTimer(MessageKind.PRIVATE).record(() ->
+                messageBroadcaster.toUsers(privateRoom.getUsernames(), "/queue/messages", response));
 
         return response;
     }
 
     /**
      * Отправляет сообщение в групповую комнату.
-     * Сохраняет сообщение и транслирует его всем участникам через WebSocket.
+     * Членство проверяется по индексу участников без загрузки комнаты; сообщение сохраняется
+     * и рассылается в пользовательские назначения участников из того же индекса, поэтому вышедший
+     * из комнаты пользователь его уже не получает.
+     * Лимит сообщений проверяется до вызова, в {@link com.zvonok.service.ratelimit.MessageSendThrottle}.
      */
-    public MessageResponse sendGroupMessage(String senderUsername, long roomId, String content) {
-        Room groupRoom = roomService.getRoom(roomId);
-        User sender = userService.getUser(senderUsername);
-
-        // Проверяем, что отправитель является участником комнаты
-        boolean isMember = groupRoom.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(sender.getId()));
-        if (!isMember) {
+    public MessageResponse sendGroupMessage(Long senderId, long roomId, String content) {
+        RoomMembers members = roomService.getRoomMembers(roomId);
+        if (!members.contains(senderId)) {
+            if (members.isEmpty()) {
+                // Для несуществующей комнаты - RoomNotFoundException, как раньше
+                roomService.getRoom(roomId);
+            }
             throw new InsufficientPermissionsException(
                     BusinessRuleMessage.BUSINESS_USER_NOT_MEMBER_GROUP_ROOM_MESSAGE.getMessage());
         }
+        Room groupRoom = roomService.getRoomReference(roomId);
+        User sender = userService.getUserReference(senderId);
 
         Message message = createMessage(sender, content, groupRoom, null);
-        Message savedMessage = messageRepository.save(message);
+        Message savedMessage = chatMetrics.persistTimer(MessageKind.GROUP).record(() -> persistNewMessage(message));
+
+        readStateService.onRoomMessage(roomId, members, savedMessage.getId(), senderId, content);
 
-        MessageResponse response = mapToMessageResponse(savedMessage, groupRoom.getId());
+        MessageResponse response = mapToMessageResponse(savedMessage, roomId, members.usernameOf(senderId));
         response.setEventType(EventType.MESSAGE);
 
-        messagingTemplate.convertAndSend("/topic/room." + groupRoom.getId(), response);
+        chatMetrics.broadcastTimer(MessageKind.GROUP).record(() ->
+                messageBroadcaster.toUsers(members.getUsernames(), "/queue/messages", response));
 
         return response;
     }
@@ -100,27 +123,35 @@ public class MessageService {
     /**
      * Отправляет сообщение в канал.
      * Проверяет права пользователя, сохраняет сообщение и транслирует его через WebSocket.
+     * Лимит сообщений и медленный режим проверяются до вызова, в
+     * {@link com.zvonok.service.ratelimit.MessageSendThrottle}.
      *
      * @throws InsufficientPermissionsException если у пользователя нет права отправлять сообщения
+     * @throws ChannelNotFoundException если канал не существует
      */
-    public ChannelMessageResponse sendChannelMessage(String senderUsername, Long channelId, String content) {
+    public ChannelMessageResponse sendChannelMessage(Long senderId, Long channelId, String content) {
+        if (!permissionService.canUserSendMessages(senderId, channelId)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+        }
+
         try {
-            User sender = userService.getUser(senderUsername);
+            // Отправитель нужен для имени в ответе: загрузка по первичному ключу
+            User sender = userService.getUser(senderId);
             Channel channel = channelService.getChannel(channelId);
 
-            if (!permissionService.canUserSendMessages(sender.getId(), channelId)) {
-                throw new InsufficientPermissionsException(
-                        HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
-            }
-
             Message message = createMessage(sender, content, null, channel);
-            Message savedMessage = messageRepository.save(message);
+            Message savedMessage = chatMetrics.persistTimer(MessageKind.CHANNEL).record(() -> persistNewMessage(message));
 
-            ChannelMessageResponse response = mapToChannelMessageResponse(savedMessage, channel);
+            readStateService.onChannelMessage(channelId, channel.getFolder().getServer().getId(),
+                    savedMessage.getId(), senderId, content);
+
+            ChannelMessageResponse response = channelMessageMapper.toResponse(savedMessage, channel);
             response.setEventType(EventType.MESSAGE);
 
             String topicDestination = "/topic/channel." + channelId;
-            messagingTemplate.convertAndSend(topicDestination, response);
+            chatMetrics.broadcastTimer(MessageKind.CHANNEL).record(() ->
+                    messageBroadcaster.toTopic(topicDestination, response));
 
             return response;
 
@@ -135,17 +166,16 @@ public class MessageService {
      * Только отправитель может редактировать свое сообщение.
      */
     @Transactional
-    public MessageResponse editMessage(Long messageId, String senderUsername, String newContent) {
+    public MessageResponse editMessage(Long messageId, Long senderId, String newContent) {
+        writeBehindQueue.awaitPersisted(messageId);
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new MessageNotFoundException(
                         String.format("%s (ID: %d)",
                                 HttpResponseMessage.HTTP_MESSAGE_NOT_FOUND_RESPONSE_MESSAGE.getMessage(),
                                 messageId)));
 
-        User sender = userService.getUser(senderUsername);
-
         // Проверяем, что пользователь является отправителем
-        if (!message.getSender().getId().equals(sender.getId())) {
+        if (!message.getSender().getId().equals(senderId)) {
             throw new InsufficientPermissionsException(
                     BusinessRuleMessage.BUSINESS_ONLY_SENDER_CAN_EDIT_MESSAGE.getMessage());
         }
@@ -166,11 +196,11 @@ public class MessageService {
 
         // Отправляем обновление через WebSocket
         if (savedMessage.getRoom() != null) {
-            messagingTemplate.convertAndSend("/topic/room." + savedMessage.getRoom().getId(), response);
+            broadcastToRoomMembers(savedMessage.getRoom().getId(), response);
         } else if (savedMessage.getChannel() != null) {
-            ChannelMessageResponse channelResponse = mapToChannelMessageResponse(savedMessage, savedMessage.getChannel());
+            ChannelMessageResponse channelResponse = channelMessageMapper.toResponse(savedMessage, savedMessage.getChannel());
             channelResponse.setEventType(EventType.MESSAGE_EDIT);
-            messagingTemplate.convertAndSend("/topic/channel." + savedMessage.getChannel().getId(), channelResponse);
+            messageBroadcaster.toTopic("/topic/channel." + savedMessage.getChannel().getId(), channelResponse);
         }
 
         return response;
@@ -181,23 +211,22 @@ public class MessageService {
      * Только отправитель или администратор может удалить сообщение.
      */
     @Transactional
-    public void deleteMessage(Long messageId, String username) {
+    public void deleteMessage(Long messageId, Long userId) {
+        writeBehindQueue.awaitPersisted(messageId);
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new MessageNotFoundException(
                         String.format("%s (ID: %d)",
                                 HttpResponseMessage.HTTP_MESSAGE_NOT_FOUND_RESPONSE_MESSAGE.getMessage(),
                                 messageId)));
 
-        User user = userService.getUser(username);
-
         // Проверяем, что пользователь является отправителем или имеет права администратора
-        boolean isSender = message.getSender().getId().equals(user.getId());
+        boolean isSender = message.getSender().getId().equals(userId);
         boolean isAdmin = false;
 
         if (message.getChannel() != null) {
-            isAdmin = permissionService.hasPermissionInServer(user.getId(), 
+            isAdmin = permissionService.hasPermissionInServer(userId, 
                     message.getChannel().getFolder().getServer().getId(), 
-                    com.zvonok.service.dto.Permission.ADMINISTRATOR);
+                    Permission.ADMINISTRATOR);
         }
 
         if (!isSender && !isAdmin) {
@@ -212,18 +241,24 @@ public class MessageService {
         if (message.getRoom() != null) {
             MessageResponse response = mapToMessageResponse(message, message.getRoom().getId());
             response.setEventType(EventType.MESSAGE_DELETE);
-            messagingTemplate.convertAndSend("/topic/room." + message.getRoom().getId(), response);
+            broadcastToRoomMembers(message.getRoom().getId(), response);
         } else if (message.getChannel() != null) {
-            ChannelMessageResponse response = mapToChannelMessageResponse(message, message.getChannel());
+            ChannelMessageResponse response = channelMessageMapper.toResponse(message, message.getChannel());
             response.setEventType(EventType.MESSAGE_DELETE);
-            messagingTemplate.convertAndSend("/topic/channel." + message.getChannel().getId(), response);
+            messageBroadcaster.toTopic("/topic/channel." + message.getChannel().getId(), response);
         }
     }
 
+    /** Рассылает событие комнаты текущим участникам из индекса членства, как и новые сообщения. */
+    private void broadcastToRoomMembers(Long roomId, MessageResponse response) {
+        messageBroadcaster.toUsers(roomService.getRoomMembers(roomId).getUsernames(), "/queue/messages", response);
+    }
+
     /**
      * Получает сообщение по ID.
      */
     public Message getMessage(Long messageId) {
+        writeBehindQueue.awaitPersisted(messageId);
         return messageRepository.findById(messageId)
                 .orElseThrow(() -> new MessageNotFoundException(
                         String.format("%s (ID: %d)",
@@ -231,8 +266,98 @@ public class MessageService {
                                 messageId)));
     }
 
+    /**
+     * Returns a page of channel history using keyset pagination over (channel_id, id).
+     * Without cursors returns the latest messages; with {@code before} pages back in time,
+     * with {@code after} pages forward. Requires VIEW_CHANNEL and READ_MESSAGE_HISTORY.
+     *
+     * Возвращает страницу истории канала с keyset-пагинацией по (channel_id, id).
+     * Без курсоров возвращает последние сообщения; с {@code before} листает назад,
+     * с {@code after} — вперед. Требует прав VIEW_CHANNEL и READ_MESSAGE_HISTORY.
+     *
+     * @throws ChannelNotFoundException если канал не существует
+     * @throws InsufficientPermissionsException если у пользователя нет прав на чтение истории
+     */
+    @Transactional(readOnly = true)
+    public MessageHistoryResponse getChannelHistory(Long userId, Long channelId, Long before, Long after, Integer limit) {
+        long permissions = permissionService.getUserChannelPermissions(userId, channelId);
+        if (!Permission.hasPermission(permissions, Permission.VIEW_CHANNEL)
+                || !Permission.hasPermission(permissions, Permission.READ_MESSAGE_HISTORY)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+        }
+
+        int pageSize = normalizeHistoryLimit(limit);
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        long upperBound = before != null ? before : Long.MAX_VALUE;
+
+        List<MessageHistoryItem> items = after != null
+                ? messageRepository.findChannelHistoryAfter(channelId, after, upperBound, page)
+                : messageRepository.findChannelHistoryBefore(channelId, upperBound, page);
+
+        return toHistoryResponse(items, pageSize, after == null);
+    }
+
+    /**
+     * Возвращает страницу истории приватной или групповой комнаты с keyset-пагинацией по (room_id, id).
+     * Доступно только участникам комнаты.
+     *
+     * @throws InsufficientPermissionsException если пользователь не является участником комнаты
+     */
+    @Transactional(readOnly = true)
+    public MessageHistoryResponse getRoomHistory(Long userId, Long roomId, Long before, Long after, Integer limit) {
+        if (!roomService.isRoomMember(roomId, userId)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_USER_NOT_MEMBER_ROOM_RESPONSE_MESSAGE.getMessage());
+        }
+
+        int pageSize = normalizeHistoryLimit(limit);
+        PageRequest page = PageRequest.of(0, pageSize + 1);
+        long upperBound = before != null ? before : Long.MAX_VALUE;
+
+        List<MessageHistoryItem> items = after != null
+                ? messageRepository.findRoomHistoryAfter(roomId, after, upperBound, page)
+                : messageRepository.findRoomHistoryBefore(roomId, upperBound, page);
+
+        return toHistoryResponse(items, pageSize, after == null);
+    }
+
     // ===== PRIVATE HELPER METHODS =====
 
+    private int normalizeHistoryLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_HISTORY_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_HISTORY_LIMIT));
+    }
+
+    /**
+     * Обрезает лишнюю (pageSize + 1) запись, по которой определяется наличие следующей страницы,
+     * и приводит порядок к возрастанию ID.
+     */
+    private MessageHistoryResponse toHistoryResponse(List<MessageHistoryItem> items, int pageSize, boolean descending) {
+        boolean hasMore = items.size() > pageSize;
+        List<MessageHistoryItem> messages = new ArrayList<>(hasMore ? items.subList(0, pageSize) : items);
+        if (descending) {
+            Collections.reverse(messages);
+        }
+        return MessageHistoryResponse.builder()
+                .messages(messages)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Сохраняет новое сообщение: сразу через JPA или через очередь отложенной записи,
+     * если включен app.message.write-behind.enabled. В обоих случаях id известен до рассылки.
+     */
+    private Message persistNewMessage(Message message) {
+        if (writeBehindQueue.isEnabled()) {
+            return writeBehindQueue.submit(message);
+        }
+        return messageRepository.save(message);
+    }
+
     /**
      * Создает новое сообщение с заданными параметрами.
      */
@@ -254,34 +379,20 @@ public class MessageService {
      * Преобразует Message в MessageResponse для комнат.
      */
     private MessageResponse mapToMessageResponse(Message message, Long roomId) {
-        MessageResponse response = new MessageResponse();
-        response.setId(message.getId());
-        response.setContent(message.getContent());
-        response.setSenderUsername(message.getSender().getUsername());
-        response.setSentAt(message.getSentAt());
-        response.setMessageType(message.getType());
-        response.setRoomId(roomId);
-        return response;
+        return mapToMessageResponse(message, roomId, message.getSender().getUsername());
     }
 
     /**
-     * Преобразует Message в ChannelMessageResponse для каналов.
+     * Преобразует Message в MessageResponse с известным именем отправителя, не инициализируя его прокси.
      */
-    private ChannelMessageResponse mapToChannelMessageResponse(Message message, Channel channel) {
-        ChannelMessageResponse response = new ChannelMessageResponse();
+    private MessageResponse mapToMessageResponse(Message message, Long roomId, String senderUsername) {
+        MessageResponse response = new MessageResponse();
         response.setId(message.getId());
         response.setContent(message.getContent());
-        response.setSenderUsername(message.getSender().getUsername());
-        response.setSenderId(message.getSender().getId());
+        response.setSenderUsername(senderUsername);
         response.setSentAt(message.getSentAt());
         response.setMessageType(message.getType());
-        response.setChannelId(channel.getId());
-        response.setChannelName(channel.getName());
-        response.setServerId(channel.getFolder().getServer().getId());
-        response.setIsEdited(message.isEdited());
-        if (message.getReplyToMessage() != null) {
-            response.setReplyToMessageId(message.getReplyToMessage().getId().toString());
-        }
+        response.setRoomId(roomId);
         return response;
     }
 }
@@ -1,17 +1,31 @@
 package com.zvonok.service;
 
+import com.zvonok.exception.ChannelNotFoundException;
 import com.zvonok.model.*;
 import com.zvonok.repository.ChannelPermissionOverrideRepository;
+import com.zvonok.repository.ChannelRepository;
 import com.zvonok.repository.FolderPermissionOverrideRepository;
 import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.service.cache.ChannelPermissionCache;
 import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.PermissionOverrideMask;
+import com.zvonok.service.dto.response.ChannelSnapshot;
+import com.zvonok.service.metrics.ChatMetrics;
+import com.zvonok.service.metrics.ChatMetrics.PermissionScope;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -27,17 +41,30 @@ public class PermissionService {
     private final ServerMemberRepository memberRepository;
     private final ChannelPermissionOverrideRepository channelOverrideRepository;
     private final FolderPermissionOverrideRepository folderOverrideRepository;
+    private final ChannelRepository channelRepository;
     private final ChannelService channelService;
+    private final ChannelPermissionCache channelPermissionCache;
+    private final ChatMetrics chatMetrics;
+    private final TransactionTemplate readOnlyTransaction;
 
     public PermissionService(
             ServerMemberRepository memberRepository,
             ChannelPermissionOverrideRepository channelOverrideRepository,
             FolderPermissionOverrideRepository folderOverrideRepository,
-            @Lazy ChannelService channelService) {
+            ChannelRepository channelRepository,
+            @Lazy ChannelService channelService,
+            ChannelPermissionCache channelPermissionCache,
+            ChatMetrics chatMetrics,
+            PlatformTransactionManager transactionManager) {
         this.memberRepository = memberRepository;
         this.channelOverrideRepository = channelOverrideRepository;
         this.folderOverrideRepository = folderOverrideRepository;
+        this.channelRepository = channelRepository;
         this.channelService = channelService;
+        this.channelPermissionCache = channelPermissionCache;
+        this.chatMetrics = chatMetrics;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -113,29 +140,23 @@ public class PermissionService {
      *         true, если у пользователя есть право, иначе false
      */
     public boolean hasPermissionInServer(Long userId, Long serverId, Permission permission) {
-        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndServerId(userId, serverId);
-        if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
-            return false;
-        }
-
-        ServerMember member = optionalMember.get();
-        List<ServerRole> userRoles = getUserRoles(member);
-
-        // Админы могут все
-        if (hasAdminRole(userRoles)) {
-            return true;
+        Timer.Sample sample = Timer.start();
+        try {
+            return checkServerPermission(userId, serverId, permission);
+        } finally {
+            sample.stop(chatMetrics.permissionTimer(PermissionScope.SERVER));
         }
-
-        return calculateServerPermissions(member, userRoles, permission);
     }
 
     /**
      * Main method for checking permissions in a channel.
-     * Validates that the user is an active member, then calculates permissions considering:
+     * Uses the effective permission mask from {@link ChannelPermissionCache}; on a cache miss
+     * validates that the user is an active member, then calculates permissions considering:
      * role permissions, folder permissions, channel overrides, and personal permissions.
      *
      * Основной метод проверки прав в канале.
-     * Проверяет, что пользователь является активным участником, затем рассчитывает права с учетом:
+     * Использует итоговую маску прав из {@link ChannelPermissionCache}; при промахе кэша
+     * проверяет, что пользователь является активным участником, затем рассчитывает права с учетом:
      * прав ролей, прав папки, переопределений канала и персональных прав.
      *
      * @param userId      the unique identifier of the user
@@ -146,21 +167,106 @@ public class PermissionService {
      *                    право для проверки
      * @return true if user has the permission, false otherwise
      *         true, если у пользователя есть право, иначе false
+     * @throws ChannelNotFoundException if the channel does not exist
+     *                                  если канал не существует
      */
     public boolean hasPermissionInChannel(Long userId, Long channelId, Permission permission) {
-        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndChannelId(userId, channelId);
+        Timer.Sample sample = Timer.start();
+        try {
+            return Permission.hasPermission(getUserChannelPermissions(userId, channelId), permission);
+        } finally {
+            sample.stop(chatMetrics.permissionTimer(PermissionScope.CHANNEL));
+        }
+    }
+
+    /**
+     * Gets the effective permission mask of a user in a channel (denies already applied).
+     * Administrators get all bits set.
+     *
+     * Получает итоговую маску прав пользователя в канале (запреты уже применены).
+     * Для администраторов установлены все биты.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @return effective permission mask (0L if user is not an active member)
+     *         итоговая маска прав (0L, если пользователь не является активным участником)
+     * @throws ChannelNotFoundException if the channel does not exist
+     *                                  если канал не существует
+     */
+    public long getUserChannelPermissions(Long userId, Long channelId) {
+        // Промах кэша загружает участника с ролями; вызовы вне транзакции (STOMP) получают свою
+        return channelPermissionCache.getPermissions(userId, channelId,
+                () -> readOnlyTransaction.execute(status -> resolveChannelPermissions(userId, channelId)));
+    }
+
+    /**
+     * Returns the active channels of a server in which the user holds all of the given permissions.
+     * Computed in bulk with a fixed number of queries (member, channels, folder and channel overrides)
+     * regardless of the number of channels; the fold is the same as in the per-channel check.
+     *
+     * Возвращает активные каналы сервера, в которых у пользователя есть все указанные права.
+     * Рассчитывается пакетно фиксированным числом запросов (участник, каналы, переопределения папок
+     * и каналов) независимо от количества каналов; свертка та же, что и при проверке одного канала.
+     *
+     * @param userId       the unique identifier of the user
+     *                     уникальный идентификатор пользователя
+     * @param serverId     the unique identifier of the server
+     *                     уникальный идентификатор сервера
+     * @param permissions  permissions required in each returned channel
+     *                     права, необходимые в каждом возвращаемом канале
+     * @return ids of matching channels (empty if the user is not an active member)
+     *         идентификаторы подходящих каналов (пусто, если пользователь не является активным участником)
+     */
+    public Set<Long> getChannelIdsWithPermissions(Long userId, Long serverId, Permission... permissions) {
+        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndServerId(userId, serverId);
         if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
-            return false;
+            return Set.of();
         }
 
         ServerMember member = optionalMember.get();
         List<ServerRole> userRoles = getUserRoles(member);
+        List<ChannelSnapshot> channels = channelRepository.findSnapshotsByServerIds(Set.of(serverId));
+        Set<Long> result = new HashSet<>();
 
         if (hasAdminRole(userRoles)) {
-            return true;
+            channels.forEach(channel -> result.add(channel.getId()));
+            return result;
+        }
+
+        long rolePermissions = 0L;
+        Set<Long> roleIds = new HashSet<>();
+        for (ServerRole role : userRoles) {
+            rolePermissions |= role.getServerPermissions();
+            roleIds.add(role.getId());
+        }
+        // Пустой список в IN недопустим для части СУБД, поэтому подставляем несуществующий id
+        if (roleIds.isEmpty()) {
+            roleIds.add(-1L);
+        }
+
+        Map<Long, long[]> folderOverrides = foldOverrides(
+                folderOverrideRepository.findMasksForUser(Set.of(serverId), roleIds, userId));
+        Map<Long, long[]> channelOverrides = foldOverrides(
+                channelOverrideRepository.findMasksForUser(Set.of(serverId), roleIds, userId));
+
+        long required = 0L;
+        for (Permission permission : permissions) {
+            required |= permission.getValue();
         }
 
-        return calculateChannelPermissions(member, userRoles, channelId, permission);
+        long[] noOverride = {0L, 0L};
+        for (ChannelSnapshot channel : channels) {
+            long[] folder = folderOverrides.getOrDefault(channel.getFolderId(), noOverride);
+            long[] own = channelOverrides.getOrDefault(channel.getId(), noOverride);
+            long mask = channelPermissionMask(rolePermissions, member.getPersonalPermissions(),
+                    folder[0] & ~folder[1], own[0], own[1]);
+            if ((mask & required) == required) {
+                result.add(channel.getId());
+            }
+        }
+        return result;
     }
 
     /**
@@ -182,19 +288,12 @@ public class PermissionService {
      *         true, если у пользователя есть право, иначе false
      */
     public boolean hasPermissionInFolder(Long userId, Long folderId, Permission permission) {
-        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndFolderId(userId, folderId);
-        if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
-            return false;
+        Timer.Sample sample = Timer.start();
+        try {
+            return checkFolderPermission(userId, folderId, permission);
+        } finally {
+            sample.stop(chatMetrics.permissionTimer(PermissionScope.FOLDER));
         }
-
-        ServerMember member = optionalMember.get();
-        List<ServerRole> userRoles = getUserRoles(member);
-
-        if (hasAdminRole(userRoles)) {
-            return true;
-        }
-
-        return calculateFolderPermissions(member, userRoles, folderId, permission);
     }
 
     /**
@@ -371,6 +470,49 @@ public class PermissionService {
 
     // ===== PRIVATE HELPER METHODS =====
 
+    /**
+     * Server-level check without the timer: membership, administrator shortcut, then roles and personal permissions.
+     *
+     * Проверка на уровне сервера без таймера: членство, короткий путь администратора, затем роли и персональные права.
+     */
+    private boolean checkServerPermission(Long userId, Long serverId, Permission permission) {
+        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndServerId(userId, serverId);
+        if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
+            return false;
+        }
+
+        ServerMember member = optionalMember.get();
+        List<ServerRole> userRoles = getUserRoles(member);
+
+        // Админы могут все
+        if (hasAdminRole(userRoles)) {
+            return true;
+        }
+
+        return calculateServerPermissions(member, userRoles, permission);
+    }
+
+    /**
+     * Folder-level check without the timer: membership, administrator shortcut, then folder overrides.
+     *
+     * Проверка на уровне папки без таймера: членство, короткий путь администратора, затем переопределения папки.
+     */
+    private boolean checkFolderPermission(Long userId, Long folderId, Permission permission) {
+        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndFolderId(userId, folderId);
+        if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
+            return false;
+        }
+
+        ServerMember member = optionalMember.get();
+        List<ServerRole> userRoles = getUserRoles(member);
+
+        if (hasAdminRole(userRoles)) {
+            return true;
+        }
+
+        return calculateFolderPermissions(member, userRoles, folderId, permission);
+    }
+
     /**
      * Calculates server-level permissions for a member based on roles and personal permissions.
      *
@@ -422,26 +564,43 @@ public class PermissionService {
      *         true, если участник имеет право, иначе false
      */
     public boolean calculateChannelPermissions(ServerMember member, List<ServerRole> roles, Long channelId, Permission permission) {
-        Long permValue = permission.getValue();
+        Channel channel = channelService.getChannel(channelId);
+        return Permission.hasPermission(calculateChannelPermissionsValue(member, roles, channel), permission);
+    }
+
+    /**
+     * Calculates the effective channel permission mask for a member (allowed minus denied).
+     *
+     * Рассчитывает итоговую маску прав участника в канале (разрешенные минус запрещенные).
+     *
+     * @param member   the server member
+     *                 участник сервера
+     * @param roles    list of user's roles
+     *                 список ролей пользователя
+     * @param channel  the channel
+     *                 канал
+     * @return effective permission mask
+     *         итоговая маска прав
+     */
+    private long calculateChannelPermissionsValue(ServerMember member, List<ServerRole> roles, Channel channel) {
+        Long channelId = channel.getId();
 
         // Шаг 1: Базовые разрешения от ролей
-        Long basePermissions = 0L;
+        long basePermissions = 0L;
         for (ServerRole role : roles) {
             basePermissions |= role.getServerPermissions();
         }
 
         // Шаг 2: Разрешения папки (наследуются каналом)
-        Channel channel = channelService.getChannel(channelId);
         ChannelFolder folder = channel.getFolder();
 
         long folderPermissions = calculateFolderPermissionsValue(member, roles, folder.getId());
-        basePermissions |= folderPermissions;
 
         // Шаг 3: Переопределения канала для ролей
         List<ChannelPermissionOverride> roleOverrides =
                 channelOverrideRepository.findByChannelIdAndRoleIn(channelId, roles);
 
-        long channelAllowed = basePermissions;
+        long channelAllowed = 0L;
         long channelDenied = 0L;
 
         for (ChannelPermissionOverride override : roleOverrides) {
@@ -459,15 +618,73 @@ public class PermissionService {
             channelDenied |= channelOverride.getDeniedPermissions();
         }
 
-        // Шаг 5: Персональные разрешения участника
-        channelAllowed |= member.getPersonalPermissions();
+        // Шаги 5-6: персональные разрешения участника, запреты приоритетнее разрешений
+        return channelPermissionMask(basePermissions, member.getPersonalPermissions(),
+                folderPermissions, channelAllowed, channelDenied);
+    }
+
+    /**
+     * Folds channel permissions: role permissions, the folder value (folder allows minus folder denies),
+     * channel allows and personal permissions, minus channel denies. Shared by the per-channel
+     * check and batch calculations over preloaded overrides.
+     *
+     * Свертка прав канала: права ролей, значение папки (разрешения папки минус ее запреты),
+     * разрешения канала и персональные права, минус запреты канала. Общая для проверки одного
+     * канала и пакетного расчета по заранее загруженным переопределениям.
+     *
+     * @return effective permission mask
+     *         итоговая маска прав
+     */
+    public static long channelPermissionMask(long rolePermissions, long personalPermissions, long folderPermissions,
+                                             long channelAllowed, long channelDenied) {
+        return (rolePermissions | folderPermissions | channelAllowed | personalPermissions) & ~channelDenied;
+    }
+
+    /**
+     * Folds folder permissions: role permissions, folder allows and personal permissions, minus folder denies.
+     *
+     * Свертка прав папки: права ролей, разрешения папки и персональные права, минус запреты папки.
+     *
+     * @return effective permission mask
+     *         итоговая маска прав
+     */
+    public static long folderPermissionMask(long rolePermissions, long personalPermissions,
+                                            long folderAllowed, long folderDenied) {
+        return (rolePermissions | folderAllowed | personalPermissions) & ~folderDenied;
+    }
+
+    /**
+     * Loads the channel and the member and computes the cache entry for the channel.
+     * A missing channel fails with 404 before the membership check, so it is not reported as 403.
+     *
+     * Загружает канал и участника и рассчитывает запись кэша для канала.
+     * Отсутствующий канал дает 404 до проверки членства, а не 403.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @return cache entry with the effective permission mask
+     *         запись кэша с итоговой маской прав
+     */
+    private ChannelPermissionCache.Entry resolveChannelPermissions(Long userId, Long channelId) {
+        Channel channel = channelService.getChannel(channelId);
+        Optional<ServerMember> optionalMember = memberRepository.findByUserIdAndChannelId(userId, channelId);
+        if (optionalMember.isEmpty() || !optionalMember.get().getIsActive()) {
+            return ChannelPermissionCache.Entry.notMember();
+        }
+
+        ServerMember member = optionalMember.get();
+        List<ServerRole> userRoles = getUserRoles(member);
+        Long serverId = member.getServer().getId();
+        Long folderId = channel.getFolder().getId();
 
-        // Шаг 6: Финальная проверка (запреты приоритетнее)
-        if ((channelDenied & permValue) != 0) {
-            return false; // Явно запрещено
+        if (hasAdminRole(userRoles)) {
+            return new ChannelPermissionCache.Entry(serverId, folderId, ChannelPermissionCache.ALL_PERMISSIONS);
         }
 
-        return (channelAllowed & permValue) != 0; // Разрешено
+        return new ChannelPermissionCache.Entry(serverId, folderId,
+                calculateChannelPermissionsValue(member, userRoles, channel));
     }
 
     /**
@@ -504,7 +721,7 @@ public class PermissionService {
         List<FolderPermissionOverride> roleOverrides =
                 folderOverrideRepository.findByFolderIdAndRoleIn(folderId, roles);
 
-        long folderAllowed = basePermissions;
+        long folderAllowed = 0L;
         long folderDenied = 0L;
 
         for (FolderPermissionOverride override : roleOverrides) {
@@ -522,15 +739,10 @@ public class PermissionService {
             folderDenied |= userOverride.getDeniedPermissions();
         }
 
-        // Шаг 4: Персональные разрешения участника
-        folderAllowed |= member.getPersonalPermissions();
-
-        // Шаг 5: Финальная проверка (запреты приоритетнее)
-        if ((folderDenied & permValue) != 0) {
-            return false; // Явно запрещено
-        }
-
-        return (folderAllowed & permValue) != 0; // Разрешено
+        // Шаги 4-5: персональные разрешения участника, запреты приоритетнее
+        long folderPermissions = folderPermissionMask(basePermissions, member.getPersonalPermissions(),
+                folderAllowed, folderDenied);
+        return (folderPermissions & permValue) != 0;
     }
 
     /**
@@ -574,6 +786,23 @@ public class PermissionService {
         return allowed & ~denied; // Возвращаем разрешения минус запреты
     }
 
+    /**
+     * Merges override masks by target (folder or channel): allows and denies are OR-ed separately.
+     * Shared with the batch calculation of the READY snapshot.
+     *
+     * Объединяет маски переопределений по цели (папке или каналу): разрешения и запреты складываются отдельно.
+     * Общий с пакетным расчетом стартового снимка.
+     */
+    static Map<Long, long[]> foldOverrides(List<PermissionOverrideMask> masks) {
+        Map<Long, long[]> result = new HashMap<>();
+        for (PermissionOverrideMask mask : masks) {
+            long[] value = result.computeIfAbsent(mask.getTargetId(), id -> new long[2]);
+            value[0] |= mask.getAllowedPermissions();
+            value[1] |= mask.getDeniedPermissions();
+        }
+        return result;
+    }
+
     /**
      * Gets all active roles assigned to a server member.
      *
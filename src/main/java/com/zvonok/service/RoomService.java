@@ -9,25 +9,52 @@ import com.zvonok.model.Room;
 import com.zvonok.model.User;
 import com.zvonok.model.enumeration.RoomType;
 import com.zvonok.repository.RoomRepository;
-import lombok.RequiredArgsConstructor;
+import com.zvonok.service.cache.PrivateRoomCache;
+import com.zvonok.service.cache.RoomMemberCache;
+import com.zvonok.service.dto.PrivateRoomInfo;
+import com.zvonok.service.dto.RoomMembers;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing private and group chat rooms.
  * Сервис для управления приватными и групповыми чат-комнатами.
  */
 @Service
-@RequiredArgsConstructor
+@Slf4j
 public class RoomService {
 
     private final RoomRepository roomRepository;
     private final UserService userService;
+    private final RoomMemberCache roomMemberCache;
+    private final PrivateRoomCache privateRoomCache;
+    private final TransactionTemplate requiresNewTransaction;
+
+    public RoomService(
+            RoomRepository roomRepository,
+            UserService userService,
+            RoomMemberCache roomMemberCache,
+            PrivateRoomCache privateRoomCache,
+            PlatformTransactionManager transactionManager) {
+        this.roomRepository = roomRepository;
+        this.userService = userService;
+        this.roomMemberCache = roomMemberCache;
+        this.privateRoomCache = privateRoomCache;
+        this.requiresNewTransaction = new TransactionTemplate(transactionManager);
+        this.requiresNewTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     /** Получает комнату по ID. */
     public Room getRoom(Long id) {
@@ -36,42 +63,49 @@ public class RoomService {
                         HttpResponseMessage.HTTP_ROOM_NOT_FOUND_RESPONSE_MESSAGE.getMessage()));
     }
 
+    /** Проверяет, является ли пользователь участником активной комнаты, по индексу членства. */
+    public boolean isRoomMember(Long roomId, Long userId) {
+        return roomMemberCache.isMember(roomId, userId);
+    }
+
+    /** Участники активной комнаты из индекса членства; пусто, если комнаты нет или она неактивна. */
+    public RoomMembers getRoomMembers(Long roomId) {
+        return roomMemberCache.getMembers(roomId);
+    }
+
     /**
-     * Creates or retrieves an existing private room between two users.
-     * If a private room already exists between the users, it is returned.
-     * Otherwise, a new private room is created.
+     * Resolves the private room between two users, creating it on the first message.
+     * The room is found by its normalized (lower id, higher id) pair through {@link PrivateRoomCache},
+     * so after warm-up no query is made. A new room is inserted in its own transaction: when two first
+     * messages race, the unique index on the pair rejects the second insert and the room committed
+     * by the first one is returned.
      *
-     * Создает или получает существующую приватную комнату между двумя пользователями.
-     * Если приватная комната уже существует между пользователями, она возвращается.
-     * В противном случае создается новая приватная комната.
+     * Находит приватную комнату двух пользователей, создавая ее при первом сообщении.
+     * Комната ищется по нормализованной паре (меньший id, больший id) через {@link PrivateRoomCache},
+     * поэтому после прогрева запросов нет. Новая комната вставляется в отдельной транзакции: при гонке
+     * двух первых сообщений уникальный индекс пары отклоняет вторую вставку, и возвращается комната,
+     * закоммиченная первой.
      *
-     * @param username1  the username of the first user
-     *                   имя пользователя первого пользователя
-     * @param username2  the username of the second user
-     *                   имя пользователя второго пользователя
-     * @return Room entity (existing or newly created)
-     *         сущность Room (существующая или вновь созданная)
+     * @param userId         the ID of the first user (the current user)
+     *                       идентификатор первого пользователя (текущего)
+     * @param otherUsername  the username of the second user
+     *                       имя пользователя второго пользователя
+     * @return the room id with both members
+     *         id комнаты с обоими участниками
      * @throws UserNotFoundException if either user does not exist
      *                               если один из пользователей не существует
      */
-    public Room createOrGetPrivateRoom(String username1, String username2) {
-        User user1 = userService.getUser(username1);
-        User user2 = userService.getUser(username2);
-
-        Optional<Room> existingRoom = findPrivateRoomBetweenUsers(user1.getId(), user2.getId());
-        if (existingRoom.isPresent()) {
-            return existingRoom.get();
+    public PrivateRoomInfo resolvePrivateRoom(Long userId, String otherUsername) {
+        Long otherUserId = privateRoomCache.getUserId(otherUsername);
+        if (otherUserId == null) {
+            throw new UserNotFoundException(HttpResponseMessage.HTTP_USER_NOT_FOUND_RESPONSE_MESSAGE.getMessage());
         }
+        return privateRoomCache.getRoom(userId, otherUserId, this::findOrCreatePrivateRoom);
+    }
 
-        Room room = new Room();
-        // У приватных комнат нет названия (name = null), так как это приватная комната
-        room.setName(null);
-        room.setType(RoomType.PRIVATE);
-        room.setIsActive(true);
-        room.setCreateAt(LocalDateTime.now());
-        room.setMembers(Arrays.asList(user1, user2));
-
-        return roomRepository.save(room);
+    /** Ссылка на комнату без запроса к БД, для связей новых сущностей. */
+    public Room getRoomReference(Long roomId) {
+        return roomRepository.getReferenceById(roomId);
     }
 
     /**
@@ -102,9 +136,9 @@ public class RoomService {
         // Получаем пользователей по именам через UserService
         List<User> members = roomMemberUsernames.stream()
                 .map(userService::getUser)
-                .toList();
+                .collect(Collectors.toCollection(ArrayList::new));
 
-        if (!members.contains(creator)) {
+        if (members.stream().noneMatch(member -> member.getId().equals(creator.getId()))) {
             members.add(creator);
         }
 
@@ -120,11 +154,54 @@ public class RoomService {
         room.setCreateAt(LocalDateTime.now());
         room.setMembers(members);
 
-        return roomRepository.save(room);
+        Room savedRoom = roomRepository.save(room);
+        roomMemberCache.evictRoom(savedRoom.getId());
+        return savedRoom;
     }
 
-    private Optional<Room> findPrivateRoomBetweenUsers(Long user1, Long user2) {
-        return roomRepository.findPrivateRoomBetweenUsers(user1, user2);
+    private PrivateRoomInfo findOrCreatePrivateRoom(Long lowUserId, Long highUserId) {
+        Optional<PrivateRoomInfo> existingRoom = roomRepository.findPrivateRoomByPair(lowUserId, highUserId);
+        if (existingRoom.isPresent()) {
+            return existingRoom.get();
+        }
+
+        try {
+            requiresNewTransaction.executeWithoutResult(status -> createPrivateRoom(lowUserId, highUserId));
+        } catch (DataIntegrityViolationException e) {
+            // Комнату пары уже создал параллельный запрос; если ее нет, нарушено другое ограничение
+            log.debug("Private room {}-{} was created concurrently", lowUserId, highUserId);
+        }
+        return roomRepository.findPrivateRoomByPair(lowUserId, highUserId)
+                .orElseThrow(() -> new IllegalStateException(
+                        "Private room " + lowUserId + "-" + highUserId + " was not created"));
+    }
+
+    private void createPrivateRoom(Long lowUserId, Long highUserId) {
+        User user1 = userService.getUser(lowUserId);
+        User user2 = userService.getUser(highUserId);
+
+        Room room = new Room();
+        // У приватных комнат нет названия (name = null), так как это приватная комната
+        room.setName(null);
+        room.setType(RoomType.PRIVATE);
+        room.setIsActive(true);
+        room.setCreateAt(LocalDateTime.now());
+        room.setMembers(Arrays.asList(user1, user2));
+        room.setDmUserLowId(lowUserId);
+        room.setDmUserHighId(highUserId);
+
+        roomRepository.saveAndFlush(room);
+        roomMemberCache.evictRoom(room.getId());
+    }
+
+    /** Освобождает пару приватной комнаты: следующее личное сообщение создаст новую комнату, как раньше. */
+    private void releasePrivatePair(Room room) {
+        if (room.getDmUserLowId() == null) {
+            return;
+        }
+        privateRoomCache.evictRoom(room.getDmUserLowId(), room.getDmUserHighId());
+        room.setDmUserLowId(null);
+        room.setDmUserHighId(null);
     }
 
     /** Получает все активные комнаты, участником которых является пользователь. */
@@ -154,12 +231,14 @@ public class RoomService {
         Room room = getRoom(roomId);
 
         room.getMembers().remove(user);
+        releasePrivatePair(room);
 
         if (room.getMembers().isEmpty()) {
             room.setIsActive(false);
         }
 
         roomRepository.save(room);
+        roomMemberCache.evictRoom(roomId);
     }
 
     /**
@@ -167,14 +246,11 @@ public class RoomService {
      * Updates room data.
      */
     @Transactional
-    public Room updateRoom(Long roomId, String username, String newName) {
-        User user = userService.getUser(username);
+    public Room updateRoom(Long roomId, Long userId, String newName) {
         Room room = getRoom(roomId);
 
-        // Проверяем, что пользователь является участником комнаты
-        boolean isMember = room.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(user.getId()));
-        if (!isMember) {
+        // Проверяем членство по индексу, не загружая список участников
+        if (!roomMemberCache.isMember(roomId, userId)) {
             throw new InsufficientPermissionsException("Пользователь не является участником комнаты");
         }
 
@@ -190,20 +266,19 @@ public class RoomService {
      * Deletes a room (marks as inactive and removes all members).
      */
     @Transactional
-    public void deleteRoom(Long roomId, String username) {
-        User user = userService.getUser(username);
+    public void deleteRoom(Long roomId, Long userId) {
         Room room = getRoom(roomId);
 
-        // Проверяем, что пользователь является участником комнаты
-        boolean isMember = room.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(user.getId()));
-        if (!isMember) {
+        // Проверяем членство по индексу, не загружая список участников
+        if (!roomMemberCache.isMember(roomId, userId)) {
             throw new InsufficientPermissionsException("Пользователь не является участником комнаты");
         }
 
         // Помечаем комнату как неактивную и очищаем участников
         room.setIsActive(false);
         room.getMembers().clear();
+        releasePrivatePair(room);
         roomRepository.save(room);
+        roomMemberCache.evictRoom(roomId);
     }
 }
@@ -96,9 +96,7 @@ public class ServerBanService {
         // деактивируем участника, если он есть
         try {
             ServerMember member = serverMemberService.getServerMember(targetUserId, serverId);
-            member.setIsActive(false);
-            member.setLeftAt(LocalDateTime.now());
-            serverMemberService.updateServerMember(member);
+            serverMemberService.deactivateServerMember(member);
         } catch (ServerMemberNotFoundException ignored) {
             // Пользователь мог не быть участником - пропускаем
         }
@@ -6,12 +6,15 @@ import com.zvonok.model.ServerMember;
 import com.zvonok.model.ServerMemberRole;
 import com.zvonok.model.ServerRole;
 import com.zvonok.repository.ServerMemberRoleRepository;
+import com.zvonok.service.cache.ChannelPermissionCache;
+import com.zvonok.service.memberlist.MemberListService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -26,6 +29,8 @@ public class ServerMemberRoleService {
     private final ServerMemberService serverMemberService;
     private final ServerRoleService serverRoleService;
     private final UserService userService;
+    private final ChannelPermissionCache channelPermissionCache;
+    private final MemberListService memberListService;
 
     /** Получает связь участника сервера с ролью по ID. */
     public ServerMemberRole getServerMemberRole(Long serverMemberRoleId) {
@@ -54,6 +59,7 @@ public class ServerMemberRoleService {
 
         ServerMemberRole saved = serverMemberRoleRepository.save(serverMemberRole);
         member.getMemberRoles().add(saved);
+        evictMemberPermissions(member);
         return saved;
     }
 
@@ -62,8 +68,12 @@ public class ServerMemberRoleService {
      * Сущности участника и роли предоставляются напрямую.
      */
     public ServerMemberRole createServerMemberRole(ServerMember member, ServerRole role, Long assignedById) {
-        if (hasRoleAssigned(member.getId(), role.getId())) {
-            return serverMemberRoleRepository.findByMemberIdAndRoleId(member.getId(), role.getId()).get();
+        // Проверка по коллекции участника: для только что созданного участника без запроса и без flush
+        Optional<ServerMemberRole> assigned = member.getMemberRoles().stream()
+                .filter(memberRole -> memberRole.getRole().getId().equals(role.getId()))
+                .findFirst();
+        if (assigned.isPresent()) {
+            return assigned.get();
         }
 
         ServerMemberRole serverMemberRole = new ServerMemberRole();
@@ -74,6 +84,7 @@ public class ServerMemberRoleService {
 
         ServerMemberRole saved = serverMemberRoleRepository.save(serverMemberRole);
         member.getMemberRoles().add(saved);
+        evictMemberPermissions(member);
         return saved;
     }
 
@@ -85,6 +96,7 @@ public class ServerMemberRoleService {
                         HttpResponseMessage.HTTP_SERVER_MEMBER_ROLE_NOT_FOUND_RESPONSE_MESSAGE.getMessage()));
         memberRole.getMember().getMemberRoles().removeIf(mr -> mr.getId().equals(memberRole.getId()));
         serverMemberRoleRepository.delete(memberRole);
+        evictMemberPermissions(memberRole.getMember());
     }
 
     /** Получает список ролей участника (идентификаторы ролей). */
@@ -98,4 +110,10 @@ public class ServerMemberRoleService {
     public boolean hasRoleAssigned(Long memberId, Long roleId) {
         return serverMemberRoleRepository.findByMemberIdAndRoleId(memberId, roleId).isPresent();
     }
+
+    private void evictMemberPermissions(ServerMember member) {
+        channelPermissionCache.evictMember(member.getUser().getId(), member.getServer().getId());
+        // Роли определяют группу участника в списке
+        memberListService.memberChanged(member.getServer().getId(), member.getUser().getId());
+    }
 }
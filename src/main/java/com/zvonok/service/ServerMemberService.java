@@ -1,17 +1,24 @@
 package com.zvonok.service;
 
+import com.zvonok.exception.ServerMemberLimitReachedException;
 import com.zvonok.exception.ServerMemberNotFoundException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.Server;
 import com.zvonok.model.ServerMember;
 import com.zvonok.model.User;
 import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.repository.ServerRepository;
+import com.zvonok.service.cache.ChannelPermissionCache;
 import com.zvonok.service.dto.Permission;
+import com.zvonok.service.memberlist.MemberListService;
+import com.zvonok.service.voice.VoiceStateService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Service for managing server members and member-related operations.
@@ -22,7 +29,11 @@ import java.util.List;
 public class ServerMemberService {
 
     private final ServerMemberRepository serverMemberRepository;
+    private final ServerRepository serverRepository;
     private final UserService userService;
+    private final ChannelPermissionCache channelPermissionCache;
+    private final VoiceStateService voiceStateService;
+    private final MemberListService memberListService;
 
     /** Получает участника сервера по ID. */
     public ServerMember getServerMember(Long id) {
@@ -47,15 +58,20 @@ public class ServerMemberService {
 
     /** Обновляет участника сервера. */
     public ServerMember updateServerMember(ServerMember serverMember) {
-        return serverMemberRepository.save(serverMember);
+        ServerMember saved = serverMemberRepository.save(serverMember);
+        memberListService.memberChanged(saved.getServer().getId(), saved.getUser().getId());
+        return saved;
     }
 
     /**
      * Создает нового участника сервера для пользователя.
      * Пользователь получается по ID, участник создается с правами по умолчанию (NOTHING).
+     *
+     * @throws ServerMemberLimitReachedException если сервер заполнен
      */
     public ServerMember createServerMember(Server server, Long userId) {
         User user = userService.getUser(userId);
+        occupySeat(server);
 
         ServerMember member = new ServerMember();
         member.setUser(user);
@@ -63,26 +79,71 @@ public class ServerMemberService {
         member.setPersonalPermissions(Permission.NOTHING.getValue());
         member.setJoinedAt(LocalDateTime.now());
 
-        return serverMemberRepository.save(member);
+        ServerMember saved = serverMemberRepository.save(member);
+        channelPermissionCache.evictMember(user.getId(), server.getId());
+        memberListService.memberChanged(server.getId(), user.getId());
+        return saved;
     }
 
     /**
      * Создает нового участника сервера для пользователя.
      * Сущность пользователя предоставляется напрямую, участник создается с правами по умолчанию (NOTHING).
+     *
+     * @throws ServerMemberLimitReachedException если сервер заполнен
      */
     public ServerMember createServerMember(Server server, User user) {
+        occupySeat(server);
         ServerMember member = new ServerMember();
         member.setUser(user);
         member.setServer(server);
         member.setPersonalPermissions(Permission.NOTHING.getValue());
         member.setJoinedAt(LocalDateTime.now());
 
-        return serverMemberRepository.save(member);
+        ServerMember saved = serverMemberRepository.save(member);
+        channelPermissionCache.evictMember(user.getId(), server.getId());
+        memberListService.memberChanged(server.getId(), user.getId());
+        return saved;
     }
 
-    /** Подсчитывает количество активных участников в сервере. */
-    public long countServerMembers(Long serverId) {
-        return serverMemberRepository.countByServerIdAndIsActiveTrue(serverId);
+    /**
+     * Деактивирует участника сервера (выход, исключение или бан),
+     * сбрасывает его кэшированные права в каналах сервера и отключает от голосового канала сервера.
+     */
+    public ServerMember deactivateServerMember(ServerMember member) {
+        // Бан может деактивировать уже вышедшего участника: место освобождается один раз
+        if (Boolean.TRUE.equals(member.getIsActive())) {
+            releaseSeat(member.getServer());
+        }
+        member.setIsActive(false);
+        member.setLeftAt(LocalDateTime.now());
+        ServerMember saved = serverMemberRepository.save(member);
+        channelPermissionCache.evictMember(member.getUser().getId(), member.getServer().getId());
+        memberListService.memberChanged(member.getServer().getId(), member.getUser().getId());
+        voiceStateService.leaveServer(member.getUser().getId(), member.getServer().getId());
+        return saved;
+    }
+
+    /** Ищет участника сервера (в том числе вышедшего) по ID пользователя и ID сервера. */
+    public Optional<ServerMember> findServerMember(Long userId, Long serverId) {
+        return serverMemberRepository.findByUserIdAndServerId(userId, serverId);
+    }
+
+    /**
+     * Возвращает вышедшего участника на сервер.
+     *
+     * @throws ServerMemberLimitReachedException если сервер заполнен
+     */
+    public ServerMember reactivateServerMember(ServerMember member) {
+        if (!Boolean.TRUE.equals(member.getIsActive())) {
+            occupySeat(member.getServer());
+        }
+        member.setIsActive(true);
+        member.setLeftAt(null);
+        member.setJoinedAt(LocalDateTime.now());
+        ServerMember saved = serverMemberRepository.save(member);
+        channelPermissionCache.evictMember(member.getUser().getId(), member.getServer().getId());
+        memberListService.memberChanged(member.getServer().getId(), member.getUser().getId());
+        return saved;
     }
 
     /** Получает всех активных участников сервера. */
@@ -94,6 +155,25 @@ public class ServerMemberService {
     public ServerMember updateNickname(Long memberId, String nickname) {
         ServerMember member = getServerMember(memberId);
         member.setNickname(nickname);
-        return serverMemberRepository.save(member);
+        return updateServerMember(member);
+    }
+
+    /**
+     * Атомарно занимает место на сервере одним условным UPDATE: при параллельных входах лимит
+     * не превышается, строка сервера блокируется до конца транзакции. Счетчик в загруженной
+     * сущности обновляется только в памяти (колонка не перезаписывается при сохранении).
+     */
+    private void occupySeat(Server server) {
+        if (serverRepository.incrementMemberCountIfBelowMax(server.getId()) == 0) {
+            throw new ServerMemberLimitReachedException(
+                    BusinessRuleMessage.BUSINESS_SERVER_MEMBER_LIMIT_REACHED_MESSAGE.getMessage());
+        }
+        server.setMemberCount(server.getMemberCount() + 1);
+    }
+
+    /** Освобождает место на сервере. */
+    private void releaseSeat(Server server) {
+        serverRepository.decrementMemberCount(server.getId());
+        server.setMemberCount(Math.max(server.getMemberCount() - 1, 0L));
     }
 }
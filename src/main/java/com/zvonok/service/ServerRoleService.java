@@ -7,8 +7,10 @@ import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.ServerRole;
 import com.zvonok.repository.ServerRoleRepository;
+import com.zvonok.service.cache.ChannelPermissionCache;
 import com.zvonok.service.dto.CreateServerRoleDto;
 import com.zvonok.service.dto.UpdateServerRoleDto;
+import com.zvonok.service.memberlist.MemberListService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +27,8 @@ import java.util.List;
 public class ServerRoleService {
 
     private final ServerRoleRepository serverRoleRepository;
+    private final ChannelPermissionCache channelPermissionCache;
+    private final MemberListService memberListService;
 
     /** Получает роль сервера по ID. */
     public ServerRole getServerRole(Long id) {
@@ -42,6 +46,7 @@ public class ServerRoleService {
         role.setServerPermissions(createServerRoleDto.getServerPermissions());
         role.setIsEveryone(createServerRoleDto.isEveryone());
         role.setMentionable(createServerRoleDto.isMentionable());
+        role.setHoist(createServerRoleDto.isHoist());
         role.setServer(createServerRoleDto.getServer());
         role.setCreatedAt(LocalDateTime.now());
 
@@ -90,6 +95,9 @@ public class ServerRoleService {
         if (updateServerRoleDto.getMentionable() != null) {
             role.setMentionable(updateServerRoleDto.getMentionable());
         }
+        if (updateServerRoleDto.getHoist() != null) {
+            role.setHoist(updateServerRoleDto.getHoist());
+        }
         if (updateServerRoleDto.getActive() != null) {
             if (Boolean.FALSE.equals(updateServerRoleDto.getActive()) && role.getIsEveryone()) {
                 throw new CannotDisableEveryoneRoleException(
@@ -98,7 +106,10 @@ public class ServerRoleService {
             role.setIsActive(updateServerRoleDto.getActive());
         }
 
-        return serverRoleRepository.save(role);
+        ServerRole saved = serverRoleRepository.save(role);
+        channelPermissionCache.evictServer(role.getServer().getId());
+        memberListService.serverChanged(role.getServer().getId());
+        return saved;
     }
 
     /** Помечает роль как неактивную. */
@@ -111,5 +122,7 @@ public class ServerRoleService {
         }
         role.setIsActive(false);
         serverRoleRepository.save(role);
+        channelPermissionCache.evictServer(role.getServer().getId());
+        memberListService.serverChanged(role.getServer().getId());
     }
 }
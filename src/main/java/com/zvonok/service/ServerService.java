@@ -7,6 +7,7 @@ import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.*;
 import com.zvonok.model.enumeration.ChannelType;
 import com.zvonok.repository.*;
+import com.zvonok.service.cache.ChannelPermissionCache;
 import com.zvonok.service.dto.CreateChannelDto;
 import com.zvonok.service.dto.CreateChannelFolderDto;
 import com.zvonok.service.dto.CreateServerRoleDto;
@@ -15,6 +16,7 @@ import com.zvonok.service.dto.request.CreateServerRequest;
 import com.zvonok.service.dto.request.UpdateServerRequest;
 import com.zvonok.service.dto.response.ServerResponse;
 import com.zvonok.service.dto.response.ServerMemberResponse;
+import com.zvonok.service.memberlist.MemberListService;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,6 +24,7 @@ import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -41,6 +44,8 @@ public class ServerService {
     private final ChannelService channelService;
     private final ChannelFolderService channelFolderService;
     private final ServerBanService serverBanService;
+    private final ChannelPermissionCache channelPermissionCache;
+    private final MemberListService memberListService;
 
     public ServerService(
             ServerRepository serverRepository,
@@ -52,7 +57,9 @@ public class ServerService {
             ServerRoleService serverRoleService,
             @Lazy ChannelService channelService,
             @Lazy ChannelFolderService channelFolderService,
-            @Lazy ServerBanService serverBanService) {
+            @Lazy ServerBanService serverBanService,
+            ChannelPermissionCache channelPermissionCache,
+            MemberListService memberListService) {
         this.serverRepository = serverRepository;
         this.userService = userService;
         this.inviteCodeService = inviteCodeService;
@@ -63,6 +70,8 @@ public class ServerService {
         this.channelService = channelService;
         this.channelFolderService = channelFolderService;
         this.serverBanService = serverBanService;
+        this.channelPermissionCache = channelPermissionCache;
+        this.memberListService = memberListService;
     }
 
     /**
@@ -185,19 +194,16 @@ public class ServerService {
         }
 
         // Проверяем не является ли уже участником
-        if (isServerMember(userId, server)) {
+        Optional<ServerMember> existingMember = serverMemberService.findServerMember(userId, server.getId());
+        if (existingMember.isPresent() && existingMember.get().getIsActive()) {
             return mapToResponse(server); // Уже участник
         }
 
-        // Проверяем лимит участников
-        long memberCount = serverMemberService.countServerMembers(server.getId());
-        if (memberCount >= server.getMaxMember()) {
-            throw new ServerMemberLimitReachedException(
-                    BusinessRuleMessage.BUSINESS_SERVER_MEMBER_LIMIT_REACHED_MESSAGE.getMessage());
-        }
-
-        // Добавляем как участника
-        ServerMember newMember = addUserAsMember(server, user);
+        // Добавляем как участника (вышедший ранее участник возвращается); место на сервере
+        // занимается атомарно, при достижении лимита - ServerMemberLimitReachedException
+        ServerMember newMember = existingMember
+                .map(serverMemberService::reactivateServerMember)
+                .orElseGet(() -> addUserAsMember(server, user));
 
         // Назначаем роль @everyone
         ServerRole everyoneRole = serverRoleService.getServerRoleWithIsEveryoneTrue(server.getId());
@@ -208,7 +214,9 @@ public class ServerService {
 
     /** Проверяет, является ли пользователь участником указанного сервера. */
     public boolean isServerMember(Long userId, Server server) {
-        return serverMemberService.getServerMember(userId, server.getId()) != null;
+        return serverMemberService.findServerMember(userId, server.getId())
+                .map(ServerMember::getIsActive)
+                .orElse(false);
     }
 
     /**
@@ -318,11 +326,7 @@ public class ServerService {
         }
 
         ServerMember member = serverMemberService.getServerMember(userId, serverId);
-
-        member.setIsActive(false);
-        member.setLeftAt(LocalDateTime.now());
-        serverMemberService.updateServerMember(member);
-
+        serverMemberService.deactivateServerMember(member);
     }
 
     /**
@@ -405,11 +409,7 @@ public class ServerService {
         }
 
         ServerMember targetMember = serverMemberService.getServerMember(targetUserId, serverId);
-
-        targetMember.setIsActive(false);
-        targetMember.setLeftAt(LocalDateTime.now());
-        serverMemberService.updateServerMember(targetMember);
-
+        serverMemberService.deactivateServerMember(targetMember);
     }
 
     /**
@@ -448,7 +448,9 @@ public class ServerService {
         createDto.setServerPermissions(
                 Permission.VIEW_CHANNEL.getValue() |
                 Permission.SEND_MESSAGES.getValue() |
-                Permission.READ_MESSAGE_HISTORY.getValue());
+                Permission.READ_MESSAGE_HISTORY.getValue() |
+                Permission.CONNECT.getValue() |
+                Permission.SPEAK.getValue());
         createDto.setEveryone(true);
         createDto.setMentionable(false);
         createDto.setServer(server);
@@ -537,7 +539,7 @@ public class ServerService {
                 .name(server.getName())
                 .inviteCode(server.getInvitedCode())
                 .maxMembers(server.getMaxMember())
-                .memberCount(serverMemberService.countServerMembers(server.getId()))
+                .memberCount(server.getMemberCount())
                 .ownerId(server.getOwner().getId())
                 .ownerName(server.getOwner().getUsername())
                 .createdAt(server.getCreatedAt())
@@ -577,5 +579,7 @@ public class ServerService {
         
         // Удаляем сервер (каскадное удаление должно быть настроено в JPA)
         serverRepository.delete(server);
+        channelPermissionCache.evictServer(serverId);
+        memberListService.serverChanged(serverId);
     }
 }
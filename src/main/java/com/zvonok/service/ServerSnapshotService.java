@@ -0,0 +1,165 @@
+package com.zvonok.service;
+
+import com.zvonok.repository.ChannelFolderRepository;
+import com.zvonok.repository.ChannelPermissionOverrideRepository;
+import com.zvonok.repository.ChannelRepository;
+import com.zvonok.repository.FolderPermissionOverrideRepository;
+import com.zvonok.repository.ServerMemberRoleRepository;
+import com.zvonok.repository.ServerRepository;
+import com.zvonok.repository.ServerRoleRepository;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.ServerMembershipRow;
+import com.zvonok.service.dto.response.ChannelSnapshot;
+import com.zvonok.service.dto.response.FolderSnapshot;
+import com.zvonok.service.dto.response.ReadyResponse;
+import com.zvonok.service.dto.response.RoleSnapshot;
+import com.zvonok.service.dto.response.ServerSnapshot;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the client's bootstrap ("READY") snapshot: every server of the user with folders,
+ * visible channels, roles and member counts. Uses a fixed number of batched queries into flat
+ * DTOs regardless of how many servers the user is in; channel visibility is folded in memory
+ * with the same rules as {@link PermissionService}.
+ *
+ * Собирает стартовый снимок клиента ("READY"): все серверы пользователя с папками, видимыми
+ * каналами, ролями и числом участников. Выполняет фиксированное число пакетных запросов в плоские
+ * DTO независимо от количества серверов; видимость каналов рассчитывается в памяти по тем же
+ * правилам, что и в {@link PermissionService}.
+ */
+@RequiredArgsConstructor
+@Service
+public class ServerSnapshotService {
+
+    // Пустое переопределение: {разрешено, запрещено}
+    private static final long[] NO_OVERRIDE = {0L, 0L};
+
+    private final ServerRepository serverRepository;
+    private final ServerMemberRoleRepository serverMemberRoleRepository;
+    private final ServerRoleRepository serverRoleRepository;
+    private final ChannelFolderRepository channelFolderRepository;
+    private final ChannelRepository channelRepository;
+    private final FolderPermissionOverrideRepository folderOverrideRepository;
+    private final ChannelPermissionOverrideRepository channelOverrideRepository;
+
+    /**
+     * Builds the READY snapshot for a user.
+     *
+     * Собирает стартовый снимок для пользователя.
+     *
+     * @param userId    the unique identifier of the user
+     *                  уникальный идентификатор пользователя
+     * @param username  the username of the user (taken from the principal)
+     *                  имя пользователя (берется из principal)
+     * @return snapshot with all active servers of the user
+     *         снимок со всеми активными серверами пользователя
+     */
+    @Transactional(readOnly = true)
+    public ReadyResponse getReadySnapshot(Long userId, String username) {
+        List<ServerMembershipRow> memberships = serverRepository.findMembershipRowsByUserId(userId);
+        if (memberships.isEmpty()) {
+            return ReadyResponse.builder()
+                    .userId(userId)
+                    .username(username)
+                    .servers(List.of())
+                    .build();
+        }
+
+        Set<Long> serverIds = memberships.stream()
+                .map(ServerMembershipRow::getServerId)
+                .collect(Collectors.toSet());
+
+        Map<Long, List<RoleSnapshot>> rolesByServer = serverRoleRepository.findSnapshotsByServerIds(serverIds).stream()
+                .collect(Collectors.groupingBy(RoleSnapshot::getServerId));
+        Map<Long, List<FolderSnapshot>> foldersByServer = channelFolderRepository.findSnapshotsByServerIds(serverIds).stream()
+                .collect(Collectors.groupingBy(FolderSnapshot::getServerId));
+        Map<Long, List<ChannelSnapshot>> channelsByServer = channelRepository.findSnapshotsByServerIds(serverIds).stream()
+                .collect(Collectors.groupingBy(ChannelSnapshot::getServerId));
+
+        // Роли пользователя и относящиеся к нему переопределения папок и каналов
+        Set<Long> userRoleIds = new HashSet<>(
+                serverMemberRoleRepository.findRoleIdsByUserIdAndServerIds(userId, serverIds));
+        Map<Long, long[]> folderOverrides = PermissionService.foldOverrides(
+                folderOverrideRepository.findMasksForUser(serverIds, roleIdsOrNone(userRoleIds), userId));
+        Map<Long, long[]> channelOverrides = PermissionService.foldOverrides(
+                channelOverrideRepository.findMasksForUser(serverIds, roleIdsOrNone(userRoleIds), userId));
+
+        List<ServerSnapshot> servers = new ArrayList<>(memberships.size());
+        for (ServerMembershipRow membership : memberships) {
+            Long serverId = membership.getServerId();
+            List<RoleSnapshot> roles = rolesByServer.getOrDefault(serverId, List.of());
+
+            long rolePermissions = 0L;
+            boolean admin = false;
+            for (RoleSnapshot role : roles) {
+                if (userRoleIds.contains(role.getId())) {
+                    rolePermissions |= role.getServerPermissions();
+                    admin |= Permission.hasPermission(role.getServerPermissions(), Permission.ADMINISTRATOR);
+                }
+            }
+            long personalPermissions = membership.getPersonalPermissions();
+
+            // Шаг 1: Видимые каналы
+            List<ChannelSnapshot> channels = new ArrayList<>();
+            Set<Long> foldersWithChannels = new HashSet<>();
+            for (ChannelSnapshot channel : channelsByServer.getOrDefault(serverId, List.of())) {
+                long[] folder = folderOverrides.getOrDefault(channel.getFolderId(), NO_OVERRIDE);
+                long[] own = channelOverrides.getOrDefault(channel.getId(), NO_OVERRIDE);
+                long permissions = PermissionService.channelPermissionMask(rolePermissions, personalPermissions,
+                        folder[0] & ~folder[1], own[0], own[1]);
+                if (admin || Permission.hasPermission(permissions, Permission.VIEW_CHANNEL)) {
+                    channels.add(channel);
+                    foldersWithChannels.add(channel.getFolderId());
+                }
+            }
+
+            // Шаг 2: Папки, которые видны сами по себе или содержат видимые каналы
+            List<FolderSnapshot> folders = new ArrayList<>();
+            for (FolderSnapshot folder : foldersByServer.getOrDefault(serverId, List.of())) {
+                long[] override = folderOverrides.getOrDefault(folder.getId(), NO_OVERRIDE);
+                long permissions = PermissionService.folderPermissionMask(rolePermissions, personalPermissions,
+                        override[0], override[1]);
+                if (admin || foldersWithChannels.contains(folder.getId())
+                        || Permission.hasPermission(permissions, Permission.VIEW_CHANNEL)) {
+                    folders.add(folder);
+                }
+            }
+
+            servers.add(ServerSnapshot.builder()
+                    .id(serverId)
+                    .name(membership.getName())
+                    .inviteCode(membership.getInviteCode())
+                    .maxMembers(membership.getMaxMembers())
+                    .memberCount(membership.getMemberCount())
+                    .ownerId(membership.getOwnerId())
+                    .ownerName(membership.getOwnerName())
+                    .createdAt(membership.getCreatedAt())
+                    .folders(folders)
+                    .channels(channels)
+                    .roles(roles)
+                    .build());
+        }
+
+        return ReadyResponse.builder()
+                .userId(userId)
+                .username(username)
+                .servers(servers)
+                .build();
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    // Пустой список в IN недопустим для части СУБД, поэтому подставляем несуществующий id
+    private static Set<Long> roleIdsOrNone(Set<Long> roleIds) {
+        return roleIds.isEmpty() ? Set.of(-1L) : roleIds;
+    }
+}
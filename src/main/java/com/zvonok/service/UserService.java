@@ -6,13 +6,18 @@ import com.zvonok.exception.UserWithThisEmailAlreadyExistException;
 import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
 import com.zvonok.model.User;
 import com.zvonok.repository.UserRepository;
+import com.zvonok.service.cache.PrivateRoomCache;
 import com.zvonok.service.dto.CreateUserDto;
 import com.zvonok.service.dto.UpdateUserDto;
+import com.zvonok.service.dto.UserSummary;
+import com.zvonok.service.memberlist.MemberListService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Service for managing user entities and user-related operations.
@@ -23,6 +28,8 @@ import java.time.LocalDateTime;
 public class UserService {
 
     private final UserRepository userRepository;
+    private final PrivateRoomCache privateRoomCache;
+    private final MemberListService memberListService;
 
     public User getUser(Long id) {
         return userRepository.findById(id)
@@ -30,6 +37,16 @@ public class UserService {
                         HttpResponseMessage.HTTP_USER_NOT_FOUND_RESPONSE_MESSAGE.getMessage()));
     }
 
+    /** Ссылка на пользователя без запроса к БД, для связей новых сущностей. */
+    public User getUserReference(Long id) {
+        return userRepository.getReferenceById(id);
+    }
+
+    /** Публичные данные пользователей по id одним запросом, без загрузки сущностей; отсутствующие пропускаются. */
+    public List<UserSummary> getUserSummaries(Collection<Long> ids) {
+        return ids.isEmpty() ? List.of() : userRepository.findSummariesByIdIn(ids);
+    }
+
     public User getUser(String username) {
         return userRepository.findByUsername(username)
                 .orElseThrow(() -> new UserNotFoundException(
@@ -75,6 +92,7 @@ public class UserService {
     @Transactional
     public User updateUser(Long id, UpdateUserDto userDto) {
         User user = getUser(id);
+        boolean listedFieldsChanged = false; // имя и аватар показываются в списках участников серверов
         
         if (userDto.getUsername() != null && !userDto.getUsername().isEmpty()) {
             userRepository.findByUsername(userDto.getUsername())
@@ -83,6 +101,10 @@ public class UserService {
                             throw new UserWIthThisUsernameAlreadyExistException(HttpResponseMessage.HTTP_USER_WITH_THIS_USERNAME_ALREADY_EXIST_RESPONSE_MESSAGE.getMessage());
                         }
                     });
+            if (!userDto.getUsername().equals(user.getUsername())) {
+                privateRoomCache.evictUsers();
+                listedFieldsChanged = true;
+            }
             user.setUsername(userDto.getUsername());
         }
         
@@ -97,10 +119,15 @@ public class UserService {
         }
         
         if (userDto.getAvatarUrl() != null) {
+            listedFieldsChanged |= !userDto.getAvatarUrl().equals(user.getAvatarUrl());
             user.setAvatarUrl(userDto.getAvatarUrl());
         }
         
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        if (listedFieldsChanged) {
+            memberListService.userChanged(id);
+        }
+        return saved;
     }
 
     /**
@@ -111,6 +138,7 @@ public class UserService {
     public void deleteUser(Long id) {
         User user = getUser(id);
         userRepository.delete(user);
+        privateRoomCache.evictUsers();
     }
 
     /**
@@ -0,0 +1,43 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Cache-miss loading outside the cache's internal lock.
+ * <p>
+ * {@code Cache.get(key, loader)} runs the loader inside {@code ConcurrentHashMap.compute}, i.e. under
+ * a monitor. A JDBC query there pins a virtual thread to its carrier for the whole round trip on
+ * Java 21. Loaders that hit the database are therefore run outside the map, and the same generation
+ * scheme as in {@link ChannelPermissionCache} keeps a value loaded concurrently with an eviction out
+ * of the cache. Concurrent misses on one key may both query the database.
+ *
+ * Загрузка при промахе кэша вне его внутренней блокировки.
+ * <p>
+ * {@code Cache.get(key, loader)} выполняет loader внутри {@code ConcurrentHashMap.compute}, то есть
+ * под монитором. Запрос JDBC там закрепляет виртуальный поток за носителем на все время обращения
+ * к БД (Java 21). Поэтому загрузчики с запросами к БД выполняются вне карты, а та же схема поколений,
+ * что и в {@link ChannelPermissionCache}, не дает закэшировать значение, загруженное параллельно
+ * с инвалидацией. Параллельные промахи по одному ключу могут оба обратиться к БД.
+ */
+final class CacheLoads {
+
+    private CacheLoads() {
+    }
+
+    static <K, V> V getOrLoad(Cache<K, V> cache, AtomicLong generation, K key, Function<K, V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long observedGeneration = generation.get();
+        V loaded = loader.apply(key);
+        cache.put(key, loaded);
+        if (generation.get() != observedGeneration) {
+            cache.invalidate(key);
+        }
+        return loaded;
+    }
+}
@@ -0,0 +1,174 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of effective channel permissions per (userId, channelId).
+ * Stores the already folded bitmask (allowed minus denied, or all bits for administrators),
+ * so a warm permission check costs one map lookup and no SQL.
+ *
+ * Ограниченный кэш итоговых прав в канале для пары (userId, channelId).
+ * Хранит уже свернутую битовую маску (разрешения минус запреты, либо все биты для администратора),
+ * поэтому проверка прав для "горячего" канала выполняется без обращения к БД.
+ * Статистика кэша публикуется как метрики {@code cache.*} с тегом {@code cache=channelPermissions}
+ * и долей попаданий {@code zvonok.permission.cache.hit.ratio}.
+ */
+@Component
+@Slf4j
+public class ChannelPermissionCache implements MeterBinder {
+
+    /** Маска администратора: любое право считается выданным. */
+    public static final long ALL_PERMISSIONS = ~0L;
+
+    private final Cache<Key, Entry> cache;
+
+    // Увеличивается при каждой инвалидации; значение, рассчитанное до инвалидации, в кэш не попадает
+    private final AtomicLong generation = new AtomicLong();
+
+    public ChannelPermissionCache(
+            @Value("${app.permission-cache.max-size:100000}") long maxSize,
+            @Value("${app.permission-cache.ttl:PT10M}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached effective permission mask, computing it with the loader on a miss.
+     * A value computed concurrently with an invalidation is returned to the caller but not cached.
+     *
+     * Возвращает итоговую маску прав из кэша, при промахе рассчитывает ее через loader.
+     * Значение, рассчитанное параллельно с инвалидацией, возвращается вызывающему, но не кэшируется.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @param loader     computes the entry from the database
+     *                   рассчитывает запись по данным из БД
+     * @return effective permission mask (0 if the user is not an active member)
+     *         итоговая маска прав (0, если пользователь не является активным участником)
+     */
+    public long getPermissions(Long userId, Long channelId, Supplier<Entry> loader) {
+        Key key = new Key(userId, channelId);
+        Entry cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.permissions();
+        }
+
+        long observedGeneration = generation.get();
+        Entry computed = loader.get();
+        if (computed.cacheable()) {
+            cache.put(key, computed);
+            if (generation.get() != observedGeneration) {
+                cache.invalidate(key);
+            }
+        }
+        return computed.permissions();
+    }
+
+    /** Сбрасывает права пользователя во всех каналах сервера (роли, бан, кик, выход, вступление). */
+    public void evictMember(Long userId, Long serverId) {
+        evict(key -> key.userId() == userId, entry -> entry.serverId() == serverId);
+    }
+
+    /** Сбрасывает права всех участников сервера (изменение или удаление роли, удаление сервера). */
+    public void evictServer(Long serverId) {
+        evict(key -> true, entry -> entry.serverId() == serverId);
+    }
+
+    /** Сбрасывает права во всех каналах папки (переопределения папки). */
+    public void evictFolder(Long folderId) {
+        evict(key -> true, entry -> entry.folderId() == folderId);
+    }
+
+    /** Сбрасывает права в канале (переопределения канала). */
+    public void evictChannel(Long channelId) {
+        evict(key -> key.channelId() == channelId, entry -> true);
+    }
+
+    /** Полностью очищает кэш. */
+    public void evictAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+        afterCommit(cache::invalidateAll);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "channelPermissions");
+        Gauge.builder("zvonok.permission.cache.hit.ratio", this, ChannelPermissionCache::hitRate)
+                .description("Share of permission checks served from the cache since startup")
+                .register(registry);
+    }
+
+    /** Доля попаданий в кэш с момента запуска. */
+    public double hitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /** Текущее (приблизительное) количество записей. */
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Инвалидация выполняется сразу и повторно после коммита транзакции,
+     * чтобы параллельный читатель не закэшировал состояние до коммита.
+     */
+    private void evict(Predicate<Key> keyFilter, Predicate<Entry> entryFilter) {
+        Runnable eviction = () -> {
+            generation.incrementAndGet();
+            cache.asMap().entrySet().removeIf(e -> keyFilter.test(e.getKey()) && entryFilter.test(e.getValue()));
+        };
+        eviction.run();
+        afterCommit(eviction);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private record Key(long userId, long channelId) {
+    }
+
+    /**
+     * Cached effective permissions of a member in a channel together with the ids used for invalidation.
+     * Кэшированные итоговые права участника в канале вместе с идентификаторами для инвалидации.
+     */
+    public record Entry(long serverId, long folderId, long permissions) {
+
+        /** Пользователь не является активным участником сервера канала: результат не кэшируется. */
+        public static Entry notMember() {
+            return new Entry(0L, 0L, 0L);
+        }
+
+        boolean cacheable() {
+            return serverId != 0L;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.repository.ChannelRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of channel slow mode delays, so slow mode is enforced before any SQL on the send path.
+ * Evicted on channel update; the TTL bounds staleness of updates made on other nodes.
+ *
+ * Ограниченный кэш задержек медленного режима каналов, чтобы медленный режим проверялся
+ * до любого SQL на пути отправки. Сбрасывается при изменении канала; TTL ограничивает
+ * устаревание после изменений на других узлах.
+ */
+@Component
+public class ChannelSlowModeCache {
+
+    private final ChannelRepository channelRepository;
+    private final Cache<Long, Integer> cache;
+    // Увеличивается при каждой инвалидации, см. CacheLoads
+    private final AtomicLong generation = new AtomicLong();
+
+    public ChannelSlowModeCache(
+            ChannelRepository channelRepository,
+            @Value("${app.slow-mode-cache.max-size:10000}") long maxSize,
+            @Value("${app.slow-mode-cache.ttl:PT1M}") Duration ttl) {
+        this.channelRepository = channelRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the slow mode delay of a channel in seconds.
+     *
+     * Возвращает задержку медленного режима канала в секундах.
+     *
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @return delay in seconds, 0 if slow mode is off or the channel does not exist
+     *         задержка в секундах, 0 если медленный режим выключен или канала нет
+     */
+    public int getSlowModeSeconds(Long channelId) {
+        return CacheLoads.getOrLoad(cache, generation, channelId,
+                id -> channelRepository.findSlowModeSecondsById(id).orElse(0));
+    }
+
+    /** Сбрасывает задержку канала сразу и повторно после коммита транзакции. */
+    public void evictChannel(Long channelId) {
+        generation.incrementAndGet();
+        cache.invalidate(channelId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    cache.invalidate(channelId);
+                }
+            });
+        }
+    }
+}
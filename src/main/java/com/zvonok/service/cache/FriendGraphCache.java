@@ -0,0 +1,146 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.repository.FriendshipRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+/**
+ * Bounded adjacency cache of the friend graph: per user the ids of friends as a sorted primitive
+ * {@code long[]}. Friend lists, friendship checks, mutual-friend counts and online-friend lookups
+ * are served from memory; a miss loads one user's friends with a single query. Both users of a pair
+ * are evicted when a friendship is created or removed; the TTL bounds staleness of changes made
+ * on other nodes. Arrays are never modified after loading.
+ *
+ * Ограниченный кэш смежности графа друзей: для пользователя id друзей в отсортированном
+ * примитивном {@code long[]}. Списки друзей, проверка дружбы, число общих друзей и поиск друзей
+ * в сети обслуживаются из памяти; промах загружает друзей одного пользователя одним запросом.
+ * При создании или удалении дружбы сбрасываются оба пользователя пары; TTL ограничивает
+ * устаревание после изменений на других узлах. Массивы после загрузки не изменяются.
+ */
+@Component
+public class FriendGraphCache {
+
+    private final FriendshipRepository friendshipRepository;
+    private final Cache<Long, long[]> cache;
+    // Увеличивается при каждой инвалидации, см. CacheLoads
+    private final AtomicLong generation = new AtomicLong();
+
+    public FriendGraphCache(
+            FriendshipRepository friendshipRepository,
+            @Value("${app.friend-graph-cache.max-size:100000}") long maxSize,
+            @Value("${app.friend-graph-cache.ttl:PT10M}") Duration ttl) {
+        this.friendshipRepository = friendshipRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Checks whether two users are friends.
+     *
+     * Проверяет, являются ли пользователи друзьями.
+     *
+     * @param userId       the unique identifier of one user
+     *                     уникальный идентификатор одного пользователя
+     * @param otherUserId  the unique identifier of the other user
+     *                     уникальный идентификатор другого пользователя
+     * @return true if the users are friends
+     *         true, если пользователи друзья
+     */
+    public boolean areFriends(Long userId, Long otherUserId) {
+        return Arrays.binarySearch(friendIds(userId), otherUserId) >= 0;
+    }
+
+    /**
+     * Returns the ids of the friends of a user that match a filter, in ascending order.
+     *
+     * Возвращает id друзей пользователя, подходящих под фильтр, по возрастанию.
+     *
+     * @param userId  the unique identifier of the user
+     *                уникальный идентификатор пользователя
+     * @param filter  the condition on a friend id, e.g. being online
+     *                условие на id друга, например нахождение в сети
+     * @return the matching friend ids
+     *         подходящие id друзей
+     */
+    public List<Long> getFriendIds(Long userId, LongPredicate filter) {
+        long[] friends = friendIds(userId);
+        List<Long> result = new ArrayList<>(friends.length);
+        for (long friendId : friends) {
+            if (filter.test(friendId)) {
+                result.add(friendId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the friends two users have in common.
+     *
+     * Считает общих друзей двух пользователей.
+     *
+     * @param userId       the unique identifier of one user
+     *                     уникальный идентификатор одного пользователя
+     * @param otherUserId  the unique identifier of the other user
+     *                     уникальный идентификатор другого пользователя
+     * @return the number of mutual friends
+     *         число общих друзей
+     */
+    public int countMutualFriends(Long userId, Long otherUserId) {
+        long[] first = friendIds(userId);
+        long[] second = friendIds(otherUserId);
+        // Слияние двух отсортированных массивов
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+        return count;
+    }
+
+    /** Сбрасывает друзей обоих пользователей пары сразу и повторно после коммита транзакции. */
+    public void evictPair(Long userId, Long otherUserId) {
+        generation.incrementAndGet();
+        cache.invalidate(userId);
+        cache.invalidate(otherUserId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    cache.invalidate(userId);
+                    cache.invalidate(otherUserId);
+                }
+            });
+        }
+    }
+
+    private long[] friendIds(Long userId) {
+        return CacheLoads.getOrLoad(cache, generation, userId, id -> {
+            long[] friends = friendshipRepository.findFriendIds(id).stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(friends);
+            return friends;
+        });
+    }
+}
@@ -0,0 +1,135 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.repository.UserRepository;
+import com.zvonok.service.dto.PrivateRoomInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * Bounded caches for the private message hot path: username to user id, and normalized user pair
+ * to the private room with both members' usernames. After warm-up a direct message resolves its
+ * room without a query. Pairs are evicted when a private room is left or deleted; on a username
+ * change or user deletion both caches are dropped (rare). The TTL bounds staleness of changes made
+ * on other nodes.
+ *
+ * Ограниченные кэши горячего пути приватных сообщений: имя пользователя в id и нормализованная
+ * пара пользователей в приватную комнату с именами обоих участников. После прогрева личное
+ * сообщение находит комнату без запросов. Пара сбрасывается при выходе из приватной комнаты или ее
+ * удалении; при смене имени или удалении пользователя сбрасываются оба кэша (редко). TTL ограничивает
+ * устаревание после изменений на других узлах.
+ */
+@Component
+public class PrivateRoomCache {
+
+    private final UserRepository userRepository;
+    private final Cache<String, Long> userIds;
+    private final Cache<Pair, PrivateRoomInfo> rooms;
+    // Увеличивается при каждой инвалидации, см. CacheLoads
+    private final AtomicLong generation = new AtomicLong();
+
+    public PrivateRoomCache(
+            UserRepository userRepository,
+            @Value("${app.private-room-cache.max-size:100000}") long maxSize,
+            @Value("${app.private-room-cache.ttl:PT5M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.userIds = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.rooms = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the id of a user by username.
+     *
+     * Возвращает id пользователя по имени.
+     *
+     * @param username  the username
+     *                  имя пользователя
+     * @return the user id, or null if there is no such user (not cached)
+     *         id пользователя или null, если такого пользователя нет (не кэшируется)
+     */
+    public Long getUserId(String username) {
+        Long cached = userIds.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        long observedGeneration = generation.get();
+        Long loaded = userRepository.findIdByUsername(username).orElse(null);
+        if (loaded != null) {
+            userIds.put(username, loaded);
+            if (generation.get() != observedGeneration) {
+                userIds.invalidate(username);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the private room of two users, loading it on a miss.
+     *
+     * Возвращает приватную комнату двух пользователей, загружая ее при промахе.
+     *
+     * @param userId       the unique identifier of one user
+     *                     уникальный идентификатор одного пользователя
+     * @param otherUserId  the unique identifier of the other user
+     *                     уникальный идентификатор другого пользователя
+     * @param loader       finds or creates the room by (lower id, higher id)
+     *                     находит или создает комнату по (меньший id, больший id)
+     * @return the room with both members
+     *         комната с обоими участниками
+     */
+    public PrivateRoomInfo getRoom(Long userId, Long otherUserId, BiFunction<Long, Long, PrivateRoomInfo> loader) {
+        return CacheLoads.getOrLoad(rooms, generation, Pair.of(userId, otherUserId),
+                pair -> loader.apply(pair.lowUserId(), pair.highUserId()));
+    }
+
+    /** Сбрасывает комнату пары сразу и повторно после коммита транзакции. */
+    public void evictRoom(Long userId, Long otherUserId) {
+        Pair pair = Pair.of(userId, otherUserId);
+        generation.incrementAndGet();
+        rooms.invalidate(pair);
+        afterCommit(() -> rooms.invalidate(pair));
+    }
+
+    /** Сбрасывает оба кэша: имена пользователей закэшированы и в комнатах. */
+    public void evictUsers() {
+        generation.incrementAndGet();
+        userIds.invalidateAll();
+        rooms.invalidateAll();
+        afterCommit(() -> {
+            userIds.invalidateAll();
+            rooms.invalidateAll();
+        });
+    }
+
+    private void afterCommit(Runnable invalidation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    invalidation.run();
+                }
+            });
+        }
+    }
+
+    private record Pair(long lowUserId, long highUserId) {
+
+        static Pair of(long userId, long otherUserId) {
+            return userId <= otherUserId ? new Pair(userId, otherUserId) : new Pair(otherUserId, userId);
+        }
+    }
+}
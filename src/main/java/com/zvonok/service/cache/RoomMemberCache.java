@@ -0,0 +1,93 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.repository.RoomRepository;
+import com.zvonok.service.dto.RoomMembers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded membership index of active rooms: per room a {@link RoomMembers} snapshot with user ids
+ * in a primitive sorted array and their usernames. Serves membership checks of messages, typing,
+ * history and room management without loading {@code Room.members}, and the recipient list of room
+ * events (messages, edits, deletions, typing). A missing or inactive room has no members. Evicted when a room is created, left or deleted;
+ * the TTL bounds staleness of changes made on other nodes.
+ *
+ * Ограниченный индекс членства активных комнат: на комнату снимок {@link RoomMembers} с id
+ * пользователей в отсортированном примитивном массиве и их именами. Обслуживает проверки членства
+ * для сообщений, набора текста, истории и управления комнатой без загрузки {@code Room.members}
+ * и служит списком получателей событий комнаты (сообщения, правки, удаления, набор текста).
+ * У отсутствующей или неактивной комнаты участников нет. Сбрасывается при создании комнаты, выходе из нее и удалении; TTL ограничивает
+ * устаревание после изменений на других узлах.
+ */
+@Component
+public class RoomMemberCache {
+
+    private final RoomRepository roomRepository;
+    private final Cache<Long, RoomMembers> cache;
+    // Увеличивается при каждой инвалидации, см. CacheLoads
+    private final AtomicLong generation = new AtomicLong();
+
+    public RoomMemberCache(
+            RoomRepository roomRepository,
+            @Value("${app.room-member-cache.max-size:10000}") long maxSize,
+            @Value("${app.room-member-cache.ttl:PT1M}") Duration ttl) {
+        this.roomRepository = roomRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Checks whether a user is a member of an active room.
+     *
+     * Проверяет, является ли пользователь участником активной комнаты.
+     *
+     * @param roomId  the unique identifier of the room
+     *                уникальный идентификатор комнаты
+     * @param userId  the unique identifier of the user
+     *                уникальный идентификатор пользователя
+     * @return true if the room is active and the user is its member
+     *         true, если комната активна и пользователь в ней состоит
+     */
+    public boolean isMember(Long roomId, Long userId) {
+        return getMembers(roomId).contains(userId);
+    }
+
+    /**
+     * Returns the members of an active room.
+     *
+     * Возвращает участников активной комнаты.
+     *
+     * @param roomId  the unique identifier of the room
+     *                уникальный идентификатор комнаты
+     * @return the member snapshot, empty if the room does not exist or is inactive
+     *         снимок участников; пустой, если комнаты нет или она неактивна
+     */
+    public RoomMembers getMembers(Long roomId) {
+        return CacheLoads.getOrLoad(cache, generation, roomId,
+                id -> RoomMembers.of(roomRepository.findActiveMembersByRoomId(id)));
+    }
+
+    /** Сбрасывает участников комнаты сразу и повторно после коммита транзакции. */
+    public void evictRoom(Long roomId) {
+        generation.incrementAndGet();
+        cache.invalidate(roomId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    cache.invalidate(roomId);
+                }
+            });
+        }
+    }
+}
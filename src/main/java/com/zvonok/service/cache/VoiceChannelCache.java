@@ -0,0 +1,71 @@
+package com.zvonok.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.repository.ChannelRepository;
+import com.zvonok.service.dto.VoiceChannelInfo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of channel type, server and user limit used by voice admission.
+ * Evicted on channel update and deletion; the TTL bounds staleness of changes made on other nodes.
+ *
+ * Ограниченный кэш типа, сервера и лимита участников канала для допуска в голосовой канал.
+ * Сбрасывается при изменении и удалении канала; TTL ограничивает устаревание после изменений
+ * на других узлах.
+ */
+@Component
+public class VoiceChannelCache {
+
+    private final ChannelRepository channelRepository;
+    private final Cache<Long, Optional<VoiceChannelInfo>> cache;
+    // Увеличивается при каждой инвалидации, см. CacheLoads
+    private final AtomicLong generation = new AtomicLong();
+
+    public VoiceChannelCache(
+            ChannelRepository channelRepository,
+            @Value("${app.voice-channel-cache.max-size:10000}") long maxSize,
+            @Value("${app.voice-channel-cache.ttl:PT1M}") Duration ttl) {
+        this.channelRepository = channelRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Returns the voice admission data of a channel.
+     *
+     * Возвращает данные канала для допуска в голосовой канал.
+     *
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @return channel data, empty if the channel does not exist
+     *         данные канала, пусто если канала нет
+     */
+    public Optional<VoiceChannelInfo> getChannel(Long channelId) {
+        return CacheLoads.getOrLoad(cache, generation, channelId, channelRepository::findVoiceChannelInfoById);
+    }
+
+    /** Сбрасывает данные канала сразу и повторно после коммита транзакции. */
+    public void evictChannel(Long channelId) {
+        generation.incrementAndGet();
+        cache.invalidate(channelId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    cache.invalidate(channelId);
+                }
+            });
+        }
+    }
+}
@@ -14,5 +14,6 @@ public class CreateServerRoleDto {
     private Long serverPermissions;
     private boolean isEveryone;
     private boolean mentionable;
+    private boolean hoist;
     private Server server;
 }
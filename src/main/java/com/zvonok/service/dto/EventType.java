@@ -3,5 +3,6 @@ package com.zvonok.service.dto;
 public enum EventType {
     MESSAGE,
     MESSAGE_EDIT,
-    MESSAGE_DELETE
+    MESSAGE_DELETE,
+    TYPING
 }
@@ -0,0 +1,15 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+/**
+ * Активный участник сервера для списка участников: пользователь и ник на сервере.
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности ServerMember/User.
+ */
+@Value
+public class MemberListRow {
+    Long userId;
+    String username;
+    String avatarUrl;
+    String nickname;
+}
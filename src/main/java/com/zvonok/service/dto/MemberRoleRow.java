@@ -0,0 +1,12 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+/**
+ * Пара (пользователь, роль) участника сервера. Заполняется JPQL-конструктором.
+ */
+@Value
+public class MemberRoleRow {
+    Long userId;
+    Long roleId;
+}
@@ -0,0 +1,24 @@
+package com.zvonok.service.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Условия поиска сообщений после проверки прав: область задана либо набором доступных каналов,
+ * либо комнатой. Необязательные фильтры равны null.
+ */
+@Value
+@Builder
+public class MessageSearchCriteria {
+    String query;
+    Collection<Long> channelIds;
+    Long roomId;
+    Long authorId;
+    LocalDateTime from; // включительно
+    LocalDateTime to;   // не включительно
+    Long before;        // курсор: только сообщения с меньшим ID
+    int limit;
+}
@@ -0,0 +1,14 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+/**
+ * Разрешения и запреты одного переопределения папки или канала без загрузки сущности.
+ * targetId - идентификатор папки или канала.
+ */
+@Value
+public class PermissionOverrideMask {
+    Long targetId;
+    Long allowedPermissions;
+    Long deniedPermissions;
+}
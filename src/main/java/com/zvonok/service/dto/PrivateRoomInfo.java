@@ -0,0 +1,32 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Приватная комната и ее два участника в нормализованном порядке (userOneId <= userTwoId).
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности Room и User.
+ */
+@Value
+public class PrivateRoomInfo {
+    Long roomId;
+    Long userOneId;
+    String userOneUsername;
+    Long userTwoId;
+    String userTwoUsername;
+
+    public List<String> getUsernames() {
+        return userOneId.equals(userTwoId) ? List.of(userOneUsername) : List.of(userOneUsername, userTwoUsername);
+    }
+
+    public String getUsername(Long userId) {
+        return userOneId.equals(userId) ? userOneUsername : userTwoUsername;
+    }
+
+    /** Оба участника в виде снимка членства, как у групповых комнат. */
+    public RoomMembers getMembers() {
+        return RoomMembers.of(List.of(new RoomMemberRow(userOneId, userOneUsername),
+                new RoomMemberRow(userTwoId, userTwoUsername)));
+    }
+}
@@ -0,0 +1,13 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+/**
+ * Участник активной комнаты: id и имя пользователя.
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности Room/User.
+ */
+@Value
+public class RoomMemberRow {
+    Long userId;
+    String username;
+}
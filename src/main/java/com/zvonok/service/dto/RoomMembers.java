@@ -0,0 +1,80 @@
+package com.zvonok.service.dto;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable member snapshot of a room: user ids sorted into a primitive {@code long[]} (a set
+ * checked by binary search, without boxing) and usernames at the same positions, which serve as
+ * the recipient list of user-destination fan-out. Shared by all threads through {@code RoomMemberCache}.
+ *
+ * Неизменяемый снимок участников комнаты: id пользователей, отсортированные в примитивный
+ * {@code long[]} (множество с двоичным поиском, без упаковки), и имена на тех же позициях, которые
+ * служат списком получателей рассылки в пользовательские назначения. Разделяется всеми потоками
+ * через {@code RoomMemberCache}.
+ */
+public final class RoomMembers {
+
+    public static final RoomMembers EMPTY = new RoomMembers(new long[0], new String[0]);
+
+    private final long[] userIds;
+    private final String[] usernames;
+    private final List<String> usernameList;
+
+    private RoomMembers(long[] userIds, String[] usernames) {
+        this.userIds = userIds;
+        this.usernames = usernames;
+        this.usernameList = Collections.unmodifiableList(Arrays.asList(usernames));
+    }
+
+    /** Строит снимок по строкам участников; повторы одного пользователя схлопываются. */
+    public static RoomMembers of(Collection<RoomMemberRow> rows) {
+        RoomMemberRow[] sorted = rows.toArray(RoomMemberRow[]::new);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a.getUserId(), b.getUserId()));
+        long[] ids = new long[sorted.length];
+        String[] names = new String[sorted.length];
+        int size = 0;
+        for (RoomMemberRow row : sorted) {
+            // У приватной комнаты с самим собой один пользователь дважды
+            if (size > 0 && ids[size - 1] == row.getUserId()) {
+                continue;
+            }
+            ids[size] = row.getUserId();
+            names[size] = row.getUsername();
+            size++;
+        }
+        return size == 0 ? EMPTY : new RoomMembers(Arrays.copyOf(ids, size), Arrays.copyOf(names, size));
+    }
+
+    public boolean contains(long userId) {
+        return Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    /** Имя участника или null, если пользователь не участник. */
+    public String usernameOf(long userId) {
+        int index = Arrays.binarySearch(userIds, userId);
+        return index >= 0 ? usernames[index] : null;
+    }
+
+    public long userIdAt(int index) {
+        return userIds[index];
+    }
+
+    public String usernameAt(int index) {
+        return usernames[index];
+    }
+
+    public List<String> getUsernames() {
+        return usernameList;
+    }
+
+    public int size() {
+        return userIds.length;
+    }
+
+    public boolean isEmpty() {
+        return userIds.length == 0;
+    }
+}
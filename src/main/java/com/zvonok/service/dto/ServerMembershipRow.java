@@ -0,0 +1,22 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сервер пользователя вместе с персональными правами его участника.
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности Server/ServerMember.
+ */
+@Value
+public class ServerMembershipRow {
+    Long serverId;
+    String name;
+    String inviteCode;
+    Integer maxMembers;
+    Long memberCount;
+    Long ownerId;
+    String ownerName;
+    LocalDateTime createdAt;
+    Long personalPermissions;
+}
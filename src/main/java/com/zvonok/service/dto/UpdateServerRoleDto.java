@@ -9,6 +9,7 @@ public class UpdateServerRoleDto {
     private Integer position;
     private Long serverPermissions;
     private Boolean mentionable;
+    private Boolean hoist;
     private Boolean active;
 }
 
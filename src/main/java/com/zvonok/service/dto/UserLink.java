@@ -0,0 +1,13 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+/**
+ * Пара связанных пользователей (друзья или участники общего сервера).
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности User.
+ */
+@Value
+public class UserLink {
+    Long userId;
+    Long otherUserId;
+}
@@ -0,0 +1,17 @@
+package com.zvonok.service.dto;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Публичные данные пользователя для списков (друзья со статусом).
+ * Заполняется JPQL-конструктором, чтобы не загружать сущности User.
+ */
+@Value
+public class UserSummary {
+    Long id;
+    String username;
+    String avatarUrl;
+    LocalDateTime lastSeenAt;
+}
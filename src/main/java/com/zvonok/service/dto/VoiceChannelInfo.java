@@ -0,0 +1,16 @@
+package com.zvonok.service.dto;
+
+import com.zvonok.model.enumeration.ChannelType;
+import lombok.Value;
+
+/**
+ * Данные канала, нужные для допуска в голосовой канал (заполняется JPQL-конструктором).
+ */
+@Value
+public class VoiceChannelInfo {
+    Long channelId;
+    Long serverId;
+    ChannelType type;
+    Integer userLimit; // null или 0 - без ограничения
+    Boolean active;
+}
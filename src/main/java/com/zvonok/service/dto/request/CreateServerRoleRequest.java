@@ -22,5 +22,7 @@ public class CreateServerRoleRequest {
     private Long serverPermissions;
 
     private boolean mentionable = true;
+
+    private boolean hoist = false;
 }
 
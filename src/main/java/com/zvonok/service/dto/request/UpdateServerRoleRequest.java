@@ -19,6 +19,8 @@ public class UpdateServerRoleRequest {
 
     private Boolean mentionable;
 
+    private Boolean hoist;
+
     private Boolean active;
 }
 
@@ -0,0 +1,21 @@
+package com.zvonok.service.dto.response;
+
+import com.zvonok.model.enumeration.ChannelType;
+import lombok.Value;
+
+/**
+ * Канал в стартовом снимке. Заполняется JPQL-конструктором, без сообщений и переопределений прав.
+ */
+@Value
+public class ChannelSnapshot {
+    Long id;
+    Long folderId;
+    Long serverId;
+    String name;
+    ChannelType type;
+    Integer position;
+    String topic;
+    Boolean nsfw;
+    Integer slowModeSeconds;
+    Integer userLimit;
+}
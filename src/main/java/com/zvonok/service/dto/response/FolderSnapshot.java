@@ -0,0 +1,15 @@
+package com.zvonok.service.dto.response;
+
+import lombok.Value;
+
+/**
+ * Папка каналов в стартовом снимке. Заполняется JPQL-конструктором.
+ */
+@Value
+public class FolderSnapshot {
+    Long id;
+    Long serverId;
+    String name;
+    Integer position;
+    Boolean collapsed;
+}
@@ -0,0 +1,17 @@
+package com.zvonok.service.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Стартовый снимок (READY) для клиента: все серверы пользователя с папками, видимыми каналами и ролями.
+ */
+@Data
+@Builder
+public class ReadyResponse {
+    private Long userId;
+    private String username;
+    private List<ServerSnapshot> servers;
+}
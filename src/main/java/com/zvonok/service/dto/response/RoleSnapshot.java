@@ -0,0 +1,19 @@
+package com.zvonok.service.dto.response;
+
+import lombok.Value;
+
+/**
+ * Роль сервера в стартовом снимке. Заполняется JPQL-конструктором.
+ */
+@Value
+public class RoleSnapshot {
+    Long id;
+    Long serverId;
+    String name;
+    String color;
+    Integer position;
+    Long serverPermissions;
+    Boolean mentionable;
+    Boolean hoist;
+    Boolean isEveryone;
+}
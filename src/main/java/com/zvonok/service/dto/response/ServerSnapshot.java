@@ -0,0 +1,26 @@
+package com.zvonok.service.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сервер в стартовом снимке. Списки плоские: каналы ссылаются на папку через folderId.
+ */
+@Data
+@Builder
+public class ServerSnapshot {
+    private Long id;
+    private String name;
+    private String inviteCode;
+    private Integer maxMembers;
+    private Long memberCount;
+    private Long ownerId;
+    private String ownerName;
+    private LocalDateTime createdAt;
+    private List<FolderSnapshot> folders;
+    private List<ChannelSnapshot> channels;
+    private List<RoleSnapshot> roles;
+}
@@ -0,0 +1,127 @@
+package com.zvonok.service.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of concurrently running units of blocking work (STOMP frames, REST requests)
+ * to the size of the JDBC connection pool.
+ * <p>
+ * With {@code spring.threads.virtual.enabled=true} on Java 21+ Tomcat and the STOMP inbound/outbound
+ * channels (see WebSocketConfig) start a virtual thread per request or frame, so nothing limits how many of them reach Hikari at once:
+ * a burst of senders would queue inside the pool and fail after its connection timeout. The fair
+ * semaphore lets at most {@code blocking-permits} of them run and parks the rest cheaply, in arrival
+ * order. It also caps how many virtual threads can sit inside JDBC code at the same time, so a driver
+ * path that pins its carrier can never occupy more carriers than there are connections.
+ * On platform threads the executor pools already bound concurrency, so by default the limiter is
+ * enabled only together with virtual threads.
+ *
+ * Ограничивает число одновременно выполняемых блокирующих единиц работы (кадров STOMP, REST-запросов)
+ * размером пула соединений JDBC.
+ * <p>
+ * При {@code spring.threads.virtual.enabled=true} на Java 21+ Tomcat и входящий/исходящий каналы STOMP
+ * (см. WebSocketConfig) создают виртуальный поток на каждый запрос или кадр, и ничто не ограничивает, сколько из них одновременно
+ * придет в Hikari: всплеск отправителей выстроится в очередь пула и упадет по его таймауту соединения.
+ * Честный семафор пропускает не больше {@code blocking-permits} из них, а остальные дешево паркует
+ * в порядке прихода. Заодно он ограничивает число виртуальных потоков внутри кода JDBC, поэтому путь
+ * драйвера, закрепляющий поток-носитель, не займет больше носителей, чем есть соединений.
+ * На платформенных потоках параллелизм уже ограничен пулами исполнителей, поэтому по умолчанию
+ * ограничитель включен только вместе с виртуальными потоками.
+ */
+@Component
+@Slf4j
+public class BlockingWorkLimiter implements MeterBinder {
+
+    private final boolean virtualThreads;
+    private final boolean enabled;
+    private final int permits;
+    private final Duration acquireTimeout;
+    private final Semaphore semaphore;
+
+    private Counter rejected;
+
+    public BlockingWorkLimiter(
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${app.execution.limit-blocking-work:${spring.threads.virtual.enabled:false}}") boolean enabled,
+            @Value("${app.execution.blocking-permits:${spring.datasource.hikari.maximum-pool-size:10}}") int permits,
+            @Value("${app.execution.acquire-timeout:PT30S}") Duration acquireTimeout) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("app.execution.blocking-permits must be positive");
+        }
+        this.virtualThreads = virtualThreads;
+        this.enabled = enabled;
+        this.permits = permits;
+        this.acquireTimeout = acquireTimeout;
+        this.semaphore = new Semaphore(permits, true);
+    }
+
+    @PostConstruct
+    void logMode() {
+        boolean virtualThreadsActive = virtualThreads && Runtime.version().feature() >= 21;
+        if (virtualThreads && !virtualThreadsActive) {
+            // Spring Boot молча игнорирует свойство на Java ниже 21
+            log.warn("spring.threads.virtual.enabled is set, but Java {} has no virtual threads: "
+                    + "running on platform threads", Runtime.version().feature());
+        }
+        log.info("Execution mode: {}, blocking work limit {}",
+                virtualThreadsActive
+                        ? "virtual threads for Tomcat requests and STOMP inbound/outbound frames"
+                        : "platform thread pools",
+                enabled ? permits + " permits" : "off");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Waits for a permit for at most {@code acquire-timeout}. Every successful call must be paired
+     * with {@link #release()}.
+     *
+     * Ожидает разрешение не дольше {@code acquire-timeout}. Каждый успешный вызов должен
+     * завершаться вызовом {@link #release()}.
+     *
+     * @return true if the permit was acquired, false on timeout or interruption
+     *         true, если разрешение получено, false по таймауту или при прерывании
+     */
+    public boolean tryAcquire() {
+        try {
+            if (semaphore.tryAcquire(acquireTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (rejected != null) {
+            rejected.increment();
+        }
+        return false;
+    }
+
+    public void release() {
+        semaphore.release();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("zvonok.execution.blocking.active", semaphore, s -> permits - s.availablePermits())
+                .description("Units of blocking work currently holding a permit")
+                .register(registry);
+        Gauge.builder("zvonok.execution.blocking.waiting", semaphore, Semaphore::getQueueLength)
+                .description("Threads waiting for a blocking work permit")
+                .register(registry);
+        rejected = Counter.builder("zvonok.execution.blocking.rejected")
+                .description("Units of blocking work rejected after waiting acquire-timeout for a permit")
+                .register(registry);
+    }
+}
@@ -0,0 +1,191 @@
+package com.zvonok.service.memberlist;
+
+import com.zvonok.controller.dto.MemberListGroup;
+import com.zvonok.controller.dto.MemberListItem;
+import com.zvonok.model.ServerRole;
+import com.zvonok.service.dto.MemberListRow;
+import com.zvonok.service.dto.MemberRoleRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sorted member list of one server. Groups are the active hoisted roles by position (highest first),
+ * then members without a hoisted role; a member is shown once, in the group of their highest hoisted
+ * role. Within a group members are sorted by display name (nickname or username), case-insensitively,
+ * then by user id. Entries live in an array list, so an index lookup is a binary search and a range
+ * is a sublist copy. Changed only by {@link MemberListService}'s update thread; readers take the lock.
+ *
+ * Отсортированный список участников одного сервера. Группы - активные выделяемые роли по позиции
+ * (сначала старшие), затем участники без выделяемых ролей; участник показывается один раз, в группе
+ * своей старшей выделяемой роли. Внутри группы участники отсортированы по отображаемому имени (ник или
+ * имя пользователя) без учета регистра, затем по id пользователя. Строки хранятся в ArrayList, поэтому
+ * поиск индекса - двоичный поиск, а диапазон - копия подсписка. Меняется только потоком обновлений
+ * {@link MemberListService}; читатели берут блокировку.
+ */
+final class MemberList {
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::rank)
+            .thenComparing(Entry::sortKey)
+            .thenComparingLong(Entry::userId);
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final List<Group> groups;
+    private final Map<Long, Integer> roleRanks;
+    private final int[] groupCounts;
+    private final ArrayList<Entry> entries;
+    private final Map<Long, Entry> byUser;
+
+    MemberList(Collection<ServerRole> hoistedRoles, Collection<MemberListRow> members, Collection<MemberRoleRow> memberRoles) {
+        List<ServerRole> roles = new ArrayList<>(hoistedRoles);
+        roles.sort(Comparator.comparing(ServerRole::getPosition, Comparator.reverseOrder())
+                .thenComparing(ServerRole::getId));
+        this.groups = new ArrayList<>(roles.size() + 1);
+        this.roleRanks = new HashMap<>();
+        for (ServerRole role : roles) {
+            roleRanks.put(role.getId(), groups.size());
+            groups.add(new Group(role.getId(), role.getName(), role.getColor()));
+        }
+        groups.add(new Group(null, null, null));
+        this.groupCounts = new int[groups.size()];
+
+        // Старшая выделяемая роль каждого участника
+        Map<Long, Integer> memberRanks = new HashMap<>();
+        for (MemberRoleRow row : memberRoles) {
+            Integer rank = roleRanks.get(row.getRoleId());
+            if (rank != null) {
+                memberRanks.merge(row.getUserId(), rank, Math::min);
+            }
+        }
+        this.entries = new ArrayList<>(members.size());
+        this.byUser = new HashMap<>(members.size() * 2);
+        for (MemberListRow row : members) {
+            Entry entry = entry(row, memberRanks.getOrDefault(row.getUserId(), groups.size() - 1));
+            if (byUser.putIfAbsent(entry.userId(), entry) == null) {
+                entries.add(entry);
+                groupCounts[entry.rank()]++;
+            }
+        }
+        entries.sort(ORDER);
+    }
+
+    /**
+     * Builds the entry of a member from their row and hoisted roles.
+     *
+     * Строит строку участника по его данным и выделяемым ролям.
+     *
+     * @return the entry, or null if a role is not among the list's groups (the list must be rebuilt)
+     *         строка или null, если роли нет среди групп списка (список нужно перестроить)
+     */
+    Entry entry(MemberListRow row, Collection<Long> hoistedRoleIds) {
+        int rank = groups.size() - 1;
+        for (Long roleId : hoistedRoleIds) {
+            Integer roleRank = roleRanks.get(roleId);
+            if (roleRank == null) {
+                return null;
+            }
+            rank = Math.min(rank, roleRank);
+        }
+        return entry(row, rank);
+    }
+
+    boolean contains(long userId) {
+        return byUser.containsKey(userId);
+    }
+
+    Entry get(long userId) {
+        return byUser.get(userId);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /** Индекс строки; строка должна быть в списке. */
+    int indexOf(Entry entry) {
+        return Collections.binarySearch(entries, entry, ORDER);
+    }
+
+    /** Удаляет строку пользователя; возвращает ее прежний индекс или -1. */
+    int remove(long userId) {
+        Entry entry = byUser.remove(userId);
+        if (entry == null) {
+            return -1;
+        }
+        int index = indexOf(entry);
+        entries.remove(index);
+        groupCounts[entry.rank()]--;
+        return index;
+    }
+
+    /** Вставляет строку пользователя, которого нет в списке; возвращает ее индекс. */
+    int insert(Entry entry) {
+        int index = -Collections.binarySearch(entries, entry, ORDER) - 1;
+        entries.add(index, entry);
+        byUser.put(entry.userId(), entry);
+        groupCounts[entry.rank()]++;
+        return index;
+    }
+
+    /** Заменяет строку на индексе строкой с тем же местом в порядке. */
+    void replace(int index, Entry entry) {
+        entries.set(index, entry);
+        byUser.put(entry.userId(), entry);
+    }
+
+    MemberListItem item(int index) {
+        return item(entries.get(index));
+    }
+
+    /** Строки диапазона [start, end], обрезанного по размеру списка. */
+    List<MemberListItem> items(int start, int end) {
+        int to = Math.min(end + 1, entries.size());
+        List<MemberListItem> items = new ArrayList<>(Math.max(to - start, 0));
+        for (int i = start; i < to; i++) {
+            items.add(item(entries.get(i)));
+        }
+        return items;
+    }
+
+    /** Непустые группы списка по порядку. */
+    List<MemberListGroup> groups() {
+        List<MemberListGroup> result = new ArrayList<>(groups.size());
+        for (int rank = 0; rank < groups.size(); rank++) {
+            if (groupCounts[rank] > 0) {
+                Group group = groups.get(rank);
+                result.add(new MemberListGroup(group.roleId(), group.name(), group.color(), groupCounts[rank]));
+            }
+        }
+        return result;
+    }
+
+    private MemberListItem item(Entry entry) {
+        return new MemberListItem(entry.userId(), entry.username(), entry.nickname(), entry.avatarUrl(),
+                groups.get(entry.rank()).roleId());
+    }
+
+    private static Entry entry(MemberListRow row, int rank) {
+        String displayName = row.getNickname() != null ? row.getNickname() : row.getUsername();
+        return new Entry(row.getUserId(), row.getUsername(), row.getNickname(), row.getAvatarUrl(), rank,
+                displayName.toLowerCase(Locale.ROOT));
+    }
+
+    private record Group(Long roleId, String name, String color) {
+    }
+
+    record Entry(long userId, String username, String nickname, String avatarUrl, int rank, String sortKey) {
+
+        /** Строка занимает в порядке то же место, что и другая строка того же пользователя. */
+        boolean samePlace(Entry other) {
+            return rank == other.rank && sortKey.equals(other.sortKey);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+package com.zvonok.service.memberlist;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.zvonok.controller.dto.MemberListOp;
+import com.zvonok.controller.dto.MemberListUpdate;
+import com.zvonok.exception.InsufficientPermissionsException;
+import com.zvonok.exception.InvalidMemberListRangeException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.repository.ServerMemberRoleRepository;
+import com.zvonok.repository.ServerRoleRepository;
+import com.zvonok.service.dto.MemberListRow;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lazily loaded, range-subscribed member lists of servers.
+ * <p>
+ * A server's list is built on first use with three projection queries (members, their hoisted roles,
+ * the hoisted roles of the server) and kept in a bounded cache; a page is then a sublist copy without
+ * queries. A STOMP session subscribes to one index range of one server's list and receives a SYNC of
+ * that range, then only INSERT/UPDATE/DELETE ops that touch it, plus the current total and group
+ * sizes, in {@code /user/queue/member-list}. Member changes are applied after the transaction commits,
+ * one member at a time, by a single update thread that owns the lists and subscriptions, so ops are
+ * published in the order the list changed. Ops are applied by index, so they must also arrive in that
+ * order: the broker is configured with {@code setPreservePublishOrder(true)} (see WebSocketConfig),
+ * which keeps the publish order per session on the multi-threaded outbound channel. Role and server
+ * changes rebuild the list and re-SYNC its subscribers. State is per node: with the broker relay, changes made on other nodes show up when the
+ * list expires.
+ *
+ * Лениво загружаемые списки участников серверов с подпиской на диапазон.
+ * <p>
+ * Список сервера строится при первом обращении тремя запросами проекций (участники, их выделяемые роли,
+ * выделяемые роли сервера) и хранится в ограниченном кэше; страница затем - копия подсписка без запросов.
+ * STOMP-сессия подписывается на один диапазон индексов списка одного сервера и получает SYNC этого
+ * диапазона, а затем только затрагивающие его операции INSERT/UPDATE/DELETE вместе с текущим размером
+ * списка и групп в {@code /user/queue/member-list}. Изменения участников применяются после коммита
+ * транзакции, по одному участнику, единственным потоком обновлений, которому принадлежат списки
+ * и подписки, поэтому операции публикуются в порядке изменения списка. Клиент применяет операции
+ * по индексам, поэтому и приходить они должны в том же порядке: брокер настроен с
+ * {@code setPreservePublishOrder(true)} (см. WebSocketConfig), что сохраняет порядок публикации для
+ * каждой сессии в многопоточном исходящем канале. Изменения ролей и сервера перестраивают список
+ * и заново отправляют SYNC подписчикам. Состояние локально для узла:
+ * в режиме relay изменения, сделанные на других узлах, появятся после устаревания списка.
+ */
+@Service
+@Slf4j
+public class MemberListService {
+
+    private static final String DESTINATION = "/queue/member-list";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ServerMemberRepository serverMemberRepository;
+    private final ServerMemberRoleRepository serverMemberRoleRepository;
+    private final ServerRoleRepository serverRoleRepository;
+    private final int maxRange;
+    private final Cache<Long, MemberList> lists;
+    // Увеличивается перед применением каждого изменения: список, загруженный параллельно, не кэшируется
+    private final AtomicLong generation = new AtomicLong();
+
+    // Подписки меняются и читаются только потоком обновлений
+    private final Map<Long, Map<String, Subscription>> subscriptions = new HashMap<>();
+    private final Map<String, Subscription> sessionSubscriptions = new HashMap<>();
+    // Списки, с которыми синхронизированы подписчики; совпадают с закэшированными, пока те не вытеснены
+    private final Map<Long, MemberList> liveLists = new HashMap<>();
+    private ExecutorService executor;
+
+    public MemberListService(
+            @Lazy SimpMessagingTemplate messagingTemplate,
+            ServerMemberRepository serverMemberRepository,
+            ServerMemberRoleRepository serverMemberRoleRepository,
+            ServerRoleRepository serverRoleRepository,
+            @Value("${app.member-list.max-range:200}") int maxRange,
+            @Value("${app.member-list.max-servers:1000}") long maxServers,
+            @Value("${app.member-list.ttl:PT10M}") Duration ttl) {
+        this.messagingTemplate = messagingTemplate;
+        this.serverMemberRepository = serverMemberRepository;
+        this.serverMemberRoleRepository = serverMemberRoleRepository;
+        this.serverRoleRepository = serverRoleRepository;
+        this.maxRange = maxRange;
+        this.lists = Caffeine.newBuilder()
+                .maximumSize(maxServers)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @PostConstruct
+    void start() {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-list");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns a range of a server's member list.
+     *
+     * Возвращает диапазон списка участников сервера.
+     *
+     * @param serverId  the unique identifier of the server
+     *                  уникальный идентификатор сервера
+     * @param userId    the unique identifier of the requesting user
+     *                  уникальный идентификатор запрашивающего пользователя
+     * @param start     the first index, inclusive
+     *                  первый индекс включительно
+     * @param end       the last index, inclusive
+     *                  последний индекс включительно
+     * @return the total, the groups and a SYNC of the range
+     *         размер списка, группы и SYNC диапазона
+     * @throws InvalidMemberListRangeException  if the range is negative, inverted or longer than max-range
+     *                                          если диапазон отрицательный, перевернутый или длиннее max-range
+     * @throws InsufficientPermissionsException if the user is not an active member of the server
+     *                                          если пользователь не активный участник сервера
+     */
+    public MemberListUpdate getRange(Long serverId, Long userId, int start, int end) {
+        validateRange(start, end);
+        MemberList list = getList(serverId);
+        list.lock.lock();
+        try {
+            requireMember(list, userId);
+            return update(serverId, list, List.of(MemberListOp.sync(start, list.items(start, end))));
+        } finally {
+            list.lock.unlock();
+        }
+    }
+
+    /**
+     * Subscribes a session to a range of a server's member list, replacing its previous subscription.
+     * The SYNC of the range is sent to the session asynchronously.
+     *
+     * Подписывает сессию на диапазон списка участников сервера вместо ее прежней подписки.
+     * SYNC диапазона отправляется в сессию асинхронно.
+     *
+     * @throws InvalidMemberListRangeException  if the range is negative, inverted or longer than max-range
+     *                                          если диапазон отрицательный, перевернутый или длиннее max-range
+     * @throws InsufficientPermissionsException if the user is not an active member of the server
+     *                                          если пользователь не активный участник сервера
+     */
+    public void subscribe(Long serverId, Long userId, String username, String sessionId, int start, int end) {
+        validateRange(start, end);
+        MemberList cached = lists.getIfPresent(serverId);
+        boolean member = cached != null
+                ? cached.contains(userId)
+                : serverMemberRepository.findByUserIdAndServerIdAndIsActiveTrue(userId, serverId).isPresent();
+        if (!member) {
+            throw insufficientPermissions();
+        }
+        submit(() -> {
+            removeSubscription(sessionId);
+            MemberList list = liveList(serverId);
+            Subscription subscription = new Subscription(serverId, userId, username, sessionId, start, end);
+            MemberListUpdate update;
+            list.lock.lock();
+            try {
+                // Участник мог выйти, пока подписка ждала очереди
+                if (!list.contains(userId)) {
+                    return;
+                }
+                update = update(serverId, list, List.of(MemberListOp.sync(start, list.items(start, end))));
+            } finally {
+                list.lock.unlock();
+            }
+            subscriptions.computeIfAbsent(serverId, id -> new LinkedHashMap<>()).put(sessionId, subscription);
+            sessionSubscriptions.put(sessionId, subscription);
+            send(List.of(new Send(subscription, update)));
+        });
+    }
+
+    /** Отменяет подписку сессии на список участников. */
+    public void unsubscribe(String sessionId) {
+        submit(() -> removeSubscription(sessionId));
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        unsubscribe(event.getSessionId());
+    }
+
+    /**
+     * A member joined, left, changed nickname or roles: their row is re-read and moved after the commit.
+     * Участник вошел, вышел, сменил ник или роли: его строка перечитывается и перемещается после коммита.
+     */
+    public void memberChanged(Long serverId, Long userId) {
+        afterCommit(() -> applyMember(serverId, userId));
+    }
+
+    /**
+     * Roles of a server changed or the server was deleted: its list is rebuilt after the commit.
+     * Изменились роли сервера или сервер удален: его список перестраивается после коммита.
+     */
+    public void serverChanged(Long serverId) {
+        afterCommit(() -> rebuild(serverId));
+    }
+
+    /**
+     * A user changed username or avatar: their rows in the cached lists are re-read after the commit.
+     * Пользователь сменил имя или аватар: его строки в закэшированных списках перечитываются после коммита.
+     */
+    public void userChanged(Long userId) {
+        afterCommit(() -> {
+            Set<Long> serverIds = new LinkedHashSet<>();
+            collectServers(lists.asMap(), userId, serverIds);
+            collectServers(liveLists, userId, serverIds);
+            serverIds.forEach(serverId -> applyMember(serverId, userId));
+        });
+    }
+
+    // ===== UPDATE THREAD =====
+
+    private void applyMember(Long serverId, Long userId) {
+        MemberList list = lists.getIfPresent(serverId);
+        MemberList live = liveLists.get(serverId);
+        if (live != null && live != list) {
+            // Список подписчиков вытеснен или устарел: им нужен новый снимок
+            rebuild(serverId);
+            return;
+        }
+        if (list == null) {
+            return;
+        }
+        Optional<MemberListRow> row = serverMemberRepository.findMemberListRow(serverId, userId);
+        // Группы списка неизменяемы, строку можно построить без блокировки
+        MemberList.Entry next = row.isPresent()
+                ? list.entry(row.get(), serverMemberRoleRepository.findHoistedRoleIds(serverId, userId))
+                : null;
+        if (row.isPresent() && next == null) {
+            // Выделяемой роли нет в группах: изменение ролей сервера еще в очереди
+            rebuild(serverId);
+            return;
+        }
+        Collection<Subscription> serverSubscriptions = subscriptions.getOrDefault(serverId, Map.of()).values();
+        List<Send> sends = new ArrayList<>();
+        list.lock.lock();
+        try {
+            MemberList.Entry current = list.get(userId);
+            if (current == null ? next == null : current.equals(next)) {
+                return;
+            }
+            int total = list.size();
+            Map<Subscription, List<MemberListOp>> ops = new LinkedHashMap<>();
+            serverSubscriptions.forEach(subscription -> ops.put(subscription, new ArrayList<>()));
+            if (current != null && next != null && current.samePlace(next)) {
+                int index = list.indexOf(current);
+                list.replace(index, next);
+                ops.forEach((subscription, subscriptionOps) -> {
+                    if (subscription.covers(index)) {
+                        subscriptionOps.add(MemberListOp.update(index, list.item(index)));
+                    }
+                });
+            } else {
+                if (current != null) {
+                    int index = list.remove(userId);
+                    ops.forEach((subscription, subscriptionOps) -> removeOps(list, subscription, index, subscriptionOps));
+                }
+                if (next != null) {
+                    int index = list.insert(next);
+                    ops.forEach((subscription, subscriptionOps) -> insertOps(list, subscription, index, subscriptionOps));
+                }
+            }
+            boolean totalChanged = list.size() != total;
+            ops.forEach((subscription, subscriptionOps) -> {
+                // Вышедший участник больше не получает список
+                if (next == null && subscription.userId().equals(userId)) {
+                    return;
+                }
+                if (!subscriptionOps.isEmpty() || totalChanged) {
+                    sends.add(new Send(subscription, update(serverId, list, subscriptionOps)));
+                }
+            });
+        } finally {
+            list.lock.unlock();
+        }
+        if (next == null) {
+            List.copyOf(serverSubscriptions).stream()
+                    .filter(subscription -> subscription.userId().equals(userId))
+                    .forEach(subscription -> removeSubscription(subscription.sessionId()));
+        }
+        send(sends);
+    }
+
+    private void rebuild(Long serverId) {
+        lists.invalidate(serverId);
+        liveLists.remove(serverId);
+        Map<String, Subscription> serverSubscriptions = subscriptions.get(serverId);
+        if (serverSubscriptions == null || serverSubscriptions.isEmpty()) {
+            return;
+        }
+        MemberList list = liveList(serverId);
+        List<Send> sends = new ArrayList<>(serverSubscriptions.size());
+        List<String> removed = new ArrayList<>();
+        list.lock.lock();
+        try {
+            for (Subscription subscription : serverSubscriptions.values()) {
+                // Вышедшие участники и подписчики удаленного сервера больше не получают список
+                if (!list.contains(subscription.userId())) {
+                    removed.add(subscription.sessionId());
+                    continue;
+                }
+                sends.add(new Send(subscription, update(serverId, list, List.of(
+                        MemberListOp.sync(subscription.start(), list.items(subscription.start(), subscription.end()))))));
+            }
+        } finally {
+            list.lock.unlock();
+        }
+        removed.forEach(this::removeSubscription);
+        send(sends);
+    }
+
+    /**
+     * Список, с которым синхронизированы подписчики сервера. Если его нет или кэш держит другой
+     * список, подписчики сначала получают SYNC нового.
+     */
+    private MemberList liveList(Long serverId) {
+        MemberList live = liveLists.get(serverId);
+        MemberList cached = lists.getIfPresent(serverId);
+        if (live != null && live == cached) {
+            return live;
+        }
+        if (live != null) {
+            rebuild(serverId);
+            return liveLists.get(serverId);
+        }
+        // Поток обновлений видит все закоммиченные изменения, которые уже применил: проверка поколения не нужна
+        MemberList list = cached != null ? cached : load(serverId);
+        lists.put(serverId, list);
+        liveLists.put(serverId, list);
+        return list;
+    }
+
+    /** Строка на index удалена; после удаления в диапазон может войти строка снизу. */
+    private static void removeOps(MemberList list, Subscription subscription, int index, List<MemberListOp> ops) {
+        if (index > subscription.end()) {
+            return;
+        }
+        ops.add(MemberListOp.delete(Math.max(index, subscription.start())));
+        if (subscription.end() < list.size()) {
+            ops.add(MemberListOp.insert(subscription.end(), list.item(subscription.end())));
+        }
+    }
+
+    /** Строка вставлена на index; строки диапазона за ней сдвигаются вниз. */
+    private static void insertOps(MemberList list, Subscription subscription, int index, List<MemberListOp> ops) {
+        if (index > subscription.end()) {
+            return;
+        }
+        int at = Math.max(index, subscription.start());
+        ops.add(MemberListOp.insert(at, list.item(at)));
+    }
+
+    private void removeSubscription(String sessionId) {
+        Subscription subscription = sessionSubscriptions.remove(sessionId);
+        if (subscription == null) {
+            return;
+        }
+        Map<String, Subscription> serverSubscriptions = subscriptions.get(subscription.serverId());
+        if (serverSubscriptions != null) {
+            serverSubscriptions.remove(sessionId);
+            if (serverSubscriptions.isEmpty()) {
+                subscriptions.remove(subscription.serverId());
+                liveLists.remove(subscription.serverId());
+            }
+        }
+    }
+
+    private static void collectServers(Map<Long, MemberList> source, Long userId, Set<Long> serverIds) {
+        source.forEach((serverId, list) -> {
+            list.lock.lock();
+            try {
+                if (list.contains(userId)) {
+                    serverIds.add(serverId);
+                }
+            } finally {
+                list.lock.unlock();
+            }
+        });
+    }
+
+    // ===== HELPERS =====
+
+    private MemberList getList(Long serverId) {
+        MemberList cached = lists.getIfPresent(serverId);
+        if (cached != null) {
+            return cached;
+        }
+        // Запросы вне внутренней блокировки кэша, как в CacheLoads
+        long observedGeneration = generation.get();
+        MemberList loaded = load(serverId);
+        // Список, уже установленный потоком обновлений, не заменяется: с ним синхронизированы подписчики
+        MemberList existing = lists.asMap().putIfAbsent(serverId, loaded);
+        if (existing != null) {
+            return existing;
+        }
+        if (generation.get() != observedGeneration) {
+            lists.asMap().remove(serverId, loaded);
+        }
+        return loaded;
+    }
+
+    private MemberList load(Long serverId) {
+        return new MemberList(
+                serverRoleRepository.findByServerIdAndIsActiveTrueAndHoistTrue(serverId),
+                serverMemberRepository.findMemberListRows(serverId),
+                serverMemberRoleRepository.findHoistedRoleRowsByServerId(serverId));
+    }
+
+    private void validateRange(int start, int end) {
+        if (start < 0 || end < start || end - start >= maxRange) {
+            throw new InvalidMemberListRangeException(
+                    BusinessRuleMessage.BUSINESS_MEMBER_LIST_RANGE_INVALID_MESSAGE.getMessage());
+        }
+    }
+
+    private static void requireMember(MemberList list, Long userId) {
+        if (!list.contains(userId)) {
+            throw insufficientPermissions();
+        }
+    }
+
+    private static InsufficientPermissionsException insufficientPermissions() {
+        return new InsufficientPermissionsException(
+                HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+    }
+
+    private static MemberListUpdate update(Long serverId, MemberList list, List<MemberListOp> ops) {
+        return new MemberListUpdate(serverId, list.size(), list.groups(), ops);
+    }
+
+    private void afterCommit(Runnable change) {
+        Runnable schedule = () -> {
+            generation.incrementAndGet();
+            submit(change);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule.run();
+                }
+            });
+        } else {
+            schedule.run();
+        }
+    }
+
+    private void submit(Runnable task) {
+        try {
+            executor.execute(() -> runSafely(task));
+        } catch (RejectedExecutionException e) {
+            // Остановка приложения
+            log.debug("Member list update dropped: executor is shut down");
+        }
+    }
+
+    private void send(List<Send> sends) {
+        for (Send send : sends) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setSessionId(send.subscription().sessionId());
+            accessor.setLeaveMutable(true);
+            MessageHeaders headers = accessor.getMessageHeaders();
+            messagingTemplate.convertAndSendToUser(send.subscription().username(), DESTINATION, send.update(), headers);
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.warn("Member list update failed", e);
+        }
+    }
+
+    private record Subscription(Long serverId, Long userId, String username, String sessionId, int start, int end) {
+
+        boolean covers(int index) {
+            return index >= start && index <= end;
+        }
+    }
+
+    private record Send(Subscription subscription, MemberListUpdate update) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.zvonok.service.message;
+
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.model.Channel;
+import com.zvonok.model.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps channel messages to the event payload broadcast to {@code /topic/channel.*}.
+ *
+ * Преобразует сообщения канала в полезную нагрузку событий, рассылаемых в {@code /topic/channel.*}.
+ */
+@Component
+public class ChannelMessageMapper {
+
+    /**
+     * Builds the channel message payload; the event type is set by the caller.
+     *
+     * Создает полезную нагрузку сообщения канала; тип события задает вызывающий.
+     *
+     * @param message  the message
+     *                 сообщение
+     * @param channel  the channel of the message
+     *                 канал сообщения
+     * @return the payload without an event type
+     *         полезная нагрузка без типа события
+     */
+    public ChannelMessageResponse toResponse(Message message, Channel channel) {
+        ChannelMessageResponse response = new ChannelMessageResponse();
+        response.setId(message.getId());
+        response.setContent(message.getContent());
+        response.setSenderUsername(message.getSender().getUsername());
+        response.setSenderId(message.getSender().getId());
+        response.setSentAt(message.getSentAt());
+        response.setMessageType(message.getType());
+        response.setChannelId(channel.getId());
+        response.setChannelName(channel.getName());
+        response.setServerId(channel.getFolder().getServer().getId());
+        response.setIsEdited(message.isEdited());
+        if (message.getReplyToMessage() != null) {
+            response.setReplyToMessageId(message.getReplyToMessage().getId().toString());
+        }
+        return response;
+    }
+}
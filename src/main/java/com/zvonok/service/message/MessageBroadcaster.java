@@ -0,0 +1,106 @@
+package com.zvonok.service.message;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.controller.dto.MessageResponse;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Fan-out of chat message events with a single serialization per event.
+ * <p>
+ * {@code convertAndSend}/{@code convertAndSendToUser} run the generic message converter chain
+ * for every call, so a private message to N members was serialized N times. Here the event is
+ * written to JSON bytes once with an {@link ObjectWriter} pre-built from the application
+ * {@link ObjectMapper} (the same one the STOMP Jackson converter uses), and that byte array is sent
+ * as the payload of every destination. The broker and the user destination resolver copy only
+ * headers per session, so all recipient sessions share one buffer. The array is never modified
+ * after serialization.
+ *
+ * Рассылка событий сообщений с одной сериализацией на событие.
+ * <p>
+ * {@code convertAndSend}/{@code convertAndSendToUser} прогоняют общую цепочку конвертеров при каждом
+ * вызове, поэтому приватное сообщение для N участников сериализовалось N раз. Здесь событие один раз
+ * пишется в JSON-байты заранее созданным {@link ObjectWriter} из {@link ObjectMapper} приложения
+ * (того же, что использует Jackson-конвертер STOMP), и этот массив становится полезной нагрузкой
+ * всех назначений. Брокер и разрешение пользовательских назначений копируют на сессию только
+ * заголовки, поэтому все сессии получателей разделяют один буфер. После сериализации массив
+ * не изменяется.
+ */
+@Component
+public class MessageBroadcaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectWriter messageWriter;
+    private final ObjectWriter channelMessageWriter;
+
+    public MessageBroadcaster(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.messageWriter = objectMapper.writerFor(MessageResponse.class);
+        this.channelMessageWriter = objectMapper.writerFor(ChannelMessageResponse.class);
+    }
+
+    /**
+     * Publishes a channel message event to a topic.
+     *
+     * Публикует событие сообщения канала в топик.
+     *
+     * @param destination  the topic, e.g. {@code /topic/channel.42}
+     *                     топик, например {@code /topic/channel.42}
+     * @param response     the event payload
+     *                     полезная нагрузка события
+     */
+    public void toTopic(String destination, ChannelMessageResponse response) {
+        send(destination, serialize(channelMessageWriter, response));
+    }
+
+    /**
+     * Sends a room message event to the user destination of every recipient, serializing it once.
+     *
+     * Отправляет событие сообщения комнаты в пользовательское назначение каждого получателя,
+     * сериализуя его один раз.
+     *
+     * @param usernames    the recipients
+     *                     получатели
+     * @param destination  the user destination, e.g. {@code /queue/messages}
+     *                     пользовательское назначение, например {@code /queue/messages}
+     * @param response     the event payload
+     *                     полезная нагрузка события
+     */
+    public void toUsers(Collection<String> usernames, String destination, MessageResponse response) {
+        byte[] payload = serialize(messageWriter, response);
+        String prefix = messagingTemplate.getUserDestinationPrefix();
+        for (String username : usernames) {
+            // Как в SimpMessagingTemplate.convertAndSendToUser: '/' в имени экранируется
+            send(prefix + StringUtils.replace(username, "/", "%2F") + destination, payload);
+        }
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    private static byte[] serialize(ObjectWriter writer, Object response) {
+        try {
+            return writer.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new MessageConversionException("Could not serialize " + response.getClass().getSimpleName(), e);
+        }
+    }
+
+    private void send(String destination, byte[] payload) {
+        // Заголовки свои на каждое назначение, массив полезной нагрузки общий
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+}
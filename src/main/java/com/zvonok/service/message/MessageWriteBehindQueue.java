@@ -0,0 +1,451 @@
+package com.zvonok.service.message;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zvonok.exception.MessageStorageUnavailableException;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.model.Message;
+import com.zvonok.model.id.SnowflakeIdGenerator;
+import com.zvonok.service.metrics.ChatMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind pipeline for new chat messages. The sender gets an id from {@link SnowflakeIdGenerator}
+ * right away, the message is broadcast, and a single flusher thread writes queued messages
+ * with one JDBC batch INSERT per transaction.
+ * <p>
+ * The queue is bounded: when it is full the producer waits up to {@code offer-timeout} and then gets
+ * {@link MessageStorageUnavailableException}. With durability {@code group-commit} the producer
+ * additionally waits until its batch is committed, trading latency for no loss on crash.
+ * <p>
+ * Inside a transaction the message is queued only after that transaction commits, so a rolled back
+ * send never reaches the flusher; its queue slot is reserved up front so backpressure still fails
+ * the send before commit.
+ *
+ * Отложенная (write-behind) запись новых сообщений чата. Отправитель сразу получает id из
+ * {@link SnowflakeIdGenerator}, сообщение рассылается, а один поток-флашер записывает очередь
+ * одним пакетным JDBC INSERT на транзакцию.
+ * <p>
+ * Очередь ограничена: при заполнении отправитель ждет до {@code offer-timeout}, затем получает
+ * {@link MessageStorageUnavailableException}. В режиме {@code group-commit} отправитель дополнительно
+ * ждет коммита своего пакета - задержка выше, но сообщения не теряются при падении узла.
+ * <p>
+ * Внутри транзакции сообщение ставится в очередь только после ее коммита, поэтому откаченная отправка
+ * не доходит до флашера; место в очереди резервируется заранее, чтобы переполнение по-прежнему
+ * отклоняло отправку до коммита.
+ */
+@Component
+@Slf4j
+public class MessageWriteBehindQueue {
+
+    private static final String INSERT_SQL = "insert into \"message\" "
+            + "(\"id\", \"sender_id\", \"room_id\", \"channel_id\", \"content\", \"type\", "
+            + "\"reply_to_message_id\", \"edited_at\", \"deleted_at\", \"sent_at\") "
+            + "values (?, ?, ?, ?, ?, ?, ?, null, null, ?)";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final SnowflakeIdGenerator idGenerator;
+    private final ChatMetrics chatMetrics;
+
+    @Value("${app.message.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.message.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.message.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.message.write-behind.linger:PT0.005S}")
+    private Duration linger;
+
+    @Value("${app.message.write-behind.offer-timeout:PT0.5S}")
+    private Duration offerTimeout;
+
+    @Value("${app.message.write-behind.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${app.message.write-behind.retry-backoff:PT0.2S}")
+    private Duration retryBackoff;
+
+    @Value("${app.message.write-behind.shutdown-timeout:PT10S}")
+    private Duration shutdownTimeout;
+
+    @Value("${app.message.write-behind.durability:async}")
+    private Durability durability;
+
+    @Value("${app.message.write-behind.group-commit-timeout:PT5S}")
+    private Duration groupCommitTimeout;
+
+    private HikariDataSource writerDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private BlockingQueue<PendingMessage> queue;
+    // Места в очереди, зарезервированные до коммита; флашер освобождает их, забирая пакет
+    private Semaphore slots;
+    private final ConcurrentHashMap<Long, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private Thread flusher;
+    private volatile boolean running;
+
+    private final LongAdder persistedMessages = new LongAdder();
+    private final LongAdder failedMessages = new LongAdder();
+    private final LongAdder rejectedMessages = new LongAdder();
+
+    public MessageWriteBehindQueue(DataSourceProperties dataSourceProperties, SnowflakeIdGenerator idGenerator,
+                                   ChatMetrics chatMetrics) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.idGenerator = idGenerator;
+        this.chatMetrics = chatMetrics;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // Отдельное соединение флашера: в режиме group-commit отправители ждут коммита, удерживая
+        // соединения основного пула, и общий пул мог бы исчерпаться (взаимная блокировка)
+        writerDataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        writerDataSource.setPoolName("message-write-behind");
+        writerDataSource.setMaximumPoolSize(1);
+        jdbcTemplate = new JdbcTemplate(writerDataSource);
+        transactionTemplate = new TransactionTemplate(new JdbcTransactionManager(writerDataSource));
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        slots = new Semaphore(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "message-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Message write-behind enabled: capacity={}, batchSize={}, durability={}",
+                queueCapacity, batchSize, durability);
+    }
+
+    /**
+     * Drains the queue on shutdown, waiting up to {@code shutdown-timeout}.
+     * При остановке дописывает очередь, ожидая не дольше {@code shutdown-timeout}.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(shutdownTimeout.toMillis());
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+            log.error("Message write-behind stopped with {} unsaved messages", queue.size());
+        }
+        writerDataSource.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Assigns an id to the message and queues it for persistence. Inside a transaction the message
+     * is queued after commit and dropped on rollback. Returns once the message is queued (async)
+     * or committed (group-commit); in a transaction the group-commit wait happens after commit.
+     *
+     * Назначает сообщению id и ставит его в очередь на запись. Внутри транзакции сообщение ставится
+     * в очередь после коммита и отбрасывается при откате. Возвращает управление после постановки
+     * в очередь (async) или после коммита (group-commit); в транзакции ожидание group-commit
+     * происходит после коммита.
+     *
+     * @param message  new message with sender and target set
+     *                 новое сообщение с заполненными отправителем и получателем
+     * @return the same message with the id assigned
+     *         то же сообщение с назначенным id
+     * @throws MessageStorageUnavailableException если очередь переполнена или пакет не удалось записать
+     */
+    public Message submit(Message message) {
+        message.setId(idGenerator.nextId());
+        PendingMessage pending = PendingMessage.of(message);
+
+        boolean reserved;
+        try {
+            reserved = slots.tryAcquire(offerTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reserved = false;
+        }
+        if (!reserved) {
+            rejectedMessages.increment();
+            throw new MessageStorageUnavailableException(
+                    HttpResponseMessage.HTTP_MESSAGE_STORAGE_UNAVAILABLE_RESPONSE_MESSAGE.getMessage());
+        }
+        inFlight.put(pending.id(), pending.persisted());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        discard(pending);
+                    }
+                }
+            });
+        } else {
+            enqueue(pending);
+        }
+        return message;
+    }
+
+    /**
+     * Ставит сообщение в зарезервированное место очереди; в режиме group-commit ждет записи пакета.
+     */
+    private void enqueue(PendingMessage pending) {
+        // Место зарезервировано в submit, поэтому очередь не может быть заполнена
+        queue.add(pending);
+        if (durability == Durability.GROUP_COMMIT && !await(pending.persisted(), groupCommitTimeout)) {
+            throw new MessageStorageUnavailableException(
+                    HttpResponseMessage.HTTP_MESSAGE_STORAGE_UNAVAILABLE_RESPONSE_MESSAGE.getMessage());
+        }
+    }
+
+    /**
+     * Отбрасывает сообщение откаченной транзакции: освобождает место и будит ожидающих записи.
+     */
+    private void discard(PendingMessage pending) {
+        slots.release();
+        inFlight.remove(pending.id());
+        pending.persisted().completeExceptionally(new IllegalStateException(
+                "Transaction of message " + pending.id() + " was rolled back"));
+    }
+
+    /**
+     * Waits until a still queued message reaches the database, so that edit/delete
+     * right after sending find the row. Returns immediately for already stored messages.
+     *
+     * Дожидается записи сообщения, которое еще в очереди, чтобы редактирование/удаление
+     * сразу после отправки нашло строку. Для уже сохраненных сообщений возвращается сразу.
+     */
+    public void awaitPersisted(Long messageId) {
+        CompletableFuture<Void> persisted = inFlight.get(messageId);
+        if (persisted != null) {
+            await(persisted, groupCommitTimeout);
+        }
+    }
+
+    /**
+     * Completion of a message submitted on this node: completes when its batch is committed and
+     * completes exceptionally when the send is rolled back or the message is lost. Messages that are
+     * not in the queue are already stored, so the returned future is already complete.
+     *
+     * Завершение записи сообщения, отправленного на этом узле: завершается после коммита его пакета
+     * и завершается с ошибкой, если отправка откачена или сообщение потеряно. Сообщения не в очереди
+     * уже сохранены, поэтому для них возвращается завершенный future.
+     */
+    public CompletableFuture<Void> persisted(Long messageId) {
+        CompletableFuture<Void> persisted = inFlight.get(messageId);
+        return persisted != null ? persisted : CompletableFuture.completedFuture(null);
+    }
+
+    /** Сообщение отправлено на этом узле и еще ждет записи. */
+    public boolean isInFlight(Long messageId) {
+        return inFlight.containsKey(messageId);
+    }
+
+    // ===== METRICS =====
+
+    /** Текущее количество сообщений в очереди. */
+    public int queueDepth() {
+        return queue != null ? queue.size() : 0;
+    }
+
+    /** Количество записанных в БД сообщений. */
+    public long persistedCount() {
+        return persistedMessages.sum();
+    }
+
+    /** Количество сообщений, которые не удалось записать после всех повторов. */
+    public long failedCount() {
+        return failedMessages.sum();
+    }
+
+    /** Количество сообщений, отклоненных из-за переполненной очереди. */
+    public long rejectedCount() {
+        return rejectedMessages.sum();
+    }
+
+    // ===== FLUSHER =====
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collectBatch(batch);
+                slots.release(batch.size());
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error in message write-behind", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Добирает пакет: сначала все, что уже в очереди, затем ждет не дольше linger,
+     * чтобы под умеренной нагрузкой сообщения шли пакетами, а не по одному.
+     */
+    private void collectBatch(List<PendingMessage> batch) throws InterruptedException {
+        queue.drainTo(batch, batchSize - batch.size());
+        long deadline = System.nanoTime() + linger.toNanos();
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) throws InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            long started = System.nanoTime();
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), MessageWriteBehindQueue::bind));
+                chatMetrics.writeBehindFlushTimer().record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                batch.forEach(this::complete);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= maxRetries) {
+                    log.error("Failed to write batch of {} messages after {} attempts, writing one by one",
+                            batch.size(), attempt + 1, e);
+                    flushOneByOne(batch);
+                    return;
+                }
+                log.warn("Failed to write batch of {} messages (attempt {}): {}",
+                        batch.size(), attempt + 1, e.getMessage());
+                Thread.sleep(retryBackoff.toMillis() * (attempt + 1));
+            }
+        }
+    }
+
+    /**
+     * Изолирует "ядовитые" строки (например, канал удален до записи): остальные сообщения пакета сохраняются.
+     */
+    private void flushOneByOne(List<PendingMessage> batch) {
+        for (PendingMessage pending : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, pending)));
+                complete(pending);
+            } catch (RuntimeException e) {
+                failedMessages.increment();
+                inFlight.remove(pending.id());
+                pending.persisted().completeExceptionally(e);
+                log.error("Message {} from user {} was lost: {}", pending.id(), pending.senderId(), e.getMessage());
+            }
+        }
+    }
+
+    private void complete(PendingMessage pending) {
+        persistedMessages.increment();
+        inFlight.remove(pending.id());
+        pending.persisted().complete(null);
+    }
+
+    private static boolean await(CompletableFuture<Void> future, Duration timeout) {
+        try {
+            future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private static void bind(PreparedStatement ps, PendingMessage message) throws SQLException {
+        ps.setLong(1, message.id());
+        ps.setLong(2, message.senderId());
+        ps.setObject(3, message.roomId(), Types.BIGINT);
+        ps.setObject(4, message.channelId(), Types.BIGINT);
+        ps.setString(5, message.content());
+        ps.setString(6, message.type());
+        ps.setObject(7, message.replyToMessageId(), Types.BIGINT);
+        ps.setTimestamp(8, Timestamp.valueOf(message.sentAt()));
+    }
+
+    /**
+     * async - ответ отправителю сразу после постановки в очередь;
+     * group-commit - после коммита пакета, в который попало сообщение.
+     */
+    public enum Durability {
+        ASYNC,
+        GROUP_COMMIT
+    }
+
+    /**
+     * Снимок полей сообщения для INSERT: флашер не трогает JPA-сущности из другого потока.
+     */
+    private record PendingMessage(long id, long senderId, Long roomId, Long channelId, String content,
+                                  String type, Long replyToMessageId, LocalDateTime sentAt,
+                                  CompletableFuture<Void> persisted) {
+
+        static PendingMessage of(Message message) {
+            return new PendingMessage(
+                    message.getId(),
+                    message.getSender().getId(),
+                    message.getRoom() != null ? message.getRoom().getId() : null,
+                    message.getChannel() != null ? message.getChannel().getId() : null,
+                    message.getContent(),
+                    message.getType().name(),
+                    message.getReplyToMessage() != null ? message.getReplyToMessage().getId() : null,
+                    message.getSentAt(),
+                    new CompletableFuture<>());
+        }
+    }
+}
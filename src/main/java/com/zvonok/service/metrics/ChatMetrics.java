@@ -0,0 +1,114 @@
+package com.zvonok.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Timers of the chat hot paths, registered once at startup so recording costs no registry lookup.
+ * {@code zvonok.message.send} is split by message kind and phase: {@code persist} covers the JPA save
+ * or the enqueue into the write-behind queue, {@code broadcast} covers handing the payload to the broker.
+ * {@code zvonok.permission.check} is split by scope (channel, folder, server).
+ * {@code zvonok.message.throttled} counts sends rejected by flood control or slow mode.
+ * {@code zvonok.message.write-behind.flush} records every batch written by the write-behind flusher.
+ *
+ * Таймеры горячих путей чата, регистрируются один раз при запуске, поэтому запись не ищет метрику в реестре.
+ * {@code zvonok.message.send} делится по типу сообщения и фазе: {@code persist} - сохранение через JPA
+ * или постановка в очередь отложенной записи, {@code broadcast} - передача сообщения брокеру.
+ * {@code zvonok.permission.check} делится по области проверки (канал, папка, сервер).
+ * {@code zvonok.message.throttled} считает отправки, отклоненные защитой от флуда или медленным режимом.
+ * {@code zvonok.message.write-behind.flush} - каждая запись пакета потоком отложенной записи.
+ */
+@Component
+public class ChatMetrics {
+
+    private final Map<MessageKind, Timer> persistTimers = new EnumMap<>(MessageKind.class);
+    private final Map<MessageKind, Timer> broadcastTimers = new EnumMap<>(MessageKind.class);
+    private final Map<PermissionScope, Timer> permissionTimers = new EnumMap<>(PermissionScope.class);
+    private final Map<MessageKind, Counter> floodCounters = new EnumMap<>(MessageKind.class);
+    private final Counter slowModeCounter;
+    private final Timer writeBehindFlushTimer;
+
+    public ChatMetrics(MeterRegistry registry) {
+        for (MessageKind kind : MessageKind.values()) {
+            persistTimers.put(kind, messageTimer(registry, kind, "persist"));
+            broadcastTimers.put(kind, messageTimer(registry, kind, "broadcast"));
+            floodCounters.put(kind, throttledCounter(registry, kind, "flood"));
+        }
+        // Медленный режим есть только у каналов
+        slowModeCounter = throttledCounter(registry, MessageKind.CHANNEL, "slow_mode");
+        for (PermissionScope scope : PermissionScope.values()) {
+            permissionTimers.put(scope, Timer.builder("zvonok.permission.check")
+                    .description("Permission check latency")
+                    .tag("scope", scope.tag())
+                    .register(registry));
+        }
+        writeBehindFlushTimer = Timer.builder("zvonok.message.write-behind.flush")
+                .description("Duration of one write-behind batch INSERT transaction")
+                .register(registry);
+    }
+
+    public Timer persistTimer(MessageKind kind) {
+        return persistTimers.get(kind);
+    }
+
+    public Timer broadcastTimer(MessageKind kind) {
+        return broadcastTimers.get(kind);
+    }
+
+    public Timer permissionTimer(PermissionScope scope) {
+        return permissionTimers.get(scope);
+    }
+
+    public Counter floodCounter(MessageKind kind) {
+        return floodCounters.get(kind);
+    }
+
+    public Counter slowModeCounter() {
+        return slowModeCounter;
+    }
+
+    public Timer writeBehindFlushTimer() {
+        return writeBehindFlushTimer;
+    }
+
+    private static Counter throttledCounter(MeterRegistry registry, MessageKind kind, String reason) {
+        return Counter.builder("zvonok.message.throttled")
+                .description("Messages rejected by flood control or slow mode")
+                .tag("kind", kind.tag())
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Timer messageTimer(MeterRegistry registry, MessageKind kind, String phase) {
+        return Timer.builder("zvonok.message.send")
+                .description("Message send latency by phase")
+                .tag("kind", kind.tag())
+                .tag("phase", phase)
+                .register(registry);
+    }
+
+    public enum MessageKind {
+        PRIVATE,
+        GROUP,
+        CHANNEL;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    public enum PermissionScope {
+        CHANNEL,
+        FOLDER,
+        SERVER;
+
+        String tag() {
+            return name().toLowerCase();
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.zvonok.service.presence;
+
+import com.zvonok.controller.dto.PresenceUpdate;
+import com.zvonok.model.enumeration.UserStatus;
+import com.zvonok.repository.FriendshipRepository;
+import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.security.dto.UserPrincipal;
+import com.zvonok.service.dto.UserLink;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.security.Principal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory presence driven by STOMP sessions. Keeps user → session count and status
+ * (ONLINE while at least one session is open, AWAY after {@code away-after} without frames
+ * from the client, OFFLINE after the last session closes).
+ * <p>
+ * Status changes are coalesced per {@code broadcast-interval}: one tick sends each online
+ * friend or server co-member a single list of updates to {@code /user/queue/presence}.
+ * {@code lastSeenAt} and {@code status} are written to the database in JDBC batches every
+ * {@code flush-interval} instead of per event. State is per node: with the broker relay
+ * only sessions connected to this node are tracked.
+ *
+ * Присутствие пользователей в памяти по STOMP-сессиям. Хранит для пользователя число сессий
+ * и статус (ONLINE, пока открыта хотя бы одна сессия; AWAY, если клиент не присылал кадров
+ * дольше {@code away-after}; OFFLINE после закрытия последней сессии).
+ * <p>
+ * Изменения статусов объединяются за {@code broadcast-interval}: за один тик каждый друг или
+ * участник общего сервера, находящийся в сети, получает один список изменений в
+ * {@code /user/queue/presence}. {@code lastSeenAt} и {@code status} пишутся в БД пакетами
+ * раз в {@code flush-interval}, а не на каждое событие. Состояние локально для узла: в режиме
+ * relay учитываются только сессии, подключенные к этому узлу.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private static final String UPDATE_LAST_SEEN_SQL =
+            "update \"user\" set \"last_seen_at\" = ?, \"status\" = ? where \"id\" = ?";
+
+    // Ограничение размера списка IN в запросах получателей
+    private static final int AUDIENCE_QUERY_CHUNK = 1000;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final FriendshipRepository friendshipRepository;
+    private final ServerMemberRepository serverMemberRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.presence.away-after:PT5M}")
+    private Duration awayAfter;
+
+    @Value("${app.presence.broadcast-interval:PT1S}")
+    private Duration broadcastInterval;
+
+    @Value("${app.presence.flush-interval:PT30S}")
+    private Duration flushInterval;
+
+    @Value("${app.presence.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    private final ConcurrentHashMap<Long, UserPresence> online = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, StatusChange> pendingChanges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, LocalDateTime> dirtyLastSeen = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    // SimpMessagingTemplate ленивый: сервис нужен перехватчику входящего канала, который
+    // регистрируется в той же конфигурации брокера, что создает шаблон
+    public PresenceService(@Lazy SimpMessagingTemplate messagingTemplate,
+                           FriendshipRepository friendshipRepository,
+                           ServerMemberRepository serverMemberRepository,
+                           JdbcTemplate jdbcTemplate) {
+        this.messagingTemplate = messagingTemplate;
+        this.friendshipRepository = friendshipRepository;
+        this.serverMemberRepository = serverMemberRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = broadcastInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runSafely(this::tick), tick, tick, TimeUnit.MILLISECONDS);
+        long flush = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runSafely(this::flushLastSeen), flush, flush, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timers and writes the final state: users still connected to this node go OFFLINE.
+     * Останавливает таймеры и записывает итоговое состояние: подключенные к узлу пользователи уходят в OFFLINE.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        LocalDateTime now = LocalDateTime.now();
+        online.keySet().forEach(userId -> dirtyLastSeen.put(userId, now));
+        online.clear();
+        runSafely(this::flushLastSeen);
+    }
+
+    @EventListener
+    public void onSessionConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        Principal user = event.getUser();
+        if (sessionId != null && user instanceof UserPrincipal principal && principal.getUserId() != null) {
+            sessionConnected(sessionId, principal.getUserId(), principal.getUsername());
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        sessionDisconnected(event.getSessionId());
+    }
+
+    /**
+     * Registers a new session; the first session of a user makes them ONLINE.
+     * Регистрирует новую сессию; первая сессия пользователя переводит его в ONLINE.
+     */
+    public void sessionConnected(String sessionId, Long userId, String username) {
+        // Повторное событие для той же сессии не увеличивает счетчик
+        if (sessionUsers.putIfAbsent(sessionId, userId) != null) {
+            return;
+        }
+        long now = System.nanoTime();
+        online.compute(userId, (id, presence) -> {
+            if (presence == null) {
+                presence = new UserPresence(username, now);
+                recordChange(id, username, UserStatus.OFFLINE, UserStatus.ONLINE);
+            } else if (presence.status == UserStatus.AWAY) {
+                presence.status = UserStatus.ONLINE;
+                recordChange(id, username, UserStatus.AWAY, UserStatus.ONLINE);
+            }
+            presence.sessions++;
+            presence.lastActivityNanos = now;
+            return presence;
+        });
+        dirtyLastSeen.put(userId, LocalDateTime.now());
+    }
+
+    /**
+     * Removes a session; when the last one closes the user becomes OFFLINE.
+     * Удаляет сессию; после закрытия последней пользователь переходит в OFFLINE.
+     */
+    public void sessionDisconnected(String sessionId) {
+        Long userId = sessionUsers.remove(sessionId);
+        if (userId == null) {
+            return;
+        }
+        online.computeIfPresent(userId, (id, presence) -> {
+            if (--presence.sessions > 0) {
+                return presence;
+            }
+            recordChange(id, presence.username, presence.status, UserStatus.OFFLINE);
+            return null;
+        });
+        dirtyLastSeen.put(userId, LocalDateTime.now());
+    }
+
+    /**
+     * A client frame (SEND, SUBSCRIBE) on the session: the user is active, AWAY turns back into ONLINE.
+     * Кадр клиента (SEND, SUBSCRIBE) в сессии: пользователь активен, AWAY снова становится ONLINE.
+     */
+    public void recordActivity(String sessionId) {
+        Long userId = sessionUsers.get(sessionId);
+        if (userId == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        UserPresence presence = online.get(userId);
+        if (presence == null) {
+            return;
+        }
+        presence.lastActivityNanos = now;
+        if (presence.status == UserStatus.AWAY) {
+            online.computeIfPresent(userId, (id, current) -> {
+                if (current.status == UserStatus.AWAY) {
+                    current.status = UserStatus.ONLINE;
+                    recordChange(id, current.username, UserStatus.AWAY, UserStatus.ONLINE);
+                }
+                return current;
+            });
+        }
+        dirtyLastSeen.put(userId, LocalDateTime.now());
+    }
+
+    /**
+     * A STOMP heartbeat: the connection is alive, but it does not count as user activity.
+     * Heartbeat STOMP: соединение живо, но активностью пользователя это не считается.
+     */
+    public void recordHeartbeat(String sessionId) {
+        Long userId = sessionUsers.get(sessionId);
+        if (userId != null) {
+            dirtyLastSeen.put(userId, LocalDateTime.now());
+        }
+    }
+
+    /** Текущий статус пользователя на этом узле (OFFLINE, если сессий нет). */
+    public UserStatus getStatus(Long userId) {
+        UserPresence presence = online.get(userId);
+        return presence != null ? presence.status : UserStatus.OFFLINE;
+    }
+
+    public boolean isOnline(Long userId) {
+        return online.containsKey(userId);
+    }
+
+    public int onlineUserCount() {
+        return online.size();
+    }
+
+    private void recordChange(Long userId, String username, UserStatus from, UserStatus to) {
+        // Несколько изменений за тик сворачиваются: остается исходный статус и последний
+        pendingChanges.merge(userId, new StatusChange(username, from, to),
+                (previous, next) -> new StatusChange(username, previous.from(), next.to()));
+    }
+
+    private void tick() {
+        markIdleUsersAway();
+        broadcastChanges();
+    }
+
+    private void markIdleUsersAway() {
+        long idleSince = System.nanoTime() - awayAfter.toNanos();
+        online.forEach((userId, presence) -> {
+            if (presence.status == UserStatus.ONLINE && presence.lastActivityNanos - idleSince < 0) {
+                online.computeIfPresent(userId, (id, current) -> {
+                    if (current.status == UserStatus.ONLINE && current.lastActivityNanos - idleSince < 0) {
+                        current.status = UserStatus.AWAY;
+                        recordChange(id, current.username, UserStatus.ONLINE, UserStatus.AWAY);
+                    }
+                    return current;
+                });
+            }
+        });
+    }
+
+    private void broadcastChanges() {
+        if (pendingChanges.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, PresenceUpdate> updates = new LinkedHashMap<>();
+        for (Long userId : pendingChanges.keySet()) {
+            StatusChange change = pendingChanges.remove(userId);
+            // Ушел и вернулся за один тик - для получателей ничего не изменилось
+            if (change != null && change.from() != change.to()) {
+                updates.put(userId, new PresenceUpdate(userId, change.username(), change.to(), now));
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        // Получатели - только пользователи в сети на этом узле: участники общих серверов ищутся
+        // среди них, а не среди всех участников (на сервере в 10k человек это миллионы пар за тик)
+        List<Long> onlineUserIds = new ArrayList<>(online.keySet());
+        if (onlineUserIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Map<Long, PresenceUpdate>> byRecipient = new HashMap<>();
+        List<Long> changedUserIds = new ArrayList<>(updates.keySet());
+        for (List<Long> chunk : chunks(changedUserIds)) {
+            for (UserLink link : friendshipRepository.findLinksByUserIds(chunk)) {
+                route(byRecipient, updates, link.getUserId(), link.getOtherUserId());
+                route(byRecipient, updates, link.getOtherUserId(), link.getUserId());
+            }
+            for (List<Long> recipients : chunks(onlineUserIds)) {
+                for (UserLink link : serverMemberRepository.findCoMemberLinks(chunk, recipients)) {
+                    route(byRecipient, updates, link.getUserId(), link.getOtherUserId());
+                }
+            }
+        }
+
+        byRecipient.forEach((recipientId, recipientUpdates) -> {
+            UserPresence recipient = online.get(recipientId);
+            if (recipient != null) {
+                messagingTemplate.convertAndSendToUser(recipient.username, "/queue/presence",
+                        List.copyOf(recipientUpdates.values()));
+            }
+        });
+    }
+
+    private static List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>((ids.size() + AUDIENCE_QUERY_CHUNK - 1) / AUDIENCE_QUERY_CHUNK);
+        for (int from = 0; from < ids.size(); from += AUDIENCE_QUERY_CHUNK) {
+            chunks.add(ids.subList(from, Math.min(from + AUDIENCE_QUERY_CHUNK, ids.size())));
+        }
+        return chunks;
+    }
+
+    private void route(Map<Long, Map<Long, PresenceUpdate>> byRecipient, Map<Long, PresenceUpdate> updates,
+                       Long changedUserId, Long recipientId) {
+        PresenceUpdate update = updates.get(changedUserId);
+        // Получатели без сессии на этом узле пропускаются
+        if (update != null && online.containsKey(recipientId)) {
+            byRecipient.computeIfAbsent(recipientId, id -> new LinkedHashMap<>()).put(changedUserId, update);
+        }
+    }
+
+    private void flushLastSeen() {
+        if (dirtyLastSeen.isEmpty()) {
+            return;
+        }
+        List<LastSeen> batch = new ArrayList<>(dirtyLastSeen.size());
+        for (Long userId : dirtyLastSeen.keySet()) {
+            LocalDateTime seenAt = dirtyLastSeen.remove(userId);
+            if (seenAt != null) {
+                batch.add(new LastSeen(userId, seenAt, getStatus(userId)));
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_LAST_SEEN_SQL, batch, flushBatchSize, (ps, lastSeen) -> {
+                ps.setTimestamp(1, Timestamp.valueOf(lastSeen.seenAt()));
+                ps.setString(2, lastSeen.status().name());
+                ps.setLong(3, lastSeen.userId());
+            });
+        } catch (RuntimeException e) {
+            // Возвращаем в очередь, если за это время не появилось более свежей отметки
+            batch.forEach(lastSeen -> dirtyLastSeen.putIfAbsent(lastSeen.userId(), lastSeen.seenAt()));
+            throw e;
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Presence task failed", e);
+        }
+    }
+
+    /** Состояние пользователя: sessions и status меняются только внутри compute по его ключу. */
+    private static final class UserPresence {
+        private final String username;
+        private int sessions;
+        private volatile UserStatus status = UserStatus.ONLINE;
+        private volatile long lastActivityNanos;
+
+        private UserPresence(String username, long lastActivityNanos) {
+            this.username = username;
+            this.lastActivityNanos = lastActivityNanos;
+        }
+    }
+
+    private record StatusChange(String username, UserStatus from, UserStatus to) {
+    }
+
+    private record LastSeen(Long userId, LocalDateTime seenAt, UserStatus status) {
+    }
+}
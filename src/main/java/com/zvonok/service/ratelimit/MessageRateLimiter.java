@@ -0,0 +1,156 @@
+package com.zvonok.service.ratelimit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory token buckets for incoming chat messages: a flood bucket per user
+ * ({@code burst} messages, refilled at {@code per-second}) and a slow mode bucket per
+ * (user, channel) holding one message per {@code slowModeSeconds} of the channel.
+ * <p>
+ * Each bucket is stored as a single "theoretical arrival time" (GCRA form of the token bucket),
+ * so an acquire is one map lookup and a few arithmetic operations under the lock of one of
+ * {@code stripes} stripes. A bucket whose time is in the past is full and indistinguishable
+ * from a missing one, so stripes drop such buckets periodically instead of expiring them.
+ * Limits are per node: with several nodes behind a balancer a user gets the limit on each.
+ *
+ * Корзины токенов в памяти для входящих сообщений чата: корзина от флуда на пользователя
+ * ({@code burst} сообщений, пополняется со скоростью {@code per-second}) и корзина медленного
+ * режима на пару (пользователь, канал) - одно сообщение за {@code slowModeSeconds} канала.
+ * <p>
+ * Корзина хранится как одно "теоретическое время прихода" (форма GCRA корзины токенов),
+ * поэтому захват - это один поиск в карте и несколько арифметических операций под блокировкой
+ * одного из {@code stripes} сегментов. Корзина со временем в прошлом полна и ничем не отличается
+ * от отсутствующей, поэтому сегменты периодически удаляют такие корзины вместо истечения по времени.
+ * Лимиты действуют в пределах узла: за балансировщиком пользователь получает лимит на каждом узле.
+ */
+@Component
+public class MessageRateLimiter {
+
+    // Через сколько захватов сегмент удаляет полные корзины
+    private static final int PURGE_EVERY = 1024;
+
+    private final boolean floodEnabled;
+    private final long floodIntervalNanos;
+    private final long floodToleranceNanos;
+
+    private final Stripe<Long>[] userStripes;
+    private final Stripe<SlowModeKey>[] slowModeStripes;
+    private final int stripeMask;
+
+    @SuppressWarnings("unchecked")
+    public MessageRateLimiter(
+            @Value("${app.message.rate-limit.enabled:true}") boolean floodEnabled,
+            @Value("${app.message.rate-limit.burst:10}") int burst,
+            @Value("${app.message.rate-limit.per-second:5}") double perSecond,
+            @Value("${app.message.rate-limit.stripes:64}") int stripes) {
+        this.floodEnabled = floodEnabled && perSecond > 0;
+        this.floodIntervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0L;
+        this.floodToleranceNanos = (Math.max(burst, 1) - 1) * floodIntervalNanos;
+
+        // Число сегментов округляется до степени двойки, чтобы выбирать сегмент по маске
+        int stripeCount = Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1);
+        this.userStripes = new Stripe[stripeCount];
+        this.slowModeStripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            userStripes[i] = new Stripe<>();
+            slowModeStripes[i] = new Stripe<>();
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Takes one token from the user's flood bucket.
+     *
+     * Забирает один токен из корзины пользователя от флуда.
+     *
+     * @param userId  the unique identifier of the sender
+     *                уникальный идентификатор отправителя
+     * @return 0 if the message is allowed, otherwise milliseconds until the next token
+     *         0, если сообщение разрешено, иначе миллисекунды до следующего токена
+     */
+    public long tryAcquireFlood(long userId) {
+        if (!floodEnabled) {
+            return 0L;
+        }
+        Long key = userId;
+        return userStripes[stripeIndex(Long.hashCode(userId))]
+                .tryAcquire(key, floodIntervalNanos, floodToleranceNanos, System.nanoTime());
+    }
+
+    /**
+     * Takes the slow mode token of the user in the channel.
+     *
+     * Забирает токен медленного режима пользователя в канале.
+     *
+     * @param userId           the unique identifier of the sender
+     *                         уникальный идентификатор отправителя
+     * @param channelId        the unique identifier of the channel
+     *                         уникальный идентификатор канала
+     * @param slowModeSeconds  slow mode delay of the channel, 0 or less disables it
+     *                         задержка медленного режима канала, 0 и меньше - выключен
+     * @return 0 if the message is allowed, otherwise milliseconds until the user may post again
+     *         0, если сообщение разрешено, иначе миллисекунды до следующей возможной отправки
+     */
+    public long tryAcquireSlowMode(long userId, long channelId, int slowModeSeconds) {
+        if (slowModeSeconds <= 0) {
+            return 0L;
+        }
+        SlowModeKey key = new SlowModeKey(userId, channelId);
+        return slowModeStripes[stripeIndex(key.hashCode())]
+                .tryAcquire(key, TimeUnit.SECONDS.toNanos(slowModeSeconds), 0L, System.nanoTime());
+    }
+
+    private int stripeIndex(int hash) {
+        // Перемешиваем старшие биты, иначе последовательные id попадают в соседние сегменты неравномерно
+        return (hash ^ (hash >>> 16)) & stripeMask;
+    }
+
+    private record SlowModeKey(long userId, long channelId) {
+    }
+
+    /**
+     * One lock and one map of buckets.
+     * Один сегмент: блокировка и карта корзин.
+     */
+    private static final class Stripe<K> {
+
+        private final Map<K, Bucket> buckets = new HashMap<>();
+        private int acquiresSincePurge;
+
+        synchronized long tryAcquire(K key, long intervalNanos, long toleranceNanos, long now) {
+            if (++acquiresSincePurge >= PURGE_EVERY) {
+                acquiresSincePurge = 0;
+                buckets.values().removeIf(bucket -> bucket.arrivalTime - now <= 0);
+            }
+
+            Bucket bucket = buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(now);
+                buckets.put(key, bucket);
+            }
+
+            // Токен есть, если теоретическое время прихода не опережает текущее больше чем на допуск
+            long arrivalTime = bucket.arrivalTime - now > 0 ? bucket.arrivalTime : now;
+            long waitNanos = arrivalTime - toleranceNanos - now;
+            if (waitNanos > 0) {
+                return Math.max(TimeUnit.NANOSECONDS.toMillis(waitNanos), 1L);
+            }
+            bucket.arrivalTime = arrivalTime + intervalNanos;
+            return 0L;
+        }
+    }
+
+    private static final class Bucket {
+
+        private long arrivalTime;
+
+        private Bucket(long arrivalTime) {
+            this.arrivalTime = arrivalTime;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.zvonok.service.ratelimit;
+
+import com.zvonok.exception.MessageRateLimitedException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.ChannelSlowModeCache;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.metrics.ChatMetrics;
+import com.zvonok.service.metrics.ChatMetrics.MessageKind;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Flood and slow mode checks of the send path. Deliberately not transactional: the controller calls it
+ * before {@link com.zvonok.service.MessageService}, so a throttled frame is rejected before a pool
+ * connection is checked out or a transaction begins.
+ *
+ * Проверки флуда и медленного режима на пути отправки. Намеренно без транзакции: контроллер вызывает
+ * их до {@link com.zvonok.service.MessageService}, поэтому ограниченный кадр отклоняется до того,
+ * как взято соединение из пула или начата транзакция.
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageSendThrottle {
+
+    private final MessageRateLimiter rateLimiter;
+    private final ChannelSlowModeCache slowModeCache;
+    private final PermissionService permissionService;
+    private final ChatMetrics chatMetrics;
+
+    /**
+     * Takes a token from the sender's flood bucket.
+     *
+     * Забирает токен из корзины отправителя от флуда.
+     *
+     * @param senderId  the unique identifier of the sender
+     *                  уникальный идентификатор отправителя
+     * @param kind      kind of the message, for the rejection metric
+     *                  вид сообщения для метрики отклонений
+     * @throws MessageRateLimitedException если отправитель превысил лимит сообщений
+     */
+    public void enforceFloodLimit(Long senderId, MessageKind kind) {
+        long retryAfterMillis = rateLimiter.tryAcquireFlood(senderId);
+        if (retryAfterMillis > 0) {
+            chatMetrics.floodCounter(kind).increment();
+            throw new MessageRateLimitedException(String.format("%s (retry after %d ms)",
+                    BusinessRuleMessage.BUSINESS_MESSAGE_RATE_LIMITED_MESSAGE.getMessage(), retryAfterMillis));
+        }
+    }
+
+    /**
+     * Applies the channel's slow mode. Holders of MANAGE_MESSAGES and administrators are exempt;
+     * their permission is looked up only when the bucket is empty, so an allowed message needs nothing
+     * but the slow mode cache.
+     *
+     * Применяет медленный режим канала. Владельцы MANAGE_MESSAGES и администраторы освобождены;
+     * их право проверяется, только когда корзина пуста, поэтому разрешенному сообщению нужен
+     * только кэш медленного режима.
+     *
+     * @param senderId   the unique identifier of the sender
+     *                   уникальный идентификатор отправителя
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @throws MessageRateLimitedException если медленный режим канала еще не позволяет отправить сообщение
+     */
+    public void enforceSlowMode(Long senderId, Long channelId) {
+        int slowModeSeconds = slowModeCache.getSlowModeSeconds(channelId);
+        if (slowModeSeconds <= 0) {
+            return;
+        }
+
+        long retryAfterMillis = rateLimiter.tryAcquireSlowMode(senderId, channelId, slowModeSeconds);
+        // Права берутся из кэша прав, для администратора маска содержит все биты
+        if (retryAfterMillis > 0
+                && !permissionService.hasPermissionInChannel(senderId, channelId, Permission.MANAGE_MESSAGES)) {
+            chatMetrics.slowModeCounter().increment();
+            throw new MessageRateLimitedException(String.format("%s (retry after %d ms)",
+                    BusinessRuleMessage.BUSINESS_SLOW_MODE_ACTIVE_MESSAGE.getMessage(), retryAfterMillis));
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package com.zvonok.service.readstate;
+
+import com.zvonok.controller.dto.ReadStateResponse;
+import com.zvonok.exception.InsufficientPermissionsException;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.model.enumeration.ReadTargetType;
+import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.RoomMemberCache;
+import com.zvonok.service.dto.RoomMembers;
+import com.zvonok.service.message.MessageWriteBehindQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read state of channels and rooms: the last acknowledged message per (user, target) and unread
+ * and mention badges.
+ * <p>
+ * Unread counts are derived from the persisted messages, not counted per recipient: an ack stores
+ * the last read message id, and unread = stored messages of the target after it, counted over the
+ * (channel_id, id) or (room_id, id) index and capped at {@value #MAX_UNREAD_COUNT}. A send is therefore
+ * O(1) regardless of the channel size, and every node sees the same counts with the broker relay;
+ * only mentioned users get a per-user increment.
+ * <p>
+ * A message is recorded only once it is stored: after the send transaction commits and, with
+ * write-behind, after its batch is written, so a rolled back or lost message changes nothing.
+ * Acks and mentions are kept as pending deltas and written to the database in one transaction
+ * of JDBC batches every {@code flush-interval}; badges overlay this node's pending deltas on the
+ * stored rows. Channels appear in badges after the first ack; rooms of the user are always included.
+ *
+ * Состояние прочтения каналов и комнат: последнее подтвержденное сообщение для пары (пользователь, цель)
+ * и значки непрочитанных и упоминаний.
+ * <p>
+ * Непрочитанные не считаются по каждому получателю, а выводятся из сохраненных сообщений:
+ * подтверждение запоминает id последнего прочитанного сообщения, а непрочитанные = сохраненные
+ * сообщения цели после него, посчитанные по индексу (channel_id, id) или (room_id, id) и ограниченные
+ * {@value #MAX_UNREAD_COUNT}. Отправка стоит O(1) независимо от размера канала, а в режиме relay все
+ * узлы видят одни и те же значения; отдельное приращение получают только упомянутые пользователи.
+ * <p>
+ * Сообщение учитывается, только когда оно сохранено: после коммита транзакции отправки, а при отложенной
+ * записи - после записи его пакета, поэтому откаченное или потерянное сообщение ничего не меняет.
+ * Подтверждения и упоминания хранятся как отложенные изменения и пишутся в БД одной транзакцией из
+ * пакетов JDBC раз в {@code flush-interval}; значки накладывают отложенные изменения узла на строки из БД.
+ * Каналы появляются в значках после первого подтверждения; комнаты пользователя выводятся всегда.
+ */
+@Service
+@Slf4j
+public class ReadStateService {
+
+    // Больше непрочитанных не считаем: клиент показывает значок как "999+"
+    private static final int MAX_UNREAD_COUNT = 999;
+
+    // Упоминание: @имя пользователя (имя до 50 символов, как в User.username)
+    private static final Pattern MENTION = Pattern.compile("@([\\p{L}\\p{N}_.-]{1,50})");
+
+    // Последнее сообщение цели: обратный проход по индексу (channel_id, id) или (room_id, id)
+    private static final String SELECT_LAST_CHANNEL_MESSAGE_SQL = """
+            select max("id") from "message" where "channel_id" = :targetId
+            """;
+    private static final String SELECT_LAST_ROOM_MESSAGE_SQL = """
+            select max("id") from "message" where "room_id" = :targetId
+            """;
+    private static final String COUNT_UNREAD_CHANNEL_SQL =
+            "select " + unreadCount("channel_id", ":targetId", ":lastReadMessageId");
+    private static final String COUNT_UNREAD_ROOM_SQL =
+            "select " + unreadCount("room_id", ":targetId", ":lastReadMessageId");
+    // Значки подтверждавшихся каналов: непрочитанные и последнее сообщение - коррелированными подзапросами по индексу
+    private static final String SELECT_CHANNEL_BADGES_SQL = """
+            select rs."target_id", rs."last_read_message_id", rs."mention_count", %s "unread_count",
+            (select max(m."id") from "message" m where m."channel_id" = rs."target_id") "last_message_id"
+            from "read_state" rs where rs."user_id" = :userId and rs."target_type" = 'CHANNEL'
+            """.formatted(unreadCount("channel_id", "rs.\"target_id\"", "coalesce(rs.\"last_read_message_id\", 0)"));
+    // Значки всех активных комнат пользователя, в том числе еще не подтверждавшихся
+    private static final String SELECT_ROOM_BADGES_SQL = """
+            select r."id" "target_id", rs."last_read_message_id", coalesce(rs."mention_count", 0) "mention_count",
+            %s "unread_count", (select max(m."id") from "message" m where m."room_id" = r."id") "last_message_id"
+            from "room" r join "room_members" rm on rm."room_id" = r."id"
+            left join "read_state" rs on rs."user_id" = rm."user_id" and rs."target_type" = 'ROOM' and rs."target_id" = r."id"
+            where rm."user_id" = :userId and r."is_active" = true
+            """.formatted(unreadCount("room_id", "r.\"id\"", "coalesce(rs.\"last_read_message_id\", 0)"));
+    // Подтверждение применяется, только если оно новее сохраненного
+    private static final String UPDATE_STATE_SQL = """
+            update "read_state" set
+            "mention_count" = case when ? then 0 else "mention_count" end + ?,
+            "last_read_message_id" = case when ? and coalesce("last_read_message_id", 0) < ? then ? else "last_read_message_id" end,
+            "updated_at" = ?
+            where "user_id" = ? and "target_type" = ? and "target_id" = ?
+            """;
+    private static final String INSERT_STATE_SQL = """
+            insert into "read_state" ("user_id", "target_type", "target_id", "last_read_message_id",
+            "mention_count", "updated_at") values (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final PermissionService permissionService;
+    private final RoomMemberCache roomMemberCache;
+    private final ServerMemberRepository serverMemberRepository;
+    private final MessageWriteBehindQueue writeBehindQueue;
+    private final TransactionTemplate flushTransaction;
+
+    @Value("${app.read-state.flush-interval:PT5S}")
+    private Duration flushInterval;
+
+    @Value("${app.read-state.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    // Отложенные изменения по пользователю; внутренняя карта меняется только внутри compute по его ключу
+    private final ConcurrentHashMap<Long, Map<TargetKey, PendingState>> pendingStates = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public ReadStateService(NamedParameterJdbcTemplate jdbcTemplate,
+                            PermissionService permissionService,
+                            RoomMemberCache roomMemberCache,
+                            ServerMemberRepository serverMemberRepository,
+                            MessageWriteBehindQueue writeBehindQueue,
+                            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.permissionService = permissionService;
+        this.roomMemberCache = roomMemberCache;
+        this.serverMemberRepository = serverMemberRepository;
+        this.writeBehindQueue = writeBehindQueue;
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-state");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flush = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runSafely(this::flush), flush, flush, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timer and writes the remaining deltas.
+     * Останавливает таймер и записывает оставшиеся изменения.
+     */
+    @PreDestroy
+    void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        runSafely(this::flush);
+    }
+
+    /**
+     * Records a channel message once it is stored: moves the sender's read position to the message
+     * and counts a mention for every mentioned active member of the server.
+     *
+     * Учитывает сообщение канала, когда оно сохранено: переносит позицию прочтения отправителя
+     * на это сообщение и засчитывает упоминание каждому упомянутому активному участнику сервера.
+     *
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @param serverId   the unique identifier of the channel's server
+     *                   уникальный идентификатор сервера канала
+     * @param messageId  the unique identifier of the message
+     *                   уникальный идентификатор сообщения
+     * @param senderId   the unique identifier of the sender
+     *                   уникальный идентификатор отправителя
+     * @param content    message text, scanned for @username mentions
+     *                   текст сообщения, в нем ищутся упоминания @имя
+     */
+    public void onChannelMessage(Long channelId, Long serverId, Long messageId, Long senderId, String content) {
+        Set<String> usernames = mentionedUsernames(content);
+        Collection<Long> mentioned = usernames.isEmpty()
+                ? List.of()
+                : serverMemberRepository.findActiveUserIdsByServerIdAndUsernames(serverId, usernames);
+        onMessage(new TargetKey(ReadTargetType.CHANNEL, channelId), messageId, senderId, mentioned);
+    }
+
+    /**
+     * Records a room message once it is stored; mentions are resolved against the member snapshot of the room.
+     *
+     * Учитывает сообщение комнаты, когда оно сохранено; упоминания ищутся в снимке участников комнаты.
+     *
+     * @param roomId     the unique identifier of the private or group room
+     *                   уникальный идентификатор приватной или групповой комнаты
+     * @param members    the members of the room
+     *                   участники комнаты
+     * @param messageId  the unique identifier of the message
+     *                   уникальный идентификатор сообщения
+     * @param senderId   the unique identifier of the sender
+     *                   уникальный идентификатор отправителя
+     * @param content    message text, scanned for @username mentions
+     *                   текст сообщения, в нем ищутся упоминания @имя
+     */
+    public void onRoomMessage(Long roomId, RoomMembers members, Long messageId, Long senderId, String content) {
+        Set<String> usernames = mentionedUsernames(content);
+        List<Long> mentioned = new ArrayList<>();
+        if (!usernames.isEmpty()) {
+            for (int i = 0; i < members.size(); i++) {
+                if (usernames.contains(members.usernameAt(i))) {
+                    mentioned.add(members.userIdAt(i));
+                }
+            }
+        }
+        onMessage(new TargetKey(ReadTargetType.ROOM, roomId), messageId, senderId, mentioned);
+    }
+
+    /**
+     * Acknowledges a channel up to a message. Requires VIEW_CHANNEL.
+     *
+     * Подтверждает прочтение канала до сообщения. Требует права VIEW_CHANNEL.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     * @param messageId  the last read message; an id past the latest message is clamped to it
+     *                   последнее прочитанное сообщение; id новее последнего сообщения приводится к нему
+     * @throws InsufficientPermissionsException если пользователь не видит канал
+     */
+    public void ackChannel(Long userId, Long channelId, Long messageId) {
+        if (!permissionService.canUserViewChannel(userId, channelId)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+        }
+        ack(userId, new TargetKey(ReadTargetType.CHANNEL, channelId), messageId);
+    }
+
+    /**
+     * Acknowledges a private or group room up to a message. Requires room membership.
+     *
+     * Подтверждает прочтение приватной или групповой комнаты до сообщения. Требует членства в комнате.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param roomId     the unique identifier of the room
+     *                   уникальный идентификатор комнаты
+     * @param messageId  the last read message; an id past the latest message is clamped to it
+     *                   последнее прочитанное сообщение; id новее последнего сообщения приводится к нему
+     * @throws InsufficientPermissionsException если пользователь не является участником комнаты
+     */
+    public void ackRoom(Long userId, Long roomId, Long messageId) {
+        if (!roomMemberCache.isMember(roomId, userId)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_USER_NOT_MEMBER_ROOM_RESPONSE_MESSAGE.getMessage());
+        }
+        ack(userId, new TargetKey(ReadTargetType.ROOM, roomId), messageId);
+    }
+
+    /**
+     * Returns all badges of a user: two queries for acknowledged channels and active rooms of the user,
+     * plus a count for each target this node acknowledged since the last flush.
+     *
+     * Возвращает все значки пользователя: два запроса для подтверждавшихся каналов и активных комнат
+     * пользователя и подсчет для каждой цели, подтвержденной на этом узле после прошлого сброса.
+     *
+     * @param userId  the unique identifier of the user
+     *                уникальный идентификатор пользователя
+     * @return badges of acknowledged channels and of all active rooms
+     *         значки подтверждавшихся каналов и всех активных комнат
+     */
+    public List<ReadStateResponse> getReadStates(Long userId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("userId", userId);
+        Map<TargetKey, Badge> badges = new LinkedHashMap<>();
+        jdbcTemplate.query(SELECT_CHANNEL_BADGES_SQL, params,
+                rs -> { badges.put(new TargetKey(ReadTargetType.CHANNEL, rs.getLong("target_id")), Badge.of(rs)); });
+        jdbcTemplate.query(SELECT_ROOM_BADGES_SQL, params,
+                rs -> { badges.put(new TargetKey(ReadTargetType.ROOM, rs.getLong("target_id")), Badge.of(rs)); });
+
+        // Отложенные изменения этого узла поверх строк из БД
+        Map<TargetKey, PendingState> pending = new HashMap<>();
+        pendingStates.computeIfPresent(userId, (id, userStates) -> {
+            userStates.forEach((key, state) -> pending.put(key, state.copy()));
+            return userStates;
+        });
+        pending.forEach((key, state) -> {
+            Badge stored = badges.get(key);
+            if (stored == null) {
+                if (key.type() == ReadTargetType.ROOM) {
+                    // Комната, из которой пользователь уже вышел
+                    return;
+                }
+                long lastMessageId = lastStoredMessageId(key);
+                stored = new Badge(null, lastMessageId != 0L ? lastMessageId : null, countUnread(key, 0L), 0);
+            }
+            badges.put(key, overlay(key, stored, state));
+        });
+
+        List<ReadStateResponse> result = new ArrayList<>(badges.size());
+        badges.forEach((key, badge) -> result.add(new ReadStateResponse(key.type(), key.id(),
+                badge.lastReadMessageId(), badge.lastMessageId(), badge.unreadCount(), badge.mentionCount())));
+        return result;
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    /**
+     * Откладывает учет сообщения до его сохранения: после коммита транзакции отправки, а при отложенной
+     * записи - до записи пакета. Откат или потеря сообщения оставляют состояние прочтения как было.
+     */
+    private void onMessage(TargetKey target, Long messageId, Long senderId, Collection<Long> mentioned) {
+        // Запись ожидаем по future из очереди, полученному до коммита: после коммита сообщение может быть уже записано
+        CompletableFuture<Void> persisted = writeBehindQueue.persisted(messageId);
+        Runnable apply = () -> persisted.thenRun(() -> recordMessage(target, messageId, senderId, mentioned));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private void recordMessage(TargetKey target, Long messageId, Long senderId, Collection<Long> mentioned) {
+        // Отправитель прочитал цель до своего сообщения включительно
+        updatePending(senderId, target, state -> state.ack(messageId, true));
+        for (Long userId : mentioned) {
+            if (!userId.equals(senderId)) {
+                updatePending(userId, target, PendingState::mention);
+            }
+        }
+    }
+
+    private void ack(Long userId, TargetKey target, Long messageId) {
+        long lastMessageId = lastStoredMessageId(target);
+        // id приходит от клиента: состояние прочтения монотонно, и id новее последнего сообщения
+        // (например, Long.MAX_VALUE) заморозил бы его навсегда. Сообщение этого узла, которое еще
+        // ждет отложенной записи, уже разослано клиентам и подтверждается как есть
+        long ackedId = writeBehindQueue.isInFlight(messageId) ? messageId : Math.min(messageId, lastMessageId);
+        if (ackedId <= 0) {
+            // В цели нет сообщений (или id некорректен) - подтверждать нечего
+            return;
+        }
+        boolean latest = ackedId >= lastMessageId;
+        updatePending(userId, target, state -> state.ack(ackedId, latest));
+    }
+
+    /**
+     * Последнее сохраненное сообщение цели (0, если сообщений нет). Запрос по индексу (channel_id, id) или (room_id, id).
+     */
+    private long lastStoredMessageId(TargetKey target) {
+        Long lastMessageId = jdbcTemplate.queryForObject(
+                target.type() == ReadTargetType.CHANNEL ? SELECT_LAST_CHANNEL_MESSAGE_SQL : SELECT_LAST_ROOM_MESSAGE_SQL,
+                new MapSqlParameterSource("targetId", target.id()), Long.class);
+        return lastMessageId != null ? lastMessageId : 0L;
+    }
+
+    private long countUnread(TargetKey target, long lastReadMessageId) {
+        Long count = jdbcTemplate.queryForObject(
+                target.type() == ReadTargetType.CHANNEL ? COUNT_UNREAD_CHANNEL_SQL : COUNT_UNREAD_ROOM_SQL,
+                new MapSqlParameterSource("targetId", target.id()).addValue("lastReadMessageId", lastReadMessageId),
+                Long.class);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Значок из БД с наложенным отложенным изменением; более новое подтверждение пересчитывает непрочитанные.
+     */
+    private Badge overlay(TargetKey target, Badge stored, PendingState pending) {
+        int mentions = (pending.resetMentions ? 0 : stored.mentionCount()) + pending.mentionDelta;
+        boolean newer = pending.acked
+                && (stored.lastReadMessageId() == null || stored.lastReadMessageId() < pending.lastReadMessageId);
+        return newer
+                ? new Badge(pending.lastReadMessageId, stored.lastMessageId(),
+                        countUnread(target, pending.lastReadMessageId), mentions)
+                : new Badge(stored.lastReadMessageId(), stored.lastMessageId(), stored.unreadCount(), mentions);
+    }
+
+    private void updatePending(Long userId, TargetKey target, Consumer<PendingState> update) {
+        pendingStates.compute(userId, (id, userStates) -> {
+            if (userStates == null) {
+                userStates = new HashMap<>();
+            }
+            update.accept(userStates.computeIfAbsent(target, key -> new PendingState()));
+            return userStates;
+        });
+    }
+
+    /**
+     * Пишет отложенные изменения одной транзакцией: при ошибке не записано ничего, и все изменения
+     * возвращаются для следующего сброса без двойного учета упоминаний. Вставку строки, которую
+     * тем временем вставил другой узел, следующий сброс применит через UPDATE.
+     */
+    private void flush() {
+        if (pendingStates.isEmpty()) {
+            return;
+        }
+        List<StateDelta> batch = new ArrayList<>();
+        for (Long userId : pendingStates.keySet()) {
+            Map<TargetKey, PendingState> userStates = pendingStates.remove(userId);
+            if (userStates != null) {
+                userStates.forEach((target, state) -> batch.add(new StateDelta(userId, target, state)));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            flushTransaction.executeWithoutResult(status -> writeStates(batch, now));
+        } catch (RuntimeException e) {
+            restorePending(batch);
+            throw e;
+        }
+    }
+
+    private void writeStates(List<StateDelta> batch, Timestamp now) {
+        int[][] updated = jdbcTemplate.getJdbcTemplate().batchUpdate(UPDATE_STATE_SQL, batch, flushBatchSize,
+                (ps, delta) -> setStateUpdate(ps, delta, now));
+        List<StateDelta> missing = new ArrayList<>();
+        collectMissing(updated, batch, missing);
+        if (missing.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.getJdbcTemplate().batchUpdate(INSERT_STATE_SQL, missing, flushBatchSize,
+                (ps, delta) -> {
+                    PendingState state = delta.state();
+                    ps.setLong(1, delta.userId());
+                    ps.setString(2, delta.target().type().name());
+                    ps.setLong(3, delta.target().id());
+                    ps.setObject(4, state.lastReadMessageId);
+                    ps.setInt(5, state.mentionDelta);
+                    ps.setTimestamp(6, now);
+                });
+    }
+
+    // Возвращает незаписанные изменения; более новые изменения того же пользователя имеют приоритет
+    private void restorePending(List<StateDelta> deltas) {
+        deltas.forEach(delta -> updatePending(delta.userId(), delta.target(), state -> state.mergeOlder(delta.state())));
+    }
+
+    private static void setStateUpdate(PreparedStatement ps, StateDelta delta, Timestamp now) throws SQLException {
+        PendingState state = delta.state();
+        long lastRead = state.lastReadMessageId != null ? state.lastReadMessageId : 0L;
+        ps.setBoolean(1, state.resetMentions);
+        ps.setInt(2, state.mentionDelta);
+        ps.setBoolean(3, state.acked);
+        ps.setLong(4, lastRead);
+        ps.setLong(5, lastRead);
+        ps.setTimestamp(6, now);
+        ps.setLong(7, delta.userId());
+        ps.setString(8, delta.target().type().name());
+        ps.setLong(9, delta.target().id());
+    }
+
+    // Строки, для которых UPDATE ничего не изменил, еще не существуют и вставляются отдельно
+    private static <T> void collectMissing(int[][] updated, List<T> batch, List<T> missing) {
+        int index = 0;
+        for (int[] chunk : updated) {
+            for (int count : chunk) {
+                if (count == 0) {
+                    missing.add(batch.get(index));
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Подзапрос числа неудаленных сообщений цели после lastRead, не больше MAX_UNREAD_COUNT: верхняя граница -
+     * id сообщения на позиции MAX_UNREAD_COUNT, поэтому оба прохода по индексу (column, id) ограничены.
+     */
+    private static String unreadCount(String column, String target, String lastRead) {
+        String after = "\"%s\" = %s and \"id\" > %s and \"deleted_at\" is null"
+                .formatted(column, target, lastRead);
+        return """
+                (select count(*) from "message" where %s and "id" <= coalesce((select "id" from "message" where %s
+                 order by "id" offset %d rows fetch next 1 rows only), %d))"""
+                .formatted(after, after, MAX_UNREAD_COUNT - 1, Long.MAX_VALUE);
+    }
+
+    static Set<String> mentionedUsernames(String content) {
+        if (content == null || content.indexOf('@') < 0) {
+            return Set.of();
+        }
+        Set<String> usernames = new HashSet<>();
+        Matcher matcher = MENTION.matcher(content);
+        while (matcher.find()) {
+            usernames.add(matcher.group(1));
+        }
+        return usernames;
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Read state flush failed", e);
+        }
+    }
+
+    private record TargetKey(ReadTargetType type, long id) {
+    }
+
+    private record StateDelta(Long userId, TargetKey target, PendingState state) {
+    }
+
+    /** Значок цели: сохраненное подтверждение, последнее сообщение и счетчики. */
+    private record Badge(Long lastReadMessageId, Long lastMessageId, long unreadCount, int mentionCount) {
+
+        static Badge of(ResultSet rs) throws SQLException {
+            return new Badge(rs.getObject("last_read_message_id", Long.class),
+                    rs.getObject("last_message_id", Long.class),
+                    rs.getLong("unread_count"), rs.getInt("mention_count"));
+        }
+    }
+
+    /**
+     * Unflushed changes of one (user, target): the newest ack and mentions since the last flush.
+     * Незаписанные изменения пары (пользователь, цель): последнее подтверждение и упоминания с прошлого сброса.
+     */
+    private static final class PendingState {
+        private boolean acked;
+        private Long lastReadMessageId;
+        private boolean resetMentions;
+        private int mentionDelta;
+
+        void ack(long messageId, boolean latest) {
+            if (acked && lastReadMessageId >= messageId) {
+                return;
+            }
+            acked = true;
+            lastReadMessageId = messageId;
+            if (latest) {
+                // Прочитано все: упоминания до этого момента сбрасываются
+                resetMentions = true;
+                mentionDelta = 0;
+            }
+        }
+
+        void mention() {
+            mentionDelta++;
+        }
+
+        /** Возвращает неудачно записанное (более старое) изменение под текущие. */
+        void mergeOlder(PendingState older) {
+            if (!resetMentions) {
+                mentionDelta += older.mentionDelta;
+                resetMentions = older.resetMentions;
+            }
+            if (older.acked && (!acked || lastReadMessageId < older.lastReadMessageId)) {
+                acked = true;
+                lastReadMessageId = older.lastReadMessageId;
+            }
+        }
+
+        PendingState copy() {
+            PendingState copy = new PendingState();
+            copy.acked = acked;
+            copy.lastReadMessageId = lastReadMessageId;
+            copy.resetMentions = resetMentions;
+            copy.mentionDelta = mentionDelta;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.zvonok.service.search;
+
+import com.zvonok.controller.dto.MessageSearchItem;
+import com.zvonok.model.enumeration.MessageType;
+import com.zvonok.service.dto.MessageSearchCriteria;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text index over {@code message.content}. On PostgreSQL the index is a partial GIN expression
+ * index on {@code to_tsvector(content)} over non-deleted messages: the INSERT of the send path and
+ * the UPDATE of the edit path update the index entry of that row, and the soft delete drops it from
+ * the index, so the index is maintained incrementally without extra statements from the services.
+ * Queries use {@code websearch_to_tsquery} (quoted phrases, {@code or}, {@code -word}) and walk
+ * results by descending id for keyset pagination.
+ * <p>
+ * A channel search runs one lateral subquery per channel, so for every channel the planner picks
+ * either the GIN index (rare terms) or a backward walk of the (channel_id, id) index that stops after
+ * {@code limit} matches (common terms), instead of bitmap-scanning every match of a common term.
+ * <p>
+ * The index is created by {@code db/message-search-index.sql}, applied as a migration; adding it does
+ * not rewrite the table. {@code app.search.create-index} runs the same statement on startup and is off
+ * by default. Other databases (H2 in development) fall back to case-insensitive substring matching
+ * of every term.
+ *
+ * Полнотекстовый индекс по {@code message.content}. На PostgreSQL это частичный GIN-индекс по выражению
+ * {@code to_tsvector(content)} для неудаленных сообщений: INSERT при отправке и UPDATE при редактировании
+ * обновляют запись индекса своей строки, а мягкое удаление убирает ее из индекса, поэтому индекс
+ * поддерживается инкрементально без дополнительных запросов из сервисов.
+ * Запросы используют {@code websearch_to_tsquery} (фразы в кавычках, {@code or}, {@code -слово})
+ * и идут по убыванию id для keyset-пагинации.
+ * <p>
+ * Поиск по каналам выполняет по одному lateral-подзапросу на канал, поэтому для каждого канала
+ * планировщик выбирает либо GIN-индекс (редкие слова), либо обратный проход по индексу (channel_id, id),
+ * который останавливается после {@code limit} совпадений (частые слова), вместо bitmap-сканирования
+ * всех совпадений частого слова.
+ * <p>
+ * Индекс создается скриптом {@code db/message-search-index.sql}, который применяется как миграция;
+ * его создание не переписывает таблицу. {@code app.search.create-index} выполняет ту же команду
+ * при запуске и по умолчанию выключен. Другие СУБД (H2 при разработке) используют поиск каждого
+ * слова как подстроки без учета регистра.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class MessageSearchIndex {
+
+    private static final Pattern TEXT_CONFIG = Pattern.compile("[a-z_]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final String SELECT = """
+            select m."id", m."channel_id", m."room_id", s."id" as "sender_id", s."username",
+                   m."content", m."type", m."sent_at", m."edited_at"
+            from "message" m
+            join "user" s on s."id" = m."sender_id"
+            where m."deleted_at" is null
+            """;
+
+    private static final String INDEX_EXISTS_SQL = """
+            select exists (select 1 from pg_indexes where indexname = 'idx_message_content_tsv')
+            """;
+
+    private static final RowMapper<MessageSearchItem> ROW_MAPPER = (rs, rowNum) -> new MessageSearchItem(
+            rs.getLong("id"),
+            rs.getObject("channel_id", Long.class),
+            rs.getObject("room_id", Long.class),
+            rs.getLong("sender_id"),
+            rs.getString("username"),
+            rs.getString("content"),
+            MessageType.valueOf(rs.getString("type")),
+            toLocalDateTime(rs.getTimestamp("sent_at")),
+            toLocalDateTime(rs.getTimestamp("edited_at")));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String textConfig;
+    private final boolean createIndex;
+
+    private boolean fullText;
+
+    public MessageSearchIndex(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            @Value("${app.search.text-config:simple}") String textConfig,
+            @Value("${app.search.create-index:false}") boolean createIndex) {
+        if (!TEXT_CONFIG.matcher(textConfig).matches()) {
+            throw new IllegalArgumentException("Invalid app.search.text-config: " + textConfig);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.textConfig = textConfig;
+        this.createIndex = createIndex;
+    }
+
+    @PostConstruct
+    public void init() {
+        String product = jdbcTemplate.getJdbcTemplate().execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        fullText = "PostgreSQL".equals(product);
+        if (!fullText) {
+            log.warn("Full-text message search needs PostgreSQL, {} falls back to substring matching", product);
+            return;
+        }
+        if (createIndex) {
+            // Выполняется в autocommit: CREATE INDEX CONCURRENTLY недопустим внутри транзакции
+            jdbcTemplate.getJdbcTemplate().execute("create index concurrently if not exists \"idx_message_content_tsv\" "
+                    + "on \"message\" using gin (" + tsvector("\"content\"") + ") where \"deleted_at\" is null");
+        }
+        Boolean indexed = jdbcTemplate.queryForObject(INDEX_EXISTS_SQL, new MapSqlParameterSource(), Boolean.class);
+        if (Boolean.TRUE.equals(indexed)) {
+            log.info("Message search index is ready (text search config '{}')", textConfig);
+        } else {
+            log.warn("Message search index is missing, apply db/message-search-index.sql: searches scan the message table");
+        }
+    }
+
+    /**
+     * Finds non-deleted messages matching the query within the given scope, newest first.
+     *
+     * Находит неудаленные сообщения, подходящие под запрос, в заданной области, начиная с новых.
+     *
+     * @param criteria  query, scope (channels or room already checked for access) and filters
+     *                  запрос, область (каналы или комната, доступ уже проверен) и фильтры
+     * @return up to {@code criteria.limit} messages in descending id order
+     *         не более {@code criteria.limit} сообщений по убыванию id
+     */
+    public List<MessageSearchItem> search(MessageSearchCriteria criteria) {
+        StringBuilder filters = new StringBuilder();
+        MapSqlParameterSource params = new MapSqlParameterSource();
+
+        if (fullText) {
+            filters.append(" and ").append(tsvector("m.\"content\""))
+                    .append(" @@ websearch_to_tsquery('").append(textConfig).append("', :query)");
+            params.addValue("query", criteria.getQuery());
+        } else {
+            String[] terms = WHITESPACE.split(criteria.getQuery().trim().toLowerCase(Locale.ROOT));
+            for (int i = 0; i < terms.length; i++) {
+                filters.append(" and lower(m.\"content\") like :term").append(i).append(" escape '\\'");
+                params.addValue("term" + i, "%" + escapeLike(terms[i]) + "%");
+            }
+        }
+        if (criteria.getAuthorId() != null) {
+            filters.append(" and m.\"sender_id\" = :authorId");
+            params.addValue("authorId", criteria.getAuthorId());
+        }
+        if (criteria.getFrom() != null) {
+            filters.append(" and m.\"sent_at\" >= :from");
+            params.addValue("from", Timestamp.valueOf(criteria.getFrom()));
+        }
+        if (criteria.getTo() != null) {
+            filters.append(" and m.\"sent_at\" < :to");
+            params.addValue("to", Timestamp.valueOf(criteria.getTo()));
+        }
+        if (criteria.getBefore() != null) {
+            filters.append(" and m.\"id\" < :before");
+            params.addValue("before", criteria.getBefore());
+        }
+        params.addValue("limit", criteria.getLimit());
+
+        String sql;
+        if (criteria.getRoomId() != null) {
+            params.addValue("roomId", criteria.getRoomId());
+            sql = SELECT + filters + " and m.\"room_id\" = :roomId order by m.\"id\" desc limit :limit";
+        } else if (fullText) {
+            // Подзапрос на канал: планировщик выбирает между GIN и обратным проходом по (channel_id, id)
+            params.addValue("channelIds", criteria.getChannelIds());
+            sql = "select r.* from \"channel\" c cross join lateral ("
+                    + SELECT + filters + " and m.\"channel_id\" = c.\"id\" order by m.\"id\" desc limit :limit"
+                    + ") r where c.\"id\" in (:channelIds) order by r.\"id\" desc limit :limit";
+        } else {
+            params.addValue("channelIds", criteria.getChannelIds());
+            sql = SELECT + filters + " and m.\"channel_id\" in (:channelIds) order by m.\"id\" desc limit :limit";
+        }
+        return jdbcTemplate.query(sql, params, ROW_MAPPER);
+    }
+
+    // Выражение совпадает с выражением индекса, иначе PostgreSQL не использует индекс
+    private String tsvector(String content) {
+        return "to_tsvector('" + textConfig + "', coalesce(" + content + ", ''))";
+    }
+
+    private static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,244 @@
+package com.zvonok.service.typing;
+
+import com.zvonok.controller.dto.TypingUpdate;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.RoomMemberCache;
+import com.zvonok.service.dto.EventType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ephemeral typing indicators for channels and rooms, kept only in memory.
+ * <p>
+ * A typing frame from the same user in the same target within {@code dedupe-window} is dropped
+ * before any check. Otherwise access is checked against in-memory caches (VIEW_CHANNEL through
+ * the channel permission cache, room membership through {@link RoomMemberCache}); frames without
+ * access are silently ignored. A typist expires {@code ttl} after their last accepted frame.
+ * Once per {@code broadcast-interval} every target whose list changed gets one {@link TypingUpdate}:
+ * a channel in its topic, a room in {@code /user/queue/messages} of its current members, so
+ * keystrokes of many users collapse into one event per target per tick. Nothing is written to the
+ * database. State is per node: with the broker relay each node publishes the typists connected to it.
+ *
+ * Эфемерные индикаторы набора текста в каналах и комнатах, хранятся только в памяти.
+ * <p>
+ * Повторный кадр того же пользователя в той же цели в пределах {@code dedupe-window} отбрасывается
+ * до любых проверок. Иначе доступ проверяется по кэшам в памяти (VIEW_CHANNEL через кэш прав
+ * в каналах, членство в комнате через {@link RoomMemberCache}); кадры без доступа молча игнорируются.
+ * Печатающий пропадает через {@code ttl} после последнего принятого кадра.
+ * Раз в {@code broadcast-interval} каждая цель, у которой изменился список, получает один
+ * {@link TypingUpdate}: канал - в свой топик, комната - в {@code /user/queue/messages} текущих
+ * участников, поэтому нажатия клавиш многих пользователей сворачиваются в одно событие на цель
+ * за тик. В БД ничего не пишется. Состояние локально для узла: в режиме relay каждый узел публикует
+ * подключенных к нему печатающих.
+ */
+@Service
+@Slf4j
+public class TypingIndicatorService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PermissionService permissionService;
+    private final RoomMemberCache roomMemberCache;
+
+    @Value("${app.typing.ttl:PT8S}")
+    private Duration ttl;
+
+    @Value("${app.typing.dedupe-window:PT2S}")
+    private Duration dedupeWindow;
+
+    @Value("${app.typing.broadcast-interval:PT0.5S}")
+    private Duration broadcastInterval;
+
+    @Value("${app.typing.max-listed-users:10}")
+    private int maxListedUsers;
+
+    // Состояние цели меняется только внутри compute по ее ключу
+    private final ConcurrentHashMap<TypingTarget, TargetTyping> typing = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    public TypingIndicatorService(SimpMessagingTemplate messagingTemplate,
+                                  PermissionService permissionService,
+                                  RoomMemberCache roomMemberCache) {
+        this.messagingTemplate = messagingTemplate;
+        this.permissionService = permissionService;
+        this.roomMemberCache = roomMemberCache;
+    }
+
+    @PostConstruct
+    void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = broadcastInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> runSafely(this::tick), tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Registers a typing frame in a channel. Ignored without VIEW_CHANNEL.
+     *
+     * Учитывает кадр набора текста в канале. Игнорируется без права VIEW_CHANNEL.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param username   the username shown to other members
+     *                   имя пользователя, показываемое остальным участникам
+     * @param channelId  the unique identifier of the channel
+     *                   уникальный идентификатор канала
+     */
+    public void channelTyping(Long userId, String username, Long channelId) {
+        TypingTarget target = new TypingTarget(channelId, null);
+        long now = System.nanoTime();
+        if (isDuplicate(target, userId, now)) {
+            return;
+        }
+        if (!permissionService.canUserViewChannel(userId, channelId)) {
+            log.debug("Typing frame of user {} in channel {} ignored: no VIEW_CHANNEL", userId, channelId);
+            return;
+        }
+        startTyping(target, userId, username, now);
+    }
+
+    /**
+     * Registers a typing frame in a private or group room. Ignored for non-members.
+     *
+     * Учитывает кадр набора текста в приватной или групповой комнате. Для не участников игнорируется.
+     *
+     * @param userId    the unique identifier of the user
+     *                  уникальный идентификатор пользователя
+     * @param username  the username shown to other members
+     *                  имя пользователя, показываемое остальным участникам
+     * @param roomId    the unique identifier of the room
+     *                  уникальный идентификатор комнаты
+     */
+    public void roomTyping(Long userId, String username, Long roomId) {
+        TypingTarget target = new TypingTarget(null, roomId);
+        long now = System.nanoTime();
+        if (isDuplicate(target, userId, now)) {
+            return;
+        }
+        if (!roomMemberCache.isMember(roomId, userId)) {
+            log.debug("Typing frame of user {} in room {} ignored: not a member", userId, roomId);
+            return;
+        }
+        startTyping(target, userId, username, now);
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    // Без блокировки: в худшем случае лишний кадр пройдет проверку и просто продлит запись
+    private boolean isDuplicate(TypingTarget target, Long userId, long now) {
+        TargetTyping state = typing.get(target);
+        if (state == null) {
+            return false;
+        }
+        Typist typist = state.typists.get(userId);
+        return typist != null && now - typist.acceptedNanos < dedupeWindow.toNanos();
+    }
+
+    private void startTyping(TypingTarget target, Long userId, String username, long now) {
+        typing.compute(target, (key, state) -> {
+            if (state == null) {
+                state = new TargetTyping();
+            }
+            Typist typist = state.typists.get(userId);
+            if (typist == null) {
+                state.typists.put(userId, new Typist(userId, username, now));
+                state.changed = true;
+            } else {
+                typist.acceptedNanos = now;
+            }
+            return state;
+        });
+    }
+
+    private void tick() {
+        long expiredBefore = System.nanoTime() - ttl.toNanos();
+        for (TypingTarget target : typing.keySet()) {
+            List<TypingUpdate> update = new ArrayList<>(1);
+            typing.computeIfPresent(target, (key, state) -> {
+                if (state.typists.values().removeIf(typist -> typist.acceptedNanos - expiredBefore < 0)) {
+                    state.changed = true;
+                }
+                if (state.changed) {
+                    state.changed = false;
+                    update.add(toUpdate(key, state));
+                }
+                return state.typists.isEmpty() ? null : state;
+            });
+            // Рассылка вне блокировки цели
+            update.forEach(this::broadcast);
+        }
+    }
+
+    private TypingUpdate toUpdate(TypingTarget target, TargetTyping state) {
+        List<TypingUpdate.Typist> users = new ArrayList<>(Math.min(state.typists.size(), maxListedUsers));
+        for (Typist typist : state.typists.values()) {
+            if (users.size() == maxListedUsers) {
+                break;
+            }
+            users.add(new TypingUpdate.Typist(typist.userId, typist.username));
+        }
+        return new TypingUpdate(EventType.TYPING, target.channelId(), target.roomId(), state.typists.size(), users);
+    }
+
+    private void broadcast(TypingUpdate update) {
+        if (update.getChannelId() != null) {
+            messagingTemplate.convertAndSend("/topic/channel." + update.getChannelId(), update);
+            return;
+        }
+        // События комнаты получают только ее текущие участники, как и сообщения
+        for (String username : roomMemberCache.getMembers(update.getRoomId()).getUsernames()) {
+            messagingTemplate.convertAndSendToUser(username, "/queue/messages", update);
+        }
+    }
+
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            log.error("Typing task failed", e);
+        }
+    }
+
+    /** Канал или комната: заполнено ровно одно поле. */
+    private record TypingTarget(Long channelId, Long roomId) {
+    }
+
+    /** Печатающие в цели; changed - список изменился с прошлого тика. */
+    private static final class TargetTyping {
+        // Конкурентная карта: isDuplicate читает ее без блокировки цели
+        private final Map<Long, Typist> typists = new ConcurrentHashMap<>();
+        private boolean changed;
+    }
+
+    private static final class Typist {
+        private final Long userId;
+        private final String username;
+        private volatile long acceptedNanos;
+
+        private Typist(Long userId, String username, long acceptedNanos) {
+            this.userId = userId;
+            this.username = username;
+            this.acceptedNanos = acceptedNanos;
+        }
+    }
+}
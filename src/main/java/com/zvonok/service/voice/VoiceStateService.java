@@ -0,0 +1,513 @@
+package com.zvonok.service.voice;
+
+import com.zvonok.controller.dto.VoiceSignal;
+import com.zvonok.controller.dto.VoiceStateUpdate;
+import com.zvonok.exception.ChannelNotFoundException;
+import com.zvonok.exception.InsufficientPermissionsException;
+import com.zvonok.exception.InvalidVoiceRequestException;
+import com.zvonok.exception.VoiceChannelFullException;
+import com.zvonok.exception_handler.enumeration.BusinessRuleMessage;
+import com.zvonok.exception_handler.enumeration.HttpResponseMessage;
+import com.zvonok.model.enumeration.ChannelType;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.VoiceChannelCache;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.VoiceChannelInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of voice states and relay of WebRTC signaling between voice channel peers.
+ * <p>
+ * A user is in at most one voice channel, bound to the STOMP session that joined it. Admission is
+ * atomic per channel: the occupancy check against {@code userLimit} and the insert happen inside one
+ * {@code compute} on the channel entry, so concurrent joins never exceed the limit. Members with
+ * MOVE_MEMBERS bypass the limit. Channel data comes from {@link VoiceChannelCache} and permissions
+ * from the channel permission cache, so joins and signaling frames do not query the database.
+ * <p>
+ * SDP offers/answers and ICE candidates are forwarded only between users in the same channel, to the
+ * session of the recipient ({@code /user/queue/voice.signal}). State changes are published to
+ * {@code /topic/voice.{serverId}}. A closed session leaves its channel. Server mute/deafen are
+ * state flags that clients enforce; media never passes through the server. They are kept per
+ * (server, user) apart from the voice session and applied on every join, so a moderated member
+ * cannot clear them by leaving and rejoining. State is per node: with the broker relay only
+ * sessions connected to this node are tracked.
+ *
+ * Реестр голосовых состояний в памяти и пересылка сигналинга WebRTC между участниками голосового канала.
+ * <p>
+ * Пользователь находится не более чем в одном голосовом канале и привязан к STOMP-сессии, из которой
+ * подключился. Допуск атомарен для канала: проверка заполненности по {@code userLimit} и добавление
+ * выполняются в одном {@code compute} по записи канала, поэтому параллельные подключения не превышают
+ * лимит. Участники с MOVE_MEMBERS проходят сверх лимита. Данные канала берутся из
+ * {@link VoiceChannelCache}, права - из кэша прав в каналах, поэтому подключение и сигнальные кадры
+ * не обращаются к БД.
+ * <p>
+ * SDP offer/answer и ICE-кандидаты пересылаются только между пользователями одного канала, в сессию
+ * получателя ({@code /user/queue/voice.signal}). Изменения состояний публикуются в
+ * {@code /topic/voice.{serverId}}. Закрытая сессия покидает канал. Серверное заглушение и оглушение -
+ * флаги состояния, которые соблюдают клиенты; медиа через сервер не проходит. Они хранятся для пары
+ * (сервер, пользователь) отдельно от голосовой сессии и применяются при каждом подключении, поэтому
+ * участник не может снять их, выйдя и подключившись снова. Состояние локально для узла: в режиме relay
+ * учитываются только сессии, подключенные к этому узлу.
+ */
+@Service
+@Slf4j
+public class VoiceStateService {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final PermissionService permissionService;
+    private final VoiceChannelCache voiceChannelCache;
+
+    @Value("${app.voice.max-sdp-length:16384}")
+    private int maxSdpLength;
+
+    @Value("${app.voice.max-candidate-length:1024}")
+    private int maxCandidateLength;
+
+    // Состояние пользователя меняется только внутри compute по его ключу
+    private final ConcurrentHashMap<Long, VoiceState> states = new ConcurrentHashMap<>();
+    // Участники канала; добавление с проверкой лимита - внутри compute по ключу канала
+    private final ConcurrentHashMap<Long, Set<Long>> channelMembers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    // Серверные флаги модерации; меняются и читаются внутри compute по ключу пользователя в states
+    private final ConcurrentHashMap<ServerMember, ServerFlags> serverFlags = new ConcurrentHashMap<>();
+
+    public VoiceStateService(SimpMessagingTemplate messagingTemplate,
+                             PermissionService permissionService,
+                             VoiceChannelCache voiceChannelCache) {
+        this.messagingTemplate = messagingTemplate;
+        this.permissionService = permissionService;
+        this.voiceChannelCache = voiceChannelCache;
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        sessionClosed(event.getSessionId());
+    }
+
+    /**
+     * Joins a voice channel from a STOMP session, leaving the previous voice channel if any.
+     * Requires CONNECT; members without SPEAK join server-muted.
+     *
+     * Подключает к голосовому каналу из STOMP-сессии, покидая предыдущий голосовой канал, если он был.
+     * Требует права CONNECT; участники без SPEAK подключаются заглушенными сервером.
+     *
+     * @param userId     the unique identifier of the user
+     *                   уникальный идентификатор пользователя
+     * @param username   the username of the user
+     *                   имя пользователя
+     * @param sessionId  the STOMP session that receives signaling
+     *                   STOMP-сессия, получающая сигналинг
+     * @param channelId  the unique identifier of the voice channel
+     *                   уникальный идентификатор голосового канала
+     * @return states of everyone in the channel, the joining user included
+     *         состояния всех участников канала, включая подключившегося
+     * @throws InsufficientPermissionsException если нет права CONNECT
+     * @throws VoiceChannelFullException        если достигнут лимит участников
+     */
+    public List<VoiceStateUpdate> join(Long userId, String username, String sessionId, Long channelId) {
+        VoiceChannelInfo channel = getVoiceChannel(channelId);
+        requirePermission(userId, channelId, Permission.CONNECT);
+        boolean bypassLimit = permissionService.hasPermissionInChannel(userId, channelId, Permission.MOVE_MEMBERS);
+        boolean suppressed = !permissionService.hasPermissionInChannel(userId, channelId, Permission.SPEAK);
+
+        VoiceState[] previous = new VoiceState[1];
+        VoiceState joined = states.compute(userId, (id, current) -> {
+            previous[0] = current;
+            if (current == null || !current.channelId().equals(channelId)) {
+                admit(channel, userId, bypassLimit);
+                if (current != null) {
+                    release(current.channelId(), userId);
+                }
+            }
+            boolean selfMute = current != null && current.selfMute();
+            boolean selfDeaf = current != null && current.selfDeaf();
+            // Флаги модератора живут отдельно от сессии и переживают выход и повторное подключение
+            ServerFlags flags = serverFlags.getOrDefault(new ServerMember(channel.getServerId(), userId), ServerFlags.NONE);
+            return new VoiceState(userId, username, sessionId, channel.getServerId(), channelId, selfMute, selfDeaf,
+                    suppressed || flags.mute(), flags.deaf());
+        });
+        bindSession(previous[0], joined);
+
+        if (previous[0] != null && !previous[0].serverId().equals(joined.serverId())) {
+            publish(previous[0].serverId(), left(previous[0]));
+        }
+        publish(joined.serverId(), joined.toUpdate());
+        return getChannelStates(channelId);
+    }
+
+    /**
+     * Leaves the current voice channel; does nothing if the user is not connected.
+     * Покидает текущий голосовой канал; если пользователь не подключен, ничего не делает.
+     */
+    public void leave(Long userId) {
+        VoiceState[] removed = new VoiceState[1];
+        states.computeIfPresent(userId, (id, current) -> {
+            release(current.channelId(), id);
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] != null) {
+            sessionUsers.remove(removed[0].sessionId(), userId);
+            publish(removed[0].serverId(), left(removed[0]));
+        }
+    }
+
+    /**
+     * Changes the user's own mute/deafen flags; null leaves a flag unchanged.
+     * Меняет собственные флаги заглушения и оглушения пользователя; null оставляет флаг без изменений.
+     *
+     * @throws InvalidVoiceRequestException если пользователь не подключен к голосовому каналу
+     */
+    public VoiceStateUpdate updateSelfState(Long userId, Boolean selfMute, Boolean selfDeaf) {
+        VoiceState updated = states.computeIfPresent(userId, (id, current) -> current.withSelf(
+                selfMute != null ? selfMute : current.selfMute(),
+                selfDeaf != null ? selfDeaf : current.selfDeaf()));
+        if (updated == null) {
+            throw notInVoice();
+        }
+        publish(updated.serverId(), updated.toUpdate());
+        return updated.toUpdate();
+    }
+
+    /**
+     * Forwards a WebRTC signal to a peer in the same voice channel. Signals to users who are not
+     * (or no longer) in the sender's channel are dropped: peers leaving mid-negotiation is normal.
+     *
+     * Пересылает сигнал WebRTC участнику того же голосового канала. Сигналы пользователям, которых нет
+     * (или уже нет) в канале отправителя, отбрасываются: выход собеседника во время согласования - норма.
+     *
+     * @param userId     the unique identifier of the sender
+     *                   уникальный идентификатор отправителя
+     * @param sessionId  the STOMP session of the sender
+     *                   STOMP-сессия отправителя
+     * @param signal     the signal with type, target and payload
+     *                   сигнал с типом, получателем и данными
+     * @return true if the signal was forwarded
+     *         true, если сигнал переслан
+     * @throws InvalidVoiceRequestException если сигнал некорректен или слишком велик
+     */
+    public boolean relaySignal(Long userId, String sessionId, VoiceSignal signal) {
+        validateSignal(signal);
+        VoiceState from = states.get(userId);
+        VoiceState to = states.get(signal.getTargetUserId());
+        if (from == null || to == null || userId.equals(to.userId())
+                || !from.sessionId().equals(sessionId) || !from.channelId().equals(to.channelId())) {
+            log.debug("Voice signal {} from user {} to user {} dropped: not peers",
+                    signal.getType(), userId, signal.getTargetUserId());
+            return false;
+        }
+
+        VoiceSignal forwarded = new VoiceSignal(signal.getType(), from.channelId(), from.userId(), from.username(),
+                to.userId(), signal.getSdp(), signal.getCandidate(), signal.getSdpMid(), signal.getSdpMLineIndex());
+        sendToSession(to, "/queue/voice.signal", forwarded);
+        return true;
+    }
+
+    /**
+     * Sets server mute and/or deafen of a connected member. Changing mute requires MUTE_MEMBERS,
+     * changing deafen requires DEAFEN_MEMBERS in the member's current channel. The flags are stored
+     * for the member's server and apply to every later join there until a moderator clears them.
+     *
+     * Устанавливает серверное заглушение и/или оглушение подключенного участника. Изменение
+     * заглушения требует MUTE_MEMBERS, оглушения - DEAFEN_MEMBERS в текущем канале участника. Флаги
+     * сохраняются для сервера участника и действуют при каждом следующем подключении к нему, пока
+     * модератор их не снимет.
+     *
+     * @throws InvalidVoiceRequestException     если участник не подключен к голосовому каналу
+     * @throws InsufficientPermissionsException если у модератора нет нужного права
+     */
+    public VoiceStateUpdate moderate(Long actorId, Long targetUserId, Boolean mute, Boolean deaf) {
+        VoiceState target = requireState(targetUserId);
+        if (mute != null) {
+            requirePermission(actorId, target.channelId(), Permission.MUTE_MEMBERS);
+        }
+        if (deaf != null) {
+            requirePermission(actorId, target.channelId(), Permission.DEAFEN_MEMBERS);
+        }
+
+        VoiceState updated = states.computeIfPresent(targetUserId, (id, current) -> {
+            if (!current.serverId().equals(target.serverId())) {
+                // Участник успел перейти на другой сервер: права проверялись не там
+                return current;
+            }
+            ServerMember key = new ServerMember(current.serverId(), id);
+            ServerFlags stored = serverFlags.getOrDefault(key, ServerFlags.NONE);
+            ServerFlags flags = new ServerFlags(mute != null ? mute : stored.mute(), deaf != null ? deaf : stored.deaf());
+            if (flags.equals(ServerFlags.NONE)) {
+                serverFlags.remove(key);
+            } else {
+                serverFlags.put(key, flags);
+            }
+            return current.withServer(mute != null ? mute : current.serverMute(),
+                    deaf != null ? deaf : current.serverDeaf());
+        });
+        if (updated == null) {
+            throw notInVoice();
+        }
+        publish(updated.serverId(), updated.toUpdate());
+        return updated.toUpdate();
+    }
+
+    /**
+     * Moves a connected member to another voice channel of the same server, ignoring its user limit.
+     * Requires MOVE_MEMBERS in both channels; the member must have CONNECT in the destination.
+     *
+     * Перемещает подключенного участника в другой голосовой канал того же сервера без учета лимита.
+     * Требует MOVE_MEMBERS в обоих каналах; у участника должно быть право CONNECT в канале назначения.
+     *
+     * @throws InvalidVoiceRequestException     если участник не подключен или канал другого сервера
+     * @throws InsufficientPermissionsException если не хватает прав
+     */
+    public VoiceStateUpdate move(Long actorId, Long targetUserId, Long channelId) {
+        VoiceChannelInfo destination = getVoiceChannel(channelId);
+        VoiceState target = requireState(targetUserId);
+        if (!target.serverId().equals(destination.getServerId())) {
+            throw new InvalidVoiceRequestException(
+                    BusinessRuleMessage.BUSINESS_VOICE_MOVE_ACROSS_SERVERS_MESSAGE.getMessage());
+        }
+        requirePermission(actorId, target.channelId(), Permission.MOVE_MEMBERS);
+        requirePermission(actorId, channelId, Permission.MOVE_MEMBERS);
+        requirePermission(targetUserId, channelId, Permission.CONNECT);
+
+        VoiceState moved = states.computeIfPresent(targetUserId, (id, current) -> {
+            if (current.channelId().equals(channelId)) {
+                return current;
+            }
+            admit(destination, id, true);
+            release(current.channelId(), id);
+            return current.withChannel(channelId);
+        });
+        if (moved == null) {
+            throw notInVoice();
+        }
+        publish(moved.serverId(), moved.toUpdate());
+        // Перемещенной сессии нужен список новых собеседников для согласования соединений
+        sendToSession(moved, "/queue/voice.joined", getChannelStates(channelId));
+        return moved.toUpdate();
+    }
+
+    /**
+     * Disconnects a member from voice. Requires MOVE_MEMBERS in the member's current channel.
+     * Отключает участника от голосового канала. Требует MOVE_MEMBERS в текущем канале участника.
+     *
+     * @throws InvalidVoiceRequestException     если участник не подключен к голосовому каналу
+     * @throws InsufficientPermissionsException если нет права MOVE_MEMBERS
+     */
+    public void disconnect(Long actorId, Long targetUserId) {
+        VoiceState target = requireState(targetUserId);
+        requirePermission(actorId, target.channelId(), Permission.MOVE_MEMBERS);
+        leave(targetUserId);
+    }
+
+    /**
+     * Drops the voice state of a user who left or was removed from a server.
+     * Снимает голосовое состояние пользователя, покинувшего сервер или исключенного из него.
+     */
+    public void leaveServer(Long userId, Long serverId) {
+        VoiceState current = states.get(userId);
+        if (current != null && current.serverId().equals(serverId)) {
+            leave(userId);
+        }
+    }
+
+    /** Закрытая STOMP-сессия покидает свой голосовой канал. */
+    public void sessionClosed(String sessionId) {
+        Long userId = sessionUsers.remove(sessionId);
+        if (userId == null) {
+            return;
+        }
+        VoiceState[] removed = new VoiceState[1];
+        states.computeIfPresent(userId, (id, current) -> {
+            // Пользователь мог переподключиться из другой сессии
+            if (!current.sessionId().equals(sessionId)) {
+                return current;
+            }
+            release(current.channelId(), id);
+            removed[0] = current;
+            return null;
+        });
+        if (removed[0] != null) {
+            publish(removed[0].serverId(), left(removed[0]));
+        }
+    }
+
+    /** Состояния всех участников голосового канала на этом узле. */
+    public List<VoiceStateUpdate> getChannelStates(Long channelId) {
+        Set<Long> members = channelMembers.get(channelId);
+        if (members == null) {
+            return List.of();
+        }
+        List<VoiceStateUpdate> result = new ArrayList<>(members.size());
+        for (Long memberId : members) {
+            VoiceState state = states.get(memberId);
+            if (state != null && state.channelId().equals(channelId)) {
+                result.add(state.toUpdate());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns voice states of a server in the channels the viewer can see.
+     *
+     * Возвращает голосовые состояния сервера в каналах, которые видит пользователь.
+     *
+     * @param viewerId  the unique identifier of the requesting user
+     *                  уникальный идентификатор запрашивающего пользователя
+     * @param serverId  the unique identifier of the server
+     *                  уникальный идентификатор сервера
+     * @return states of the server's occupied voice channels
+     *         состояния занятых голосовых каналов сервера
+     */
+    public List<VoiceStateUpdate> getServerStates(Long viewerId, Long serverId) {
+        List<VoiceStateUpdate> result = new ArrayList<>();
+        for (Long channelId : channelMembers.keySet()) {
+            List<VoiceStateUpdate> channelStates = getChannelStates(channelId);
+            if (!channelStates.isEmpty() && channelStates.get(0).getServerId().equals(serverId)
+                    && permissionService.canUserViewChannel(viewerId, channelId)) {
+                result.addAll(channelStates);
+            }
+        }
+        return result;
+    }
+
+    /** Текущее голосовое состояние пользователя на этом узле или null. */
+    public VoiceStateUpdate getState(Long userId) {
+        VoiceState state = states.get(userId);
+        return state != null ? state.toUpdate() : null;
+    }
+
+    // ===== PRIVATE HELPER METHODS =====
+
+    private VoiceChannelInfo getVoiceChannel(Long channelId) {
+        VoiceChannelInfo channel = voiceChannelCache.getChannel(channelId)
+                .filter(info -> Boolean.TRUE.equals(info.getActive()))
+                .orElseThrow(() -> new ChannelNotFoundException(
+                        HttpResponseMessage.HTTP_CHANNEL_NOT_FOUND_RESPONSE_MESSAGE.getMessage()));
+        if (channel.getType() != ChannelType.VOICE) {
+            throw new InvalidVoiceRequestException(BusinessRuleMessage.BUSINESS_NOT_VOICE_CHANNEL_MESSAGE.getMessage());
+        }
+        return channel;
+    }
+
+    /** Добавляет пользователя в канал, если лимит позволяет; проверка и добавление атомарны. */
+    private void admit(VoiceChannelInfo channel, Long userId, boolean bypassLimit) {
+        Integer limit = channel.getUserLimit();
+        channelMembers.compute(channel.getChannelId(), (id, members) -> {
+            if (members == null) {
+                members = ConcurrentHashMap.newKeySet();
+            }
+            if (!bypassLimit && limit != null && limit > 0 && members.size() >= limit && !members.contains(userId)) {
+                throw new VoiceChannelFullException(BusinessRuleMessage.BUSINESS_VOICE_CHANNEL_FULL_MESSAGE.getMessage());
+            }
+            members.add(userId);
+            return members;
+        });
+    }
+
+    private void release(Long channelId, Long userId) {
+        channelMembers.computeIfPresent(channelId, (id, members) -> {
+            members.remove(userId);
+            return members.isEmpty() ? null : members;
+        });
+    }
+
+    private void bindSession(VoiceState previous, VoiceState current) {
+        if (previous != null && !previous.sessionId().equals(current.sessionId())) {
+            sessionUsers.remove(previous.sessionId(), previous.userId());
+        }
+        sessionUsers.put(current.sessionId(), current.userId());
+    }
+
+    private VoiceState requireState(Long userId) {
+        VoiceState state = states.get(userId);
+        if (state == null) {
+            throw notInVoice();
+        }
+        return state;
+    }
+
+    private void requirePermission(Long userId, Long channelId, Permission permission) {
+        if (!permissionService.hasPermissionInChannel(userId, channelId, permission)) {
+            throw new InsufficientPermissionsException(
+                    HttpResponseMessage.HTTP_INSUFFICIENT_PERMISSIONS_RESPONSE_MESSAGE.getMessage());
+        }
+    }
+
+    private void validateSignal(VoiceSignal signal) {
+        boolean valid = signal != null && signal.getType() != null && signal.getTargetUserId() != null
+                && switch (signal.getType()) {
+                    case OFFER, ANSWER -> signal.getSdp() != null && signal.getSdp().length() <= maxSdpLength;
+                    case ICE_CANDIDATE -> signal.getCandidate() != null
+                            && signal.getCandidate().length() <= maxCandidateLength
+                            && (signal.getSdpMid() == null || signal.getSdpMid().length() <= maxCandidateLength);
+                };
+        if (!valid) {
+            throw new InvalidVoiceRequestException(BusinessRuleMessage.BUSINESS_VOICE_SIGNAL_INVALID_MESSAGE.getMessage());
+        }
+    }
+
+    private static InvalidVoiceRequestException notInVoice() {
+        return new InvalidVoiceRequestException(BusinessRuleMessage.BUSINESS_USER_NOT_IN_VOICE_MESSAGE.getMessage());
+    }
+
+    private static VoiceStateUpdate left(VoiceState state) {
+        return new VoiceStateUpdate(state.userId(), state.username(), state.serverId(), null,
+                false, false, false, false);
+    }
+
+    private void publish(Long serverId, VoiceStateUpdate update) {
+        messagingTemplate.convertAndSend("/topic/voice." + serverId, update);
+    }
+
+    // Только в сессию, подключенную к голосовому каналу, а не во все сессии пользователя
+    private void sendToSession(VoiceState state, String destination, Object payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(state.sessionId());
+        accessor.setLeaveMutable(true);
+        MessageHeaders headers = accessor.getMessageHeaders();
+        messagingTemplate.convertAndSendToUser(state.username(), destination, payload, headers);
+    }
+
+    private record ServerMember(Long serverId, Long userId) {
+    }
+
+    /** Серверное заглушение и оглушение, выставленные модератором. */
+    private record ServerFlags(boolean mute, boolean deaf) {
+        static final ServerFlags NONE = new ServerFlags(false, false);
+    }
+
+    private record VoiceState(Long userId, String username, String sessionId, Long serverId, Long channelId,
+                              boolean selfMute, boolean selfDeaf, boolean serverMute, boolean serverDeaf) {
+
+        VoiceState withSelf(boolean mute, boolean deaf) {
+            return new VoiceState(userId, username, sessionId, serverId, channelId, mute, deaf, serverMute, serverDeaf);
+        }
+
+        VoiceState withServer(boolean mute, boolean deaf) {
+            return new VoiceState(userId, username, sessionId, serverId, channelId, selfMute, selfDeaf, mute, deaf);
+        }
+
+        VoiceState withChannel(Long newChannelId) {
+            return new VoiceState(userId, username, sessionId, serverId, newChannelId,
+                    selfMute, selfDeaf, serverMute, serverDeaf);
+        }
+
+        VoiceStateUpdate toUpdate() {
+            return new VoiceStateUpdate(userId, username, serverId, channelId, selfMute, selfDeaf, serverMute, serverDeaf);
+        }
+    }
+}
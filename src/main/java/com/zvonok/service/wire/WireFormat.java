@@ -0,0 +1,50 @@
+package com.zvonok.service.wire;
+
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Payload encodings a client can negotiate. JSON is the default and the only format for SockJS
+ * sessions, which cannot carry binary frames.
+ *
+ * Кодировки полезной нагрузки, которые может выбрать клиент. JSON используется по умолчанию
+ * и остается единственным форматом для сессий SockJS, не поддерживающих бинарные кадры.
+ */
+public enum WireFormat {
+    JSON(MimeTypeUtils.APPLICATION_JSON),
+    CBOR(new MimeType("application", "cbor")),
+    SMILE(new MimeType("application", "x-jackson-smile"));
+
+    private final MimeType mimeType;
+
+    WireFormat(MimeType mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public MimeType getMimeType() {
+        return mimeType;
+    }
+
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /** Формат по значению content-type; неизвестные и пустые значения дают JSON. */
+    public static WireFormat fromContentType(String contentType) {
+        if (contentType == null || contentType.isBlank()) {
+            return JSON;
+        }
+        MimeType requested;
+        try {
+            requested = MimeTypeUtils.parseMimeType(contentType);
+        } catch (IllegalArgumentException e) {
+            return JSON;
+        }
+        for (WireFormat format : values()) {
+            if (format.mimeType.equalsTypeAndSubtype(requested)) {
+                return format;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,88 @@
+package com.zvonok.service.wire;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Re-encodes JSON payloads of outgoing STOMP messages into the binary format negotiated by a session.
+ * <p>
+ * Events are serialized to JSON once (see MessageBroadcaster) and the broker shares that byte array
+ * across subscribers. The transcoder keeps this property per format: the result is cached by the
+ * identity of the source array (weak keys), so a topic message with many CBOR subscribers is
+ * re-encoded once, not once per session. Transcoding is a streaming token copy without data binding,
+ * so the output equals what the same ObjectMapper would write in that format.
+ *
+ * Перекодирует JSON-нагрузку исходящих сообщений STOMP в бинарный формат, выбранный сессией.
+ * <p>
+ * События сериализуются в JSON один раз (см. MessageBroadcaster), и брокер разделяет этот массив
+ * между подписчиками. Перекодировщик сохраняет это свойство для каждого формата: результат
+ * кэшируется по идентичности исходного массива (слабые ключи), поэтому сообщение топика со многими
+ * CBOR-подписчиками перекодируется один раз, а не на каждую сессию. Перекодирование - потоковое
+ * копирование токенов без связывания данных, поэтому результат совпадает с тем, что записал бы
+ * тот же ObjectMapper в этом формате.
+ */
+@Component
+public class WireFormatTranscoder {
+
+    // Сообщение в полете живет недолго: небольшого кэша достаточно
+    private static final int CACHE_SIZE = 1024;
+
+    private final JsonFactory jsonFactory;
+    private final Map<WireFormat, JsonFactory> factories = new EnumMap<>(WireFormat.class);
+    private final Map<WireFormat, Cache<byte[], byte[]>> caches = new EnumMap<>(WireFormat.class);
+
+    public WireFormatTranscoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+        factories.put(WireFormat.CBOR, new CBORFactory());
+        factories.put(WireFormat.SMILE, new SmileFactory());
+        for (WireFormat format : factories.keySet()) {
+            // weakKeys сравнивает ключи по ссылке, а не по содержимому массива
+            caches.put(format, Caffeine.newBuilder().weakKeys().maximumSize(CACHE_SIZE).build());
+        }
+    }
+
+    /**
+     * Converts a JSON document into the given format; JSON is returned as is.
+     *
+     * Преобразует JSON-документ в указанный формат; для JSON возвращает исходный массив.
+     *
+     * @param json    the JSON payload, never modified
+     *                JSON-нагрузка, не изменяется
+     * @param format  the target format
+     *                целевой формат
+     * @return the payload in the target format
+     *         нагрузка в целевом формате
+     */
+    public byte[] transcode(byte[] json, WireFormat format) {
+        if (!format.isBinary()) {
+            return json;
+        }
+        return caches.get(format).get(json, source -> copy(source, factories.get(format)));
+    }
+
+    private byte[] copy(byte[] json, JsonFactory target) {
+        ByteArrayBuilder out = new ByteArrayBuilder(json.length);
+        try (JsonParser parser = jsonFactory.createParser(json);
+             JsonGenerator generator = target.createGenerator(out)) {
+            if (parser.nextToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+        } catch (IOException e) {
+            throw new MessageConversionException("Could not transcode payload to " + target.getFormatName(), e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,16 @@
+-- Индекс полнотекстового поиска сообщений (PostgreSQL), см. MessageSearchIndex.
+-- Выполнять вне транзакции: CREATE INDEX CONCURRENTLY не блокирует запись в "message" и не переписывает таблицу.
+--   psql -v ON_ERROR_STOP=1 -f message-search-index.sql
+-- Конфигурация 'simple' должна совпадать с app.search.text-config, иначе запросы не используют индекс.
+-- Если CONCURRENTLY прервался, индекс остается INVALID: удалите его (DROP INDEX CONCURRENTLY) и повторите.
+
+create index concurrently if not exists "idx_message_content_tsv"
+    on "message" using gin (to_tsvector('simple', coalesce("content", '')))
+    where "deleted_at" is null;
+
+-- Поиск по каналам идет обратным проходом по индексу (channel_id, id) - он создается вместе со схемой
+-- (idx_message_channel_id_id); для ручного развертывания схемы:
+create index concurrently if not exists "idx_message_channel_id_id" on "message" ("channel_id", "id");
+
+-- Колонка из предыдущей версии поиска больше не используется:
+-- alter table "message" drop column if exists "content_tsv";
@@ -0,0 +1,187 @@
+package com.zvonok.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.zvonok.controller.dto.ChannelMessageResponse;
+import com.zvonok.model.User;
+import com.zvonok.security.JwtTokenProvider;
+import com.zvonok.service.MessageService;
+import com.zvonok.service.ServerService;
+import com.zvonok.service.ServerSnapshotService;
+import com.zvonok.service.UserService;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIf;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompReactorNettyCodec;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.tcp.reactor.ReactorNettyTcpClient;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fan-out between nodes through the broker relay, against the embedded Artemis broker. The peer
+ * node is played by a plain STOMP connection to the broker, which is what the relay of another node
+ * opens: it receives channel messages sent on this node, and its publications reach WebSocket
+ * sessions of this node. Runs only with the {@code dev-broker} Maven profile, which puts Artemis
+ * on the classpath: {@code mvn -Pdev-broker test -Dtest=StompBrokerRelayFanOutTest}.
+ *
+ * Рассылка между узлами через relay брокера на встроенном Artemis. Соседний узел изображает обычное
+ * STOMP-соединение с брокером - такое же открывает relay другого узла: оно получает сообщения каналов,
+ * отправленные на этом узле, а его публикации доходят до WebSocket-сессий этого узла. Выполняется
+ * только с Maven-профилем {@code dev-broker}, который добавляет Artemis в classpath:
+ * {@code mvn -Pdev-broker test -Dtest=StompBrokerRelayFanOutTest}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.websocket.broker.mode=relay",
+        "app.websocket.broker.embedded=true",
+        "app.websocket.broker.relay-port=" + StompBrokerRelayFanOutTest.BROKER_PORT,
+        "app.message.rate-limit.enabled=false"})
+@EnabledIf("embeddedBrokerAvailable")
+class StompBrokerRelayFanOutTest {
+
+    static final int BROKER_PORT = 61699;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private ServerSnapshotService serverSnapshotService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private StompBrokerRelayMessageHandler brokerRelay;
+
+    private ReactorNettyTcpStompClient peerClient;
+    private WebSocketStompClient webSocketClient;
+
+    static boolean embeddedBrokerAvailable() {
+        return ClassUtils.isPresent("org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ", null);
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        for (int i = 0; i < 100 && !brokerRelay.isBrokerAvailable(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(brokerRelay.isBrokerAvailable(), "relay did not connect to the embedded broker");
+
+        peerClient = new ReactorNettyTcpStompClient(
+                new ReactorNettyTcpClient<>("localhost", BROKER_PORT, new StompReactorNettyCodec()));
+        peerClient.setMessageConverter(new MappingJackson2MessageConverter());
+        webSocketClient = new WebSocketStompClient(new StandardWebSocketClient());
+        webSocketClient.setMessageConverter(new MappingJackson2MessageConverter());
+    }
+
+    @AfterEach
+    void tearDown() {
+        peerClient.shutdown();
+    }
+
+    @Test
+    void channelMessageReachesPeerNode() throws Exception {
+        User owner = createUser("relay-sender");
+        Long channelId = createChannel("relay-out", owner);
+        StompSession peer = peerClient.connectAsync(new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS);
+        BlockingQueue<JsonNode> received = subscribe(peer, "/topic/channel." + channelId);
+
+        ChannelMessageResponse sent = messageService.sendChannelMessage(owner.getId(), channelId, "to the peer");
+
+        JsonNode event = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "peer node received nothing");
+        assertEquals(sent.getId(), event.get("id").asLong());
+        assertEquals("to the peer", event.get("content").asText());
+        peer.disconnect();
+    }
+
+    @Test
+    void peerPublicationReachesLocalSession() throws Exception {
+        User owner = createUser("relay-receiver");
+        Long channelId = createChannel("relay-in", owner);
+        String token = jwtTokenProvider.generateToken(owner.getUsername(), owner.getId());
+        StompSession local = webSocketClient.connectAsync("ws://localhost:" + port + "/ws-native?token=" + token,
+                new WebSocketHttpHeaders(), new StompSessionHandlerAdapter() {
+                }).get(5, TimeUnit.SECONDS);
+        BlockingQueue<JsonNode> received = subscribe(local, "/topic/channel." + channelId);
+
+        StompSession peer = peerClient.connectAsync(new StompSessionHandlerAdapter() {
+        }).get(5, TimeUnit.SECONDS);
+        peer.send("/topic/channel." + channelId, Map.of("content", "from the peer"));
+
+        JsonNode event = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event, "local session received nothing");
+        assertEquals("from the peer", event.get("content").asText());
+        peer.disconnect();
+        local.disconnect();
+    }
+
+    /** Подписка с ожиданием, пока SUBSCRIBE дойдет до брокера. */
+    private static BlockingQueue<JsonNode> subscribe(StompSession session, String destination)
+            throws InterruptedException {
+        BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+        session.subscribe(destination, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return JsonNode.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                received.add((JsonNode) payload);
+            }
+        });
+        Thread.sleep(500);
+        return received;
+    }
+
+    /** Сервер владельца; возвращает его первый канал. */
+    private Long createChannel(String name, User owner) {
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName(name);
+        serverService.createServer(request, owner.getId());
+        return serverSnapshotService.getReadySnapshot(owner.getId(), owner.getUsername())
+                .getServers().get(0).getChannels().get(0).getId();
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,75 @@
+package com.zvonok.repository;
+
+import com.zvonok.model.User;
+import com.zvonok.service.MessageService;
+import com.zvonok.service.UserService;
+import com.zvonok.service.dto.CreateUserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pair key backfill of private rooms created before the key existed: the oldest room of a pair gets
+ * the key and receives new messages, a duplicate stays unkeyed, and a second run changes nothing.
+ *
+ * Заполнение ключа пары приватных комнат, созданных до его появления: самая старая комната пары
+ * получает ключ и новые сообщения, дубль остается без ключа, а повторный запуск ничего не меняет.
+ */
+@SpringBootTest(properties = "app.message.rate-limit.enabled=false")
+class PrivateRoomPairBackfillTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private PrivateRoomPairBackfill backfill;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void oldestLegacyRoomOfPairGetsKey() {
+        User low = createUser("backfill-low");
+        User high = createUser("backfill-high");
+        long oldest = insertLegacyRoom(high, low);
+        long duplicate = insertLegacyRoom(low, high);
+
+        backfill.backfill();
+        assertEquals(low.getId(), pairLowId(oldest));
+        assertNull(pairLowId(duplicate));
+
+        backfill.backfill();
+        assertEquals(low.getId(), pairLowId(oldest));
+        assertNull(pairLowId(duplicate));
+
+        assertEquals(oldest, messageService.sendPrivateMessage(high.getId(), "backfill-low", "hi").getRoomId());
+    }
+
+    /** Приватная комната в виде, в котором ее оставила версия без ключа пары. */
+    private long insertLegacyRoom(User first, User second) {
+        Long roomId = jdbcTemplate.queryForObject("select nextval('room_seq')", Long.class);
+        jdbcTemplate.update("insert into \"room\" (\"id\", \"type\", \"is_active\") values (?, 'PRIVATE', true)", roomId);
+        jdbcTemplate.update("insert into \"room_members\" (\"room_id\", \"user_id\") values (?, ?)", roomId, first.getId());
+        jdbcTemplate.update("insert into \"room_members\" (\"room_id\", \"user_id\") values (?, ?)", roomId, second.getId());
+        return roomId;
+    }
+
+    private Long pairLowId(long roomId) {
+        return jdbcTemplate.queryForObject("select \"dm_user_low_id\" from \"room\" where \"id\" = ?", Long.class, roomId);
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,72 @@
+package com.zvonok.repository;
+
+import com.zvonok.model.User;
+import com.zvonok.service.ServerService;
+import com.zvonok.service.UserService;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import com.zvonok.service.dto.response.ServerResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Member counter backfill: a server left at 0 by the version without the counter gets its number of
+ * active members, counted servers are not touched, and the next join counts from the filled value.
+ *
+ * Заполнение счетчика участников: сервер, оставленный версией без счетчика с 0, получает число
+ * активных участников, серверы со счетчиком не затрагиваются, а следующий вход считает от заполненного значения.
+ */
+@SpringBootTest
+class ServerMemberCountBackfillTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private ServerMemberCountBackfill backfill;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyServerGetsActiveMemberCount() {
+        User owner = createUser("counter-owner");
+        ServerResponse legacy = createServer("legacy", owner);
+        ServerResponse counted = createServer("counted", owner);
+        serverService.joinServerByInviteCode(legacy.getInviteCode(), createUser("counter-member").getId());
+        jdbcTemplate.update("update \"server\" set \"member_count\" = 0 where \"id\" = ?", legacy.getId());
+
+        backfill.backfill();
+        assertEquals(2L, memberCount(legacy.getId()));
+        assertEquals(1L, memberCount(counted.getId()));
+
+        serverService.joinServerByInviteCode(legacy.getInviteCode(), createUser("counter-late").getId());
+        backfill.backfill();
+        assertEquals(3L, memberCount(legacy.getId()));
+    }
+
+    private Long memberCount(Long serverId) {
+        return jdbcTemplate.queryForObject("select \"member_count\" from \"server\" where \"id\" = ?", Long.class, serverId);
+    }
+
+    private ServerResponse createServer(String name, User owner) {
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName(name);
+        return serverService.createServer(request, owner.getId());
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,106 @@
+package com.zvonok.service;
+
+import com.zvonok.model.User;
+import com.zvonok.service.dto.CreateUserDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Private room of a user pair: simultaneous first messages from both sides end up in one room,
+ * and leaving the room releases the pair key for a new room.
+ *
+ * Приватная комната пары пользователей: одновременные первые сообщения с обеих сторон попадают
+ * в одну комнату, а выход из комнаты освобождает ключ пары для новой комнаты.
+ */
+@SpringBootTest(properties = "app.message.rate-limit.enabled=false")
+class PrivateRoomResolutionTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void concurrentFirstMessagesShareOneRoom() throws Exception {
+        User first = createUser("pair-first");
+        User second = createUser("pair-second");
+
+        Set<Long> roomIds = new HashSet<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Long>> sends = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                boolean fromFirst = i % 2 == 0;
+                sends.add(executor.submit(() -> {
+                    start.await();
+                    return fromFirst
+                            ? messageService.sendPrivateMessage(first.getId(), "pair-second", "hi").getRoomId()
+                            : messageService.sendPrivateMessage(second.getId(), "pair-first", "hi").getRoomId();
+                }));
+            }
+            start.countDown();
+            for (Future<Long> send : sends) {
+                roomIds.add(send.get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, roomIds.size(), roomIds.toString());
+        Integer rooms = jdbcTemplate.queryForObject("select count(*) from \"room\" where \"type\" = 'PRIVATE' "
+                + "and \"dm_user_low_id\" = ? and \"dm_user_high_id\" = ?", Integer.class, first.getId(), second.getId());
+        assertEquals(1, rooms);
+    }
+
+    @Test
+    void leavingReleasesPair() {
+        User leaver = createUser("pair-leaver");
+        User other = createUser("pair-other");
+        Long firstRoomId = messageService.sendPrivateMessage(leaver.getId(), "pair-other", "hi").getRoomId();
+
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> roomService.leaveRoom("pair-leaver", firstRoomId));
+
+        Long secondRoomId = messageService.sendPrivateMessage(other.getId(), "pair-leaver", "back").getRoomId();
+        assertNotEquals(firstRoomId, secondRoomId);
+        assertNull(jdbcTemplate.queryForObject("select \"dm_user_low_id\" from \"room\" where \"id\" = ?",
+                Long.class, firstRoomId));
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,115 @@
+package com.zvonok.service;
+
+import com.zvonok.controller.dto.MessageResponse;
+import com.zvonok.model.Room;
+import com.zvonok.model.User;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.typing.TypingIndicatorService;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.clearInvocations;
+
+/**
+ * Room events (new, edited and deleted messages, typing) go to the user destinations of the current
+ * members from the membership index, so a user who left the room receives none of them.
+ *
+ * События комнаты (новые, измененные и удаленные сообщения, набор текста) уходят в пользовательские
+ * назначения текущих участников из индекса членства, поэтому вышедший из комнаты пользователь
+ * не получает ни одного из них.
+ */
+@SpringBootTest(properties = "app.typing.broadcast-interval=PT0.1S")
+class RoomEventFanOutTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private TypingIndicatorService typingIndicatorService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoSpyBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Test
+    void formerMemberReceivesNoRoomEvents() throws InterruptedException {
+        User owner = createUser("fan-owner");
+        User member = createUser("fan-member");
+        User leaver = createUser("fan-leaver");
+        Room room = roomService.createGroupRoom(owner.getUsername(), "fan-out",
+                List.of(member.getUsername(), leaver.getUsername()));
+
+        clearInvocations(messagingTemplate);
+        messageService.sendGroupMessage(owner.getId(), room.getId(), "before");
+        assertEquals(Map.of(
+                "/user/fan-owner/queue/messages", 1L,
+                "/user/fan-member/queue/messages", 1L,
+                "/user/fan-leaver/queue/messages", 1L), sentDestinations());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                roomService.leaveRoom(leaver.getUsername(), room.getId()));
+        clearInvocations(messagingTemplate);
+
+        MessageResponse sent = messageService.sendGroupMessage(owner.getId(), room.getId(), "after");
+        messageService.editMessage(sent.getId(), owner.getId(), "edited");
+        messageService.deleteMessage(sent.getId(), owner.getId());
+        typingIndicatorService.roomTyping(member.getId(), member.getUsername(), room.getId());
+        awaitSends(8);
+
+        // Сообщение, правка, удаление и набор текста - только оставшимся участникам
+        assertEquals(Map.of(
+                "/user/fan-owner/queue/messages", 4L,
+                "/user/fan-member/queue/messages", 4L), sentDestinations());
+    }
+
+    /** Назначения отправок через шаблон с числом отправок в каждое. */
+    private Map<String, Long> sentDestinations() {
+        return Mockito.mockingDetails(messagingTemplate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("send")
+                        && invocation.getArguments().length == 2
+                        && invocation.getArguments()[0] instanceof String)
+                .map(Invocation::getArguments)
+                .map(arguments -> (String) arguments[0])
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    /** Ждет рассылки набора текста на тике планировщика. */
+    private void awaitSends(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (sentDestinations().values().stream().mapToLong(Long::longValue).sum() < expected
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        // Запас на лишние отправки, которые не должны прийти
+        Thread.sleep(300);
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
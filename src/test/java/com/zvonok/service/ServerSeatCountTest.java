@@ -0,0 +1,132 @@
+package com.zvonok.service;
+
+import com.zvonok.exception.ServerMemberLimitReachedException;
+import com.zvonok.model.User;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import com.zvonok.service.dto.response.ServerResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Seat counting of servers: concurrent joins never take more seats than the member limit, and
+ * the counter follows leaves, kicks and repeated joins of a member.
+ *
+ * Подсчет мест на сервере: параллельные входы не занимают больше мест, чем лимит участников,
+ * а счетчик следует за выходами, исключениями и повторными входами участника.
+ */
+@SpringBootTest
+class ServerSeatCountTest {
+
+    private static final int MAX_MEMBERS = 10;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentJoinsStopAtMemberLimit() throws Exception {
+        User owner = createUser("seat-owner");
+        ServerResponse server = createServer("seats", owner);
+        List<User> candidates = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            candidates.add(createUser("seat-" + i));
+        }
+
+        AtomicInteger joined = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> joins = new ArrayList<>();
+            for (User candidate : candidates) {
+                joins.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        serverService.joinServerByInviteCode(server.getInviteCode(), candidate.getId());
+                        joined.incrementAndGet();
+                    } catch (ServerMemberLimitReachedException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> join : joins) {
+                join.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Владелец занимает одно место
+        assertEquals(MAX_MEMBERS - 1, joined.get());
+        assertEquals(candidates.size() - MAX_MEMBERS + 1, rejected.get());
+        assertEquals(MAX_MEMBERS, memberCount(server.getId()));
+        assertEquals(MAX_MEMBERS, activeMembers(server.getId()));
+    }
+
+    @Test
+    void counterFollowsLeavesKicksAndRejoins() {
+        User owner = createUser("seat-flow-owner");
+        ServerResponse server = createServer("seat-flow", owner);
+        User leaver = createUser("seat-leaver");
+        User kicked = createUser("seat-kicked");
+        serverService.joinServerByInviteCode(server.getInviteCode(), leaver.getId());
+        serverService.joinServerByInviteCode(server.getInviteCode(), kicked.getId());
+        assertEquals(3, memberCount(server.getId()));
+
+        serverService.leaveServer(server.getId(), leaver.getId());
+        serverService.kickMember(server.getId(), kicked.getId(), owner.getId());
+        assertEquals(1, memberCount(server.getId()));
+
+        serverService.joinServerByInviteCode(server.getInviteCode(), leaver.getId());
+        // Повторный вход участника не занимает второе место
+        ServerResponse rejoined = serverService.joinServerByInviteCode(server.getInviteCode(), leaver.getId());
+        assertEquals(2L, rejoined.getMemberCount());
+        assertEquals(2, memberCount(server.getId()));
+        assertEquals(activeMembers(server.getId()), memberCount(server.getId()));
+    }
+
+    private long memberCount(Long serverId) {
+        return jdbcTemplate.queryForObject("select \"member_count\" from \"server\" where \"id\" = ?", Long.class, serverId);
+    }
+
+    private long activeMembers(Long serverId) {
+        return jdbcTemplate.queryForObject("select count(*) from \"server_member\" where \"server_id\" = ? "
+                + "and \"is_active\" = true", Long.class, serverId);
+    }
+
+    private ServerResponse createServer(String name, User owner) {
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName(name);
+        request.setMaxMembers(MAX_MEMBERS);
+        return serverService.createServer(request, owner.getId());
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,95 @@
+package com.zvonok.service;
+
+import com.zvonok.model.User;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import com.zvonok.service.dto.response.ServerResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Statement counts of server creation and joining, measured with Hibernate {@link Statistics}
+ * on H2, with warm sequences. Pooled sequences and JDBC batching keep them constant: inserts
+ * of one entity type share a single prepared statement.
+ *
+ * Количество SQL-операторов при создании сервера и вступлении в него по статистике Hibernate
+ * на H2 с прогретыми последовательностями. Пуловые последовательности и пакетная запись JDBC
+ * делают его постоянным: вставки одной сущности используют один подготовленный оператор.
+ */
+@SpringBootTest
+class ServerServiceStatementCountTest {
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void createServerBatchesInserts() {
+        User owner = createUser("count-owner");
+        // Пуловому оптимизатору нужны два обращения к последовательности, чтобы получить блок id
+        serverService.createServer(serverRequest("warm-up-1"), owner.getId());
+        serverService.createServer(serverRequest("warm-up-2"), owner.getId());
+
+        statistics.clear();
+        serverService.createServer(serverRequest("measured"), owner.getId());
+
+        // Сервер, две роли, участник, роль участника, папка и два канала
+        assertEquals(8, statistics.getEntityInsertCount());
+        // Владелец, проверка кода приглашения, место владельца (member_count) и шесть пакетов INSERT:
+        // две роли и два канала уходят одним пакетом каждые
+        assertEquals(9, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void joinServerByInviteCodeAddsMemberWithEveryoneRole() {
+        User owner = createUser("join-owner");
+        ServerResponse server = serverService.createServer(serverRequest("join"), owner.getId());
+        serverService.joinServerByInviteCode(server.getInviteCode(), createUser("join-warm-up-1").getId());
+        serverService.joinServerByInviteCode(server.getInviteCode(), createUser("join-warm-up-2").getId());
+        Long userId = createUser("join-member").getId();
+
+        statistics.clear();
+        ServerResponse joined = serverService.joinServerByInviteCode(server.getInviteCode(), userId);
+
+        // Участник и его роль @everyone
+        assertEquals(2, statistics.getEntityInsertCount());
+        // Сервер по коду (с владельцем), пользователь, бан, прежнее членство, место (member_count),
+        // роль @everyone и два INSERT
+        assertEquals(9, statistics.getPrepareStatementCount());
+        assertEquals(4L, joined.getMemberCount());
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+
+    private static CreateServerRequest serverRequest(String name) {
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName(name);
+        return request;
+    }
+}
@@ -0,0 +1,198 @@
+package com.zvonok.service.memberlist;
+
+import com.zvonok.controller.dto.MemberListItem;
+import com.zvonok.controller.dto.MemberListOp;
+import com.zvonok.controller.dto.MemberListUpdate;
+import com.zvonok.model.User;
+import com.zvonok.service.ServerMemberRoleService;
+import com.zvonok.service.ServerMemberService;
+import com.zvonok.service.ServerRoleService;
+import com.zvonok.service.ServerService;
+import com.zvonok.service.UserService;
+import com.zvonok.service.dto.CreateServerRoleDto;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import com.zvonok.service.dto.response.ServerResponse;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Range subscription of a server member list: the ops sent to a session, applied in order to a client
+ * copy of the range, must reproduce the range as the server sees it after every join, leave, kick,
+ * nickname change and hoisted role assignment.
+ *
+ * Подписка на диапазон списка участников сервера: операции, отправленные в сессию и примененные
+ * по порядку к копии диапазона на клиенте, должны воспроизводить диапазон, каким его видит сервер,
+ * после каждого вступления, выхода, исключения, смены ника и назначения выделяемой роли.
+ */
+@SpringBootTest
+class MemberListServiceTest {
+
+    private static final int START = 5;
+    private static final int END = 14;
+    private static final String VIEWER = "ml03";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private ServerRoleService serverRoleService;
+
+    @Autowired
+    private ServerMemberService serverMemberService;
+
+    @Autowired
+    private ServerMemberRoleService serverMemberRoleService;
+
+    @Autowired
+    private MemberListService memberListService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private AbstractBrokerMessageHandler simpleBrokerMessageHandler;
+
+    @MockitoBean
+    private SimpMessagingTemplate messagingTemplate;
+
+    // Копия подписанного диапазона на клиенте и число уже примененных обновлений
+    private List<MemberListItem> view = new ArrayList<>();
+    private int applied;
+
+    @Test
+    void opsKeepClientRangeInSync() throws InterruptedException {
+        User owner = createUser("mlowner");
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName("member-list");
+        request.setMaxMembers(1000);
+        ServerResponse server = serverService.createServer(request, owner.getId());
+        Long serverId = server.getId();
+        Map<String, User> users = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            User user = createUser(String.format("ml%02d", i));
+            users.put(user.getUsername(), user);
+            serverService.joinServerByInviteCode(server.getInviteCode(), user.getId());
+        }
+        Long viewerId = users.get(VIEWER).getId();
+        assertEquals(31, memberListService.getRange(serverId, viewerId, 0, 99).getTotal());
+
+        memberListService.subscribe(serverId, viewerId, VIEWER, "session-1", START, END);
+        assertInSync(serverId, viewerId, "sync");
+
+        // Вступления выше, внутри и ниже диапазона
+        for (String username : List.of("ml075", "ml000", "ml99", "ml115")) {
+            serverService.joinServerByInviteCode(server.getInviteCode(), createUser(username).getId());
+            assertInSync(serverId, viewerId, "join " + username);
+        }
+        for (String username : List.of("ml07", "ml01", "ml29")) {
+            serverService.leaveServer(serverId, users.get(username).getId());
+            assertInSync(serverId, viewerId, "leave " + username);
+        }
+        serverService.updateMemberNickname(serverId, users.get("ml25").getId(), "ML08b", owner.getId());
+        assertInSync(serverId, viewerId, "nickname moves ml25");
+        serverService.updateMemberNickname(serverId, users.get("ml12").getId(), "ml12", owner.getId());
+        assertInSync(serverId, viewerId, "nickname keeps place of ml12");
+
+        CreateServerRoleDto role = new CreateServerRoleDto();
+        role.setName("Mods");
+        role.setColor("#f00");
+        role.setPosition(5);
+        role.setServerPermissions(0L);
+        role.setHoist(true);
+        role.setServer(serverService.getServer(serverId));
+        Long roleId = serverRoleService.createServerRole(role).getId();
+        for (String username : List.of("ml20", "ml10")) {
+            Long memberId = serverMemberService.getServerMember(users.get(username).getId(), serverId).getId();
+            transactionTemplate.executeWithoutResult(status ->
+                    serverMemberRoleService.createServerMemberRole(memberId, roleId, owner.getId()));
+            assertInSync(serverId, viewerId, "hoist " + username);
+        }
+
+        serverService.kickMember(serverId, users.get("ml09").getId(), owner.getId());
+        assertInSync(serverId, viewerId, "kick ml09");
+
+        // После отписки обновления в сессию не отправляются
+        memberListService.unsubscribe("session-1");
+        Thread.sleep(100);
+        int sent = sentUpdates().size();
+        serverService.leaveServer(serverId, users.get("ml08").getId());
+        Thread.sleep(300);
+        assertEquals(sent, sentUpdates().size());
+    }
+
+    @Test
+    void brokerPreservesPublishOrderPerSession() {
+        // Операции применяются по индексам: исходящий канал не должен переставлять кадры сессии
+        assertTrue(simpleBrokerMessageHandler.isPreservePublishOrder());
+    }
+
+    /** Ждет, пока поток обновлений разошлет изменения, и сравнивает копию клиента с диапазоном сервера. */
+    private void assertInSync(Long serverId, Long viewerId, String step) throws InterruptedException {
+        List<MemberListItem> expected = null;
+        for (int attempt = 0; attempt < 40; attempt++) {
+            Thread.sleep(50);
+            applyNewUpdates();
+            expected = memberListService.getRange(serverId, viewerId, START, END).getOps().get(0).getItems();
+            if (expected.equals(view)) {
+                break;
+            }
+        }
+        assertEquals(expected, view, step);
+    }
+
+    private void applyNewUpdates() {
+        List<Object> updates = sentUpdates();
+        for (; applied < updates.size(); applied++) {
+            for (MemberListOp op : ((MemberListUpdate) updates.get(applied)).getOps()) {
+                switch (op.getOp()) {
+                    case SYNC -> view = new ArrayList<>(op.getItems());
+                    case INSERT -> view.add(op.getIndex() - START, op.getItem());
+                    case UPDATE -> view.set(op.getIndex() - START, op.getItem());
+                    case DELETE -> view.remove(op.getIndex() - START);
+                }
+                // Строки за концом диапазона клиент отбрасывает
+                while (view.size() > END - START + 1) {
+                    view.remove(view.size() - 1);
+                }
+            }
+        }
+    }
+
+    private List<Object> sentUpdates() {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeast(0)).convertAndSendToUser(eq(VIEWER), eq("/queue/member-list"),
+                payload.capture(), any(MessageHeaders.class));
+        return payload.getAllValues();
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
@@ -0,0 +1,106 @@
+package com.zvonok.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GCRA bounds of the message buckets: a full bucket admits exactly {@code burst} messages, then one
+ * per interval, and under contention the number of admitted messages never exceeds
+ * burst + rate * elapsed.
+ *
+ * Границы GCRA для корзин сообщений: полная корзина пропускает ровно {@code burst} сообщений, затем
+ * по одному за интервал, и при конкуренции число пропущенных сообщений не превышает
+ * burst + скорость * прошедшее время.
+ */
+class MessageRateLimiterTest {
+
+    private static final long USER = 1L;
+    private static final long OTHER_USER = 2L;
+    private static final long CHANNEL = 10L;
+    private static final long OTHER_CHANNEL = 11L;
+
+    @Test
+    void fullBucketAdmitsBurstThenOnePerInterval() throws InterruptedException {
+        // 3 сообщения подряд, затем одно каждые 500 мс
+        MessageRateLimiter limiter = new MessageRateLimiter(true, 3, 2.0, 4);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0L, limiter.tryAcquireFlood(USER), "burst message " + i);
+        }
+        long retryAfter = limiter.tryAcquireFlood(USER);
+        assertTrue(retryAfter > 0 && retryAfter <= 500, "retry after " + retryAfter);
+        // Корзина другого пользователя не затронута
+        assertEquals(0L, limiter.tryAcquireFlood(OTHER_USER));
+
+        Thread.sleep(retryAfter + 20);
+        assertEquals(0L, limiter.tryAcquireFlood(USER));
+        assertTrue(limiter.tryAcquireFlood(USER) > 0);
+    }
+
+    @Test
+    void concurrentSendersNeverExceedBurstPlusRate() throws Exception {
+        int burst = 10;
+        double perSecond = 20.0;
+        MessageRateLimiter limiter = new MessageRateLimiter(true, burst, perSecond, 4);
+        AtomicInteger admitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(500);
+        try {
+            Future<?>[] senders = new Future<?>[8];
+            for (int i = 0; i < senders.length; i++) {
+                senders[i] = executor.submit(() -> {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        if (limiter.tryAcquireFlood(USER) == 0L) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> sender : senders) {
+                sender.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        assertTrue(admitted.get() >= burst, "admitted " + admitted.get());
+        assertTrue(admitted.get() <= burst + Math.ceil(perSecond * elapsedSeconds),
+                "admitted " + admitted.get() + " in " + elapsedSeconds + " s");
+    }
+
+    @Test
+    void slowModeAdmitsOneMessagePerDelayPerChannel() {
+        MessageRateLimiter limiter = new MessageRateLimiter(true, 10, 5.0, 4);
+        assertEquals(0L, limiter.tryAcquireSlowMode(USER, CHANNEL, 30));
+        long retryAfter = limiter.tryAcquireSlowMode(USER, CHANNEL, 30);
+        assertTrue(retryAfter > 29_000 && retryAfter <= 30_000, "retry after " + retryAfter);
+
+        // Медленный режим считается отдельно по каждому каналу и пользователю
+        assertEquals(0L, limiter.tryAcquireSlowMode(USER, OTHER_CHANNEL, 30));
+        assertEquals(0L, limiter.tryAcquireSlowMode(OTHER_USER, CHANNEL, 30));
+        // Без медленного режима ограничений нет
+        assertEquals(0L, limiter.tryAcquireSlowMode(USER, CHANNEL, 0));
+    }
+
+    @Test
+    void disabledFloodLimitAdmitsEverything() {
+        MessageRateLimiter limiter = new MessageRateLimiter(false, 1, 1.0, 4);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0L, limiter.tryAcquireFlood(USER));
+        }
+    }
+}
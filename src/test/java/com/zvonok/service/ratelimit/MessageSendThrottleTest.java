@@ -0,0 +1,74 @@
+package com.zvonok.service.ratelimit;
+
+import com.zvonok.exception.MessageRateLimitedException;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.ChannelSlowModeCache;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.metrics.ChatMetrics;
+import com.zvonok.service.metrics.ChatMetrics.MessageKind;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Send path checks made before the message service transaction: an allowed message in slow mode
+ * touches only the slow mode cache, and a moderator's permission is consulted only once the bucket is empty.
+ *
+ * Проверки пути отправки до транзакции сервиса сообщений: разрешенное сообщение в медленном режиме
+ * обращается только к кэшу медленного режима, а право модератора проверяется, лишь когда корзина пуста.
+ */
+class MessageSendThrottleTest {
+
+    private static final long USER = 1L;
+    private static final long MODERATOR = 2L;
+    private static final long OTHER_USER = 3L;
+    private static final long CHANNEL = 10L;
+
+    private PermissionService permissionService;
+    private ChatMetrics chatMetrics;
+    private MessageSendThrottle throttle;
+
+    @BeforeEach
+    void setUp() {
+        permissionService = mock(PermissionService.class);
+        ChannelSlowModeCache slowModeCache = mock(ChannelSlowModeCache.class);
+        when(slowModeCache.getSlowModeSeconds(CHANNEL)).thenReturn(60);
+        when(permissionService.hasPermissionInChannel(USER, CHANNEL, Permission.MANAGE_MESSAGES)).thenReturn(false);
+        when(permissionService.hasPermissionInChannel(MODERATOR, CHANNEL, Permission.MANAGE_MESSAGES)).thenReturn(true);
+        chatMetrics = new ChatMetrics(new SimpleMeterRegistry());
+        throttle = new MessageSendThrottle(new MessageRateLimiter(true, 2, 1.0, 4), slowModeCache,
+                permissionService, chatMetrics);
+    }
+
+    @Test
+    void slowModeRejectsSecondMessageAndExemptsModerators() {
+        throttle.enforceSlowMode(USER, CHANNEL);
+        verifyNoInteractions(permissionService);
+
+        assertThrows(MessageRateLimitedException.class, () -> throttle.enforceSlowMode(USER, CHANNEL));
+        assertEquals(1.0, chatMetrics.slowModeCounter().count());
+
+        throttle.enforceSlowMode(MODERATOR, CHANNEL);
+        assertDoesNotThrow(() -> throttle.enforceSlowMode(MODERATOR, CHANNEL));
+        verify(permissionService).hasPermissionInChannel(MODERATOR, CHANNEL, Permission.MANAGE_MESSAGES);
+    }
+
+    @Test
+    void floodLimitRejectsAfterBurst() {
+        throttle.enforceFloodLimit(USER, MessageKind.CHANNEL);
+        throttle.enforceFloodLimit(USER, MessageKind.CHANNEL);
+        assertThrows(MessageRateLimitedException.class, () -> throttle.enforceFloodLimit(USER, MessageKind.CHANNEL));
+        assertEquals(1.0, chatMetrics.floodCounter(MessageKind.CHANNEL).count());
+        verifyNoInteractions(permissionService);
+        // Другие пользователи не затронуты
+        assertDoesNotThrow(() -> throttle.enforceFloodLimit(OTHER_USER, MessageKind.CHANNEL));
+    }
+}
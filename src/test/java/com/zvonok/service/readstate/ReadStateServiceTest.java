@@ -0,0 +1,177 @@
+package com.zvonok.service.readstate;
+
+import com.zvonok.controller.dto.ReadStateResponse;
+import com.zvonok.model.User;
+import com.zvonok.repository.ServerMemberRepository;
+import com.zvonok.service.MessageService;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.ServerService;
+import com.zvonok.service.ServerSnapshotService;
+import com.zvonok.service.UserService;
+import com.zvonok.service.cache.RoomMemberCache;
+import com.zvonok.service.dto.CreateUserDto;
+import com.zvonok.service.dto.request.CreateServerRequest;
+import com.zvonok.service.dto.response.ServerResponse;
+import com.zvonok.service.message.MessageWriteBehindQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unread and mention badges: unread counts follow the stored messages after the last ack on any node,
+ * and a rolled back send changes nothing. A second service instance over the same database plays
+ * the second node of the broker relay.
+ *
+ * Значки непрочитанных и упоминаний: непрочитанные следуют за сохраненными сообщениями после последнего
+ * подтверждения на любом узле, а откаченная отправка ничего не меняет. Второй экземпляр сервиса
+ * над той же БД играет роль второго узла в режиме relay.
+ */
+@SpringBootTest(properties = {"app.message.rate-limit.enabled=false", "app.read-state.flush-interval=PT1H"})
+class ReadStateServiceTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ServerService serverService;
+
+    @Autowired
+    private ServerSnapshotService serverSnapshotService;
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private ReadStateService readStateService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PermissionService permissionService;
+
+    @Autowired
+    private RoomMemberCache roomMemberCache;
+
+    @Autowired
+    private ServerMemberRepository serverMemberRepository;
+
+    @Autowired
+    private MessageWriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void unreadAndMentionsFollowStoredMessages() {
+        User owner = createUser("rs-owner");
+        User member = createUser("rs-member");
+        Long channelId = createChannel("read-state", owner, member);
+
+        Long first = messageService.sendChannelMessage(owner.getId(), channelId, "first").getId();
+        readStateService.ackChannel(member.getId(), channelId, first);
+        for (int i = 0; i < 4; i++) {
+            messageService.sendChannelMessage(owner.getId(), channelId, i == 2 ? "hey @rs-member" : "msg " + i);
+        }
+        assertBadge(member, channelId, 4, 1);
+        assertBadge(owner, channelId, 0, 0);
+
+        // Сброс в БД не меняет значки
+        flush(readStateService);
+        assertBadge(member, channelId, 4, 1);
+
+        Long last = messageService.sendChannelMessage(owner.getId(), channelId, "last").getId();
+        readStateService.ackChannel(member.getId(), channelId, last);
+        assertBadge(member, channelId, 0, 0);
+
+        // id из будущего приводится к последнему сообщению и не замораживает состояние
+        readStateService.ackChannel(member.getId(), channelId, Long.MAX_VALUE);
+        messageService.sendChannelMessage(owner.getId(), channelId, "after");
+        assertBadge(member, channelId, 1, 0);
+    }
+
+    @Test
+    void rolledBackSendChangesNoBadges() {
+        User owner = createUser("rb-owner");
+        User member = createUser("rb-member");
+        Long channelId = createChannel("rollback", owner, member);
+        Long first = messageService.sendChannelMessage(owner.getId(), channelId, "first").getId();
+        readStateService.ackChannel(member.getId(), channelId, first);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            messageService.sendChannelMessage(owner.getId(), channelId, "@rb-member rolled back");
+            status.setRollbackOnly();
+        });
+
+        assertBadge(member, channelId, 0, 0);
+        flush(readStateService);
+        assertBadge(member, channelId, 0, 0);
+    }
+
+    @Test
+    void acksFromAnotherNodeAreSeenByEveryNode() {
+        User owner = createUser("mn-owner");
+        User member = createUser("mn-member");
+        Long channelId = createChannel("multi-node", owner, member);
+        ReadStateService otherNode = new ReadStateService(jdbcTemplate, permissionService, roomMemberCache,
+                serverMemberRepository, writeBehindQueue, transactionManager);
+        ReflectionTestUtils.setField(otherNode, "flushBatchSize", 500);
+
+        Long first = messageService.sendChannelMessage(owner.getId(), channelId, "first").getId();
+        otherNode.ackChannel(member.getId(), channelId, first);
+        flush(otherNode);
+        for (int i = 0; i < 3; i++) {
+            messageService.sendChannelMessage(owner.getId(), channelId, "msg " + i);
+        }
+
+        // Сообщения отправлены на этом узле, подтверждение пришло на другой: оба видят три непрочитанных
+        assertEquals(3, badge(readStateService, member, channelId).getUnreadCount());
+        assertEquals(3, badge(otherNode, member, channelId).getUnreadCount());
+
+        Long last = messageService.sendChannelMessage(owner.getId(), channelId, "last").getId();
+        otherNode.ackChannel(member.getId(), channelId, last);
+        flush(otherNode);
+        assertEquals(0, badge(readStateService, member, channelId).getUnreadCount());
+    }
+
+    private void assertBadge(User user, Long channelId, long unread, int mentions) {
+        ReadStateResponse badge = badge(readStateService, user, channelId);
+        assertEquals(unread, badge.getUnreadCount());
+        assertEquals(mentions, badge.getMentionCount());
+    }
+
+    private static ReadStateResponse badge(ReadStateService service, User user, Long channelId) {
+        return service.getReadStates(user.getId()).stream()
+                .filter(state -> state.getTargetId().equals(channelId))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void flush(ReadStateService service) {
+        ReflectionTestUtils.invokeMethod(service, "flush");
+    }
+
+    /** Сервер владельца с вступившим участником; возвращает его первый канал. */
+    private Long createChannel(String name, User owner, User member) {
+        CreateServerRequest request = new CreateServerRequest();
+        request.setName(name);
+        ServerResponse server = serverService.createServer(request, owner.getId());
+        serverService.joinServerByInviteCode(server.getInviteCode(), member.getId());
+        return serverSnapshotService.getReadySnapshot(owner.getId(), owner.getUsername())
+                .getServers().get(0).getChannels().get(0).getId();
+    }
+
+    private User createUser(String username) {
+        CreateUserDto dto = new CreateUserDto();
+        dto.setUsername(username);
+        dto.setEmail(username + "@example.com");
+        dto.setPassword("password");
+        return userService.createUser(dto);
+    }
+}
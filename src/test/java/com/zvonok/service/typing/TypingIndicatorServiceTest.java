@@ -0,0 +1,114 @@
+package com.zvonok.service.typing;
+
+import com.zvonok.controller.dto.TypingUpdate;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.RoomMemberCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Coalescing of typing frames: keystrokes of many users between two ticks become one update per target,
+ * repeated frames inside the dedupe window skip the access check, an unchanged list is not resent,
+ * and expired typists produce a final update. Ticks are driven by the test, not the scheduler.
+ *
+ * Свертка кадров набора текста: нажатия многих пользователей между двумя тиками дают одно обновление
+ * на цель, повторные кадры в окне дедупликации не проверяют доступ, неизменный список не рассылается
+ * повторно, а истекшие печатающие дают завершающее обновление. Тики вызывает тест, а не планировщик.
+ */
+class TypingIndicatorServiceTest {
+
+    private static final long CHANNEL = 10L;
+    private static final long FORBIDDEN_CHANNEL = 11L;
+    private static final String CHANNEL_TOPIC = "/topic/channel." + CHANNEL;
+
+    private SimpMessagingTemplate messagingTemplate;
+    private PermissionService permissionService;
+    private TypingIndicatorService typingIndicatorService;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        permissionService = mock(PermissionService.class);
+        when(permissionService.canUserViewChannel(anyLong(), eq(CHANNEL))).thenReturn(true);
+        when(permissionService.canUserViewChannel(anyLong(), eq(FORBIDDEN_CHANNEL))).thenReturn(false);
+        typingIndicatorService = new TypingIndicatorService(messagingTemplate, permissionService,
+                mock(RoomMemberCache.class));
+        ReflectionTestUtils.setField(typingIndicatorService, "ttl", Duration.ofSeconds(8));
+        ReflectionTestUtils.setField(typingIndicatorService, "dedupeWindow", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(typingIndicatorService, "maxListedUsers", 3);
+    }
+
+    @Test
+    void framesBetweenTicksCollapseIntoOneUpdate() {
+        for (long userId = 1; userId <= 5; userId++) {
+            for (int keystroke = 0; keystroke < 10; keystroke++) {
+                typingIndicatorService.channelTyping(userId, "user-" + userId, CHANNEL);
+            }
+        }
+        // Повторные кадры в окне дедупликации отброшены до проверки прав
+        verify(permissionService, times(5)).canUserViewChannel(anyLong(), eq(CHANNEL));
+
+        tick();
+        TypingUpdate update = lastChannelUpdate();
+        assertEquals(5, update.getCount());
+        assertEquals(3, update.getUsers().size());
+
+        // Список не изменился - повторной рассылки нет
+        clearInvocations(messagingTemplate);
+        typingIndicatorService.channelTyping(1L, "user-1", CHANNEL);
+        tick();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void expiredTypistsProduceFinalUpdate() throws InterruptedException {
+        ReflectionTestUtils.setField(typingIndicatorService, "ttl", Duration.ofMillis(100));
+        typingIndicatorService.channelTyping(1L, "user-1", CHANNEL);
+        tick();
+        assertEquals(1, lastChannelUpdate().getCount());
+
+        Thread.sleep(150);
+        clearInvocations(messagingTemplate);
+        tick();
+        assertEquals(0, lastChannelUpdate().getCount());
+
+        // Цель без печатающих удалена: следующий тик ничего не рассылает
+        clearInvocations(messagingTemplate);
+        tick();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void framesWithoutAccessAreIgnored() {
+        typingIndicatorService.channelTyping(1L, "user-1", FORBIDDEN_CHANNEL);
+        tick();
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    private TypingUpdate lastChannelUpdate() {
+        ArgumentCaptor<TypingUpdate> update = ArgumentCaptor.forClass(TypingUpdate.class);
+        verify(messagingTemplate).convertAndSend(eq(CHANNEL_TOPIC), update.capture());
+        return update.getValue();
+    }
+
+    private void tick() {
+        ReflectionTestUtils.invokeMethod(typingIndicatorService, "tick");
+    }
+}
@@ -0,0 +1,229 @@
+package com.zvonok.service.voice;
+
+import com.zvonok.controller.dto.VoiceSignal;
+import com.zvonok.controller.dto.VoiceStateUpdate;
+import com.zvonok.exception.VoiceChannelFullException;
+import com.zvonok.model.enumeration.ChannelType;
+import com.zvonok.model.enumeration.VoiceSignalType;
+import com.zvonok.service.PermissionService;
+import com.zvonok.service.cache.VoiceChannelCache;
+import com.zvonok.service.dto.Permission;
+import com.zvonok.service.dto.VoiceChannelInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Voice state registry and signaling relay driven by simulated peers: users with their own STOMP
+ * session ids, with permissions and channels stubbed and outbound frames captured from the template.
+ *
+ * Реестр голосовых состояний и пересылка сигналинга на имитированных участниках: пользователи
+ * со своими id STOMP-сессий, права и каналы подменены, исходящие кадры перехватываются из шаблона.
+ */
+class VoiceStateServiceTest {
+
+    private static final long SERVER = 1L;
+    private static final long OTHER_SERVER = 2L;
+    private static final long LOBBY = 10L;
+    private static final long STAGE = 11L;
+    private static final long SMALL_ROOM = 12L;
+    private static final long OTHER_SERVER_CHANNEL = 20L;
+
+    private static final long ALICE = 101L;
+    private static final long BOB = 102L;
+    private static final long CAROL = 103L;
+    private static final long MODERATOR = 104L;
+
+    private SimpMessagingTemplate messagingTemplate;
+    private PermissionService permissionService;
+    private VoiceStateService voiceStateService;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        permissionService = mock(PermissionService.class);
+        VoiceChannelCache voiceChannelCache = mock(VoiceChannelCache.class);
+        stubChannel(voiceChannelCache, LOBBY, SERVER, null);
+        stubChannel(voiceChannelCache, STAGE, SERVER, null);
+        stubChannel(voiceChannelCache, SMALL_ROOM, SERVER, 5);
+        stubChannel(voiceChannelCache, OTHER_SERVER_CHANNEL, OTHER_SERVER, null);
+        when(permissionService.hasPermissionInChannel(anyLong(), anyLong(), any(Permission.class))).thenReturn(true);
+        // Обычные участники не обходят лимит канала
+        for (long peer : new long[]{ALICE, BOB, CAROL}) {
+            when(permissionService.hasPermissionInChannel(eq(peer), anyLong(), eq(Permission.MOVE_MEMBERS)))
+                    .thenReturn(false);
+        }
+
+        voiceStateService = new VoiceStateService(messagingTemplate, permissionService, voiceChannelCache);
+        ReflectionTestUtils.setField(voiceStateService, "maxSdpLength", 16384);
+        ReflectionTestUtils.setField(voiceStateService, "maxCandidateLength", 1024);
+    }
+
+    @Test
+    void joinMoveAndLeaveTrackChannelMembers() {
+        voiceStateService.join(ALICE, "alice", "s-alice", LOBBY);
+        List<VoiceStateUpdate> joined = voiceStateService.join(BOB, "bob", "s-bob", LOBBY);
+        assertEquals(List.of(ALICE, BOB), userIds(joined));
+
+        clearInvocations(messagingTemplate);
+        voiceStateService.move(MODERATOR, BOB, STAGE);
+        assertEquals(List.of(ALICE), userIds(voiceStateService.getChannelStates(LOBBY)));
+        assertEquals(List.of(BOB), userIds(voiceStateService.getChannelStates(STAGE)));
+        // Перемещенная сессия получает список новых собеседников
+        verify(messagingTemplate).convertAndSendToUser(eq("bob"), eq("/queue/voice.joined"), any(), any(Map.class));
+
+        voiceStateService.leave(ALICE);
+        assertTrue(voiceStateService.getChannelStates(LOBBY).isEmpty());
+        assertNull(voiceStateService.getState(ALICE));
+        ArgumentCaptor<Object> published = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce())
+                .convertAndSend(eq("/topic/voice." + SERVER), published.capture());
+        VoiceStateUpdate left = (VoiceStateUpdate) published.getValue();
+        assertEquals(ALICE, left.getUserId());
+        assertNull(left.getChannelId());
+
+        // Закрытая сессия покидает канал
+        voiceStateService.sessionClosed("s-bob");
+        assertTrue(voiceStateService.getChannelStates(STAGE).isEmpty());
+    }
+
+    @Test
+    void relaysOfferAndAnswerOnlyBetweenPeersOfOneChannel() {
+        voiceStateService.join(ALICE, "alice", "s-alice", LOBBY);
+        voiceStateService.join(BOB, "bob", "s-bob", LOBBY);
+        voiceStateService.join(CAROL, "carol", "s-carol", STAGE);
+        clearInvocations(messagingTemplate);
+
+        assertTrue(voiceStateService.relaySignal(ALICE, "s-alice", signal(VoiceSignalType.OFFER, BOB, "offer-sdp")));
+        VoiceSignal offer = capturedSignal("bob", "s-bob");
+        assertEquals(ALICE, offer.getFromUserId());
+        assertEquals("alice", offer.getFromUsername());
+        assertEquals(LOBBY, offer.getChannelId());
+        assertEquals("offer-sdp", offer.getSdp());
+
+        clearInvocations(messagingTemplate);
+        assertTrue(voiceStateService.relaySignal(BOB, "s-bob", signal(VoiceSignalType.ANSWER, ALICE, "answer-sdp")));
+        VoiceSignal answer = capturedSignal("alice", "s-alice");
+        assertEquals(BOB, answer.getFromUserId());
+        assertEquals("answer-sdp", answer.getSdp());
+
+        // Не собеседники: другой канал, чужая сессия отправителя, неподключенный получатель
+        assertFalse(voiceStateService.relaySignal(ALICE, "s-alice", signal(VoiceSignalType.OFFER, CAROL, "x")));
+        assertFalse(voiceStateService.relaySignal(ALICE, "s-other", signal(VoiceSignalType.OFFER, BOB, "x")));
+        assertFalse(voiceStateService.relaySignal(ALICE, "s-alice", signal(VoiceSignalType.OFFER, MODERATOR, "x")));
+    }
+
+    @Test
+    void serverMuteAndDeafenSurviveRejoin() {
+        voiceStateService.join(ALICE, "alice", "s-alice", LOBBY);
+        voiceStateService.moderate(MODERATOR, ALICE, true, true);
+
+        voiceStateService.leave(ALICE);
+        voiceStateService.join(ALICE, "alice", "s-alice-2", STAGE);
+        VoiceStateUpdate rejoined = voiceStateService.getState(ALICE);
+        assertTrue(rejoined.isServerMute());
+        assertTrue(rejoined.isServerDeaf());
+
+        // Флаги принадлежат серверу: на другом сервере их нет, при возврате они снова действуют
+        voiceStateService.join(ALICE, "alice", "s-alice-2", OTHER_SERVER_CHANNEL);
+        assertFalse(voiceStateService.getState(ALICE).isServerMute());
+        voiceStateService.join(ALICE, "alice", "s-alice-2", LOBBY);
+        assertTrue(voiceStateService.getState(ALICE).isServerMute());
+
+        voiceStateService.moderate(MODERATOR, ALICE, false, false);
+        voiceStateService.leave(ALICE);
+        voiceStateService.join(ALICE, "alice", "s-alice-3", LOBBY);
+        assertFalse(voiceStateService.getState(ALICE).isServerMute());
+        assertFalse(voiceStateService.getState(ALICE).isServerDeaf());
+    }
+
+    @Test
+    void concurrentJoinsNeverExceedUserLimit() throws Exception {
+        int peers = 32;
+        for (long userId = 1000; userId < 1000 + peers; userId++) {
+            when(permissionService.hasPermissionInChannel(eq(userId), anyLong(), eq(Permission.MOVE_MEMBERS)))
+                    .thenReturn(false);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        try {
+            Future<?>[] joins = new Future<?>[peers];
+            for (int i = 0; i < peers; i++) {
+                long userId = 1000 + i;
+                joins[i] = executor.submit(() -> {
+                    start.await();
+                    try {
+                        voiceStateService.join(userId, "peer" + userId, "s-" + userId, SMALL_ROOM);
+                    } catch (VoiceChannelFullException e) {
+                        rejected.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> join : joins) {
+                join.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(5, voiceStateService.getChannelStates(SMALL_ROOM).size());
+        assertEquals(peers - 5, rejected.get());
+    }
+
+    private static void stubChannel(VoiceChannelCache cache, long channelId, long serverId, Integer userLimit) {
+        when(cache.getChannel(channelId))
+                .thenReturn(Optional.of(new VoiceChannelInfo(channelId, serverId, ChannelType.VOICE, userLimit, true)));
+    }
+
+    private static VoiceSignal signal(VoiceSignalType type, long targetUserId, String sdp) {
+        VoiceSignal signal = new VoiceSignal();
+        signal.setType(type);
+        signal.setTargetUserId(targetUserId);
+        signal.setSdp(sdp);
+        return signal;
+    }
+
+    /** Сигнал, пересланный пользователю; проверяет, что он ушел только в его голосовую сессию. */
+    @SuppressWarnings("unchecked")
+    private VoiceSignal capturedSignal(String username, String sessionId) {
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<Map<String, Object>> headers = ArgumentCaptor.forClass(Map.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(username), eq("/queue/voice.signal"),
+                payload.capture(), headers.capture());
+        assertEquals(sessionId, SimpMessageHeaderAccessor.getSessionId(headers.getValue()));
+        return (VoiceSignal) payload.getValue();
+    }
+
+    private static List<Long> userIds(List<VoiceStateUpdate> states) {
+        return states.stream().map(VoiceStateUpdate::getUserId).sorted().toList();
+    }
+}